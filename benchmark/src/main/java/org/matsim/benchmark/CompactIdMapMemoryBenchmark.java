@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactIdMapMemoryBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.collections.CompactIdMap;
+
+/**
+ * Compares the memory used by the maps storing the elements of large networks, populations and
+ * transit schedules: LinkedHashMap and TreeMap as used before, and {@link CompactIdMap}.
+ * The ids and values are created before the measurement, so only the overhead of the maps is measured.
+ *
+ * Usage: CompactIdMapMemoryBenchmark [numberOfElements]
+ *
+ * @author agent
+ */
+public class CompactIdMapMemoryBenchmark {
+
+	public static void main(String[] args) {
+		int numberOfElements = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+
+		Id<Link>[] ids = new Id[numberOfElements];
+		Object[] values = new Object[numberOfElements];
+		for (int i = 0; i < numberOfElements; i++) {
+			ids[i] = Id.create(i, Link.class);
+			values[i] = new Object();
+		}
+
+		measure("LinkedHashMap", new LinkedHashMap<>(), ids, values);
+		measure("TreeMap", new TreeMap<>(), ids, values);
+		measure("CompactIdMap", new CompactIdMap<>(), ids, values);
+	}
+
+	private static void measure(final String name, final Map<Id<Link>, Object> map, final Id<Link>[] ids, final Object[] values) {
+		long before = usedMemory();
+		long start = System.nanoTime();
+		for (int i = 0; i < ids.length; i++) {
+			map.put(ids[i], values[i]);
+		}
+		double fillSeconds = (System.nanoTime() - start) / 1e9;
+		long after = usedMemory();
+
+		start = System.nanoTime();
+		long found = 0;
+		for (int i = ids.length - 1; i >= 0; i--) {
+			if (map.get(ids[i]) != null) found++;
+		}
+		double getSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("%s: %d elements, %.1f MB, %.1f bytes per element, fill %.2f s, get %.2f s",
+				name, found, (after - before) / 1e6, (double) (after - before) / ids.length, fillSeconds, getSeconds));
+		map.clear();
+	}
+
+	private static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
@@ -0,0 +1,82 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterXMLBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.algorithms.ParallelEventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Measures how many events per second {@link EventWriterXML} and {@link ParallelEventWriterXML} write to a
+ * gzipped file, from the point of view of the thread handling the events, i.e. including closing the file.
+ *
+ * Usage: EventWriterXMLBenchmark [number of events] [compression threads]
+ *
+ * @author agent
+ */
+public class EventWriterXMLBenchmark {
+
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws IOException {
+		int numberOfEvents = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		Event[] events = new Event[100000];
+		for (int i = 0; i < events.length; i += 2) {
+			Id<Vehicle> vehicleId = Id.create("vehicle_" + (i % 20000), Vehicle.class);
+			Id<Link> linkId = Id.create("link_" + (i % 5000), Link.class);
+			events[i] = new LinkEnterEvent(i, vehicleId, linkId);
+			events[i + 1] = new LinkLeaveEvent(i + 1, vehicleId, linkId);
+		}
+
+		File file = File.createTempFile("events", ".xml.gz");
+		file.deleteOnExit();
+		for (int run = 0; run < RUNS; run++) {
+			measure("EventWriterXML", new EventWriterXML(file.getPath()), events, numberOfEvents, file);
+			measure("ParallelEventWriterXML, " + threads + " threads", new ParallelEventWriterXML(file.getPath(), threads), events,
+					numberOfEvents, file);
+		}
+	}
+
+	private static void measure(String name, EventWriter writer, Event[] events, int numberOfEvents, File file) {
+		BasicEventHandler handler = (BasicEventHandler) writer;
+		long start = System.nanoTime();
+		for (int i = 0; i < numberOfEvents; i++) {
+			handler.handleEvent(events[i % events.length]);
+		}
+		writer.closeFile();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-36s: %6.2f s, %8.0f events/s, %6.1f MB", name, seconds, numberOfEvents / seconds,
+				file.length() / 1e6));
+	}
+
+}
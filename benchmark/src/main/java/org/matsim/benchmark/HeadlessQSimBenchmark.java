@@ -0,0 +1,88 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HeadlessQSimBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.IOException;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+/**
+ * Compares the qsim with and without qsim.headless: the heap in use once the qsim is initialized, i.e.
+ * with its network and with the agents at their first activities, and the run time of the mobsim.
+ * The runs alternate between the two modes.  A config file with a large network and population can be
+ * given; otherwise the benchmark scenario is used.
+ *
+ * Usage: HeadlessQSimBenchmark [config.xml]
+ *
+ * @author agent
+ */
+public class HeadlessQSimBenchmark {
+
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws IOException {
+		Config config = args.length > 0 ? ConfigUtils.loadConfig(args[0])
+				: ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("benchmark"), "config.xml"));
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		for (int run = 0; run < RUNS; run++) {
+			for (boolean headless : new boolean[] { false, true }) {
+				config.qsim().setHeadless(headless);
+				QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, EventsUtils.createEventsManager());
+				long[] heapAtStart = new long[1];
+				long[] measuringNanos = new long[1];
+				qsim.addQueueSimulationListeners((MobsimInitializedListener) e -> {
+					long measuringStart = System.nanoTime();
+					heapAtStart[0] = usedHeap();
+					measuringNanos[0] = System.nanoTime() - measuringStart;
+				});
+
+				long start = System.nanoTime();
+				qsim.run();
+				// without the garbage collections for measuring the heap
+				long duration = System.nanoTime() - start - measuringNanos[0];
+
+				System.out.println(String.format("run %d, headless=%-5b: %8.1f ms total, %8.1f MB heap in use after initialization",
+						run, headless, duration / 1e6, heapAtStart[0] / 1e6));
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsManagerBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup.EventsQueueType;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Measures the events throughput of the sim-step synchronized parallel events managers,
+ * once with blocking queues and once with the ring buffer.
+ *
+ * Usage: ParallelEventsManagerBenchmark [numberOfThreads] [eventsPerSimStep]
+ *
+ * @author agent
+ */
+public class ParallelEventsManagerBenchmark {
+
+	private static final int SIM_STEPS = 3600;
+	private static final int HANDLERS = 10;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		int numberOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int eventsPerSimStep = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		Id<Link>[] linkIds = new Id[1000];
+		for (int i = 0; i < linkIds.length; i++) linkIds[i] = Id.createLinkId(i);
+		Id<Vehicle>[] vehicleIds = new Id[1000];
+		for (int i = 0; i < vehicleIds.length; i++) vehicleIds[i] = Id.createVehicleId(i);
+
+		for (int run = 0; run < RUNS; run++) {
+			for (EventsQueueType queueType : EventsQueueType.values()) {
+				Config config = ConfigUtils.createConfig();
+				config.parallelEventHandling().setNumberOfThreads(numberOfThreads);
+				config.parallelEventHandling().setSynchronizeOnSimSteps(true);
+				config.parallelEventHandling().setEventsQueueType(queueType);
+				EventsManager events = EventsUtils.createEventsManager(config);
+				for (int i = 0; i < HANDLERS; i++) events.addHandler(new CountingHandler());
+
+				long start = System.nanoTime();
+				events.initProcessing();
+				for (int time = 0; time < SIM_STEPS; time++) {
+					for (int e = 0; e < eventsPerSimStep; e += 2) {
+						events.processEvent(new LinkLeaveEvent(time, vehicleIds[e % vehicleIds.length], linkIds[e % linkIds.length]));
+						events.processEvent(new LinkEnterEvent(time, vehicleIds[e % vehicleIds.length], linkIds[(e + 1) % linkIds.length]));
+					}
+					events.afterSimStep(time);
+				}
+				events.finishProcessing();
+				double seconds = (System.nanoTime() - start) / 1e9;
+				long numberOfEvents = (long) SIM_STEPS * eventsPerSimStep;
+				System.out.println(String.format("run %d, %s: %d events in %.2f s, %.0f events/s",
+						run, queueType, numberOfEvents, seconds, numberOfEvents / seconds));
+			}
+		}
+	}
+
+	private static class CountingHandler implements LinkEnterEventHandler, LinkLeaveEventHandler {
+		private long count = 0;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.count = 0;
+		}
+	}
+
+}
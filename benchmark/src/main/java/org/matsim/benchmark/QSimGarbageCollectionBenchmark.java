@@ -0,0 +1,88 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimGarbageCollectionBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+/**
+ * Measures the run time of the mobsim and the number and duration of the garbage collections
+ * during it, to compare the queues and buffers of the links before and after changes.
+ * A config file with a large network and population can be given; otherwise the benchmark
+ * scenario is used.
+ *
+ * Usage: QSimGarbageCollectionBenchmark [config.xml]
+ *
+ * @author agent
+ */
+public class QSimGarbageCollectionBenchmark {
+
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws IOException {
+		Config config = args.length > 0 ? ConfigUtils.loadConfig(args[0])
+				: ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("benchmark"), "config.xml"));
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		for (int run = 0; run < RUNS; run++) {
+			QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, EventsUtils.createEventsManager());
+
+			long collectionsBefore = collectionCount();
+			long collectionTimeBefore = collectionTime();
+			long start = System.nanoTime();
+			qsim.run();
+			long duration = System.nanoTime() - start;
+
+			System.out.println(String.format("run %d: %8.1f ms total, %d garbage collections, %d ms in garbage collection",
+					run, duration / 1e6, collectionCount() - collectionsBefore, collectionTime() - collectionTimeBefore));
+		}
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long collectionTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+}
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouterPriorityQueueBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.FastAStarLandmarksFactory;
+import org.matsim.core.router.FastDijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.priorityqueue.MinHeapType;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+
+/**
+ * Measures the routing time of FastDijkstra and FastAStarLandmarks with the different
+ * priority queues, using the same random origin-destination pairs for all of them.
+ * Without a network file, a grid network with random link lengths and speeds is used.
+ *
+ * Usage: RouterPriorityQueueBenchmark [numberOfQueries] [networkFile]
+ *
+ * @author agent
+ */
+public class RouterPriorityQueueBenchmark {
+
+	private static final int RUNS = 3;
+	private static final int GRID_SIZE = 300;
+
+	public static void main(String[] args) {
+		int numberOfQueries = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		Network network = NetworkUtils.createNetwork();
+		if (args.length > 1) {
+			new MatsimNetworkReader(network).readFile(args[1]);
+		} else {
+			createGrid(network, GRID_SIZE, new Random(4711));
+		}
+		System.out.println("network with " + network.getNodes().size() + " nodes and " + network.getLinks().size() + " links.");
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random r = new Random(42);
+		Node[] fromNodes = new Node[numberOfQueries];
+		Node[] toNodes = new Node[numberOfQueries];
+		for (int i = 0; i < numberOfQueries; i++) {
+			fromNodes[i] = nodes.get(r.nextInt(nodes.size()));
+			toNodes[i] = nodes.get(r.nextInt(nodes.size()));
+		}
+		FreespeedTravelTimeAndDisutility travelCosts = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+
+		for (int run = 0; run < RUNS; run++) {
+			for (String algorithm : new String[] {"FastDijkstra", "FastAStarLandmarks"}) {
+				for (MinHeapType heapType : MinHeapType.values()) {
+					LeastCostPathCalculatorFactory factory = algorithm.equals("FastDijkstra")
+							? new FastDijkstraFactory(false, heapType) : new FastAStarLandmarksFactory(heapType);
+					LeastCostPathCalculator router = factory.createPathCalculator(network, travelCosts, travelCosts);
+					router.calcLeastCostPath(fromNodes[0], toNodes[0], 7 * 3600, null, null); // warm up the data structures
+					double costSum = 0;
+					long start = System.nanoTime();
+					for (int i = 0; i < numberOfQueries; i++) {
+						Path path = router.calcLeastCostPath(fromNodes[i], toNodes[i], 7 * 3600, null, null);
+						if (path != null) {
+							costSum += path.travelCost;
+						}
+					}
+					double millis = (System.nanoTime() - start) / 1e6;
+					System.out.println(String.format("run %d, %s, %s: %d queries in %.0f ms, %.3f ms/query, cost sum %.3f",
+							run, algorithm, heapType, numberOfQueries, millis, millis / numberOfQueries, costSum));
+				}
+			}
+		}
+	}
+
+	private static void createGrid(final Network network, final int size, final Random r) {
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 1000, y * 1000));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x + 1][y], linkId, r);
+				}
+				if (y + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x][y + 1], linkId, r);
+				}
+			}
+		}
+	}
+
+	private static int addLinks(final Network network, final Node a, final Node b, int linkId, final Random r) {
+		double length = 1000 + r.nextInt(500);
+		double freespeed = 10 + r.nextInt(25);
+		NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), a, b, length, freespeed, 2000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), b, a, length, freespeed, 2000, 1);
+		return linkId;
+	}
+
+}
@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.EventsToScore;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+/**
+ * Compares the time needed to score the events of one mobsim run without and with scoring threads.
+ * The events of the test scenarios are recorded once and then handed to {@link EventsToScore} again and again,
+ * through the events manager, as in an iteration.  The sum of the scores must be the same for all numbers of threads.
+ *
+ * Usage: ScoringBenchmark [testScenarioName ...]
+ *
+ * @author agent
+ */
+public class ScoringBenchmark {
+
+	private static final int RUNS = 5;
+	private static final int[] NUMBERS_OF_THREADS = { 0, 1, 2, 4, 8 };
+
+	public static void main(String[] args) {
+		String[] scenarioNames = args.length > 0 ? args : new String[] { "equil", "berlin", "siouxfalls-2014" };
+		for (String scenarioName : scenarioNames) {
+			Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL(scenarioName), "config.xml"));
+			Scenario scenario = ScenarioUtils.loadScenario(config);
+			PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+			List<Event> events = recordEvents(scenario);
+			System.out.println(scenarioName + ": " + scenario.getPopulation().getPersons().size() + " persons, " + events.size() + " events.");
+
+			for (int run = 0; run < RUNS; run++) {
+				for (int numberOfThreads : NUMBERS_OF_THREADS) {
+					config.planCalcScore().setNumberOfScoringThreads(numberOfThreads);
+					EventsManager eventsManager = EventsUtils.createEventsManager(config);
+					EventsToScore eventsToScore = EventsToScore.createWithoutScoreUpdating(scenario,
+							new CharyparNagelScoringFunctionFactory(scenario), eventsManager);
+
+					long start = System.nanoTime();
+					eventsToScore.beginIteration(0);
+					eventsManager.initProcessing();
+					for (Event event : events) {
+						eventsManager.processEvent(event);
+					}
+					eventsManager.finishProcessing();
+					eventsToScore.finish();
+					double seconds = (System.nanoTime() - start) / 1e9;
+
+					double sum = 0;
+					for (Person person : scenario.getPopulation().getPersons().values()) {
+						sum += eventsToScore.getAgentScore(person.getId());
+					}
+					System.out.println(String.format("%s, run %d, %d scoring threads: %8.1f ms, %.0f events/s, score sum %.6f",
+							scenarioName, run, numberOfThreads, seconds * 1e3, events.size() / seconds, sum));
+				}
+			}
+		}
+	}
+
+	private static List<Event> recordEvents(final Scenario scenario) {
+		final List<Event> events = new ArrayList<>();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				events.add(event);
+			}
+		});
+		QSim qsim = new QSimBuilder(scenario.getConfig()).useDefaults().build(scenario, eventsManager);
+		qsim.run();
+		return events;
+	}
+
+}
@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeCalculatorBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Compares the {@link TravelTimeCalculatorType}s: the throughput when handling the link events of vehicles driving
+ * random walks on a grid network of about 500'000 links, the memory used by the calculator afterwards, and the
+ * throughput when asking for the travel times of all links in every hour, as the router does.
+ * The events are created before the measurement and handed to the calculator directly, without an events manager.
+ * Optionally, link ids that are not part of the network are created first, as if another network had been loaded.
+ *
+ * Usage: TravelTimeCalculatorBenchmark [numberOfVehicles] [linksPerVehicle] [numberOfOtherLinkIds]
+ *
+ * @author agent
+ */
+public class TravelTimeCalculatorBenchmark {
+
+	private static final int RUNS = 3;
+	private static final int GRID_SIZE = 354; // 4 * 354 * 353 = 499'848 links
+
+	public static void main(String[] args) {
+		int numberOfVehicles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int linksPerVehicle = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int numberOfOtherLinkIds = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+		for (int i = 0; i < numberOfOtherLinkIds; i++) {
+			Id.create("other_" + i, Link.class);
+		}
+
+		Network network = NetworkUtils.createNetwork();
+		createGrid(network, GRID_SIZE, new Random(4711));
+		System.out.println("network with " + network.getNodes().size() + " nodes and " + network.getLinks().size() + " links.");
+		List<Event> events = createEvents(network, numberOfVehicles, linksPerVehicle, new Random(42));
+		System.out.println(events.size() + " events.");
+		Link[] links = network.getLinks().values().toArray(new Link[0]);
+
+		for (int run = 0; run < RUNS; run++) {
+			for (TravelTimeCalculatorType type : TravelTimeCalculatorType.values()) {
+				long before = usedMemory();
+				TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+				config.setTravelTimeCalculatorType(type.toString());
+				TravelTimeCalculator calculator = TravelTimeCalculator.create(network, config);
+
+				long start = System.nanoTime();
+				for (Event event : events) {
+					if (event instanceof LinkEnterEvent) {
+						calculator.handleEvent((LinkEnterEvent) event);
+					} else if (event instanceof LinkLeaveEvent) {
+						calculator.handleEvent((LinkLeaveEvent) event);
+					} else {
+						calculator.handleEvent((VehicleLeavesTrafficEvent) event);
+					}
+				}
+				double eventSeconds = (System.nanoTime() - start) / 1e9;
+				long after = usedMemory();
+
+				TravelTime travelTime = calculator.getLinkTravelTimes();
+				double sum = 0;
+				start = System.nanoTime();
+				for (int hour = 0; hour < 30; hour++) {
+					for (Link link : links) {
+						sum += travelTime.getLinkTravelTime(link, hour * 3600.0, null, null);
+					}
+				}
+				double querySeconds = (System.nanoTime() - start) / 1e9;
+
+				System.out.println(String.format("run %d, %s: %.0f events/s, %.1f MB, %.0f queries/s, travel time sum %.0f",
+						run, type, events.size() / eventSeconds, (after - before) / 1e6, 30 * links.length / querySeconds, sum));
+				calculator = null;
+			}
+		}
+	}
+
+	/*
+	 * All vehicles drive at the same time, one link after the other, so the calculator has to remember the link
+	 * enter times of all vehicles at once.
+	 */
+	private static List<Event> createEvents(final Network network, final int numberOfVehicles, final int linksPerVehicle, final Random r) {
+		List<Link> allLinks = new ArrayList<>(network.getLinks().values());
+		Link[] currentLinks = new Link[numberOfVehicles];
+		double[] times = new double[numberOfVehicles];
+		List<Id<Vehicle>> vehicleIds = new ArrayList<>(numberOfVehicles);
+		for (int v = 0; v < numberOfVehicles; v++) {
+			vehicleIds.add(Id.create(v, Vehicle.class));
+			currentLinks[v] = allLinks.get(r.nextInt(allLinks.size()));
+			times[v] = 6 * 3600 + r.nextInt(3 * 3600);
+		}
+		List<Event> events = new ArrayList<>(2 * numberOfVehicles * linksPerVehicle + numberOfVehicles);
+		for (int i = 0; i < linksPerVehicle; i++) {
+			for (int v = 0; v < numberOfVehicles; v++) {
+				Link link = currentLinks[v];
+				events.add(new LinkEnterEvent(times[v], vehicleIds.get(v), link.getId()));
+				times[v] += link.getLength() / link.getFreespeed() * (1.0 + r.nextDouble());
+				events.add(new LinkLeaveEvent(times[v], vehicleIds.get(v), link.getId()));
+				List<Link> outLinks = new ArrayList<>(link.getToNode().getOutLinks().values());
+				currentLinks[v] = outLinks.get(r.nextInt(outLinks.size()));
+			}
+		}
+		for (int v = 0; v < numberOfVehicles; v++) {
+			events.add(new VehicleLeavesTrafficEvent(times[v], Id.create(v, Person.class), currentLinks[v].getId(), vehicleIds.get(v), "car", 1.0));
+		}
+		return events;
+	}
+
+	private static void createGrid(final Network network, final int size, final Random r) {
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 1000, y * 1000));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x + 1][y], linkId, r);
+				}
+				if (y + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x][y + 1], linkId, r);
+				}
+			}
+		}
+	}
+
+	private static int addLinks(final Network network, final Node a, final Node b, int linkId, final Random r) {
+		double length = 1000 + r.nextInt(500);
+		double freespeed = 10 + r.nextInt(25);
+		NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), a, b, length, freespeed, 2000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), b, a, length, freespeed, 2000, 1);
+		return linkId;
+	}
+
+	private static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VehicleQueueBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ * Measures the time, the allocated memory and the garbage collections when vehicles move through
+ * the queues of many links: in every step, every link accepts one or two vehicles and releases as
+ * many. Compares {@link FIFOVehicleQ} with a LinkedList, which backed it before and also held the
+ * buffers and holes of QueueWithBuffer.
+ *
+ * Usage: VehicleQueueBenchmark [numberOfLinks] [numberOfSteps]
+ *
+ * @author agent
+ */
+public class VehicleQueueBenchmark {
+
+	private static final int RUNS = 3;
+	private static final int VEHICLES_PER_LINK = 20;
+
+	public static void main(String[] args) {
+		int numberOfLinks = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int numberOfSteps = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+		QVehicle vehicle = new QVehicle(VehicleUtils.getFactory().createVehicle(Id.createVehicleId("1"), VehicleUtils.getDefaultVehicleType()));
+
+		for (int run = 0; run < RUNS; run++) {
+			measure("LinkedList", LinkedList::new, vehicle, numberOfLinks, numberOfSteps);
+			measure("FIFOVehicleQ", FIFOVehicleQ::new, vehicle, numberOfLinks, numberOfSteps);
+		}
+	}
+
+	private static void measure(final String name, final Supplier<Queue<QVehicle>> factory, final QVehicle vehicle,
+			final int numberOfLinks, final int numberOfSteps) {
+		@SuppressWarnings("unchecked")
+		Queue<QVehicle>[] queues = new Queue[numberOfLinks];
+		for (int i = 0; i < numberOfLinks; i++) {
+			queues[i] = factory.get();
+			for (int v = 0; v < VEHICLES_PER_LINK; v++) {
+				queues[i].add(vehicle);
+			}
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long gcCount = getGarbageCollectionCount();
+		long allocated = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long moved = 0;
+		for (int step = 0; step < numberOfSteps; step++) {
+			for (int i = 0; i < numberOfLinks; i++) {
+				Queue<QVehicle> queue = queues[i];
+				int n = 1 + ((i + step) & 1);
+				for (int v = 0; v < n; v++) {
+					queue.add(vehicle);
+				}
+				for (int v = 0; v < n; v++) {
+					if (queue.poll() != null) {
+						moved++;
+					}
+				}
+			}
+		}
+		long duration = System.nanoTime() - start;
+		allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+		gcCount = getGarbageCollectionCount() - gcCount;
+		System.out.println(String.format("%-12s: %8.1f ms, %6d MB allocated, %4d garbage collections, %d vehicles moved",
+				name, duration / 1e6, allocated / (1024 * 1024), gcCount, moved));
+	}
+
+	private static long getGarbageCollectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+}
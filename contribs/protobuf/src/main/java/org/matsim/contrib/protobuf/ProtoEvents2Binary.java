@@ -0,0 +1,42 @@
+package org.matsim.contrib.protobuf;
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+
+/**
+ * Converts a protobuf events file into the binary events format of MATSim core,
+ * see {@link EventWriterBinary}.
+ */
+public class ProtoEvents2Binary {
+
+	public static void main(String [] args) {
+		if (args.length != 2) {
+			System.out.println("usage: ProtoEvents2Binary inputFile.pbf outputFile.bin");
+			System.exit(1);
+		}
+		EventsManager em = new EventsManagerImpl();
+		EventWriterBinary writer = new EventWriterBinary(args[1]);
+		em.addHandler(writer);
+		new ProtoEventsParser(em).parse(args[0]);
+		writer.closeFile();
+	}
+}
@@ -20,7 +20,11 @@
 
 package org.matsim.analysis;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -35,11 +39,16 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
 
 import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <br>
+ * To handle the events in parallel, the analyzer can be split by link into shards, see
+ * {@link #createSharded(int, int, Network, boolean, int)}.  Every shard only counts the vehicles on its own
+ * links, but answers the queries for all links.
  *
  * @author mrieser
  */
@@ -49,6 +58,7 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
+	private final int expectedNumberOfLinks;
 	private final Map<Id<Link>, int[]> links;
 	
 	// for multi-modal support
@@ -56,10 +66,52 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final Map<Id<Vehicle>, String> enRouteModes;
 	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
 
+	/* the shards this analyzer is part of, or null if it is not sharded.  A shard counts the vehicles on the links
+	 * whose id index modulo the number of shards is its index in the array. */
+	private VolumesAnalyzer[] shards = null;
+	private int shard = 0;
+
 	@Inject
-	VolumesAnalyzer(Network network, EventsManager eventsManager) {
-		this(3600, 24 * 3600 - 1, network);
+	VolumesAnalyzer(Network network, EventsManager eventsManager, ParallelEventHandlingConfigGroup parallelEventHandlingConfig) {
+		this(3600, 24 * 3600 - 1, linksPerShard(network, parallelEventHandlingConfig.getNumberOfLinkObserverShards()), true);
 		eventsManager.addHandler(this);
+
+		// this analyzer is the first shard, the others are only known to it
+		VolumesAnalyzer[] shards = new VolumesAnalyzer[parallelEventHandlingConfig.getNumberOfLinkObserverShards()];
+		shards[0] = this;
+		for (int i = 1; i < shards.length; i++) {
+			shards[i] = new VolumesAnalyzer(3600, 24 * 3600 - 1, shards[0].expectedNumberOfLinks, true);
+			eventsManager.addHandler(shards[i]);
+		}
+		setShards(shards);
+	}
+
+	/**
+	 * Creates an analyzer that is split by link into <code>numberOfShards</code> analyzers, which can handle the
+	 * events in parallel, e.g. each in another thread of a parallel events manager.  All of the
+	 * {@link #getShards()} must be added to the events manager.  Each of them answers the queries for all links.
+	 */
+	public static VolumesAnalyzer createSharded(final int timeBinSize, final int maxTime, final Network network, boolean observeModes,
+			int numberOfShards) {
+		VolumesAnalyzer[] shards = new VolumesAnalyzer[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			shards[i] = new VolumesAnalyzer(timeBinSize, maxTime, linksPerShard(network, numberOfShards), observeModes);
+		}
+		setShards(shards);
+		return shards[0];
+	}
+
+	private static int linksPerShard(final Network network, final int numberOfShards) {
+		return (network.getLinks().size() + numberOfShards - 1) / numberOfShards;
+	}
+
+	private static void setShards(VolumesAnalyzer[] shards) {
+		if (shards.length > 1) {
+			for (int i = 0; i < shards.length; i++) {
+				shards[i].shards = shards;
+				shards[i].shard = i;
+			}
+		}
 	}
 
 	public VolumesAnalyzer(final int timeBinSize, final int maxTime, final Network network) {
@@ -67,15 +119,21 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	}
 	
 	public VolumesAnalyzer(final int timeBinSize, final int maxTime, final Network network, boolean observeModes) {
+		this(timeBinSize, maxTime, network.getLinks().size(), observeModes);
+	}
+
+	/* the maps are sized for the links this analyzer counts the vehicles on, i.e. only the links of its shard */
+	private VolumesAnalyzer(final int timeBinSize, final int maxTime, final int expectedNumberOfLinks, boolean observeModes) {
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.expectedNumberOfLinks = expectedNumberOfLinks;
+		this.links = new HashMap<>((int) (expectedNumberOfLinks * 1.1), 0.95f);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
 			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.linksPerMode = new HashMap<>((int) (expectedNumberOfLinks * 1.1), 0.95f);
 		} else {
 			this.enRouteModes = null;
 			this.linksPerMode = null;
@@ -91,6 +149,9 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
+		if (!isShardOf(event.getLinkId())) {
+			return;
+		}
 		int[] volumes = this.links.get(event.getLinkId());
 		if (volumes == null) {
 			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
@@ -115,6 +176,18 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		}
 	}
 
+	private boolean isShardOf(final Id<Link> linkId) {
+		return this.shards == null || linkId.index() % this.shards.length == this.shard;
+	}
+
+	/**
+	 * @return the shards this analyzer is part of, which must all be added to the events manager, or only this
+	 * analyzer if it is not sharded.
+	 */
+	public List<VolumesAnalyzer> getShards() {
+		return this.shards == null ? Collections.singletonList(this) : Collections.unmodifiableList(Arrays.asList(this.shards));
+	}
+
 	private int getTimeSlotIndex(final double time) {
 		if (time > this.maxTime) {
 			return this.maxSlotIndex;
@@ -128,6 +201,9 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
+		if (!isShardOf(linkId)) {
+			return this.shards[linkId.index() % this.shards.length].getVolumesForLink(linkId);
+		}
 		return this.links.get(linkId);
 	}
 	
@@ -138,6 +214,9 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 *  	<code>linkId</code> per time bin, starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
+		if (!isShardOf(linkId)) {
+			return this.shards[linkId.index() % this.shards.length].getVolumesForLink(linkId, mode);
+		}
 		if (observeModes) {
 			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
 			if (modeVolumes != null) return modeVolumes.get(mode);
@@ -224,8 +303,10 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	public Set<String> getModes() {
 		Set<String> modes = new TreeSet<>();
 		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
+		for (VolumesAnalyzer analyzer : getShards()) {
+			for (Map<String, int[]> map : analyzer.linksPerMode.values()) {
+				modes.addAll(map.keySet());
+			}
 		}
 		
 		return modes;
@@ -235,6 +316,13 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
+		if (this.shards != null) {
+			Set<Id<Link>> linkIds = new HashSet<>();
+			for (VolumesAnalyzer analyzer : this.shards) {
+				linkIds.addAll(analyzer.links.keySet());
+			}
+			return linkIds;
+		}
 		return this.links.keySet();
 	}
 
@@ -20,6 +20,7 @@
 
 package org.matsim.api.core.v01;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,7 +41,7 @@ import org.matsim.vehicles.Vehicle;
  */
 public abstract class Id<T> implements Comparable<Id<T>> {
 
-	private final static Map<Class<?>, Map<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, Map<String, Id<?>>>();
+	private final static Map<Class<?>, IdRegistry<?>> cache = new ConcurrentHashMap<Class<?>, IdRegistry<?>>();
 	
 	
 	public static <T> Id<T> create(final long key, final Class<T> type) {
@@ -58,20 +59,42 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	 * This method supports a cache where ids are stored and re-used per type.   
 	 */
 	public static <T> Id<T> create(final String key, final Class<T> type) {
-		Map<String, Id<?>> map = cache.get(type);
-		if (map == null) {
-			map = new ConcurrentHashMap<String, Id<?>>();
-			cache.put(type, map);
-		}
 		Gbl.assertNotNull(key);
-		Id<?> id = map.get(key);
-		if (id == null) {
-			id = new IdImpl<T>(key);
-			map.put(key, id);
+		return getRegistry(type).create(key);
+	}
+
+	/**
+	 * @return the id of the given type with the given {@link #index()}, or <code>null</code> if no such id was created yet.
+	 */
+	public static <T> Id<T> get(final int index, final Class<T> type) {
+		return getRegistry(type).get(index);
+	}
+
+	/**
+	 * @return the number of ids created so far for the given type. All ids of this type have an
+	 * {@link #index()} smaller than this number.
+	 */
+	public static <T> int getNumberOfIds(final Class<T> type) {
+		return getRegistry(type).size();
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> IdRegistry<T> getRegistry(final Class<T> type) {
+		IdRegistry<?> registry = cache.get(type);
+		if (registry == null) {
+			// ids may be created by several threads at the same time, e.g. when reading events in parallel
+			registry = cache.computeIfAbsent(type, k -> new IdRegistry<T>());
 		}
-		
-		return (Id<T>) id;
+		return (IdRegistry<T>) registry;
 	}
+
+	/**
+	 * Ids are numbered consecutively per type, starting at 0, in the order they are created. The index
+	 * can be used to store data per id in arrays instead of maps, see {@link IdMap} and {@link IdSet}.
+	 * 
+	 * @return the index of this id within its type.
+	 */
+	public abstract int index();
 	
 	/**
 	 * @return <code>0</code> when the two objects being compared are the same objects, other values according to their ids being compared to each other.
@@ -113,9 +136,16 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	private static class IdImpl<T> extends Id<T> {
 
 		private final String id; 
+		private final int index;
 		
-		/*package*/ IdImpl(final String id) {
+		/*package*/ IdImpl(final String id, final int index) {
 			this.id = id;
+			this.index = index;
+		}
+
+		@Override
+		public int index() {
+			return this.index;
 		}
 
 		@Override
@@ -129,6 +159,57 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 		}
 	}
 	
+	/**
+	 * Stores all ids of one type, both by key and by index.
+	 * 
+	 * @author agent
+	 *
+	 * @param <T>
+	 */
+	static class IdRegistry<T> {
+
+		private final Map<String, Id<T>> ids = new ConcurrentHashMap<String, Id<T>>();
+		@SuppressWarnings("unchecked")
+		private volatile Id<T>[] idsByIndex = new Id[16];
+		private volatile int size = 0;
+
+		Id<T> create(final String key) {
+			Id<T> id = this.ids.get(key);
+			if (id == null) {
+				id = createSynchronized(key);
+			}
+			return id;
+		}
+
+		private synchronized Id<T> createSynchronized(final String key) {
+			Id<T> id = this.ids.get(key);
+			if (id == null) {
+				int index = this.size;
+				id = new IdImpl<T>(key, index);
+				Id<T>[] array = this.idsByIndex;
+				if (index == array.length) {
+					array = Arrays.copyOf(array, array.length * 2);
+				}
+				array[index] = id;
+				this.idsByIndex = array;
+				this.size = index + 1;
+				this.ids.put(key, id);
+			}
+			return id;
+		}
+
+		Id<T> get(final int index) {
+			if (index < 0 || index >= this.size) {
+				return null;
+			}
+			return this.idsByIndex[index];
+		}
+
+		int size() {
+			return this.size;
+		}
+	}
+	
 	public static <T> String writeId( Id<T> id ) {
 		if ( id==null ) {
 			return "null" ;
@@ -0,0 +1,281 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with {@link Id}s as keys, backed by an array which is indexed by {@link Id#index()}. Lookups
+ * are plain array accesses and no entry objects are stored, so this map is both faster and smaller
+ * than a HashMap if a large part of all ids of a type are used as keys, e.g. data per link or per person.
+ * <p></p>
+ * The entries are iterated in the order the ids were created, not in the order they were added.
+ * All keys must be ids of the type passed to the constructor, ids of other types are treated as not
+ * contained in the map.
+ *
+ * @author agent
+ *
+ * @param <T> the type of the ids
+ * @param <V> the type of the values
+ */
+public class IdMap<T, V> extends AbstractMap<Id<T>, V> {
+
+	/** marks entries with value <code>null</code>, as empty slots are <code>null</code> */
+	private static final Object NULL = new Object();
+
+	private final Id.IdRegistry<T> registry;
+	private Object[] data;
+	private int size = 0;
+	private int modCount = 0;
+	private EntrySet entrySet = null;
+
+	public IdMap(final Class<T> idClass) {
+		this(idClass, Math.max(Id.getNumberOfIds(idClass), 16));
+	}
+
+	public IdMap(final Class<T> idClass, final int initialCapacity) {
+		this.registry = Id.getRegistry(idClass);
+		this.data = new Object[initialCapacity];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return containsKey(indexOf(key));
+	}
+
+	public boolean containsKey(final int index) {
+		return index >= 0 && index < this.data.length && this.data[index] != null;
+	}
+
+	@Override
+	public V get(final Object key) {
+		return get(indexOf(key));
+	}
+
+	public V get(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		return unmask(this.data[index]);
+	}
+
+	@Override
+	public V put(final Id<T> key, final V value) {
+		int index = indexOf(key);
+		if (index < 0) {
+			throw new IllegalArgumentException(key + " is not an id of the type of this map.");
+		}
+		if (index >= this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(index + 1, Math.max(this.data.length * 2, this.registry.size())));
+		}
+		Object old = this.data[index];
+		this.data[index] = value == null ? NULL : value;
+		if (old == null) {
+			this.size++;
+			this.modCount++;
+		}
+		return unmask(old);
+	}
+
+	@Override
+	public V remove(final Object key) {
+		return remove(indexOf(key));
+	}
+
+	public V remove(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		Object old = this.data[index];
+		if (old != null) {
+			this.data[index] = null;
+			this.size--;
+			this.modCount++;
+		}
+		return unmask(old);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.data, null);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Set<Entry<Id<T>, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	/**
+	 * @return the index of the key, or -1 if the key is no id of the type of this map. Ids of
+	 * different types may have the same index, so the index alone does not identify the key.
+	 */
+	private int indexOf(final Object key) {
+		if (!(key instanceof Id)) {
+			return -1;
+		}
+		int index = ((Id<?>) key).index();
+		return this.registry.get(index) == key ? index : -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> V unmask(final Object value) {
+		return value == NULL ? null : (V) value;
+	}
+
+	private class EntrySet extends AbstractSet<Entry<Id<T>, V>> {
+
+		@Override
+		public Iterator<Entry<Id<T>, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return IdMap.this.size;
+		}
+
+		@Override
+		public void clear() {
+			IdMap.this.clear();
+		}
+	}
+
+	private class EntryIterator implements Iterator<Entry<Id<T>, V>> {
+
+		private int expectedModCount = IdMap.this.modCount;
+		private int nextIndex = -1;
+		private int currentIndex = -1;
+
+		EntryIterator() {
+			advance();
+		}
+
+		private void advance() {
+			Object[] data = IdMap.this.data;
+			do {
+				this.nextIndex++;
+			} while (this.nextIndex < data.length && data[this.nextIndex] == null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextIndex < IdMap.this.data.length;
+		}
+
+		@Override
+		public Entry<Id<T>, V> next() {
+			if (IdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.currentIndex = this.nextIndex;
+			advance();
+			return new IdEntry(this.currentIndex);
+		}
+
+		@Override
+		public void remove() {
+			if (this.currentIndex < 0) {
+				throw new IllegalStateException();
+			}
+			if (IdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			IdMap.this.remove(this.currentIndex);
+			this.expectedModCount = IdMap.this.modCount;
+			this.currentIndex = -1;
+		}
+	}
+
+	private class IdEntry implements Entry<Id<T>, V> {
+
+		private final int index;
+
+		IdEntry(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Id<T> getKey() {
+			return IdMap.this.registry.get(this.index);
+		}
+
+		@Override
+		public V getValue() {
+			return IdMap.this.get(this.index);
+		}
+
+		@Override
+		public V setValue(final V value) {
+			Object old = IdMap.this.data[this.index];
+			if (old == null) {
+				throw new IllegalStateException("The entry for " + getKey() + " was removed from the map.");
+			}
+			IdMap.this.data[this.index] = value == null ? NULL : value;
+			return unmask(old);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			V value = getValue();
+			return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			V value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+}
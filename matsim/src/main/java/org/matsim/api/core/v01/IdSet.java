@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdSet.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of {@link Id}s, backed by a bit set which is indexed by {@link Id#index()}. Needs one bit
+ * per id of the type instead of one entry object per element like a HashSet.
+ * <p></p>
+ * The ids are iterated in the order they were created, not in the order they were added.
+ * All elements must be ids of the type passed to the constructor, ids of other types are treated as not
+ * contained in the set.
+ *
+ * @author agent
+ *
+ * @param <T> the type of the ids
+ */
+public class IdSet<T> extends AbstractSet<Id<T>> {
+
+	private final Id.IdRegistry<T> registry;
+	private final BitSet data;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdSet(final Class<T> idClass) {
+		this.registry = Id.getRegistry(idClass);
+		this.data = new BitSet(this.registry.size());
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		return contains(indexOf(o));
+	}
+
+	public boolean contains(final int index) {
+		return index >= 0 && this.data.get(index);
+	}
+
+	@Override
+	public boolean add(final Id<T> id) {
+		int index = indexOf(id);
+		if (index < 0) {
+			throw new IllegalArgumentException(id + " is not an id of the type of this set.");
+		}
+		if (this.data.get(index)) {
+			return false;
+		}
+		this.data.set(index);
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		return remove(indexOf(o));
+	}
+
+	public boolean remove(final int index) {
+		if (index < 0 || !this.data.get(index)) {
+			return false;
+		}
+		this.data.clear(index);
+		this.size--;
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * @return the index of the id, or -1 if it is no id of the type of this set.
+	 */
+	private int indexOf(final Object o) {
+		if (!(o instanceof Id)) {
+			return -1;
+		}
+		int index = ((Id<?>) o).index();
+		return this.registry.get(index) == o ? index : -1;
+	}
+
+	@Override
+	public void clear() {
+		this.data.clear();
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Iterator<Id<T>> iterator() {
+		return new Iterator<Id<T>>() {
+			private int expectedModCount = IdSet.this.modCount;
+			private int nextIndex = IdSet.this.data.nextSetBit(0);
+			private int currentIndex = -1;
+
+			@Override
+			public boolean hasNext() {
+				return this.nextIndex >= 0;
+			}
+
+			@Override
+			public Id<T> next() {
+				if (IdSet.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (this.nextIndex < 0) {
+					throw new NoSuchElementException();
+				}
+				this.currentIndex = this.nextIndex;
+				this.nextIndex = IdSet.this.data.nextSetBit(this.currentIndex + 1);
+				return IdSet.this.registry.get(this.currentIndex);
+			}
+
+			@Override
+			public void remove() {
+				if (this.currentIndex < 0) {
+					throw new IllegalStateException();
+				}
+				if (IdSet.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				IdSet.this.remove(this.currentIndex);
+				this.expectedModCount = IdSet.this.modCount;
+				this.currentIndex = -1;
+			}
+		};
+	}
+
+}
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.StringUtils;
 
@@ -37,7 +38,7 @@ import java.util.Set;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, ContractionHierarchies}
 
 	public enum EventsFileFormat {xml}
 
@@ -47,11 +48,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String FIRST_ITERATION = "firstIteration";
 	private static final String LAST_ITERATION = "lastIteration";
 	private static final String ROUTINGALGORITHM_TYPE = "routingAlgorithmType";
+	private static final String UPDATE_LANDMARKS = "updateLandmarksEachIteration";
+	private static final String FAST_ROUTER_MIN_HEAP_TYPE = "fastRouterMinHeapType";
+	private static final String ROUTING_CACHE_SIZE = "routingCacheSize";
 	private static final String RUNID = "runId";
 	private static final String LINKTOLINK_ROUTING_ENABLED = "enableLinkToLinkRouting";
 	/*package*/ static final String EVENTS_FILE_FORMAT = "eventsFileFormat";
 	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
 	private static final String WRITE_EVENTS_INTERVAL = "writeEventsInterval";
+	private static final String EVENTS_WRITER_THREADS = "eventsWriterThreads";
 	private static final String WRITE_PLANS_INTERVAL = "writePlansInterval";
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
@@ -68,6 +73,12 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int lastIteration = 1000;
 	private RoutingAlgorithmType routingAlgorithmType = RoutingAlgorithmType.Dijkstra;
 
+	private boolean updateLandmarksEachIteration = false;
+
+	private MinHeapType fastRouterMinHeapType = MinHeapType.Binary;
+
+	private int routingCacheSize = 0;
+
 	private boolean linkToLinkRoutingEnabled = false;
 
 	private String runId = null;
@@ -75,6 +86,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private Set<EventsFileFormat> eventsFileFormats = Collections.unmodifiableSet(EnumSet.of(EventsFileFormat.xml));
 
 	private int writeEventsInterval=10;
+	private int eventsWriterThreads = 0;
 	private int writePlansInterval=10;
 	private Set<String> snapshotFormat = Collections.emptySet();
 	private String mobsim = MobsimType.qsim.toString();
@@ -91,12 +103,27 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", "  + RoutingAlgorithmType.FastAStarLandmarks
+				+ " or " + RoutingAlgorithmType.ContractionHierarchies + ". " + RoutingAlgorithmType.ContractionHierarchies
+				+ " requires a routingRandomness of 0 in " + PlansCalcRouteConfigGroup.GROUP_NAME + ".");
+		map.put(UPDATE_LANDMARKS, "If true, the landmark tables of " + RoutingAlgorithmType.AStarLandmarks + " and " + RoutingAlgorithmType.FastAStarLandmarks
+				+ " are recalculated at the start of every iteration from the travel times of the last iteration, keeping the landmarks themselves. "
+				+ "This keeps the routing fast when there is congestion, but takes additional time per iteration. Default: false.");
+		map.put(FAST_ROUTER_MIN_HEAP_TYPE, "The priority queue used by " + RoutingAlgorithmType.FastDijkstra + " and " + RoutingAlgorithmType.FastAStarLandmarks
+				+ ", may have the values: " + MinHeapType.Binary + " (6-ary heap), " + MinHeapType.Quaternary + " (4-ary heap) or " + MinHeapType.Radix
+				+ " (radix heap, usually the fastest). All of them result in the same routes. Default: " + MinHeapType.Binary + ".");
+		map.put(ROUTING_CACHE_SIZE, "The maximum number of network routes that are cached per iteration and shared by all routing threads. "
+				+ "Persons departing in the same travel time bin between the same nodes get the same route, so the cache should only be "
+				+ "used without routing randomness. 0 disables the cache. Default: 0.");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
 		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
+		map.put(EVENTS_WRITER_THREADS, "If larger than 0, the xml events are written by a background thread and compressed by this "
+				+ "many threads in parallel, so the events handling does not wait for the file.  The file is a valid gzip file, but "
+				+ "not byte-identical to the one written otherwise.  Default=0: the events are written and compressed by the thread "
+				+ "handling the events.");
 		map.put(WRITE_PLANS_INTERVAL, "iterationNumber % writePlansInterval == 0 defines (hopefully) in which iterations plans are " +
 				"written to a file. `0' disables plans writing completely.  Some plans in early iterations are always written");
 		map.put(LINKTOLINK_ROUTING_ENABLED, "Default=false. If enabled, the router takes travel times needed for turning moves into account."
@@ -164,6 +191,49 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.routingAlgorithmType = type;
 	}
 
+	@StringGetter( UPDATE_LANDMARKS )
+	public boolean isUpdateLandmarksEachIteration() {
+		return this.updateLandmarksEachIteration;
+	}
+
+	@StringSetter( UPDATE_LANDMARKS )
+	public void setUpdateLandmarksEachIteration(final boolean updateLandmarksEachIteration) {
+		this.updateLandmarksEachIteration = updateLandmarksEachIteration;
+	}
+
+	@StringGetter( FAST_ROUTER_MIN_HEAP_TYPE )
+	public MinHeapType getFastRouterMinHeapType() {
+		return this.fastRouterMinHeapType;
+	}
+
+	@StringSetter( FAST_ROUTER_MIN_HEAP_TYPE )
+	public void setFastRouterMinHeapType(final MinHeapType fastRouterMinHeapType) {
+		this.fastRouterMinHeapType = fastRouterMinHeapType;
+	}
+
+	@StringGetter( ROUTING_CACHE_SIZE )
+	public int getRoutingCacheSize() {
+		return this.routingCacheSize;
+	}
+
+	@StringSetter( ROUTING_CACHE_SIZE )
+	public void setRoutingCacheSize(final int routingCacheSize) {
+		this.routingCacheSize = routingCacheSize;
+	}
+
+	@StringGetter( EVENTS_WRITER_THREADS )
+	public int getEventsWriterThreads() {
+		return this.eventsWriterThreads;
+	}
+
+	@StringSetter( EVENTS_WRITER_THREADS )
+	public void setEventsWriterThreads(final int eventsWriterThreads) {
+		if (eventsWriterThreads < 0) {
+			throw new IllegalArgumentException("eventsWriterThreads must not be negative, but is " + eventsWriterThreads);
+		}
+		this.eventsWriterThreads = eventsWriterThreads;
+	}
+
 	@StringGetter( RUNID )
 	public String getRunId() {
 		return this.runId;
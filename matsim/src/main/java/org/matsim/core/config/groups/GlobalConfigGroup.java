@@ -40,9 +40,11 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final String RANDOM_SEED = "randomSeed";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
+	private static final String REPLANNING_CHUNK_SIZE = "replanningChunkSize";
 
 	private long randomSeed = 4711L;
 	private int numberOfThreads = 2;
+	private int replanningChunkSize = 0;
 	private String coordinateSystem = "Atlantis";
 	
 	@Override
@@ -51,6 +53,10 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "\"global\" number of threads.  "
 				+ "This number is used, e.g., for replanning, but NOT in the mobsim.  "
 				+ "This can typically be set to as many cores as you have available, or possibly even slightly more.") ;
+		map.put(REPLANNING_CHUNK_SIZE, "If 0, the plans are dealt to the replanning threads round-robin before the threads are started, "
+				+ "which leads to reproducible runs.  If larger than 0, the threads take chunks of that many plans from a shared queue "
+				+ "until all plans are handled, so no thread idles while another one still has many expensive plans.  "
+				+ "As the plans a thread handles then depend on the thread timing, runs are no longer reproducible.") ;
 		return map ;
 	}
 
@@ -84,6 +90,18 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.coordinateSystem = coordinateSystem;
 	}
 	
+	@StringGetter( REPLANNING_CHUNK_SIZE )
+	public int getReplanningChunkSize() {
+		return this.replanningChunkSize;
+	}
+	@StringSetter( REPLANNING_CHUNK_SIZE )
+	public void setReplanningChunkSize(final int replanningChunkSize) {
+		if (replanningChunkSize < 0) {
+			throw new IllegalArgumentException("replanningChunkSize must not be negative, but is " + replanningChunkSize);
+		}
+		this.replanningChunkSize = replanningChunkSize;
+	}
+	
 	private static final String INSITING_ON_DEPRECATED_CONFIG_VERSION = "insistingOnDeprecatedConfigVersion" ;
 	@StringGetter( INSITING_ON_DEPRECATED_CONFIG_VERSION )
 	public final boolean isInsistingOnDeprecatedConfigVersion() { return this.insistingOnDeprecatedConfigVersion ; }
@@ -45,6 +45,21 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	private final static String ONE_THREAD_PER_HANDLER = "oneThreadPerHandler"; 
 	private Boolean oneThreadPerHandler = false;
 	
+	public static enum EventsQueueType { blockingQueues, ringBuffer }
+
+	private final static String EVENTS_QUEUE_TYPE = "eventsQueueType";
+	private EventsQueueType eventsQueueType = EventsQueueType.blockingQueues;
+
+	private final static String RING_BUFFER_SIZE = "ringBufferSize";
+	public final static int DEFAULT_RING_BUFFER_SIZE = 65536;
+	private int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+
+	private final static String SHARD_LINK_OBSERVERS = "shardLinkObservers";
+	private boolean shardLinkObservers = false;
+
+	private final static String NUMBER_OF_THREADS_FOR_READING = "numberOfThreadsForReading";
+	private int numberOfThreadsForReading = 1;
+
 	private boolean locked = false;
 
 	public ParallelEventHandlingConfigGroup() {
@@ -60,6 +75,14 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 				+ "before the next time step is simulated. E.g. neccessary when within-day replanning is used.");
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
+		comments.put(EVENTS_QUEUE_TYPE, "Only used if " + SYNCHRONIZE_ON_SIMSTEPS + " is enabled. " + EventsQueueType.blockingQueues + " chains the events processing threads "
+				+ "through blocking queues and synchronizes them with barriers after every time step, " + EventsQueueType.ringBuffer + " lets all threads read from one "
+				+ "preallocated ring buffer without barriers. Possible values: " + EventsQueueType.blockingQueues + ", " + EventsQueueType.ringBuffer);
+		comments.put(RING_BUFFER_SIZE, "Number of events that fit into the ring buffer if " + EVENTS_QUEUE_TYPE + " is " + EventsQueueType.ringBuffer + ". Must be a power of 2.");
+		comments.put(SHARD_LINK_OBSERVERS, "If enabled and " + NUMBER_OF_THREADS + " is larger than 1, the travel time calculator and the volumes analyzer are split "
+				+ "by link into one handler per events processing thread, so they handle the events in parallel.");
+		comments.put(NUMBER_OF_THREADS_FOR_READING, "Number of threads used to create the events when an xml events file is read, e.g. when events are replayed. "
+				+ "1 reads the file in the calling thread only. The events are passed on in the order of the file in any case.");
 		return comments;
 	}
 
@@ -127,6 +150,75 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		}
 	}
 	
+	@StringGetter( EVENTS_QUEUE_TYPE )
+	public EventsQueueType getEventsQueueType() {
+		return this.eventsQueueType;
+	}
+
+	@StringSetter( EVENTS_QUEUE_TYPE )
+	public void setEventsQueueType(EventsQueueType eventsQueueType) {
+		if ( !this.locked ) {
+			this.eventsQueueType = eventsQueueType;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( RING_BUFFER_SIZE )
+	public int getRingBufferSize() {
+		return this.ringBufferSize;
+	}
+
+	@StringSetter( RING_BUFFER_SIZE )
+	public void setRingBufferSize(int ringBufferSize) {
+		if ( !this.locked ) {
+			this.ringBufferSize = ringBufferSize;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( SHARD_LINK_OBSERVERS )
+	public boolean getShardLinkObservers() {
+		return this.shardLinkObservers;
+	}
+
+	@StringSetter( SHARD_LINK_OBSERVERS )
+	public void setShardLinkObservers(boolean shardLinkObservers) {
+		if ( !this.locked ) {
+			this.shardLinkObservers = shardLinkObservers;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( NUMBER_OF_THREADS_FOR_READING )
+	public int getNumberOfThreadsForReading() {
+		return this.numberOfThreadsForReading;
+	}
+
+	@StringSetter( NUMBER_OF_THREADS_FOR_READING )
+	public void setNumberOfThreadsForReading(int numberOfThreadsForReading) {
+		if ( numberOfThreadsForReading < 1 ) {
+			throw new IllegalArgumentException("at least one thread is needed to read events, got " + numberOfThreadsForReading);
+		}
+		if ( !this.locked ) {
+			this.numberOfThreadsForReading = numberOfThreadsForReading;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	/**
+	 * @return the number of handlers the link based observers are split into, 1 if they are not split.
+	 */
+	public int getNumberOfLinkObserverShards() {
+		if (this.shardLinkObservers && this.numberOfThreads != null && this.numberOfThreads > 1) {
+			return this.numberOfThreads;
+		}
+		return 1;
+	}
+
 	public void makeLocked() {
 		this.locked = true;
 	}
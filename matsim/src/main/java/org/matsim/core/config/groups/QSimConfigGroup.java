@@ -20,6 +20,7 @@
 
 package org.matsim.core.config.groups;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -264,6 +265,28 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		map.put(USING_SLEEPING_LINKS, "If true, a link on which no vehicle can reach the end before a later time step is not moved until then, "
+				+ "which saves time in periods with little traffic.  The events are the same.  Only has an effect with "
+				+ FAST_CAPACITY_UPDATE + "=true, trafficDynamics other than kinematicWaves and linkDynamics other than SeepageQ, "
+				+ "and on links without lanes.") ;
+		map.put(CHECKPOINT_TIMES, "Comma-separated times of day (hh:mm:ss) at which the state of the qsim is written to a checkpoint file, "
+				+ "from which the qsim can be restarted after a failure.  Default is none.") ;
+		map.put(CHECKPOINT_DIRECTORY, "The directory the checkpoint files are written to.  Default (null) is the output directory "
+				+ "of the controler.") ;
+		map.put(RESTARTING_FROM_CHECKPOINT, "A checkpoint file written by an earlier run of the qsim with the same scenario.  If set, "
+				+ "the qsim continues from the state in the file instead of starting at the beginning of the day.") ;
+		map.put(HEADLESS, "If true, the qsim does not keep any data for snapshots or the on-line visualizer, e.g. agents at activities "
+				+ "are not registered on their links.  Saves memory and time; the events are the same.  Snapshot writers and OTFVis "
+				+ "cannot be used then.") ;
+		map.put(PROFILING_TIME_BIN_SIZE, "If larger than 0 (hh:mm:ss), the time per sim step of the qsim, of each engine and of each runner "
+				+ "of the netsim engine is recorded per time bin of this size, together with the number of agents per state and the "
+				+ "number of events.  Written to ITERS/it.N/N.qsimTimings.csv and N.qsimStates.csv.  Default is 0, i.e. off.") ;
+		map.put(NODE_ASSIGNMENT, "How the nodes and their out-links are assigned to the runners of the parallel qsim. "
+				+ NodeAssignment.roundRobin + ": one after the other (default); "
+				+ NodeAssignment.spaceFillingCurve + ": spatially contiguous regions along a space-filling curve, "
+				+ "with about the same number of links per runner.") ;
+		map.put(REBALANCING_NODE_ASSIGNMENT, "Only used with nodeAssignment=" + NodeAssignment.spaceFillingCurve + ". "
+				+ "If true, the regions are weighted by the load of the nodes and links measured in the previous iteration.") ;
 		map.put(FAST_CAPACITY_UPDATE, "If false, the qsim accumulates fractional flows up to one flow unit in every time step.  If true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
@@ -528,6 +551,124 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.usingThreadpool = val ;
 	}
 
+	private static final String USING_SLEEPING_LINKS = "usingSleepingLinks" ;
+	private boolean usingSleepingLinks = false ;
+	@StringGetter(USING_SLEEPING_LINKS)
+	public boolean isUsingSleepingLinks() {
+		return this.usingSleepingLinks ;
+	}
+	@StringSetter(USING_SLEEPING_LINKS)
+	public void setUsingSleepingLinks( boolean val ) {
+		this.usingSleepingLinks = val ;
+	}
+
+	private static final String CHECKPOINT_TIMES = "checkpointTimes" ;
+	private Collection<Double> checkpointTimes = new ArrayList<>() ;
+	@StringGetter(CHECKPOINT_TIMES)
+	private String getCheckpointTimesAsString() {
+		return this.checkpointTimes.stream().map(Time::writeTime).collect(Collectors.joining(",")) ;
+	}
+	@StringSetter(CHECKPOINT_TIMES)
+	private void setCheckpointTimes( String value ) {
+		List<Double> times = new ArrayList<>() ;
+		for ( String time : value.split(",") ) {
+			if ( !time.trim().isEmpty() ) {
+				times.add( Time.parseTime(time.trim()) ) ;
+			}
+		}
+		setCheckpointTimes(times) ;
+	}
+	public Collection<Double> getCheckpointTimes() {
+		return this.checkpointTimes ;
+	}
+	public void setCheckpointTimes( Collection<Double> checkpointTimes ) {
+		this.checkpointTimes = checkpointTimes ;
+	}
+
+	private static final String CHECKPOINT_DIRECTORY = "checkpointDirectory" ;
+	private String checkpointDirectory = null ;
+	@StringGetter(CHECKPOINT_DIRECTORY)
+	public String getCheckpointDirectory() {
+		return this.checkpointDirectory ;
+	}
+	@StringSetter(CHECKPOINT_DIRECTORY)
+	public void setCheckpointDirectory( String checkpointDirectory ) {
+		this.checkpointDirectory = checkpointDirectory ;
+	}
+
+	private static final String RESTARTING_FROM_CHECKPOINT = "restartingFromCheckpoint" ;
+	private String restartingFromCheckpoint = null ;
+	@StringGetter(RESTARTING_FROM_CHECKPOINT)
+	public String getRestartingFromCheckpoint() {
+		return this.restartingFromCheckpoint ;
+	}
+	@StringSetter(RESTARTING_FROM_CHECKPOINT)
+	public void setRestartingFromCheckpoint( String checkpointFile ) {
+		this.restartingFromCheckpoint = checkpointFile ;
+	}
+
+	private static final String HEADLESS = "headless" ;
+	private boolean headless = false ;
+	@StringGetter(HEADLESS)
+	public boolean isHeadless() {
+		return this.headless ;
+	}
+	@StringSetter(HEADLESS)
+	public void setHeadless( boolean val ) {
+		this.headless = val ;
+	}
+	/**
+	 * @return the exception for asking the qsim for snapshot or visualizer data in headless mode
+	 */
+	public static RuntimeException createHeadlessException() {
+		return new RuntimeException("the qsim keeps no data for snapshots or the visualizer in headless mode.  Set "
+				+ GROUP_NAME + "." + HEADLESS + " to false to use them.") ;
+	}
+
+	private static final String PROFILING_TIME_BIN_SIZE = "profilingTimeBinSize" ;
+	private double profilingTimeBinSize = 0 ;
+	@StringGetter(PROFILING_TIME_BIN_SIZE)
+	private String getProfilingTimeBinSizeAsString() {
+		return Time.writeTime(this.profilingTimeBinSize) ;
+	}
+	@StringSetter(PROFILING_TIME_BIN_SIZE)
+	private void setProfilingTimeBinSize( String value ) {
+		setProfilingTimeBinSize( Time.parseTime(value) ) ;
+	}
+	public double getProfilingTimeBinSize() {
+		return this.profilingTimeBinSize ;
+	}
+	public void setProfilingTimeBinSize( double val ) {
+		if ( val < 0 ) {
+			throw new IllegalArgumentException("profilingTimeBinSize must not be negative, but is " + val ) ;
+		}
+		this.profilingTimeBinSize = val ;
+	}
+
+	// ---
+	private static final String NODE_ASSIGNMENT = "nodeAssignment" ;
+	public enum NodeAssignment { roundRobin, spaceFillingCurve } ;
+	private NodeAssignment nodeAssignment = NodeAssignment.roundRobin ;
+	@StringGetter(NODE_ASSIGNMENT)
+	public NodeAssignment getNodeAssignment() {
+		return this.nodeAssignment ;
+	}
+	@StringSetter(NODE_ASSIGNMENT)
+	public void setNodeAssignment( NodeAssignment nodeAssignment ) {
+		this.nodeAssignment = nodeAssignment ;
+	}
+
+	private static final String REBALANCING_NODE_ASSIGNMENT = "rebalancingNodeAssignment" ;
+	private boolean rebalancingNodeAssignment = false ;
+	@StringGetter(REBALANCING_NODE_ASSIGNMENT)
+	public boolean isRebalancingNodeAssignment() {
+		return this.rebalancingNodeAssignment ;
+	}
+	@StringSetter(REBALANCING_NODE_ASSIGNMENT)
+	public void setRebalancingNodeAssignment( boolean val ) {
+		this.rebalancingNodeAssignment = val ;
+	}
+
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -277,6 +277,10 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TMP_FILE_ROOT_DIR, "root directory for temporary files generated by the external executable. Provided as a service; "
 				+ "I don't think this is used by MATSim.") ;
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TIME_OUT, "time out value (in seconds) after which matsim will consider the external strategy as failed") ;
+		map.put(ReflectiveDelegate.NUMBER_OF_PLAN_SELECTION_THREADS, "number of threads that remove plans, choose the strategies and select and copy the plans "
+				+ "of the persons before the plans are handed to the strategy modules.  ``0'' means that this is done in the main thread, "
+				+ "with the global random number generator.  With 1 or more threads, every person draws from its own random number stream, "
+				+ "so the results are the same for any number of threads, but differ from those with 0.  The plan selectors must then be thread-safe.") ;
 		return map ;
 	}
 
@@ -385,6 +389,14 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		return delegate.getFractionOfIterationsToDisableInnovation();
 	}
 
+	public int getNumberOfPlanSelectionThreads() {
+		return delegate.getNumberOfPlanSelectionThreads();
+	}
+
+	public void setNumberOfPlanSelectionThreads(int numberOfPlanSelectionThreads) {
+		delegate.setNumberOfPlanSelectionThreads(numberOfPlanSelectionThreads);
+	}
+
 	public void setFractionOfIterationsToDisableInnovation(double fraction) {
 		delegate.setFractionOfIterationsToDisableInnovation(fraction);
 	}
@@ -401,6 +413,7 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		 static final String EXTERNAL_EXE_TIME_OUT = "ExternalExeTimeOut";
 		 static final String ITERATION_FRACTION_TO_DISABLE_INNOVATION = "fractionOfIterationsToDisableInnovation" ;
 		 static final String PLAN_SELECTOR_FOR_REMOVAL = "planSelectorForRemoval" ;
+		 static final String NUMBER_OF_PLAN_SELECTION_THREADS = "numberOfPlanSelectionThreads" ;
 
 		private int maxAgentPlanMemorySize = 5;
 		private String externalExeConfigTemplate = null;
@@ -412,6 +425,7 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		//---
 		private double fraction = Double.POSITIVE_INFINITY ;
 		//---
+		private int numberOfPlanSelectionThreads = 0 ;
 
 		public ReflectiveDelegate() {
 			super( StrategyConfigGroup.GROUP_NAME );
@@ -477,6 +491,19 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		public void setFractionOfIterationsToDisableInnovation(double fraction) {
 			this.fraction = fraction;
 		}
+
+		@StringGetter( NUMBER_OF_PLAN_SELECTION_THREADS )
+		public int getNumberOfPlanSelectionThreads() {
+			return this.numberOfPlanSelectionThreads;
+		}
+
+		@StringSetter( NUMBER_OF_PLAN_SELECTION_THREADS )
+		public void setNumberOfPlanSelectionThreads(int numberOfPlanSelectionThreads) {
+			if ( numberOfPlanSelectionThreads < 0 ) {
+				throw new IllegalArgumentException( "numberOfPlanSelectionThreads must not be negative, but is " + numberOfPlanSelectionThreads ) ;
+			}
+			this.numberOfPlanSelectionThreads = numberOfPlanSelectionThreads;
+		}
 	}
 }
 
@@ -32,7 +32,7 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 
 	public static final String GROUPNAME = "travelTimeCalculator";
 
-	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap}
+	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap,TravelTimeCalculatorDense}
 
 	private static final String TRAVEL_TIME_CALCULATOR = "travelTimeCalculator";
 	private static final String TRAVEL_TIME_BIN_SIZE = "travelTimeBinSize";
@@ -85,7 +85,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 			str.append(type.toString());
 			str.append(' ');
 		}
-		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + str.toString());
+		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + str.toString().trim() + ". " + TravelTimeCalculatorType.TravelTimeCalculatorDense
+				+ " stores the link travel times of all links in flat arrays, which is faster for large networks where most links are used.");
 		return map;
 	}
 
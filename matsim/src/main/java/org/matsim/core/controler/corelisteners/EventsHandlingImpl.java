@@ -38,6 +38,7 @@ import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.events.algorithms.EventWriter;
 import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.algorithms.ParallelEventWriterXML;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -60,6 +61,8 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 
 	private int writeMoreUntilIteration;
 
+	private final int eventsWriterThreads;
+
 	@Inject
 	EventsHandlingImpl(
 			final EventsManager eventsManager,
@@ -71,6 +74,7 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 		this.eventsFileFormats = config.getEventsFileFormats();
 		this.controlerIO = controlerIO;
 		this.writeMoreUntilIteration = config.getWriteEventsUntilIteration() ;
+		this.eventsWriterThreads = config.getEventsWriterThreads() ;
 	}
 
 	@Override
@@ -85,8 +89,12 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 			for (EventsFileFormat format : eventsFileFormats) {
 				switch (format) {
 				case xml:
-					this.eventWriters.add(new EventWriterXML(controlerIO.getIterationFilename(event.getIteration(), 
-							Controler.FILENAME_EVENTS_XML)));
+					String filename = controlerIO.getIterationFilename(event.getIteration(), Controler.FILENAME_EVENTS_XML);
+					if (this.eventsWriterThreads > 0) {
+						this.eventWriters.add(new ParallelEventWriterXML(filename, this.eventsWriterThreads));
+					} else {
+						this.eventWriters.add(new EventWriterXML(filename));
+					}
 					break;
 				default:
 					log.warn("Unknown events file format specified: " + format.toString() + ".");
@@ -20,9 +20,13 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -73,10 +77,15 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>add method public void handleEvent(MyEvent event) to it</li>
  * <li>ready to go, just implement the interface somewhere and add a
  * HandlerObject with a call to <code>Events.addHandler(HandlerObject)</code></li>
- * <li>(optional) add an appropriate line in callHandlerFast() for speeding
+ * <li>(optional) add an appropriate line in KNOWN_CALLERS for speeding
  * up execution!</li>
  * </ol>
  *
+ * For every event class, the way to call <code>handleEvent</code> is resolved only once, when the first
+ * handler for it is added: the event classes of MATSim core are dispatched through direct interface casts,
+ * other handler interfaces through a {@link MethodHandle}.  Only if the handler interface cannot be accessed
+ * that way (e.g. because it is not public), {@link Method#invoke(Object, Object...)} is used as fallback.
+ *
  * @author dstrippgen
  * @author mrieser
  */
@@ -84,14 +93,43 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private static final Logger log = Logger.getLogger(EventsManagerImpl.class);
 
+	/**
+	 * Calls the <code>handleEvent</code> method of a handler for one specific event class.
+	 */
+	private interface HandlerCaller {
+		void call(final EventHandler handler, final Event event);
+	}
+
+	private static final Map<Class<?>, HandlerCaller> KNOWN_CALLERS = new HashMap<Class<?>, HandlerCaller>();
+	static {
+		KNOWN_CALLERS.put(LinkLeaveEvent.class, (handler, ev) -> ((LinkLeaveEventHandler) handler).handleEvent((LinkLeaveEvent) ev));
+		KNOWN_CALLERS.put(LinkEnterEvent.class, (handler, ev) -> ((LinkEnterEventHandler) handler).handleEvent((LinkEnterEvent) ev));
+		KNOWN_CALLERS.put(VehicleEntersTrafficEvent.class, (handler, ev) -> ((VehicleEntersTrafficEventHandler) handler).handleEvent((VehicleEntersTrafficEvent) ev));
+		KNOWN_CALLERS.put(PersonArrivalEvent.class, (handler, ev) -> ((PersonArrivalEventHandler) handler).handleEvent((PersonArrivalEvent) ev));
+		KNOWN_CALLERS.put(PersonDepartureEvent.class, (handler, ev) -> ((PersonDepartureEventHandler) handler).handleEvent((PersonDepartureEvent) ev));
+		KNOWN_CALLERS.put(ActivityEndEvent.class, (handler, ev) -> ((ActivityEndEventHandler) handler).handleEvent((ActivityEndEvent) ev));
+		KNOWN_CALLERS.put(ActivityStartEvent.class, (handler, ev) -> ((ActivityStartEventHandler) handler).handleEvent((ActivityStartEvent) ev));
+		KNOWN_CALLERS.put(TransitDriverStartsEvent.class, (handler, ev) -> ((TransitDriverStartsEventHandler) handler).handleEvent((TransitDriverStartsEvent) ev));
+		KNOWN_CALLERS.put(PersonStuckEvent.class, (handler, ev) -> ((PersonStuckEventHandler) handler).handleEvent((PersonStuckEvent) ev));
+		KNOWN_CALLERS.put(PersonMoneyEvent.class, (handler, ev) -> ((PersonMoneyEventHandler) handler).handleEvent((PersonMoneyEvent) ev));
+		KNOWN_CALLERS.put(AgentWaitingForPtEvent.class, (handler, ev) -> ((AgentWaitingForPtEventHandler) handler).handleEvent((AgentWaitingForPtEvent) ev));
+		KNOWN_CALLERS.put(PersonEntersVehicleEvent.class, (handler, ev) -> ((PersonEntersVehicleEventHandler) handler).handleEvent((PersonEntersVehicleEvent) ev));
+		KNOWN_CALLERS.put(PersonLeavesVehicleEvent.class, (handler, ev) -> ((PersonLeavesVehicleEventHandler) handler).handleEvent((PersonLeavesVehicleEvent) ev));
+		KNOWN_CALLERS.put(VehicleDepartsAtFacilityEvent.class, (handler, ev) -> ((VehicleDepartsAtFacilityEventHandler) handler).handleEvent((VehicleDepartsAtFacilityEvent) ev));
+		KNOWN_CALLERS.put(VehicleArrivesAtFacilityEvent.class, (handler, ev) -> ((VehicleArrivesAtFacilityEventHandler) handler).handleEvent((VehicleArrivesAtFacilityEvent) ev));
+		KNOWN_CALLERS.put(Event.class, (handler, ev) -> ((BasicEventHandler) handler).handleEvent(ev));
+	}
+
+	private static final MethodType CALLER_TYPE = MethodType.methodType(void.class, EventHandler.class, Event.class);
+
 	static private class HandlerData {
 
 		protected Class<?> eventklass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
-		protected Method method;
+		protected HandlerCaller caller;
 		protected HandlerData(final Class<?> eventklass, final Method method) {
 			this.eventklass = eventklass;
-			this.method = method;
+			this.caller = createCaller(eventklass, method);
 		}
 		protected void removeHandler(final EventHandler handler) {
 			this.handlerList.remove(handler);
@@ -99,14 +137,12 @@ public final class EventsManagerImpl implements EventsManager {
 	}
 
 	static private class HandlerInfo {
-		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final HandlerCaller caller;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
-			this.eventClass = eventClass;
+		protected HandlerInfo(final EventHandler eventHandler, final HandlerCaller caller) {
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.caller = caller;
 		}
 	}
 
@@ -219,16 +255,7 @@ public final class EventsManagerImpl implements EventsManager {
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
-				}
+				info.caller.call(info.eventHandler, event);
 			}
 		}
 	}
@@ -246,7 +273,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					info.add(new HandlerInfo(handler, dat.caller));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -256,7 +283,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					info.add(new HandlerInfo(handler, dat.caller));
 				}
 			}
 		}
@@ -282,58 +309,34 @@ public final class EventsManagerImpl implements EventsManager {
 		return intfs;
 	}
 
-	// this method is purely for performance reasons and need not be implemented
-	private boolean callHandlerFast(final Class<?> klass, final Event ev, final EventHandler handler) {
-		if (klass == LinkLeaveEvent.class) {
-			((LinkLeaveEventHandler)handler).handleEvent((LinkLeaveEvent)ev);
-			return true;
-		} else if (klass == LinkEnterEvent.class) {
-			((LinkEnterEventHandler)handler).handleEvent((LinkEnterEvent)ev);
-			return true;
-		} else if (klass == VehicleEntersTrafficEvent.class) {
-			((VehicleEntersTrafficEventHandler)handler).handleEvent((VehicleEntersTrafficEvent)ev);
-			return true;
-		} else if (klass == PersonArrivalEvent.class) {
-			((PersonArrivalEventHandler)handler).handleEvent((PersonArrivalEvent)ev);
-			return true;
-		} else if (klass == PersonDepartureEvent.class) {
-			((PersonDepartureEventHandler)handler).handleEvent((PersonDepartureEvent)ev);
-			return true;
-		} else if (klass == ActivityEndEvent.class) {
-			((ActivityEndEventHandler)handler).handleEvent((ActivityEndEvent)ev);
-			return true;
-		} else if (klass == ActivityStartEvent.class) {
-			((ActivityStartEventHandler)handler).handleEvent((ActivityStartEvent)ev);
-			return true;
-		} else if (klass == TransitDriverStartsEvent.class) {
-			((TransitDriverStartsEventHandler) handler).handleEvent((TransitDriverStartsEvent) ev);
-			return true;
-		} else if (klass == PersonStuckEvent.class) {
-			((PersonStuckEventHandler)handler).handleEvent((PersonStuckEvent)ev);
-			return true;
-		} else if (klass == PersonMoneyEvent.class) {
-			((PersonMoneyEventHandler)handler).handleEvent((PersonMoneyEvent)ev);
-			return true;
-		} else if (klass == AgentWaitingForPtEvent.class) {
-			((AgentWaitingForPtEventHandler)handler).handleEvent((AgentWaitingForPtEvent)ev);
-			return true;
-		} else if (klass == PersonEntersVehicleEvent.class) {
-			((PersonEntersVehicleEventHandler)handler).handleEvent((PersonEntersVehicleEvent)ev);
-			return true;
-		} else if (klass == PersonLeavesVehicleEvent.class) {
-			((PersonLeavesVehicleEventHandler)handler).handleEvent((PersonLeavesVehicleEvent)ev);
-			return true;
-		} else if (klass == VehicleDepartsAtFacilityEvent.class) {
-			((VehicleDepartsAtFacilityEventHandler) handler).handleEvent((VehicleDepartsAtFacilityEvent) ev);
-			return true;
-		} else if (klass == VehicleArrivesAtFacilityEvent.class) {
-			((VehicleArrivesAtFacilityEventHandler) handler).handleEvent((VehicleArrivesAtFacilityEvent) ev);
-			return true;
-		} else if (klass == Event.class) {
-			((BasicEventHandler)handler).handleEvent(ev);
-			return true;
+	private static HandlerCaller createCaller(final Class<?> eventClass, final Method method) {
+		HandlerCaller caller = KNOWN_CALLERS.get(eventClass);
+		if (caller != null) {
+			return caller;
+		}
+		try {
+			final MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asType(CALLER_TYPE);
+			return (handler, ev) -> {
+				try {
+					handle.invokeExact(handler, ev);
+				} catch (RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + eventClass.getCanonicalName(), e);
+				}
+			};
+		} catch (IllegalAccessException e) {
+			log.info("    handler method for " + eventClass.getName() + " is not publicly accessible, falling back to reflection.");
 		}
-		return false;
+		return (handler, ev) -> {
+			try {
+				method.invoke(handler, ev);
+			} catch (IllegalArgumentException | IllegalAccessException e) {
+				throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + eventClass.getCanonicalName(), e);
+			} catch (InvocationTargetException e) {
+				throw new RuntimeException("problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + eventClass.getCanonicalName(), e.getCause());
+			}
+		};
 	}
 
 	public void printEventHandlers() {
@@ -1,6 +1,7 @@
 package org.matsim.core.events;
 
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup.EventsQueueType;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.events.handler.EventHandler;
 
@@ -15,7 +16,11 @@ public final class EventsManagerModule extends AbstractModule {
 			bindEventsManager().to(ParallelEventsManager.class).asEagerSingleton();
 		} else if (getConfig().parallelEventHandling().getNumberOfThreads() != null) {
 			if (getConfig().parallelEventHandling().getSynchronizeOnSimSteps() != null && getConfig().parallelEventHandling().getSynchronizeOnSimSteps()) {
-				bindEventsManager().to(SimStepParallelEventsManagerImpl.class).asEagerSingleton();
+				if (getConfig().parallelEventHandling().getEventsQueueType() == EventsQueueType.ringBuffer) {
+					bindEventsManager().to(RingBufferParallelEventsManagerImpl.class).asEagerSingleton();
+				} else {
+					bindEventsManager().to(SimStepParallelEventsManagerImpl.class).asEagerSingleton();
+				}
 			} else {
 				bindEventsManager().to(ParallelEventsManagerImpl.class).asEagerSingleton();
 			}
@@ -0,0 +1,218 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}. The file is read block by block,
+ * so only one block of events is kept in memory at any time.
+ * <p></p>
+ * The events are created by {@link EventsReaderXMLv1} from the decoded attributes, so they are exactly
+ * the same as if they were read from an xml file.
+ *
+ * @author agent
+ */
+public final class EventsReaderBinary implements MatsimReader {
+
+	private static final String CDATA = "CDATA";
+
+	private final EventsReaderXMLv1 eventFactory;
+
+	private final List<String> dictionary = new ArrayList<>();
+	private final Inflater inflater = new Inflater();
+	private byte[] compressed = new byte[1024];
+	private byte[] block = new byte[1024];
+	private long lastTime = 0;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.eventFactory = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.eventFactory.addCustomEventMapper(eventType, cem);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			readStream(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void readStream(final InputStream stream) {
+		this.dictionary.clear();
+		this.lastTime = 0;
+		try {
+			DataInputStream in = new DataInputStream(stream);
+			int magic = in.readInt();
+			if (magic != EventWriterBinary.MAGIC) {
+				throw new IllegalArgumentException("The stream does not contain binary events.");
+			}
+			int version = in.readInt();
+			if (version < 1 || version > EventWriterBinary.VERSION) {
+				throw new IllegalArgumentException("Unsupported version of binary events: " + version);
+			}
+			int numberOfEvents;
+			while ((numberOfEvents = in.readInt()) > 0) {
+				int length = in.readInt();
+				int compressedLength = in.readInt();
+				if (this.compressed.length < compressedLength) {
+					this.compressed = new byte[compressedLength];
+				}
+				if (this.block.length < length) {
+					this.block = new byte[length];
+				}
+				in.readFully(this.compressed, 0, compressedLength);
+				this.inflater.reset();
+				this.inflater.setInput(this.compressed, 0, compressedLength);
+				int inflated = 0;
+				while (inflated < length) {
+					int n = this.inflater.inflate(this.block, inflated, length - inflated);
+					if (n == 0 && (this.inflater.finished() || this.inflater.needsInput())) {
+						throw new IllegalArgumentException("Block of binary events is truncated.");
+					}
+					inflated += n;
+				}
+				readBlock(numberOfEvents, version);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Block of binary events is corrupt.", e);
+		}
+	}
+
+	private void readBlock(final int numberOfEvents, final int version) {
+		// version 1 had no null marker, null values were stored as the string "null"
+		int stringOffset = version == 1 ? 0 : 1;
+		Column header = new Column(this.block, 0);
+		int newEntries = header.readVarInt();
+		for (int i = 0; i < newEntries; i++) {
+			int length = header.readVarInt();
+			this.dictionary.add(new String(this.block, header.position, length, StandardCharsets.UTF_8));
+			header.position += length;
+		}
+		Column timeColumn = nextColumn(header);
+		Column typeColumn = nextColumn(header);
+		Column attributeCountColumn = nextColumn(header);
+		Column attributeNameColumn = nextColumn(header);
+		Column attributeValueColumn = nextColumn(header);
+
+		AttributesImpl atts = new AttributesImpl();
+		long lastTime = this.lastTime;
+		for (int i = 0; i < numberOfEvents; i++) {
+			atts.clear();
+			long encodedTime = timeColumn.readVarLong();
+			double time;
+			if ((encodedTime & 1) == 0) {
+				lastTime += unZigZag(encodedTime >>> 1);
+				time = lastTime;
+			} else {
+				time = Double.longBitsToDouble(timeColumn.readLong());
+			}
+			atts.addAttribute("", Event.ATTRIBUTE_TIME, Event.ATTRIBUTE_TIME, CDATA, Double.toString(time));
+			atts.addAttribute("", Event.ATTRIBUTE_TYPE, Event.ATTRIBUTE_TYPE, CDATA, this.dictionary.get(typeColumn.readVarInt()));
+			int attributeCount = attributeCountColumn.readVarInt();
+			for (int a = 0; a < attributeCount; a++) {
+				String key = this.dictionary.get(attributeNameColumn.readVarInt());
+				int encodedValue = attributeValueColumn.readVarInt();
+				String value;
+				if ((encodedValue & 1) == 0) {
+					int index = (encodedValue >>> 1) - stringOffset;
+					value = index < 0 ? null : this.dictionary.get(index);
+				} else {
+					value = Double.toString(Double.longBitsToDouble(attributeValueColumn.readLong()));
+				}
+				atts.addAttribute("", key, key, CDATA, value);
+			}
+			this.eventFactory.startTag(EventsReaderXMLv1.EVENT, atts, null);
+		}
+		this.lastTime = lastTime;
+	}
+
+	/**
+	 * Returns the column starting at the current position of the header and moves the header behind it.
+	 */
+	private Column nextColumn(final Column header) {
+		int length = header.readVarInt();
+		Column column = new Column(this.block, header.position);
+		header.position += length;
+		return column;
+	}
+
+	private static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static class Column {
+		private final byte[] bytes;
+		private int position;
+
+		Column(final byte[] bytes, final int start) {
+			this.bytes = bytes;
+			this.position = start;
+		}
+
+		int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.bytes[this.position++];
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		long readLong() {
+			long value = 0;
+			for (int i = 0; i < 8; i++) {
+				value = (value << 8) | (this.bytes[this.position++] & 0xff);
+			}
+			return value;
+		}
+	}
+
+}
@@ -41,6 +41,7 @@ public final class MatsimEventsReader implements MatsimReader {
 
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
 	private final EventsManager events;
+	private final int numberOfThreads;
 
 	/**
 	 * Creates a new reader for MATSim events files.
@@ -48,7 +49,19 @@ public final class MatsimEventsReader implements MatsimReader {
 	 * @param events The Events-object that handles the events.
 	 */
 	public MatsimEventsReader(final EventsManager events) {
+		this(events, 1);
+	}
+
+	/**
+	 * Creates a new reader for MATSim events files, which uses several threads to read xml files.
+	 * The events are still passed to the Events-object in the order of the file.
+	 *
+	 * @param events The Events-object that handles the events.
+	 * @param numberOfThreads The number of threads used to create the events, see {@link ParallelEventsReaderXML}.
+	 */
+	public MatsimEventsReader(final EventsManager events, final int numberOfThreads) {
 		this.events = events;
+		this.numberOfThreads = numberOfThreads;
 	}
 
 	/**
@@ -60,7 +73,13 @@ public final class MatsimEventsReader implements MatsimReader {
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
-			new XmlEventsReader(this.events).readFile(filename);
+			if (this.numberOfThreads > 1) {
+				new ParallelEventsReaderXML(this.events, this.numberOfThreads).readFile(filename);
+			} else {
+				new XmlEventsReader(this.events).readFile(filename);
+			}
+		} else if (lcFilename.endsWith(".bin") || lcFilename.endsWith(".bin.gz")) {
+			new EventsReaderBinary(this.events).readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -69,7 +88,11 @@ public final class MatsimEventsReader implements MatsimReader {
 	}
 
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events).parse(stream);
+		if (this.numberOfThreads > 1) {
+			new ParallelEventsReaderXML(this.events, this.numberOfThreads).readStream(stream);
+		} else {
+			new XmlEventsReader(this.events).parse(stream);
+		}
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -0,0 +1,271 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReaderXML.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.MatsimXmlParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads xml events files with several threads, while the events are still passed to the events manager
+ * in the order of the file and from the thread that calls {@link #readFile(String)}:
+ * <ul>
+ * <li>one thread parses the xml and collects the attributes of the events in chunks,</li>
+ * <li>a pool of threads creates the event objects for the chunks,</li>
+ * <li>the calling thread takes the chunks in their original order and passes the events to the events manager.</li>
+ * </ul>
+ * The number of chunks that are read ahead is bounded, so the memory consumption does not depend on
+ * the size of the file.
+ *
+ * @author agent
+ */
+public final class ParallelEventsReaderXML implements MatsimReader {
+
+	private final static Logger log = Logger.getLogger(ParallelEventsReaderXML.class);
+
+	private final static int CHUNK_SIZE = 4096;
+
+	private final EventsManager events;
+	private final int numberOfThreads;
+	private final Map<String, CustomEventMapper> customEventMappers = new HashMap<>();
+
+	/** marks the end of the file in the queue of chunks */
+	private final static Future<Event[]> END = CompletableFuture.completedFuture(new Event[0]);
+
+	public ParallelEventsReaderXML(final EventsManager events, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be at least 1, but is " + numberOfThreads);
+		}
+		this.events = events;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.customEventMappers.put(eventType, cem);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		read(parser -> parser.readFile(filename));
+	}
+
+	public void readStream(final InputStream stream) {
+		read(parser -> parser.parse(stream));
+	}
+
+	private interface ParserCall {
+		void run(ChunkingParser parser);
+	}
+
+	private void read(final ParserCall parserCall) {
+		log.info("reading events with " + this.numberOfThreads + " threads for creating events.");
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+			Thread thread = new Thread(runnable, ParallelEventsReaderXML.class.getSimpleName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		BlockingQueue<Future<Event[]>> chunks = new ArrayBlockingQueue<>(4 * this.numberOfThreads);
+		ChunkingParser parser = new ChunkingParser(executor, chunks);
+		Thread parserThread = new Thread(() -> {
+			try {
+				parserCall.run(parser);
+				parser.submitChunk();
+			} catch (RuntimeException | Error e) {
+				parser.exception = e;
+			} finally {
+				putUninterruptibly(chunks, END);
+			}
+		}, ParallelEventsReaderXML.class.getSimpleName() + "Parser");
+		parserThread.setDaemon(true);
+		parserThread.start();
+
+		try {
+			Future<Event[]> chunk;
+			while ((chunk = chunks.take()) != END) {
+				for (Event event : chunk.get()) {
+					this.events.processEvent(event);
+				}
+			}
+			parserThread.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("problem creating events", e.getCause());
+		} finally {
+			parser.cancelled = true;
+			chunks.clear();
+			executor.shutdownNow();
+		}
+		if (parser.exception != null) {
+			throw new RuntimeException("problem parsing events", parser.exception);
+		}
+	}
+
+	private static void putUninterruptibly(final BlockingQueue<Future<Event[]>> queue, final Future<Event[]> element) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(element);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Only copies the attributes of the events, so the parser thread does as little work as possible.
+	 */
+	private class ChunkingParser extends MatsimXmlParser {
+
+		private final ExecutorService executor;
+		private final BlockingQueue<Future<Event[]>> chunks;
+		private final ThreadLocal<EventCreator> creators = ThreadLocal.withInitial(EventCreator::new);
+		private List<Attributes> chunk = new ArrayList<>(CHUNK_SIZE);
+		private volatile boolean cancelled = false;
+		private volatile Throwable exception = null;
+
+		ChunkingParser(final ExecutorService executor, final BlockingQueue<Future<Event[]>> chunks) {
+			this.executor = executor;
+			this.chunks = chunks;
+			this.setValidating(false); // events-files have no DTD, thus they cannot validate
+		}
+
+		@Override
+		public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+			if (EventsReaderXMLv1.EVENT.equals(name)) {
+				this.chunk.add(new AttributesImpl(atts));
+				if (this.chunk.size() == CHUNK_SIZE) {
+					submitChunk();
+				}
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			// ignore characters, see EventsReaderXMLv1
+		}
+
+		@Override
+		public void endTag(final String name, final String content, final Stack<String> context) {
+		}
+
+		void submitChunk() {
+			if (this.cancelled) {
+				throw new RuntimeException("reading events was cancelled.");
+			}
+			if (this.chunk.isEmpty()) {
+				return;
+			}
+			final List<Attributes> attributes = this.chunk;
+			this.chunk = new ArrayList<>(CHUNK_SIZE);
+			Future<Event[]> future = this.executor.submit(() -> this.creators.get().createEvents(attributes));
+			try {
+				this.chunks.put(future);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the events with an EventsReaderXMLv1, so they are exactly the same as when read single-threaded.
+	 * Every worker thread has its own instance.
+	 */
+	private class EventCreator implements EventsManager {
+
+		private final EventsReaderXMLv1 reader = new EventsReaderXMLv1(this);
+		private Event[] events;
+		private int count;
+
+		EventCreator() {
+			for (Map.Entry<String, CustomEventMapper> e : ParallelEventsReaderXML.this.customEventMappers.entrySet()) {
+				this.reader.addCustomEventMapper(e.getKey(), e.getValue());
+			}
+		}
+
+		Event[] createEvents(final List<Attributes> attributes) {
+			this.events = new Event[attributes.size()];
+			this.count = 0;
+			for (Attributes atts : attributes) {
+				this.reader.startTag(EventsReaderXMLv1.EVENT, atts, null);
+			}
+			Event[] result = this.events;
+			this.events = null;
+			return result;
+		}
+
+		@Override
+		public void processEvent(final Event event) {
+			this.events[this.count++] = event;
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(final int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+}
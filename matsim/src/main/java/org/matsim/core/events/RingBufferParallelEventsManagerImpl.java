@@ -0,0 +1,339 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferParallelEventsManagerImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * Alternative to {@link SimStepParallelEventsManagerImpl} that does not chain the events processing
+ * threads through blocking queues. Instead, all events are written into one preallocated ring buffer
+ * which is read by all events processing threads, each one with its own read cursor and its own share
+ * of the event handlers (similar to the LMAX disruptor).
+ * <p></p>
+ * The end of a sim step is not synchronized with barriers. {@link #afterSimStep(double)} only waits until
+ * all read cursors have passed the last written event; the events processing threads themselves never
+ * wait for each other. Events created by event handlers while the sim step is finished are processed
+ * before {@link #afterSimStep(double)} returns.
+ * <p></p>
+ * Events can be created by several threads at the same time. Event handlers that create events themselves
+ * must not create more events within a sim step than fit into the ring buffer.
+ *
+ * @author agent
+ */
+final class RingBufferParallelEventsManagerImpl implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferParallelEventsManagerImpl.class);
+
+	private final int numOfThreads;
+	private final int bufferSize;
+	private final int indexMask;
+	private final int indexShift;
+
+	private final Event[] ringBuffer;
+	/** stores for every slot the round in which it was written, so readers know when the slot is ready. */
+	private final AtomicIntegerArray availableRounds;
+	/** the next sequence number to be claimed by a writer. */
+	private final AtomicLong writeSequence = new AtomicLong(0);
+	/** cached minimum of all read cursors, only an optimization to avoid scanning all cursors for every event. */
+	private volatile long gatingSequence = -1;
+
+	private final EventsManagerImpl delegate;
+	private final EventsManagerImpl[] eventsManagers;
+	private ProcessEventsRunnable[] runnables;
+	private Thread[] threads;
+
+	private volatile boolean parallelMode = false;
+	private int handlerCount = 0;
+
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	@Inject
+	RingBufferParallelEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1, config.getRingBufferSize());
+	}
+
+	public RingBufferParallelEventsManagerImpl(int numOfThreads) {
+		this(numOfThreads, ParallelEventHandlingConfigGroup.DEFAULT_RING_BUFFER_SIZE);
+	}
+
+	public RingBufferParallelEventsManagerImpl(int numOfThreads, int ringBufferSize) {
+		if (numOfThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be at least 1, but is " + numOfThreads);
+		}
+		if (ringBufferSize < 2 || Integer.bitCount(ringBufferSize) != 1) {
+			throw new IllegalArgumentException("ring buffer size must be a power of 2, but is " + ringBufferSize);
+		}
+		this.numOfThreads = numOfThreads;
+		this.bufferSize = ringBufferSize;
+		this.indexMask = ringBufferSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(ringBufferSize);
+		this.ringBuffer = new Event[ringBufferSize];
+		this.availableRounds = new AtomicIntegerArray(ringBufferSize);
+		for (int i = 0; i < ringBufferSize; i++) {
+			this.availableRounds.set(i, -1);
+		}
+		log.info("number of threads=" + numOfThreads + ", ring buffer size=" + ringBufferSize);
+
+		this.delegate = new EventsManagerImpl();
+		this.eventsManagers = new EventsManagerImpl[numOfThreads];
+		for (int i = 0; i < numOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl();
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (this.parallelMode) {
+			publish(event);
+		} else this.delegate.processEvent(event);
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.delegate.addHandler(handler);
+
+		this.eventsManagers[this.handlerCount % this.numOfThreads].addHandler(handler);
+		this.handlerCount++;
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		this.delegate.removeHandler(handler);
+
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
+
+		this.hadException.set(null);
+		long start = this.writeSequence.get();
+		this.gatingSequence = start - 1;
+
+		this.runnables = new ProcessEventsRunnable[this.numOfThreads];
+		this.threads = new Thread[this.numOfThreads];
+		for (int i = 0; i < this.numOfThreads; i++) {
+			this.runnables[i] = new ProcessEventsRunnable(this.eventsManagers[i], start);
+			Thread thread = new Thread(this.runnables[i]);
+			this.runnables[i].thread = thread;
+			thread.setDaemon(true);
+			thread.setName(ProcessEventsRunnable.class.toString() + i);
+			this.threads[i] = thread;
+		}
+		this.parallelMode = true;
+		for (Thread thread : this.threads) thread.start();
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		/*
+		 * If an exception occurred, at least one of the events processing threads
+		 * has crashed. It will be reported in finishProcessing().
+		 */
+		if (!this.parallelMode || this.hadException.get() != null) {
+			return;
+		}
+		waitUntilProcessed();
+	}
+
+	/*
+	 * Event handlers might create additional events while we wait, so repeat
+	 * until no more events were written.
+	 */
+	private void waitUntilProcessed() {
+		long lastWritten;
+		do {
+			lastWritten = this.writeSequence.get() - 1;
+			waitForReaders(lastWritten);
+		} while (lastWritten != this.writeSequence.get() - 1 && this.hadException.get() == null);
+	}
+
+	/*
+	 * Events that event handlers create while the remaining events are processed are still
+	 * processed by the threads, as we first wait like at the end of a sim step.  Events created
+	 * after this method has returned are processed with the delegate, in the calling thread,
+	 * as processEvent(...) hands them to the delegate once the parallel mode is switched off.
+	 */
+	@Override
+	public synchronized void finishProcessing() {
+		if (this.hadException.get() == null) {
+			waitUntilProcessed();
+		}
+		/*
+		 * Crashed threads do not block writers anymore, so this also reaches
+		 * the remaining threads if an exception occurred.
+		 */
+		publish(new LastEventOfIteration(Double.POSITIVE_INFINITY));
+		for (Thread thread : this.threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				this.hadException.compareAndSet(null, e);
+			}
+		}
+		this.parallelMode = false;
+
+		this.delegate.finishProcessing();
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	private void publish(final Event event) {
+		long sequence = this.writeSequence.getAndIncrement();
+		long wrapPoint = sequence - this.bufferSize;
+		if (wrapPoint > this.gatingSequence) {
+			waitForFreeSlot(wrapPoint);
+		}
+		int index = (int) sequence & this.indexMask;
+		this.ringBuffer[index] = event;
+		this.availableRounds.lazySet(index, (int) (sequence >>> this.indexShift));
+	}
+
+	private void waitForFreeSlot(final long wrapPoint) {
+		int spins = 0;
+		long minSequence;
+		while (wrapPoint > (minSequence = getMinimumReadSequence())) {
+			for (ProcessEventsRunnable runnable : this.runnables) {
+				if (runnable.thread == Thread.currentThread() && runnable.readSequence < wrapPoint) {
+					throw new RuntimeException("An event handler created more events than fit into the ring buffer of size "
+							+ this.bufferSize + ". Increase the ring buffer size in the " + ParallelEventHandlingConfigGroup.GROUP_NAME
+							+ " config group.");
+				}
+			}
+			spins = idle(spins);
+		}
+		this.gatingSequence = minSequence;
+	}
+
+	private void waitForReaders(final long sequence) {
+		int spins = 0;
+		while (sequence > getMinimumReadSequence() && this.hadException.get() == null) {
+			spins = idle(spins);
+		}
+	}
+
+	private long getMinimumReadSequence() {
+		long min = Long.MAX_VALUE;
+		for (ProcessEventsRunnable runnable : this.runnables) {
+			min = Math.min(min, runnable.readSequence);
+		}
+		return min;
+	}
+
+	private boolean isAvailable(final long sequence) {
+		return this.availableRounds.get((int) sequence & this.indexMask) == (int) (sequence >>> this.indexShift);
+	}
+
+	/**
+	 * Busy-spins first, then yields, and finally parks for short periods, so waiting threads
+	 * react quickly during the peak but do not burn CPU during quiet periods.
+	 */
+	private static int idle(final int spins) {
+		if (spins < 100) {
+			// busy spin
+		} else if (spins < 200) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(1000);
+		}
+		return spins + 1;
+	}
+
+	private class ProcessEventsRunnable implements Runnable {
+
+		private final EventsManager eventsManager;
+		/** sequence number of the last event that was processed by this thread */
+		private volatile long readSequence;
+		private Thread thread;
+		private double lastEventTime = 0.0;
+
+		ProcessEventsRunnable(final EventsManager eventsManager, final long firstSequence) {
+			this.eventsManager = eventsManager;
+			this.readSequence = firstSequence - 1;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long next = this.readSequence + 1;
+				int spins = 0;
+				while (true) {
+					if (!isAvailable(next)) {
+						spins = idle(spins);
+						continue;
+					}
+					spins = 0;
+
+					/*
+					 * Process all events that are available in one batch and move the
+					 * cursor only afterwards.
+					 */
+					long last = next;
+					while (isAvailable(last + 1)) last++;
+					for (long sequence = next; sequence <= last; sequence++) {
+						Event event = ringBuffer[(int) sequence & indexMask];
+						if (event instanceof LastEventOfIteration) {
+							this.readSequence = sequence;
+							Gbl.printCurrentThreadCpuTime();
+							return;
+						}
+						if (event.getTime() < this.lastEventTime) {
+							throw new RuntimeException("Events in the queue are not ordered chronologically. " +
+									"This should never happen. Is the RingBufferParallelEventsManager registered " +
+									"as a MobsimAfterSimStepListener?");
+						} else this.lastEventTime = event.getTime();
+						this.eventsManager.processEvent(event);
+					}
+					this.readSequence = last;
+					next = last + 1;
+				}
+			} catch (RuntimeException | Error e) {
+				hadException.compareAndSet(null, e);
+				log.error("Thread " + Thread.currentThread().getName() + " died with exception while handling events.", e);
+				// do not block the writers anymore
+				this.readSequence = Long.MAX_VALUE;
+			}
+		}
+
+	}	// ProcessEventsRunnable
+
+}
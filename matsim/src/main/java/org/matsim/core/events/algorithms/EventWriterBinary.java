@@ -0,0 +1,297 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in a compact, block-compressed binary format that can be read with
+ * {@link org.matsim.core.events.EventsReaderBinary} or {@link org.matsim.core.events.MatsimEventsReader}.
+ * Events are stored with the same attributes as in the xml format, so every event that can be read
+ * from an xml file can also be read from a binary file.
+ * <p></p>
+ * The file consists of a header (magic number and version, both int), a sequence of blocks and an int 0
+ * marking the end of the file. Every block starts with the number of events, the uncompressed and the
+ * compressed length of its content (all int). The content is deflate-compressed and contains:
+ * <ol>
+ * <li>the strings that were added to the dictionary with this block (count, then length and UTF-8 bytes for
+ * each string). The dictionary is shared by all blocks, event types, attribute names and non-numeric
+ * attribute values are stored as index into the dictionary.</li>
+ * <li>the time column: the difference to the time of the previous event for every event</li>
+ * <li>the type column: the dictionary index of the event type for every event</li>
+ * <li>the attribute count column: the number of attributes (besides time and type) for every event</li>
+ * <li>the attribute name column: the dictionary index of every attribute name</li>
+ * <li>the attribute value column: 0 for a <code>null</code> value, 1 followed by the value as double, or
+ * the dictionary index of the value plus one, shifted left by one bit</li>
+ * </ol>
+ * Every column is prefixed with its length in bytes, all integers in the columns are var-int encoded.
+ *
+ * @author agent
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final int MAGIC = 0x4d455642; // "MEVB"
+	public static final int VERSION = 2;
+	public static final int DEFAULT_EVENTS_PER_BLOCK = 16384;
+
+	private final DataOutputStream out;
+	private final int eventsPerBlock;
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> newDictionaryEntries = new ArrayList<>();
+
+	private final ColumnBuffer dictionaryColumn = new ColumnBuffer();
+	private final ColumnBuffer timeColumn = new ColumnBuffer();
+	private final ColumnBuffer typeColumn = new ColumnBuffer();
+	private final ColumnBuffer attributeCountColumn = new ColumnBuffer();
+	private final ColumnBuffer attributeNameColumn = new ColumnBuffer();
+	private final ColumnBuffer attributeValueColumn = new ColumnBuffer();
+	private final ColumnBuffer block = new ColumnBuffer();
+	private byte[] compressed = new byte[1024];
+
+	private int eventsInBlock = 0;
+	private long lastTime = 0;
+
+	public EventWriterBinary(final String outfilename) {
+		this(IOUtils.getOutputStream(outfilename), DEFAULT_EVENTS_PER_BLOCK);
+	}
+
+	public EventWriterBinary(final OutputStream stream, final int eventsPerBlock) {
+		this.out = new DataOutputStream(stream);
+		this.eventsPerBlock = eventsPerBlock;
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		Map<String, String> attr = event.getAttributes();
+		writeTime(event.getTime());
+		this.typeColumn.writeVarInt(getDictionaryIndex(event.getEventType()));
+		int attributeCount = 0;
+		for (Map.Entry<String, String> entry : attr.entrySet()) {
+			String key = entry.getKey();
+			if (Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key)) {
+				continue;
+			}
+			this.attributeNameColumn.writeVarInt(getDictionaryIndex(key));
+			writeValue(entry.getValue());
+			attributeCount++;
+		}
+		this.attributeCountColumn.writeVarInt(attributeCount);
+		this.eventsInBlock++;
+		if (this.eventsInBlock == this.eventsPerBlock) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			if (this.eventsInBlock > 0) {
+				writeBlock();
+			}
+			this.out.writeInt(0);
+			this.out.close();
+			this.deflater.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+	/**
+	 * Times are mostly full seconds and increase slowly, so store the difference to the previous
+	 * time. The lowest bit marks times that are no full seconds, they are stored as raw double.
+	 */
+	private void writeTime(final double time) {
+		long seconds = (long) time;
+		if (seconds == time) {
+			this.timeColumn.writeVarLong(zigZag(seconds - this.lastTime) << 1);
+			this.lastTime = seconds;
+		} else {
+			this.timeColumn.writeVarLong(1);
+			this.timeColumn.writeLong(Double.doubleToRawLongBits(time));
+		}
+	}
+
+	/**
+	 * Numeric values (positions, amounts, distances, ...) would fill the dictionary with values that
+	 * hardly ever repeat, so they are stored directly, marked by the lowest bit. Only values which are
+	 * restored to exactly the same string are treated as numbers, so Ids like "123" stay in the dictionary.
+	 * <code>null</code> is stored as 0, so it can be told apart from the string "null".
+	 */
+	private void writeValue(final String value) {
+		if (value == null) {
+			this.attributeValueColumn.writeVarInt(0);
+		} else if (isPlainDouble(value)) {
+			this.attributeValueColumn.writeVarInt(1);
+			this.attributeValueColumn.writeLong(Double.doubleToRawLongBits(Double.parseDouble(value)));
+		} else {
+			this.attributeValueColumn.writeVarInt((getDictionaryIndex(value) + 1) << 1);
+		}
+	}
+
+	private static boolean isPlainDouble(final String value) {
+		if (value.isEmpty()) {
+			return false;
+		}
+		char first = value.charAt(0);
+		if ((first < '0' || first > '9') && first != '-') {
+			return false;
+		}
+		if (value.indexOf('.') < 0) {
+			return false;
+		}
+		try {
+			return Double.toString(Double.parseDouble(value)).equals(value);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private int getDictionaryIndex(final String string) {
+		Integer index = this.dictionary.get(string);
+		if (index == null) {
+			index = this.dictionary.size();
+			this.dictionary.put(string, index);
+			this.newDictionaryEntries.add(string);
+		}
+		return index;
+	}
+
+	private void writeBlock() {
+		this.dictionaryColumn.writeVarInt(this.newDictionaryEntries.size());
+		for (String entry : this.newDictionaryEntries) {
+			byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+			this.dictionaryColumn.writeVarInt(bytes.length);
+			this.dictionaryColumn.write(bytes, 0, bytes.length);
+		}
+		this.newDictionaryEntries.clear();
+
+		this.block.write(this.dictionaryColumn.bytes, 0, this.dictionaryColumn.length);
+		for (ColumnBuffer column : new ColumnBuffer[] {this.timeColumn, this.typeColumn, this.attributeCountColumn,
+				this.attributeNameColumn, this.attributeValueColumn}) {
+			this.block.writeVarInt(column.length);
+			this.block.write(column.bytes, 0, column.length);
+		}
+
+		this.deflater.reset();
+		this.deflater.setInput(this.block.bytes, 0, this.block.length);
+		this.deflater.finish();
+		int compressedLength = 0;
+		while (!this.deflater.finished()) {
+			if (compressedLength == this.compressed.length) {
+				this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+			}
+			compressedLength += this.deflater.deflate(this.compressed, compressedLength, this.compressed.length - compressedLength);
+		}
+
+		try {
+			this.out.writeInt(this.eventsInBlock);
+			this.out.writeInt(this.block.length);
+			this.out.writeInt(compressedLength);
+			this.out.write(this.compressed, 0, compressedLength);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		this.eventsInBlock = 0;
+		this.dictionaryColumn.clear();
+		this.timeColumn.clear();
+		this.typeColumn.clear();
+		this.attributeCountColumn.clear();
+		this.attributeNameColumn.clear();
+		this.attributeValueColumn.clear();
+		this.block.clear();
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * A growable byte array which is reused for all blocks.
+	 */
+	private static class ColumnBuffer {
+		private byte[] bytes = new byte[4096];
+		private int length = 0;
+
+		private void ensureCapacity(final int additional) {
+			if (this.length + additional > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + additional));
+			}
+		}
+
+		void writeVarInt(final int value) {
+			writeVarLong(value & 0xffffffffL);
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7fL) != 0) {
+				this.bytes[this.length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.length++] = (byte) value;
+		}
+
+		void writeLong(final long value) {
+			ensureCapacity(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.bytes[this.length++] = (byte) (value >>> shift);
+			}
+		}
+
+		void write(final byte[] source, final int offset, final int len) {
+			ensureCapacity(len);
+			System.arraycopy(source, offset, this.bytes, this.length, len);
+			this.length += len;
+		}
+
+		void clear() {
+			this.length = 0;
+		}
+	}
+
+}
@@ -0,0 +1,349 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventWriterXML.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes the events in the same xml format as {@link EventWriterXML}, but takes the writing off the thread that
+ * handles the events: the events are formatted into blocks of bytes, the blocks are compressed by several threads
+ * in parallel, and a background thread writes them to the file in their order.
+ * <br>
+ * Every block becomes a gzip member of its own.  A file of several members is still a valid gzip file, which is
+ * read by {@link org.matsim.core.utils.io.IOUtils#getInputStream(String)} and by gunzip, but it is not
+ * byte-identical to the file {@link EventWriterXML} writes.  Files not ending with <code>.gz</code> are written
+ * uncompressed.
+ * <br>
+ * A fixed number of blocks is reused, so the memory is bounded.  If all of them are waiting to be compressed or
+ * written, the thread handling the events waits as well.
+ *
+ * @author agent
+ */
+public final class ParallelEventWriterXML implements EventWriter, BasicEventHandler {
+
+	private static final int BLOCK_SIZE = 256 * 1024;
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final byte[] LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] QUOT = "&quot;".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+
+	private static final Future<Block> END_OF_FILE = CompletableFuture.completedFuture(null);
+
+	private final boolean compressing;
+	private final FileChannel channel;
+	private final ExecutorService compressors;
+	private final Thread writer;
+
+	private final List<Block> blocks = new ArrayList<>();
+	private final BlockingQueue<Block> freeBlocks;
+	private final BlockingQueue<Future<Block>> pendingBlocks;
+	private volatile Throwable writeError = null;
+
+	private Block block;
+	private boolean closed = false;
+
+	public ParallelEventWriterXML(final String filename, final int compressionThreads) {
+		if (compressionThreads < 1) {
+			throw new IllegalArgumentException("at least one thread is needed for the compression, but there are " + compressionThreads);
+		}
+		this.compressing = filename.toLowerCase(Locale.ROOT).endsWith(".gz");
+		try {
+			this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not open " + filename, e);
+		}
+
+		int numberOfBlocks = 2 * compressionThreads + 2;
+		this.freeBlocks = new ArrayBlockingQueue<>(numberOfBlocks);
+		// one more for the end of the file, so adding never blocks
+		this.pendingBlocks = new ArrayBlockingQueue<>(numberOfBlocks + 1);
+		for (int i = 0; i < numberOfBlocks; i++) {
+			Block block = new Block();
+			this.blocks.add(block);
+			this.freeBlocks.add(block);
+		}
+
+		if (this.compressing) {
+			this.compressors = Executors.newFixedThreadPool(compressionThreads, r -> {
+				Thread thread = new Thread(r, "ParallelEventWriterXML-compressor");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.compressors = null;
+		}
+		this.writer = new Thread(this::writeBlocks, "ParallelEventWriterXML-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+
+		this.block = takeFreeBlock();
+		append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n", false);
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		if (this.closed) {
+			throw new IllegalStateException("the events file is already closed, no more events can be written to it.");
+		}
+		append("\t<event ", false);
+		for (Map.Entry<String, String> entry : event.getAttributes().entrySet()) {
+			append(entry.getKey(), false);
+			append("=\"", false);
+			append(entry.getValue() == null ? "null" : entry.getValue(), true);
+			append("\" ", false);
+		}
+		append(" />\n", false);
+		if (this.block.length >= BLOCK_SIZE) {
+			submitBlock();
+			this.block = takeFreeBlock();
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	/**
+	 * Waits until all events are compressed and written, and closes the file.
+	 */
+	@Override
+	public void closeFile() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		append("</events>", false);
+		submitBlock();
+		this.block = null;
+		this.pendingBlocks.add(END_OF_FILE);
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(e);
+		} finally {
+			if (this.compressors != null) {
+				this.compressors.shutdown();
+			}
+			for (Block block : this.blocks) {
+				block.deflater.end();
+			}
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		checkWriteError();
+	}
+
+	private void submitBlock() {
+		checkWriteError();
+		Block full = this.block;
+		this.pendingBlocks.add(this.compressing ? this.compressors.submit(full::compress) : CompletableFuture.completedFuture(full));
+	}
+
+	private Block takeFreeBlock() {
+		try {
+			Block free;
+			while ((free = this.freeBlocks.poll(1, TimeUnit.SECONDS)) == null) {
+				if (!this.writer.isAlive()) {
+					checkWriteError();
+					throw new UncheckedIOException("the thread writing the events file has ended unexpectedly.");
+				}
+			}
+			return free;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void checkWriteError() {
+		if (this.writeError != null) {
+			throw new UncheckedIOException("could not write the events file.", this.writeError);
+		}
+	}
+
+	/*
+	 * Runs in the writer thread. After an error, the blocks are no longer written, but still given back, so the
+	 * thread handling the events does not wait forever.
+	 */
+	private void writeBlocks() {
+		try {
+			Future<Block> future;
+			while ((future = this.pendingBlocks.take()) != END_OF_FILE) {
+				Block block = future.get();
+				if (this.writeError == null && block.error != null) {
+					this.writeError = block.error;
+				}
+				if (this.writeError == null) {
+					try {
+						ByteBuffer buffer = this.compressing ? ByteBuffer.wrap(block.compressed, 0, block.compressedLength)
+								: ByteBuffer.wrap(block.data, 0, block.length);
+						while (buffer.hasRemaining()) {
+							this.channel.write(buffer);
+						}
+					} catch (IOException e) {
+						this.writeError = e;
+					}
+				}
+				block.length = 0;
+				block.error = null;
+				this.freeBlocks.add(block);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			this.writeError = e;
+		}
+	}
+
+	/*
+	 * Appends the string to the current block, encoded in UTF-8, and with the characters that have a special
+	 * meaning in xml replaced if <code>encoding</code> is true, like EventWriterXML.encodeAttributeValue(...).
+	 */
+	private void append(final String string, final boolean encoding) {
+		int len = string.length();
+		// at most 6 bytes per character, for &quot;
+		this.block.ensureCapacity(this.block.length + 6 * len);
+		byte[] data = this.block.data;
+		int pos = this.block.length;
+		for (int i = 0; i < len; i++) {
+			char ch = string.charAt(i);
+			if (ch < 0x80) {
+				if (encoding && ch == '<') {
+					pos = copy(LT, data, pos);
+				} else if (encoding && ch == '>') {
+					pos = copy(GT, data, pos);
+				} else if (encoding && ch == '\"') {
+					pos = copy(QUOT, data, pos);
+				} else if (encoding && ch == '&') {
+					pos = copy(AMP, data, pos);
+				} else {
+					data[pos++] = (byte) ch;
+				}
+			} else if (ch < 0x800) {
+				data[pos++] = (byte) (0xc0 | (ch >> 6));
+				data[pos++] = (byte) (0x80 | (ch & 0x3f));
+			} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(string.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(ch, string.charAt(++i));
+				data[pos++] = (byte) (0xf0 | (codePoint >> 18));
+				data[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				data[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				data[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+			} else if (Character.isSurrogate(ch)) {
+				// a lone surrogate, replaced like String.getBytes(...) does
+				data[pos++] = '?';
+			} else {
+				data[pos++] = (byte) (0xe0 | (ch >> 12));
+				data[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+				data[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+		}
+		this.block.length = pos;
+	}
+
+	private static int copy(final byte[] bytes, final byte[] data, final int pos) {
+		System.arraycopy(bytes, 0, data, pos, bytes.length);
+		return pos + bytes.length;
+	}
+
+	/*
+	 * The formatted events and, once compressed, the gzip member of them.  Only used by one thread at a time.
+	 */
+	private static final class Block {
+		private byte[] data = new byte[BLOCK_SIZE + 16 * 1024];
+		private int length = 0;
+		private byte[] compressed = new byte[BLOCK_SIZE / 4];
+		private int compressedLength = 0;
+		private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		private final CRC32 crc = new CRC32();
+		private Throwable error = null;
+
+		void ensureCapacity(final int capacity) {
+			if (capacity > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(capacity, 2 * this.data.length));
+			}
+		}
+
+		Block compress() {
+			try {
+				this.deflater.reset();
+				this.deflater.setInput(this.data, 0, this.length);
+				this.deflater.finish();
+				System.arraycopy(GZIP_HEADER, 0, this.compressed, 0, GZIP_HEADER.length);
+				this.compressedLength = GZIP_HEADER.length;
+				while (!this.deflater.finished()) {
+					if (this.compressedLength == this.compressed.length) {
+						this.compressed = Arrays.copyOf(this.compressed, 2 * this.compressed.length);
+					}
+					this.compressedLength += this.deflater.deflate(this.compressed, this.compressedLength,
+							this.compressed.length - this.compressedLength);
+				}
+				this.crc.reset();
+				this.crc.update(this.data, 0, this.length);
+				if (this.compressedLength + 8 > this.compressed.length) {
+					this.compressed = Arrays.copyOf(this.compressed, this.compressedLength + 8);
+				}
+				writeIntLE((int) this.crc.getValue());
+				writeIntLE(this.length);
+			} catch (RuntimeException e) {
+				this.error = e;
+			}
+			return this;
+		}
+
+		private void writeIntLE(final int value) {
+			this.compressed[this.compressedLength++] = (byte) value;
+			this.compressed[this.compressedLength++] = (byte) (value >> 8);
+			this.compressed[this.compressedLength++] = (byte) (value >> 16);
+			this.compressed[this.compressedLength++] = (byte) (value >> 24);
+		}
+	}
+
+}
@@ -20,7 +20,11 @@
 
 package org.matsim.core.gbl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -35,7 +39,7 @@ import org.apache.log4j.Logger;
 public abstract class MatsimRandom {
 	private static final Logger log = Logger.getLogger( MatsimRandom.class ) ;
 
-	private static final class InstrumentedRandom extends Random {
+	private static final class InstrumentedRandom extends CheckpointableRandom {
 		InstrumentedRandom(long defaultRandomSeed) {
 			super(defaultRandomSeed) ;
 		}
@@ -49,14 +53,74 @@ public abstract class MatsimRandom {
 		}
 	}
 
+	/**
+	 * The same generator as {@link Random}, but with a state that can be written to a checkpoint and read again,
+	 * see {@link MatsimRandom#writeState(DataOutput)}.  The sequence of random numbers is the same as the one of
+	 * {@link Random} with the same seed.
+	 */
+	private static class CheckpointableRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		private static final long MULTIPLIER = 0x5DEECE66DL;
+		private static final long ADDEND = 0xBL;
+		private static final long MASK = (1L << 48) - 1;
+
+		// no initializers, since the constructor of Random calls setSeed() before they would be run
+		private long state;
+		private double nextNextGaussian;
+		private boolean haveNextNextGaussian;
+
+		CheckpointableRandom(long seed) {
+			super(seed);
+		}
+		@Override public synchronized void setSeed(long seed) {
+			this.state = (seed ^ MULTIPLIER) & MASK;
+			this.haveNextNextGaussian = false;
+		}
+		@Override protected synchronized int next(int bits) {
+			this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+			return (int) (this.state >>> (48 - bits));
+		}
+		@Override public synchronized double nextGaussian() {
+			if (this.haveNextNextGaussian) {
+				this.haveNextNextGaussian = false;
+				return this.nextNextGaussian;
+			}
+			double v1, v2, s;
+			do {
+				v1 = 2 * nextDouble() - 1;
+				v2 = 2 * nextDouble() - 1;
+				s = v1 * v1 + v2 * v2;
+			} while (s >= 1 || s == 0);
+			double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+			this.nextNextGaussian = v2 * multiplier;
+			this.haveNextNextGaussian = true;
+			return v1 * multiplier;
+		}
+		synchronized void writeState(DataOutput out) throws IOException {
+			out.writeLong(this.state);
+			out.writeDouble(this.nextNextGaussian);
+			out.writeBoolean(this.haveNextNextGaussian);
+		}
+		synchronized void readState(DataInput in) throws IOException {
+			this.state = in.readLong();
+			this.nextNextGaussian = in.readDouble();
+			this.haveNextNextGaussian = in.readBoolean();
+		}
+	}
+
 	private static final long DEFAULT_RANDOM_SEED = 4711;
 
 	private static long lastUsedSeed = DEFAULT_RANDOM_SEED;
 	private static int internalCounter = 0;
 
 	/** the global random number generator */
-	private static final Random random = new Random(DEFAULT_RANDOM_SEED);
-//	private static final Random random = new InstrumentedRandom(DEFAULT_RANDOM_SEED);
+	private static final CheckpointableRandom random = new CheckpointableRandom(DEFAULT_RANDOM_SEED);
+//	private static final CheckpointableRandom random = new InstrumentedRandom(DEFAULT_RANDOM_SEED);
+
+	/** generators that replace the global one in some threads, see {@link #setRandomForCurrentThread(Random)} */
+	private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
+	/** the number of threads with their own generator, so {@link #getRandom()} only looks it up while there are some */
+	private static final AtomicInteger threadRandomCount = new AtomicInteger(0);
 
 	/** Resets the random number generator with a default random seed. */
 	public static void reset() {
@@ -67,28 +131,72 @@ public abstract class MatsimRandom {
 	 *
 	 * @param seed The seed used to draw random numbers.
 	 */
-	public static void reset(final long seed) {
+	public static synchronized void reset(final long seed) {
 		lastUsedSeed = seed;
 		internalCounter = 0;
 		getRandom().setSeed(seed);
 //		prepareRNG(random);
 	}
 	public static Random getRandom() {
-		return random;
+		if (threadRandomCount.get() == 0) {
+			return random;
+		}
+		Random r = threadRandom.get();
+		return r == null ? random : r;
+	}
+
+	/**
+	 * Makes {@link #getRandom()} return the given generator instead of the global one when called from the current
+	 * thread, until this method is called again with <code>null</code>.  This allows code that draws its random numbers
+	 * from {@link #getRandom()}, e.g. the plan selectors, to run in several threads and still be deterministic.
+	 */
+	public static void setRandomForCurrentThread(final Random r) {
+		boolean hadRandom = threadRandom.get() != null;
+		if (r == null) {
+			threadRandom.remove();
+			if (hadRandom) {
+				threadRandomCount.decrementAndGet();
+			}
+		} else {
+			threadRandom.set(r);
+			if (!hadRandom) {
+				threadRandomCount.incrementAndGet();
+			}
+		}
 	}
 
 	/** Returns an instance of a random number generator, which can be used
-	 * locally, e.g. in threads.
+	 * locally, e.g. in threads.  May be called from several threads.
 	 *
 	 * @return pseudo random number generator
 	 */
-	public static Random getLocalInstance() {
+	public static synchronized Random getLocalInstance() {
 		internalCounter++;
 		Random r = new Random(lastUsedSeed + internalCounter*23l);
 		prepareRNG(r);
 		return r;
 	}
 
+	/**
+	 * Writes the state of the global random number generator and the number of local instances handed out, so that
+	 * a simulation can be continued from a checkpoint with the same random numbers.  The state of the local instances
+	 * themselves is not written.
+	 */
+	public static synchronized void writeState(DataOutput out) throws IOException {
+		out.writeLong(lastUsedSeed);
+		out.writeInt(internalCounter);
+		random.writeState(out);
+	}
+
+	/**
+	 * Reads a state written by {@link #writeState(DataOutput)}.
+	 */
+	public static synchronized void readState(DataInput in) throws IOException {
+		lastUsedSeed = in.readLong();
+		internalCounter = in.readInt();
+		random.readState(in);
+	}
+
 	/**
 	 * Draw some random numbers to better initialize the pseudo-random number generator.
 	 *
@@ -19,10 +19,12 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -34,12 +36,13 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
 import org.matsim.core.mobsim.qsim.interfaces.ActivityHandler;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.utils.misc.Time;
 
 import javax.inject.Inject;
 
-public class ActivityEngine implements MobsimEngine, ActivityHandler {
+public class ActivityEngine implements MobsimEngine, ActivityHandler, Checkpointable {
 	private static final Logger log = Logger.getLogger( ActivityEngine.class ) ;
 
 	private EventsManager eventsManager;
@@ -52,48 +55,29 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 		this.eventsManager = eventsManager;
 	}
 
-	/**
-	 * Agents cannot be added directly to the activityEndsList since that would
-	 * not be thread-safe when within-day replanning is used. There, an agent's
-	 * activity end time can be modified. As a result, the agent is located at
-	 * the wrong position in the activityEndsList until it is updated by using
-	 * rescheduleActivityEnd(...). However, if another agent is added to the list
-	 * in the mean time, it might be inserted at the wrong position.
-	 * cdobler, apr'12
-	 */
-	private static class AgentEntry {
-		public AgentEntry(MobsimAgent agent, double activityEndTime) {
-			this.agent = agent;
-			this.activityEndTime = activityEndTime;
-		}
-		final MobsimAgent agent;
-		final double activityEndTime;
-	}
-
 	private InternalInterface internalInterface;
 	
 	/**
-	 * This list needs to be a "blocking" queue since this is needed for
-	 * thread-safety in the parallel qsim. cdobler, oct'10
+	 * The agents are stored together with their activity end time when they were added, since with
+	 * within-day replanning, an agent's activity end time can be modified.  The agent then stays at its
+	 * old position until it is updated by using rescheduleActivityEnd(...).
+	 * <br>
+	 * The queue needs to be thread-safe, since agents are added from the threads of the parallel qsim.
 	 */
-	private final Queue<AgentEntry> activityEndsList = new PriorityBlockingQueue<>(500, new Comparator<AgentEntry>() {
+	private final CalendarQueue<MobsimAgent> activityEndsList = new CalendarQueue<>(new Comparator<MobsimAgent>() {
 
 		@Override
-		public int compare(AgentEntry arg0, AgentEntry arg1) {
-			int cmp = Double.compare(arg0.activityEndTime, arg1.activityEndTime);
-			if (cmp == 0) {
-				// Both depart at the same time -> let the one with the larger id be first (=smaller)
-				//
-				// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
-				// to say that the agent with the larger ID should be "smaller" one in the comparison.
-				// In practice, it seems
-				// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
-				// It is unclear why this convention is supposed to be helpful.
-				// kai & dominik, jul'12
-				//
-				return arg1.agent.getId().compareTo(arg0.agent.getId());
-			}
-			return cmp;
+		public int compare(MobsimAgent arg0, MobsimAgent arg1) {
+			// Both depart at the same time -> let the one with the larger id be first (=smaller)
+			//
+			// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
+			// to say that the agent with the larger ID should be "smaller" one in the comparison.
+			// In practice, it seems
+			// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
+			// It is unclear why this convention is supposed to be helpful.
+			// kai & dominik, jul'12
+			//
+			return arg1.getId().compareTo(arg0.getId());
 		}
 
 	});
@@ -101,39 +85,62 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 	// See handleActivity for the reason for this.
 	private boolean beforeFirstSimStep = true;
 
+	// The agents at activities are only registered on their links for the visualization.
+	private boolean registeringAgentsOnLinks = true;
+
 	@Override
 	public void onPrepareSim() {
-		// Nothing to do here
+		this.registeringAgentsOnLinks = !internalInterface.getMobsim().getScenario().getConfig().qsim().isHeadless();
 	}
 
 	@Override
 	public void doSimStep(double time) {
 		beforeFirstSimStep = false;
-		while (activityEndsList.peek() != null) {
-			if (activityEndsList.peek().activityEndTime <= time) {
-				MobsimAgent agent = activityEndsList.poll().agent;
-				unregisterAgentAtActivityLocation(agent);
-				agent.endActivityAndComputeNextState(time);
-				internalInterface.arrangeNextAgentState(agent);
-			} else {
-				return;
-			}
+		MobsimAgent agent;
+		while ((agent = activityEndsList.poll(time)) != null) {
+			unregisterAgentAtActivityLocation(agent);
+			agent.endActivityAndComputeNextState(time);
+			internalInterface.arrangeNextAgentState(agent);
 		}
 	}
 
 	@Override
 	public void afterSim() {
 		double now = this.internalInterface.getMobsim().getSimTimer().getTimeOfDay();
-		for (AgentEntry entry : activityEndsList) {
-			if (entry.activityEndTime!=Double.POSITIVE_INFINITY && entry.activityEndTime!=Time.UNDEFINED_TIME) {
+		activityEndsList.forEach((agent, activityEndTime) -> {
+			if (activityEndTime!=Double.POSITIVE_INFINITY && activityEndTime!=Time.UNDEFINED_TIME) {
 				// since we are at an activity, it is not plausible to assume that the agents know mode or destination
 				// link id.  Thus generating the event with ``null'' in the corresponding entries.  kai, mar'12
-				eventsManager.processEvent(new PersonStuckEvent(now, entry.agent.getId(), null, null));
+				eventsManager.processEvent(new PersonStuckEvent(now, agent.getId(), null, null));
 			}
-		}
+		});
 		activityEndsList.clear();
 	}
 
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(activityEndsList.size());
+		activityEndsList.forEach((agent, activityEndTime) -> {
+			try {
+				out.writeUTF(agent.getId().toString());
+				out.writeDouble(activityEndTime);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Override
+	public void readCheckpoint(DataInput in) throws IOException {
+		beforeFirstSimStep = false;
+		Map<Id<Person>, MobsimAgent> agents = ((QSim) internalInterface.getMobsim()).getAgents();
+		for (int i = in.readInt(); i > 0; i--) {
+			MobsimAgent agent = agents.get(Id.createPersonId(in.readUTF()));
+			activityEndsList.add(agent, in.readDouble());
+			registerAgentAtActivityLocation(agent);
+		}
+	}
+
 	@Override
 	public void setInternalInterface(InternalInterface internalInterface) {
 		this.internalInterface = internalInterface;
@@ -163,9 +170,8 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 			internalInterface.arrangeNextAgentState(agent) ;
 		} else {
 			// The agent commences an activity on this link.
-			final AgentEntry agentEntry = new AgentEntry(agent, agent.getActivityEndTime());
-			activityEndsList.add(agentEntry);
-			internalInterface.registerAdditionalAgentOnLink(agent);
+			activityEndsList.add(agent, agent.getActivityEndTime());
+			registerAgentAtActivityLocation(agent);
 		}
 		// Why beforeFirstSimStep matters:
 		// - If this class has never had a doSimStep() when this method is called, this means that this Agent is having its
@@ -196,17 +202,17 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 		
 		
 		double newActivityEndTime = agent.getActivityEndTime();
-		AgentEntry oldEntry = removeAgentFromQueue(agent);
+		boolean wasInQueue = activityEndsList.remove(agent);
 
 		// The intention in the following is that an agent that is no longer alive has an activity end time of infinity.  The number of
 		// alive agents is only modified when an activity end time is changed between a finite time and infinite.  kai, jun'11
-		if (oldEntry == null) {
+		if (!wasInQueue) {
 			if (newActivityEndTime == Double.POSITIVE_INFINITY) {
 				// agent was de-activated and still should be de-activated - nothing to do here
 			} else {
 				// re-activate the agent
-				activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
-				internalInterface.registerAdditionalAgentOnLink(agent);
+				activityEndsList.add(agent, newActivityEndTime);
+				registerAgentAtActivityLocation(agent);
 				((org.matsim.core.mobsim.qsim.AgentCounter) internalInterface.getMobsim().getAgentCounter()).incLiving();
 			}
 		} else if (newActivityEndTime == Double.POSITIVE_INFINITY) {
@@ -220,23 +226,20 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 			/*
 			 *  The activity is just rescheduled during the day, so we keep the agent active. cdobler, oct'11
 			 */
-			activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
+			activityEndsList.add(agent, newActivityEndTime);
 		}
 	}
 
-	private AgentEntry removeAgentFromQueue(MobsimAgent agent) {
-		Iterator<AgentEntry> iterator = activityEndsList.iterator();
-		while (iterator.hasNext()) {
-			AgentEntry entry = iterator.next();
-			if (entry.agent == agent) {
-				iterator.remove();
-				return entry;
-			}
+	private void registerAgentAtActivityLocation(final MobsimAgent agent) {
+		if (registeringAgentsOnLinks) {
+			internalInterface.registerAdditionalAgentOnLink(agent);
 		}
-		return null;
 	}
 
 	private void unregisterAgentAtActivityLocation(final MobsimAgent agent) {
+		if (!registeringAgentsOnLinks) {
+			return;
+		}
 		Id<Person> agentId = agent.getId();
 		Id<Link> linkId = agent.getCurrentLinkId();
 		if (linkId != null) { // may be bushwacking
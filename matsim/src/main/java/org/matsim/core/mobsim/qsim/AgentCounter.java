@@ -58,4 +58,8 @@ class AgentCounter implements org.matsim.core.mobsim.qsim.interfaces.AgentCounte
     @Override
     public final void decLiving() {living.decrementAndGet();}
 
+    final void setLiving(int count) {living.set(count);}
+
+    final void setLost(int count) {lost.set(count);}
+
 }
@@ -0,0 +1,328 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CalendarQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * A queue of elements that are due at a given time, with one bucket per second of simulated time.
+ * Adding and removing an element is O(1).  When the elements of a second are due, they are sorted by
+ * their time, and elements with the same time by the given comparator, or in the order they were added
+ * if there is none.  An element can be in the queue only once, elements are compared by identity.
+ * <br>
+ * The buckets cover a bit more than 36 hours.  Elements further in the future wait in their bucket
+ * until the time has come around once more.
+ * <br>
+ * The methods are synchronized, since elements may be added by the threads of the parallel qsim.
+ *
+ * @author agent
+ */
+final class CalendarQueue<E> {
+
+	private static final int NUMBER_OF_BUCKETS = 1 << 17;
+	private static final int INITIAL_BUCKET_SIZE = 4;
+
+	private final Comparator<? super E> tieBreaker;
+
+	/*
+	 * The handle of the entry of every element in the queue.  Removing an element only forgets its handle, the
+	 * entry itself is dropped when it is met in a bucket or among the due elements.
+	 */
+	private final Map<Object, Long> handles = new IdentityHashMap<>();
+	private long nextHandle = 0;
+
+	private final Object[][] bucketElements = new Object[NUMBER_OF_BUCKETS][];
+	private final double[][] bucketTimes = new double[NUMBER_OF_BUCKETS][];
+	private final long[][] bucketHandles = new long[NUMBER_OF_BUCKETS][];
+	private final int[] bucketSizes = new int[NUMBER_OF_BUCKETS];
+
+	/*
+	 * The elements of all seconds up to and including lastSecond, sorted from dueStart to dueSize
+	 * unless dueSorted is false.
+	 */
+	private Object[] dueElements = new Object[INITIAL_BUCKET_SIZE];
+	private double[] dueTimes = new double[INITIAL_BUCKET_SIZE];
+	private long[] dueHandles = new long[INITIAL_BUCKET_SIZE];
+	private int dueStart = 0;
+	private int dueSize = 0;
+	private boolean dueSorted = true;
+	private long lastSecond = Long.MIN_VALUE;
+
+	private Object[] tmpElements = new Object[0];
+	private double[] tmpTimes = new double[0];
+	private long[] tmpHandles = new long[0];
+
+	CalendarQueue(Comparator<? super E> tieBreaker) {
+		this.tieBreaker = tieBreaker;
+	}
+
+	synchronized void add(E element, double time) {
+		long handle = this.nextHandle++;
+		if (this.handles.putIfAbsent(element, handle) != null) {
+			throw new IllegalStateException("the element " + element + " is already in the queue.");
+		}
+		long second = toSecond(time);
+		if (second <= this.lastSecond) {
+			addToDue(element, time, handle);
+		} else {
+			int bucket = toBucket(second);
+			int bucketSize = this.bucketSizes[bucket];
+			if (this.bucketElements[bucket] == null) {
+				this.bucketElements[bucket] = new Object[INITIAL_BUCKET_SIZE];
+				this.bucketTimes[bucket] = new double[INITIAL_BUCKET_SIZE];
+				this.bucketHandles[bucket] = new long[INITIAL_BUCKET_SIZE];
+			} else if (bucketSize == this.bucketElements[bucket].length) {
+				this.bucketElements[bucket] = Arrays.copyOf(this.bucketElements[bucket], bucketSize * 2);
+				this.bucketTimes[bucket] = Arrays.copyOf(this.bucketTimes[bucket], bucketSize * 2);
+				this.bucketHandles[bucket] = Arrays.copyOf(this.bucketHandles[bucket], bucketSize * 2);
+			}
+			this.bucketElements[bucket][bucketSize] = element;
+			this.bucketTimes[bucket][bucketSize] = time;
+			this.bucketHandles[bucket][bucketSize] = handle;
+			this.bucketSizes[bucket] = bucketSize + 1;
+		}
+	}
+
+	/**
+	 * @return the next element with a time not after <code>now</code>, or <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized E poll(double now) {
+		advanceTo(toSecond(now));
+		if (!this.dueSorted) {
+			sort(this.dueStart, this.dueSize);
+			this.dueSorted = true;
+		}
+		while (this.dueStart < this.dueSize && !isQueued(this.dueElements[this.dueStart], this.dueHandles[this.dueStart])) {
+			// removed in between
+			pollDue();
+		}
+		if (this.dueStart == this.dueSize || this.dueTimes[this.dueStart] > now) {
+			return null;
+		}
+		E element = (E) pollDue();
+		this.handles.remove(element);
+		return element;
+	}
+
+	/**
+	 * Removes the element.  Its entry stays where it is until it is met when the elements are moved on.
+	 */
+	synchronized boolean remove(E element) {
+		return this.handles.remove(element) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized void forEach(ObjDoubleConsumer<? super E> consumer) {
+		for (int i = this.dueStart; i < this.dueSize; i++) {
+			if (isQueued(this.dueElements[i], this.dueHandles[i])) {
+				consumer.accept((E) this.dueElements[i], this.dueTimes[i]);
+			}
+		}
+		for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+			for (int i = 0; i < this.bucketSizes[bucket]; i++) {
+				if (isQueued(this.bucketElements[bucket][i], this.bucketHandles[bucket][i])) {
+					consumer.accept((E) this.bucketElements[bucket][i], this.bucketTimes[bucket][i]);
+				}
+			}
+		}
+	}
+
+	synchronized void clear() {
+		Arrays.fill(this.dueElements, null);
+		this.dueStart = 0;
+		this.dueSize = 0;
+		for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+			if (this.bucketSizes[bucket] > 0) {
+				Arrays.fill(this.bucketElements[bucket], 0, this.bucketSizes[bucket], null);
+				this.bucketSizes[bucket] = 0;
+			}
+		}
+		this.handles.clear();
+	}
+
+	synchronized int size() {
+		return this.handles.size();
+	}
+
+	/*
+	 * Whether the entry is still the one of the element, i.e. the element was neither removed nor removed and added again.
+	 */
+	private boolean isQueued(Object element, long handle) {
+		Long queuedHandle = this.handles.get(element);
+		return queuedHandle != null && queuedHandle == handle;
+	}
+
+	private Object pollDue() {
+		Object element = this.dueElements[this.dueStart];
+		this.dueElements[this.dueStart] = null;
+		this.dueStart++;
+		if (this.dueStart == this.dueSize) {
+			this.dueStart = 0;
+			this.dueSize = 0;
+		}
+		return element;
+	}
+
+	/*
+	 * Moves the elements of all seconds after lastSecond up to and including second to the due elements.
+	 */
+	private void advanceTo(long second) {
+		if (second <= this.lastSecond) {
+			return;
+		}
+		if (this.lastSecond == Long.MIN_VALUE || second - this.lastSecond >= NUMBER_OF_BUCKETS) {
+			for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+				moveToDue(bucket, second);
+			}
+		} else {
+			for (long s = this.lastSecond + 1; s <= second; s++) {
+				moveToDue(toBucket(s), second);
+			}
+		}
+		this.lastSecond = second;
+	}
+
+	private void moveToDue(int bucket, long second) {
+		int bucketSize = this.bucketSizes[bucket];
+		if (bucketSize == 0) {
+			return;
+		}
+		Object[] elements = this.bucketElements[bucket];
+		double[] times = this.bucketTimes[bucket];
+		long[] elementHandles = this.bucketHandles[bucket];
+		int remaining = 0;
+		for (int i = 0; i < bucketSize; i++) {
+			if (!isQueued(elements[i], elementHandles[i])) {
+				// removed in between, the entry is dropped
+			} else if (toSecond(times[i]) <= second) {
+				addToDue(elements[i], times[i], elementHandles[i]);
+			} else {
+				// not this round yet
+				elements[remaining] = elements[i];
+				times[remaining] = times[i];
+				elementHandles[remaining] = elementHandles[i];
+				remaining++;
+			}
+		}
+		Arrays.fill(elements, remaining, bucketSize, null);
+		this.bucketSizes[bucket] = remaining;
+	}
+
+	private void addToDue(Object element, double time, long handle) {
+		if (this.dueSize == this.dueElements.length && this.dueStart > 0) {
+			// reuse the space of the elements already polled
+			System.arraycopy(this.dueElements, this.dueStart, this.dueElements, 0, this.dueSize - this.dueStart);
+			System.arraycopy(this.dueTimes, this.dueStart, this.dueTimes, 0, this.dueSize - this.dueStart);
+			System.arraycopy(this.dueHandles, this.dueStart, this.dueHandles, 0, this.dueSize - this.dueStart);
+			Arrays.fill(this.dueElements, this.dueSize - this.dueStart, this.dueSize, null);
+			this.dueSize -= this.dueStart;
+			this.dueStart = 0;
+		}
+		if (this.dueSize == this.dueElements.length) {
+			this.dueElements = Arrays.copyOf(this.dueElements, this.dueSize * 2);
+			this.dueTimes = Arrays.copyOf(this.dueTimes, this.dueSize * 2);
+			this.dueHandles = Arrays.copyOf(this.dueHandles, this.dueSize * 2);
+		}
+		this.dueElements[this.dueSize] = element;
+		this.dueTimes[this.dueSize] = time;
+		this.dueHandles[this.dueSize] = handle;
+		this.dueSize++;
+		this.dueSorted = false;
+	}
+
+	/*
+	 * Stable merge sort of the due elements from (inclusive) to (exclusive), by time and then by the tie breaker.
+	 */
+	private void sort(int from, int to) {
+		int n = to - from;
+		if (n < 2) {
+			return;
+		}
+		if (this.tmpElements.length < this.dueElements.length) {
+			this.tmpElements = new Object[this.dueElements.length];
+			this.tmpTimes = new double[this.dueElements.length];
+			this.tmpHandles = new long[this.dueElements.length];
+		}
+		for (int width = 1; width < n; width *= 2) {
+			for (int left = from; left < to - width; left += 2 * width) {
+				int middle = left + width;
+				int right = Math.min(left + 2 * width, to);
+				if (compare(middle - 1, middle) > 0) {
+					merge(left, middle, right);
+				}
+			}
+		}
+		Arrays.fill(this.tmpElements, from, to, null);
+	}
+
+	private void merge(int left, int middle, int right) {
+		System.arraycopy(this.dueElements, left, this.tmpElements, left, right - left);
+		System.arraycopy(this.dueTimes, left, this.tmpTimes, left, right - left);
+		System.arraycopy(this.dueHandles, left, this.tmpHandles, left, right - left);
+		int i = left;
+		int j = middle;
+		for (int k = left; k < right; k++) {
+			if (j >= right || (i < middle && compareTmp(i, j) <= 0)) {
+				this.dueElements[k] = this.tmpElements[i];
+				this.dueTimes[k] = this.tmpTimes[i];
+				this.dueHandles[k] = this.tmpHandles[i];
+				i++;
+			} else {
+				this.dueElements[k] = this.tmpElements[j];
+				this.dueTimes[k] = this.tmpTimes[j];
+				this.dueHandles[k] = this.tmpHandles[j];
+				j++;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(int i, int j) {
+		int cmp = Double.compare(this.dueTimes[i], this.dueTimes[j]);
+		if (cmp == 0 && this.tieBreaker != null) {
+			return this.tieBreaker.compare((E) this.dueElements[i], (E) this.dueElements[j]);
+		}
+		return cmp;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compareTmp(int i, int j) {
+		int cmp = Double.compare(this.tmpTimes[i], this.tmpTimes[j]);
+		if (cmp == 0 && this.tieBreaker != null) {
+			return this.tieBreaker.compare((E) this.tmpElements[i], (E) this.tmpElements[j]);
+		}
+		return cmp;
+	}
+
+	private static long toSecond(double time) {
+		return (long) Math.floor(time);
+	}
+
+	private static int toBucket(long second) {
+		return (int) Math.floorMod(second, (long) NUMBER_OF_BUCKETS);
+	}
+
+}
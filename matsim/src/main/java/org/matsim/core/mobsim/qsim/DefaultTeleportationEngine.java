@@ -10,10 +10,10 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.interfaces.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.network.NetworkUtils;
-import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.facilities.Facility;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
@@ -21,28 +21,32 @@ import org.matsim.vis.snapshotwriters.TeleportationVisData;
 import org.matsim.vis.snapshotwriters.VisData;
 
 import javax.inject.Inject;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
  * Includes all agents that have transportation modes unknown to the
  * NetsimEngine (often all != "car") or have two activities on the same link
  */
-public final class DefaultTeleportationEngine implements TeleportationEngine {
+public final class DefaultTeleportationEngine implements TeleportationEngine, Checkpointable {
 	private static final Logger log = Logger.getLogger( DefaultTeleportationEngine.class ) ;
 	
-	private final Queue<Tuple<Double, MobsimAgent>> teleportationList = new PriorityQueue<>(
-			30, new Comparator<Tuple<Double, MobsimAgent>>() {
+	private final CalendarQueue<MobsimAgent> teleportationList = new CalendarQueue<>(new Comparator<MobsimAgent>() {
 
 		@Override
-		public int compare(Tuple<Double, MobsimAgent> o1, Tuple<Double, MobsimAgent> o2) {
-			int ret = o1.getFirst().compareTo(o2.getFirst()); // first compare time information
-			if (ret == 0) {
-				ret = o2.getSecond().getId().compareTo(o1.getSecond().getId()); // if they're equal, compare the Ids: the one with the larger Id should be first
-			}
-			return ret;
+		public int compare(MobsimAgent o1, MobsimAgent o2) {
+			return o2.getId().compareTo(o1.getId()); // if the times are equal, compare the Ids: the one with the larger Id should be first
 		}
 	});
+	/*
+	 * The vis data is only created once a visualizer registered for the snapshots, see
+	 * QSim.getNonNetworkAgentSnapshots(), so nothing is allocated for it if there is none.
+	 */
 	private final LinkedHashMap<Id<Person>, TeleportationVisData> teleportationData = new LinkedHashMap<>();
+	private boolean creatingVisData = false;
 	private InternalInterface internalInterface;
 	private Scenario scenario;
 	private EventsManager eventsManager;
@@ -74,9 +78,18 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 		}
     	
 		double arrivalTime = now + travelTime ;
-		this.teleportationList.add(new Tuple<>(arrivalTime, agent));
+		this.teleportationList.add(agent, arrivalTime);
 		
 		// === below here is only visualization, no dynamics ===
+		if (!this.creatingVisData) {
+			return true;
+		}
+		addVisData(now, agent, linkId, travelTime);
+		
+		return true;
+	}
+
+	private void addVisData(double now, MobsimAgent agent, Id<Link> linkId, double travelTime) {
 		Id<Person> agentId = agent.getId();
 		Link currLink = this.scenario .getNetwork().getLinks().get(linkId);
 		Link destLink = this.scenario .getNetwork().getLinks().get(agent.getDestinationLinkId());
@@ -84,8 +97,21 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 		Coord toCoord = destLink.getToNode().getCoord();
 		TeleportationVisData agentInfo = new TeleportationVisData(now, agentId, fromCoord, toCoord, travelTime);
 		this.teleportationData.put(agentId, agentInfo);
-		
-		return true;
+	}
+
+	/**
+	 * Starts to create the vis data of the teleported agents, for a visualizer that registered for the snapshots.
+	 * Agents that are already teleporting are shown from where they are now, since the time of their
+	 * departure is not kept.
+	 */
+	/*package*/ void createVisData() {
+		if (this.creatingVisData) {
+			return;
+		}
+		this.creatingVisData = true;
+		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
+		this.teleportationList.forEach((agent, arrivalTime) ->
+			addVisData(now, agent, agent.getCurrentLinkId(), Math.max(arrivalTime - now, 0.)));
 	}
 
 	@Override
@@ -105,21 +131,17 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 
 	private void handleTeleportationArrivals() {
 		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
-		while (teleportationList.peek() != null) {
-			Tuple<Double, MobsimAgent> entry = teleportationList.peek();
-			if (entry.getFirst() <= now) {
-				teleportationList.poll();
-				MobsimAgent personAgent = entry.getSecond();
-				personAgent.notifyArrivalOnLinkByNonNetworkMode(personAgent
-						.getDestinationLinkId());
-				double distance = personAgent.getExpectedTravelDistance();
-				this.eventsManager.processEvent(new TeleportationArrivalEvent(this.internalInterface.getMobsim().getSimTimer().getTimeOfDay(), personAgent.getId(), distance));
-				personAgent.endLegAndComputeNextState(now);
+		MobsimAgent personAgent;
+		while ((personAgent = teleportationList.poll(now)) != null) {
+			personAgent.notifyArrivalOnLinkByNonNetworkMode(personAgent
+					.getDestinationLinkId());
+			double distance = personAgent.getExpectedTravelDistance();
+			this.eventsManager.processEvent(new TeleportationArrivalEvent(this.internalInterface.getMobsim().getSimTimer().getTimeOfDay(), personAgent.getId(), distance));
+			personAgent.endLegAndComputeNextState(now);
+			if (this.creatingVisData) {
 				this.teleportationData.remove(personAgent.getId());
-				internalInterface.arrangeNextAgentState(personAgent);
-			} else {
-				break;
 			}
+			internalInterface.arrangeNextAgentState(personAgent);
 		}
 	}
 
@@ -131,13 +153,37 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 	@Override
 	public void afterSim() {
 		double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
-		for (Tuple<Double, MobsimAgent> entry : teleportationList) {
-			MobsimAgent agent = entry.getSecond();
-			eventsManager.processEvent(new PersonStuckEvent(now, agent.getId(), agent.getDestinationLinkId(), agent.getMode()));
-		}
+		teleportationList.forEach((agent, arrivalTime) ->
+			eventsManager.processEvent(new PersonStuckEvent(now, agent.getId(), agent.getDestinationLinkId(), agent.getMode())));
 		teleportationList.clear();
 	}
 
+	/**
+	 * Writes the agents with their arrival times.  The vis data is not written; it is created again for agents that
+	 * depart after the restart.
+	 */
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(teleportationList.size());
+		teleportationList.forEach((agent, arrivalTime) -> {
+			try {
+				out.writeUTF(agent.getId().toString());
+				out.writeDouble(arrivalTime);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Override
+	public void readCheckpoint(DataInput in) throws IOException {
+		Map<Id<Person>, MobsimAgent> agents = ((QSim) internalInterface.getMobsim()).getAgents();
+		for (int i = in.readInt(); i > 0; i--) {
+			MobsimAgent agent = agents.get(Id.createPersonId(in.readUTF()));
+			teleportationList.add(agent, in.readDouble());
+		}
+	}
+
 	@Override
 	public void setInternalInterface(InternalInterface internalInterface) {
 		this.internalInterface = internalInterface;
@@ -32,6 +32,7 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.EndtimeInterpretation;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.gbl.Gbl;
+import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
@@ -41,9 +42,9 @@ import org.matsim.core.mobsim.qsim.interfaces.*;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.pt.TransitQSimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.NetsimEngine;
-import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
 import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
@@ -55,9 +56,15 @@ import org.matsim.withinday.mobsim.WithinDayEngine;
 import com.google.inject.Injector;
 
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This has developed over the last couple of months/years towards an increasingly pluggable module.  The current (dec'2011)
@@ -122,15 +129,13 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	private final Map<Id<Vehicle>,MobsimVehicle> vehicles = new LinkedHashMap<>() ;
 	private final List<AgentSource> agentSources = new ArrayList<>();
 
-	// for detailed run time analysis
-	public static boolean analyzeRunTimes = false;
-	private long startTime = 0;
-	private long qSimInternalTime = 0;
-	private final Map<MobsimEngine, AtomicLong> mobsimEngineRunTimes;
-	{
-		if (analyzeRunTimes) this.mobsimEngineRunTimes = new HashMap<>();
-		else this.mobsimEngineRunTimes = null;
-	}
+	// for detailed run time analysis, see QSimConfigGroup.getProfilingTimeBinSize()
+	private final QSimProfiler profiler;
+	private QSimProfiler.ComponentTimes qsimTimes = null;
+	private boolean countingEventsForProfiler = false;
+	private final Map<MobsimEngine, QSimProfiler.ComponentTimes> mobsimEngineTimes = new HashMap<>();
+	private String profilingTimingsFilename = null;
+	private String profilingStatesFilename = null;
 
 	/*package (for tests)*/ final InternalInterface internalInterface = new InternalInterface() {
 
@@ -176,6 +181,11 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 
 	private Collection<AgentTracker> agentTrackers = new ArrayList<>() ;
 
+	private static final int CHECKPOINT_VERSION = 1;
+	private final Set<Double> checkpointTimes = new HashSet<>();
+	private QSimCheckpointWriter checkpointWriter = null;
+	private final Set<Class<?>> notCheckpointableEngines = new HashSet<>();
+
 	private Injector childInjector;
 
 	@Override
@@ -206,7 +216,13 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		this.listenerManager = new MobsimListenerManager(this);
 		this.agentCounter = new org.matsim.core.mobsim.qsim.AgentCounter();
 		this.simTimer = new MobsimTimer(sc.getConfig().qsim().getTimeStepSize());
-		
+		this.checkpointTimes.addAll(sc.getConfig().qsim().getCheckpointTimes());
+		if (sc.getConfig().qsim().getProfilingTimeBinSize() > 0) {
+			this.profiler = new QSimProfiler(sc.getConfig().qsim().getProfilingTimeBinSize());
+			this.qsimTimes = this.profiler.registerComponent("QSim");
+		} else {
+			this.profiler = null;
+		}
 	}
 
 	// ============================================================================================================================
@@ -228,8 +244,14 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 			// (can be located somewhere) before you execute a sim step.
 			// Agents can abort in this loop already, so we iterate over
 			// a defensive copy of the agent collection.
-			for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
-				arrangeNextAgentAction(agent);
+			String checkpointFile = this.scenario.getConfig().qsim().getRestartingFromCheckpoint();
+			if (checkpointFile != null) {
+				// the agents and engines continue from where they were at the checkpoint instead
+				readCheckpoint(checkpointFile);
+			} else {
+				for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
+					arrangeNextAgentAction(agent);
+				}
 			}
 
 			// do iterations
@@ -252,6 +274,14 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	 * Prepare the simulation and get all the settings from the configuration.
 	 */
 	/*package*/ void prepareSim() {
+		if (this.profiler != null) {
+			try {
+				events.addHandler(this.profiler);
+				this.countingEventsForProfiler = true;
+			} catch (RuntimeException e) {
+				log.warn("cannot count the events for the profiling with this events manager: " + e.getMessage());
+			}
+		}
 		events.initProcessing();
 
 		createAgents();
@@ -265,6 +295,10 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
 			mobsimEngine.onPrepareSim();
 		}
+
+		if (!this.checkpointTimes.isEmpty()) {
+			this.checkpointWriter = new QSimCheckpointWriter();
+		}
 	}
 
 	private void createAgents() {
@@ -304,6 +338,11 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	void cleanupSim() {
 		this.listenerManager.fireQueueSimulationBeforeCleanupEvent();
 
+		if (this.checkpointWriter != null) {
+			this.checkpointWriter.close();
+			this.checkpointWriter = null;
+		}
+
 		boolean gotException = false;
 		for (MobsimEngine mobsimEngine : mobsimEngines) {
 			try {
@@ -317,63 +356,78 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 
 		if (gotException) throw new RuntimeException( "got exception while cleaning up the QSim. Please check the error messages above for details.");
 		events.finishProcessing();
-		if (analyzeRunTimes) {
-			log.info("qsim internal cpu time (nanos): " + qSimInternalTime);
-			for (Entry<MobsimEngine, AtomicLong> entry : this.mobsimEngineRunTimes.entrySet()) {
-				log.info(entry.getKey().getClass().toString() + " cpu time (nanos): " + entry.getValue().get());				
+		if (this.countingEventsForProfiler) {
+			events.removeHandler(this.profiler);
+			this.countingEventsForProfiler = false;
+		}
+		if (this.profiler != null) {
+			for (QSimProfiler.ComponentTimes times : this.profiler.getComponents()) {
+				log.info(times.getName() + " wall-clock time (ms): " + times.getTotalNanos() / 1000000);
 			}
-			log.info("");
-			if ( this.netEngine instanceof QNetsimEngine ) {
-				((QNetsimEngine)this.netEngine).printEngineRunTimes();
-				// (yy should somehow be in afterSim()).
+			if (this.profilingTimingsFilename != null) {
+				this.profiler.writeTimings(this.profilingTimingsFilename);
+			}
+			if (this.profilingStatesFilename != null) {
+				this.profiler.writeStates(this.profilingStatesFilename, this.qsimTimes);
 			}
 		}
 	}
 
+	/**
+	 * @return the times, agent states and events recorded during the run of the qsim, or <code>null</code> if
+	 * {@link QSimConfigGroup#getProfilingTimeBinSize()} is 0.
+	 */
+	public QSimProfiler getProfiler() {
+		return this.profiler;
+	}
+
+	/*package*/ void setProfilingOutputFilenames(final String timingsFilename, final String statesFilename) {
+		this.profilingTimingsFilename = timingsFilename;
+		this.profilingStatesFilename = statesFilename;
+	}
+
 	/**
 	 * Do one step of the simulation run.
 	 *
 	 * @return true if the simulation needs to continue
 	 */
 	/*package*/ boolean doSimStep() {
-		if (analyzeRunTimes) this.startTime = System.nanoTime();
-
 		final double now = this.getSimTimer().getTimeOfDay();
 
+		long stepStartTime = 0;
+		if (this.profiler != null) {
+			this.profiler.recordAgentStates(now, this.agents.values(), this.agentCounter);
+			stepStartTime = System.nanoTime();
+		}
+
 		this.listenerManager.fireQueueSimulationBeforeSimStepEvent(now);
 		
-		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
-		
 		/*
 		 * The WithinDayEngine has to perform its replannings before
 		 * the other engines simulate the sim step.
 		 */
 		if (this.withindayEngine != null) {
-			if (analyzeRunTimes) startTime = System.nanoTime();
-			this.withindayEngine.doSimStep(now);
-			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(this.withindayEngine).addAndGet(System.nanoTime() - this.startTime);
+			doEngineSimStep(this.withindayEngine, now);
 		}
 
 		// "added" engines
 		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
-			if (analyzeRunTimes) this.startTime = System.nanoTime();
-			
 			// withindayEngine.doSimStep(time) has already been called
 			if (mobsimEngine == this.withindayEngine) continue;
 
-			mobsimEngine.doSimStep(now);
-			
-			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(mobsimEngine).addAndGet(System.nanoTime() - this.startTime);
+			doEngineSimStep(mobsimEngine, now);
 		}
 
-		if (analyzeRunTimes) this.startTime = System.nanoTime();
-		
 		// console printout:
 		this.printSimLog(now);
 		boolean doContinue =  (this.agentCounter.isLiving() && (this.stopTime > now));
 		this.events.afterSimStep(now);
 		this.listenerManager.fireQueueSimulationAfterSimStepEvent(now);
 
+		if (this.checkpointTimes.contains(now)) {
+			writeCheckpoint(now);
+		}
+
 		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
 		if ( qsimConfigGroup.getSimEndtimeInterpretation()==EndtimeInterpretation.onlyUseEndtime ) {
 			if ( now > qsimConfigGroup.getEndTime() ) {
@@ -387,11 +441,152 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 			this.simTimer.incrementTime();
 		}
 		
-		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
+		if (this.profiler != null) {
+			this.qsimTimes.record(now, System.nanoTime() - stepStartTime);
+		}
 
 		return doContinue;
 	}
 
+	private void doEngineSimStep(final MobsimEngine mobsimEngine, final double now) {
+		if (this.profiler == null) {
+			mobsimEngine.doSimStep(now);
+		} else {
+			long startTime = System.nanoTime();
+			mobsimEngine.doSimStep(now);
+			this.mobsimEngineTimes.get(mobsimEngine).record(now, System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Copies the state of the simulation at the end of the current time step into memory, and hands it to the
+	 * {@link QSimCheckpointWriter}, so that the simulation can go on while the checkpoint is compressed and written.
+	 * If the state cannot be written, e.g. because it contains transit vehicles at a stop, the simulation goes on
+	 * without the checkpoint.
+	 * <br>
+	 * The checkpoint contains the state of the global random number generator, the agents, and every engine that
+	 * is {@link Checkpointable}, each as the name of its class, the number of bytes and its state.
+	 */
+	private void writeCheckpoint(final double now) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeDouble(now);
+			MatsimRandom.writeState(out);
+			out.writeInt(this.agentCounter.getLiving());
+			out.writeInt(this.agentCounter.getLost());
+
+			out.writeInt(this.agents.size());
+			for (MobsimAgent agent : this.agents.values()) {
+				if (!(agent instanceof Checkpointable)) {
+					throw new UnsupportedOperationException("agents of type " + agent.getClass().getName() + " cannot be written to a checkpoint.");
+				}
+				out.writeUTF(agent.getId().toString());
+				((Checkpointable) agent).writeCheckpoint(out);
+			}
+
+			List<MobsimEngine> checkpointableEngines = new ArrayList<>();
+			for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+				if (mobsimEngine instanceof Checkpointable) {
+					checkpointableEngines.add(mobsimEngine);
+				} else if (this.notCheckpointableEngines.add(mobsimEngine.getClass())) {
+					log.warn("the state of " + mobsimEngine.getClass().getName() + " is not written to the checkpoints.  After a restart, "
+							+ "it starts from its initial state.");
+				}
+			}
+			out.writeInt(checkpointableEngines.size());
+			ByteArrayOutputStream engineBytes = new ByteArrayOutputStream();
+			for (MobsimEngine mobsimEngine : checkpointableEngines) {
+				engineBytes.reset();
+				((Checkpointable) mobsimEngine).writeCheckpoint(new DataOutputStream(engineBytes));
+				out.writeUTF(mobsimEngine.getClass().getName());
+				out.writeInt(engineBytes.size());
+				engineBytes.writeTo(out);
+			}
+			out.flush();
+		} catch (IOException | RuntimeException e) {
+			log.error("could not write the checkpoint at " + Time.writeTime(now) + ".  Continuing without it.", e);
+			return;
+		}
+
+		QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
+		String directory = qsimConfigGroup.getCheckpointDirectory() != null ? qsimConfigGroup.getCheckpointDirectory()
+				: this.scenario.getConfig().controler().getOutputDirectory();
+		new File(directory).mkdirs();
+		this.checkpointWriter.write(new File(directory, "checkpoint_" + (long) now + ".bin.gz").getPath(), bytes.toByteArray());
+	}
+
+	/**
+	 * Restores the state written by {@link #writeCheckpoint(double)}.  Needs to be called after the simulation is
+	 * prepared, i.e. all agents and vehicles are created, but before the agents are handed to the engines.  The
+	 * simulation then continues with the time step after the one of the checkpoint.
+	 */
+	private void readCheckpoint(final String filename) {
+		log.info("restarting from checkpoint " + filename);
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			DataInputStream in = new DataInputStream(stream);
+			int version = in.readInt();
+			if (version != CHECKPOINT_VERSION) {
+				throw new RuntimeException("checkpoint " + filename + " has version " + version + ", but only version "
+						+ CHECKPOINT_VERSION + " can be read.");
+			}
+			double now = in.readDouble();
+			this.simTimer.setTime(now);
+			this.infoTime = Math.floor(now / INFO_PERIOD) * INFO_PERIOD;
+			MatsimRandom.readState(in);
+			this.agentCounter.setLiving(in.readInt());
+			this.agentCounter.setLost(in.readInt());
+
+			Set<Id<Person>> remainingAgentIds = new HashSet<>();
+			for (int i = in.readInt(); i > 0; i--) {
+				Id<Person> agentId = Id.createPersonId(in.readUTF());
+				MobsimAgent agent = this.agents.get(agentId);
+				if (!(agent instanceof Checkpointable)) {
+					throw new RuntimeException("agent " + agentId + " of the checkpoint is not in the mobsim or cannot read a checkpoint.");
+				}
+				((Checkpointable) agent).readCheckpoint(in);
+				remainingAgentIds.add(agentId);
+			}
+			// the agents that are missing had been removed since they were stuck
+			this.agents.keySet().retainAll(remainingAgentIds);
+
+			Set<MobsimEngine> restoredEngines = new HashSet<>();
+			for (int i = in.readInt(); i > 0; i--) {
+				String engineClass = in.readUTF();
+				byte[] engineBytes = new byte[in.readInt()];
+				in.readFully(engineBytes);
+				MobsimEngine mobsimEngine = null;
+				for (MobsimEngine candidate : this.mobsimEngines) {
+					if (candidate instanceof Checkpointable && candidate.getClass().getName().equals(engineClass)
+							&& !restoredEngines.contains(candidate)) {
+						mobsimEngine = candidate;
+						break;
+					}
+				}
+				if (mobsimEngine == null) {
+					log.warn("the checkpoint contains the state of " + engineClass + ", but there is no such engine in the mobsim.  Ignoring it.");
+					continue;
+				}
+				ByteArrayInputStream engineStream = new ByteArrayInputStream(engineBytes);
+				((Checkpointable) mobsimEngine).readCheckpoint(new DataInputStream(engineStream));
+				if (engineStream.available() > 0) {
+					throw new RuntimeException(engineClass + " did not read its whole state from the checkpoint.");
+				}
+				restoredEngines.add(mobsimEngine);
+			}
+			for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+				if (!restoredEngines.contains(mobsimEngine)) {
+					log.warn("the state of " + mobsimEngine.getClass().getName() + " is not in the checkpoint.  It starts from its initial state.");
+				}
+			}
+
+			this.simTimer.incrementTime();
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read checkpoint " + filename, e);
+		}
+	}
+
 	public void insertAgentIntoMobsim(final MobsimAgent agent) {
 		if (this.agents.containsKey(agent.getId())) {
 			throw new RuntimeException("Agent with same Id (" + agent.getId().toString() + ") already in mobsim; aborting ... ") ;
@@ -571,7 +766,10 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		mobsimEngine.setInternalInterface(this.internalInterface);
 		this.mobsimEngines.add(mobsimEngine);
 		
-		if (analyzeRunTimes) this.mobsimEngineRunTimes.put(mobsimEngine, new AtomicLong());
+		if (this.profiler != null) {
+			String name = mobsimEngine.getClass().getSimpleName();
+			this.mobsimEngineTimes.put(mobsimEngine, this.profiler.registerComponent(name.isEmpty() ? mobsimEngine.getClass().getName() : name));
+		}
 	}
 
 	@Override
@@ -623,8 +821,17 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		this.agentSources.add(agentSource);
 	}
 
+	/**
+	 * Registers for the snapshots of the agents that are not on the network.  Their vis data is only created from
+	 * then on.
+	 */
 	@Override
 	public VisData getNonNetworkAgentSnapshots() {
+		for (MobsimEngine mobsimEngine : mobsimEngines) {
+			if (mobsimEngine instanceof DefaultTeleportationEngine) {
+				((DefaultTeleportationEngine) mobsimEngine).createVisData();
+			}
+		}
 		return new VisData() {
 
 			@Override
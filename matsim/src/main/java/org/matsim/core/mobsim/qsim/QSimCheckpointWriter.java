@@ -0,0 +1,75 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimCheckpointWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Compresses and writes the checkpoints of the QSim in a background thread, so that the simulation only waits
+ * for the state to be copied into memory.  The checkpoints are written one after the other.
+ *
+ * @author agent
+ */
+final class QSimCheckpointWriter {
+
+	private static final Logger log = Logger.getLogger(QSimCheckpointWriter.class);
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "QSimCheckpointWriter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	void write(final String filename, final byte[] checkpoint) {
+		this.executor.execute(() -> {
+			try (OutputStream out = IOUtils.getOutputStream(filename)) {
+				out.write(checkpoint);
+				log.info("wrote checkpoint " + filename);
+			} catch (IOException | UncheckedIOException e) {
+				// a checkpoint that cannot be written should not stop the simulation
+				log.error("could not write checkpoint " + filename, e);
+			}
+		});
+	}
+
+	/**
+	 * Waits until all checkpoints are written.
+	 */
+	void close() {
+		this.executor.shutdown();
+		try {
+			while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.info("waiting for the checkpoints to be written...");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,331 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimProfiler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Records where the QSim spends its time, per time bin of the simulated day:
+ * <ul>
+ * <li> the wall-clock time of every sim step of every registered component, e.g. the QSim as a whole, each
+ * {@link org.matsim.core.mobsim.qsim.interfaces.MobsimEngine MobsimEngine} and each runner of the netsim engine,
+ * as a {@link TimingHistogram};
+ * <li> the number of agents in each {@link MobsimAgent.State}, at the first sim step of the time bin;
+ * <li> the number of events, by the time of the event.
+ * </ul>
+ * Switched on with {@link org.matsim.core.config.groups.QSimConfigGroup#setProfilingTimeBinSize(double)}, see
+ * {@link QSim#getProfiler()}.
+ *
+ * @author agent
+ */
+public final class QSimProfiler implements BasicEventHandler {
+
+	private final double binSize;
+
+	private final List<ComponentTimes> components = new ArrayList<>();
+	private final Set<String> componentNames = new HashSet<>();
+
+	private static final int NUMBER_OF_STATES = MobsimAgent.State.values().length;
+	/* per bin: the number of agents per state, the number of living and the number of lost agents,
+	 * or null if the bin had no sim step */
+	private long[][] agentStates = new long[0][];
+	private long[] eventCounts = new long[0];
+
+	public QSimProfiler(final double binSize) {
+		if (binSize <= 0) {
+			throw new IllegalArgumentException("the time bin size must be positive, but is " + binSize);
+		}
+		this.binSize = binSize;
+	}
+
+	public double getBinSize() {
+		return this.binSize;
+	}
+
+	/**
+	 * Registers a component whose sim steps are timed.  If the name is already used, a number is appended.
+	 * The returned times must only be recorded by one thread at a time.
+	 */
+	public synchronized ComponentTimes registerComponent(final String name) {
+		String uniqueName = name;
+		for (int i = 2; !this.componentNames.add(uniqueName); i++) {
+			uniqueName = name + "_" + i;
+		}
+		ComponentTimes times = new ComponentTimes(uniqueName, this);
+		this.components.add(times);
+		return times;
+	}
+
+	public synchronized List<ComponentTimes> getComponents() {
+		return Collections.unmodifiableList(new ArrayList<>(this.components));
+	}
+
+	/*package*/ int getBin(final double time) {
+		return Math.max(0, (int) (time / this.binSize));
+	}
+
+	/*package*/ void recordAgentStates(final double now, final Collection<MobsimAgent> agents, final AgentCounter agentCounter) {
+		int bin = getBin(now);
+		if (bin >= this.agentStates.length) {
+			this.agentStates = Arrays.copyOf(this.agentStates, bin + 1);
+		}
+		if (this.agentStates[bin] != null) {
+			return;
+		}
+		long[] counts = new long[NUMBER_OF_STATES + 2];
+		for (MobsimAgent agent : agents) {
+			MobsimAgent.State state = agent.getState();
+			if (state != null) {
+				counts[state.ordinal()]++;
+			}
+		}
+		counts[NUMBER_OF_STATES] = agentCounter.getLiving();
+		counts[NUMBER_OF_STATES + 1] = agentCounter.getLost();
+		this.agentStates[bin] = counts;
+	}
+
+	/**
+	 * @return the number of agents per {@link MobsimAgent.State} at the first sim step of the time bin, or
+	 * <code>null</code> if there was no sim step in the time bin.
+	 */
+	public long[] getAgentStates(final int bin) {
+		return bin < this.agentStates.length && this.agentStates[bin] != null
+				? Arrays.copyOf(this.agentStates[bin], NUMBER_OF_STATES) : null;
+	}
+
+	public long getEventCount(final int bin) {
+		return bin < this.eventCounts.length ? this.eventCounts[bin] : 0;
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		int bin = getBin(event.getTime());
+		if (bin >= this.eventCounts.length) {
+			this.eventCounts = Arrays.copyOf(this.eventCounts, Math.max(bin + 1, 2 * this.eventCounts.length));
+		}
+		this.eventCounts[bin]++;
+	}
+
+	@Override
+	public void reset(final int iteration) {
+		// the profiler is created anew for every run of the qsim
+	}
+
+	/**
+	 * Writes one line per time bin and component with the number of sim steps, the total time in milliseconds,
+	 * and the mean, median, 90th and 99th percentile and maximum of the time per sim step in microseconds.
+	 */
+	public void writeTimings(final String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("time;component;steps;total_ms;mean_us;p50_us;p90_us;p99_us;max_us");
+			writer.newLine();
+			List<ComponentTimes> components = getComponents();
+			int numberOfBins = 0;
+			for (ComponentTimes times : components) {
+				numberOfBins = Math.max(numberOfBins, times.getNumberOfBins());
+			}
+			for (int bin = 0; bin < numberOfBins; bin++) {
+				for (ComponentTimes times : components) {
+					TimingHistogram histogram = times.getHistogram(bin);
+					if (histogram == null) {
+						continue;
+					}
+					writer.write(Time.writeTime(bin * this.binSize) + ";" + times.getName() + ";" + histogram.getCount()
+							+ ";" + histogram.getTotal() / 1000000 + ";" + histogram.getTotal() / histogram.getCount() / 1000
+							+ ";" + histogram.getValueAtPercentile(50) / 1000 + ";" + histogram.getValueAtPercentile(90) / 1000
+							+ ";" + histogram.getValueAtPercentile(99) / 1000 + ";" + histogram.getMax() / 1000);
+					writer.newLine();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes one line per time bin with the number of agents per state, of living and lost agents, the number
+	 * of events, and the number of events per second of wall-clock time of the given component, typically the
+	 * QSim as a whole.
+	 */
+	public void writeStates(final String filename, final ComponentTimes throughputComponent) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("time");
+			for (MobsimAgent.State state : MobsimAgent.State.values()) {
+				writer.write(";" + state);
+			}
+			writer.write(";living;lost;events;events_per_s");
+			writer.newLine();
+			int numberOfBins = Math.max(this.agentStates.length, throughputComponent.getNumberOfBins());
+			for (int bin = 0; bin < numberOfBins; bin++) {
+				long[] counts = bin < this.agentStates.length ? this.agentStates[bin] : null;
+				if (counts == null) {
+					continue;
+				}
+				writer.write(Time.writeTime(bin * this.binSize));
+				for (long count : counts) {
+					writer.write(";" + count);
+				}
+				TimingHistogram histogram = throughputComponent.getHistogram(bin);
+				long events = getEventCount(bin);
+				long eventsPerSecond = histogram == null || histogram.getTotal() == 0 ? 0 : events * 1000000000L / histogram.getTotal();
+				writer.write(";" + events + ";" + eventsPerSecond);
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The times of the sim steps of one component, per time bin.
+	 */
+	public static final class ComponentTimes {
+
+		private final String name;
+		private final QSimProfiler profiler;
+		private TimingHistogram[] bins = new TimingHistogram[0];
+		private long totalNanos = 0;
+
+		private ComponentTimes(final String name, final QSimProfiler profiler) {
+			this.name = name;
+			this.profiler = profiler;
+		}
+
+		public void record(final double now, final long nanos) {
+			int bin = this.profiler.getBin(now);
+			if (bin >= this.bins.length) {
+				this.bins = Arrays.copyOf(this.bins, bin + 1);
+			}
+			if (this.bins[bin] == null) {
+				this.bins[bin] = new TimingHistogram();
+			}
+			this.bins[bin].record(nanos);
+			this.totalNanos += nanos;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getNumberOfBins() {
+			return this.bins.length;
+		}
+
+		/**
+		 * @return the times of the sim steps in the time bin, or <code>null</code> if none was recorded.
+		 */
+		public TimingHistogram getHistogram(final int bin) {
+			return bin < this.bins.length ? this.bins[bin] : null;
+		}
+
+		public long getTotalNanos() {
+			return this.totalNanos;
+		}
+	}
+
+	/**
+	 * A histogram of times in nanoseconds, with a fixed number of buckets like the HdrHistogram: values are
+	 * counted in 8 buckets per power of two, i.e. the percentiles are precise to 12.5%, however large the
+	 * values are.
+	 */
+	public static final class TimingHistogram {
+
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+		private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS];
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		void record(final long nanos) {
+			long value = Math.max(0, nanos);
+			this.counts[bucket(value)]++;
+			this.count++;
+			this.total += value;
+			if (value > this.max) {
+				this.max = value;
+			}
+		}
+
+		private static int bucket(final long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+			return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+		}
+
+		private static long highestValueInBucket(final int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+			long subBucket = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+			return ((subBucket + 1) << shift) - 1;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getTotal() {
+			return this.total;
+		}
+
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * @return the highest value of the bucket in which the percentile falls, but at most the maximum value.
+		 */
+		public long getValueAtPercentile(final double percentile) {
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.count));
+			long cumulative = 0;
+			for (int bucket = 0; bucket < this.counts.length; bucket++) {
+				cumulative += this.counts[bucket];
+				if (cumulative >= rank) {
+					return Math.min(highestValueInBucket(bucket), this.max);
+				}
+			}
+			return this.max;
+		}
+	}
+
+}
@@ -30,6 +30,7 @@ import com.google.inject.Inject;
 import org.apache.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.IterationCounter;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.mobsim.qsim.components.NamedComponentUtils;
@@ -53,6 +54,7 @@ public class QSimProvider implements Provider<QSim> {
 	private List<AbstractQSimModule> overridingModules;
 	private QSimComponents components;
 	@Inject(optional=true) private IterationCounter iterationCounter;
+	@Inject(optional=true) private OutputDirectoryHierarchy controlerIO;
 	
 	@Inject
 	QSimProvider(Injector injector, Config config, Collection<AbstractQSimModule> modules,
@@ -86,6 +88,11 @@ public class QSimProvider implements Provider<QSim> {
 			org.matsim.core.controler.Injector.printInjector( qsimInjector, log );
 		}
 		QSim qSim = qsimInjector.getInstance(QSim.class);
+		if ( qSim.getProfiler() != null && iterationCounter != null && controlerIO != null ) {
+			int iteration = iterationCounter.getIterationNumber();
+			qSim.setProfilingOutputFilenames(controlerIO.getIterationFilename(iteration, "qsimTimings.csv"),
+					controlerIO.getIterationFilename(iteration, "qsimStates.csv"));
+		}
 
 		ComponentRegistry<MobsimEngine> mobsimEngineRegistry = new ComponentRegistry<>("MobsimEngine");
 		ComponentRegistry<ActivityHandler> activityHandlerRegistry = new ComponentRegistry<>("ActivityHandler");
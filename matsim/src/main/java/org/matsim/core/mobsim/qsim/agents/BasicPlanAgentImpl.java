@@ -1,5 +1,8 @@
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +30,7 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.PlanAgent;
 import org.matsim.core.mobsim.framework.VehicleUsingAgent;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.interfaces.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -37,7 +41,7 @@ import org.matsim.facilities.ActivityOption;
 import org.matsim.facilities.Facility;
 import org.matsim.vehicles.Vehicle;
 
-public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPerson, VehicleUsingAgent, HasModifiablePlan {
+public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPerson, VehicleUsingAgent, HasModifiablePlan, Checkpointable {
 	
 	private static final Logger log = Logger.getLogger(BasicPlanAgentImpl.class);
 	private static int finalActHasDpTimeWrnCnt = 0;
@@ -188,6 +192,31 @@ public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPers
 		}
 	}
 
+	/**
+	 * Writes how far the agent has advanced in its plan.  The plan itself is not written, so the agent needs to
+	 * execute the same plan after a restart.  The vehicle is set by the engine that moves it.
+	 */
+	@Override
+	public final void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(this.currentPlanElementIndex);
+		out.writeDouble(this.activityEndTime);
+		out.writeByte(this.state.ordinal());
+		out.writeBoolean(this.currentLinkId != null);
+		if (this.currentLinkId != null) {
+			out.writeUTF(this.currentLinkId.toString());
+		}
+		out.writeInt(this.currentLinkIndex);
+	}
+
+	@Override
+	public final void readCheckpoint(DataInput in) throws IOException {
+		this.currentPlanElementIndex = in.readInt();
+		this.activityEndTime = in.readDouble();
+		this.state = MobsimAgent.State.values()[in.readByte()];
+		this.currentLinkId = in.readBoolean() ? Id.createLinkId(in.readUTF()) : null;
+		this.currentLinkIndex = in.readInt();
+	}
+
 	// ============================================================================
 	// (nearly) pure getters and setters below here
 	
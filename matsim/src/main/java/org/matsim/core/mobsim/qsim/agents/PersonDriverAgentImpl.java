@@ -20,6 +20,10 @@
 
 package org.matsim.core.mobsim.qsim.agents;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -28,6 +32,7 @@ import org.matsim.core.mobsim.framework.HasPerson;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
 import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.interfaces.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.population.PopulationUtils;
@@ -39,7 +44,7 @@ import org.matsim.vehicles.Vehicle;
  * <p></p>
  * I think this class is reasonable in terms of what is public and/or final and what not.
  */
-public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent, HasModifiablePlan {
+public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent, HasModifiablePlan, Checkpointable {
 	// yy cannot make this final since it is overridden at 65 locations
 	// (but since all methods are final, it seems that all of these could be solved by delegation).
 	// kai, nov'14
@@ -195,6 +200,17 @@ public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassenger
 		driverAgentDelegate.resetCaches(); 
 	}
 
+	@Override
+	public final void writeCheckpoint(DataOutput out) throws IOException {
+		// the driver delegate only caches the next link, which is computed again from the route when it is needed
+		basicAgentDelegate.writeCheckpoint(out);
+	}
+
+	@Override
+	public final void readCheckpoint(DataInput in) throws IOException {
+		basicAgentDelegate.readCheckpoint(in);
+	}
+
 	@Override
 	public Facility getCurrentFacility() {
 		return this.basicAgentDelegate.getCurrentFacility();
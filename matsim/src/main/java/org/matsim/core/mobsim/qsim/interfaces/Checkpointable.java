@@ -0,0 +1,46 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Checkpointable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.interfaces;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implemented by agents and {@link MobsimEngine}s whose state can be written to a checkpoint of the QSim,
+ * from which the QSim can be restarted.
+ * <ul>
+ * <li> The state is written at the end of a time step, after all engines did their step.
+ * <li> When restarting, the QSim is first prepared as usual, i.e. all agents and vehicles are created.  Then the agents
+ * read their state, and after that the engines, which thus can look up agents and vehicles by their id.
+ * </ul>
+ * Ids are written as Strings.  Implementations should throw an {@link UnsupportedOperationException} for state they
+ * cannot write.
+ *
+ * @author agent
+ */
+public interface Checkpointable {
+
+	void writeCheckpoint(DataOutput out) throws IOException;
+
+	void readCheckpoint(DataInput in) throws IOException;
+
+}
@@ -181,7 +181,10 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 		if (stop.getLinkId() == null || stop.getLinkId().equals(linkId)) {
 			double now = this.qSim.getSimTimer().getTimeOfDay();
 			this.agentTracker.addAgentToStop(now, (PTPassengerAgent) planAgent, stop.getId());
-			this.internalInterface.registerAdditionalAgentOnLink(planAgent) ;
+			if (!this.qSim.getScenario().getConfig().qsim().isHeadless()) {
+				// only needed for the visualization
+				this.internalInterface.registerAdditionalAgentOnLink(planAgent) ;
+			}
 		} else {
 			throw new TransitAgentTriesToTeleportException("Agent "+planAgent.getId() + " tries to enter a transit stop at link "+stop.getLinkId()+" but really is at "+linkId+"!");
 		}
@@ -19,6 +19,9 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -103,6 +106,24 @@ abstract class AbstractQLink implements QLinkI {
 
 	private boolean active = false;
 
+	/*
+	 * The link is not moved before this time, because none of its vehicles can reach the end of the link
+	 * earlier, see QSimConfigGroup.isUsingSleepingLinks().  Reset whenever the link is activated, since
+	 * then something (e.g. a vehicle entering or departing) happened on it.
+	 */
+	private double sleepingUntil = Double.NEGATIVE_INFINITY;
+
+	/*
+	 * Whether the link is taken out of the active links of its QNetsimEngineRunner until sleepingUntil.  The link
+	 * stays active meanwhile.
+	 */
+	private boolean sleeping = false;
+
+	/*
+	 * Set by the QNetsimEngineRunner when the link is activated, to put it back at its place when it wakes up.
+	 */
+	private long activationSequence = 0;
+
 	private TransitQLink transitQLink;
 	
 	private final QNodeI toQNode ;
@@ -133,7 +154,11 @@ abstract class AbstractQLink implements QLinkI {
 	 * seems ok as public interface function. kai, aug'15
 	 */
 	void activateLink() {
-		if (!this.active) {
+		this.sleepingUntil = Double.NEGATIVE_INFINITY;
+		if (this.sleeping) {
+			this.sleeping = false;
+			netElementActivationRegistry.wakeUpLink(this);
+		} else if (!this.active) {
 			netElementActivationRegistry.registerLinkAsActive(this);
 			this.active = true;
 		}
@@ -461,10 +486,83 @@ abstract class AbstractQLink implements QLinkI {
 		this.active = active;
 	}
 
+	double getSleepingUntil() {
+		return sleepingUntil;
+	}
+
+	void setSleepingUntil(double sleepingUntil) {
+		this.sleepingUntil = sleepingUntil;
+	}
+
+	boolean isSleeping() {
+		return sleeping;
+	}
+
+	void setSleeping(boolean sleeping) {
+		this.sleeping = sleeping;
+	}
+
+	long getActivationSequence() {
+		return activationSequence;
+	}
+
+	void setActivationSequence(long activationSequence) {
+		this.activationSequence = activationSequence;
+	}
+
 	Queue<QVehicle> getWaitingList() {
 		return waitingList;
 	}
 
+	/**
+	 * Writes the vehicles on this link for a checkpoint of the qsim.  Whether the link is active is written by the
+	 * {@link QNetsimEngine}, since the order of the active links matters.
+	 */
+	/*package*/ void writeCheckpoint(DataOutput out) throws IOException {
+		if ( !this.driversWaitingForCars.isEmpty() || !this.driversWaitingForPassengers.isEmpty() || !this.passengersWaitingForCars.isEmpty() ) {
+			throw new UnsupportedOperationException("agents are waiting for vehicles or passengers on link " + this.link.getId()
+					+ ", which cannot be written to a checkpoint.") ;
+		}
+		if ( this.transitQLink != null && !this.transitQLink.getTransitVehicleStopQueue().isEmpty() ) {
+			throw new UnsupportedOperationException("transit vehicles at stops cannot be written to a checkpoint.") ;
+		}
+		out.writeInt(this.parkedVehicles.size());
+		for (QVehicle veh : this.parkedVehicles.values()) {
+			veh.writeCheckpoint(out);
+		}
+		out.writeInt(this.waitingList.size());
+		for (QVehicle veh : this.waitingList) {
+			veh.writeCheckpoint(out);
+		}
+		out.writeDouble(this.sleepingUntil);
+		writeLanesCheckpoint(out);
+	}
+
+	/*package*/ void readCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		// the vehicles parked here when the qsim was prepared may be somewhere else by now
+		this.parkedVehicles.clear();
+		for (int i = in.readInt(); i > 0; i--) {
+			QVehicle veh = QVehicle.readCheckpoint(in, vehicles, agents);
+			this.parkedVehicles.put(veh.getId(), veh);
+			veh.setCurrentLink(this.link);
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			QVehicle veh = QVehicle.readCheckpoint(in, vehicles, agents);
+			this.waitingList.add(veh);
+			veh.setCurrentLink(this.link);
+		}
+		this.sleepingUntil = in.readDouble();
+		readLanesCheckpoint(in, vehicles, agents);
+	}
+
+	/*package*/ void writeLanesCheckpoint(DataOutput out) throws IOException {
+		throw new UnsupportedOperationException("links of type " + this.getClass().getName() + " cannot be written to a checkpoint.") ;
+	}
+
+	/*package*/ void readLanesCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		throw new UnsupportedOperationException("links of type " + this.getClass().getName() + " cannot be read from a checkpoint.") ;
+	}
+
 	TransitQLink getTransitQLink() {
 		return transitQLink;
 	}
@@ -30,5 +30,11 @@ abstract class NetElementActivationRegistry {
 	
 	abstract void registerLinkAsActive(final QLinkI link);
 
+	/**
+	 * Called instead of registerLinkAsActive(...) for a link that is still active, but was taken out of the
+	 * active links while sleeping.
+	 */
+	abstract void wakeUpLink(final AbstractQLink link);
+
 	abstract int getNumberOfSimulatedLinks();
 } 
\ No newline at end of file
@@ -20,14 +20,21 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -104,7 +111,8 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		// so that the caller can use references to the created roads to wire them together,
 		// if it must.
 		this.qlane = roadFactory.createLane(this);
-		this.visdata = this.new VisDataImpl() ; // instantiating this here and not earlier so we can cache some things
+		// instantiating this here and not earlier so we can cache some things:
+		this.visdata = context.qsimConfig.isHeadless() ? null : this.new VisDataImpl() ;
 		super.setTransitQLink( new TransitQLink(this.qlane) ) ;
 	}
 
@@ -117,6 +125,11 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 	@Override
 	public boolean doSimStep() {
 		double now = context.getSimTimer().getTimeOfDay() ;
+		if ( now < this.getSleepingUntil() ) {
+			// no vehicle can reach the end of the link before, and nothing entered it since (e.g. right after a restart
+			// from a checkpoint); the runner takes the link out of its active links until then:
+			return false ;
+		}
 		qlane.initBeforeSimStep();
 		
 		if ( context.qsimConfig.isInsertingWaitingVehiclesBeforeDrivingVehicles() ) {
@@ -129,6 +142,13 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 			this.moveWaitToRoad();
 		}
 		this.setActive(this.checkForActivity());
+		if ( context.qsimConfig.isUsingSleepingLinks() && isActive() ) {
+			this.setSleepingUntil( this.getEarliestNextActionTime() );
+			if ( now < this.getSleepingUntil() ) {
+				// the link stays active, but the runner takes it out of its active links until it wakes up:
+				return false ;
+			}
+		}
 		return isActive();
 		// yy seems to me that for symmetry there should be something like
 		// 			netElementActivationRegistry.registerLinkAsActive(this);
@@ -167,6 +187,24 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		}
 	}
 
+	@Override
+	void writeLanesCheckpoint(DataOutput out) throws IOException {
+		if ( qlane instanceof QueueWithBuffer ) {
+			((QueueWithBuffer) qlane).writeCheckpoint(out);
+		} else {
+			super.writeLanesCheckpoint(out);
+		}
+	}
+
+	@Override
+	void readLanesCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		if ( qlane instanceof QueueWithBuffer ) {
+			((QueueWithBuffer) qlane).readCheckpoint(in, vehicles, agents);
+		} else {
+			super.readLanesCheckpoint(in, vehicles, agents);
+		}
+	}
+
 	@Override
 	public boolean isNotOfferingVehicle() {
 		return qlane.isNotOfferingVehicle();
@@ -225,9 +263,25 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 	}
 
 	@Override public VisData getVisData() {
+		if (this.visdata == null) {
+			throw QSimConfigGroup.createHeadlessException();
+		}
 		return this.visdata;
 	}
 
+	/**
+	 * The links sleeping this way are taken out of the active links of their QNetsimEngineRunner until they wake up.
+	 * They are then put back at their former place, since the order in which the links are moved determines the
+	 * order of the events within a time step.
+	 */
+	private double getEarliestNextActionTime() {
+		if ( !this.getWaitingList().isEmpty() || !this.getTransitQLink().getTransitVehicleStopQueue().isEmpty()
+				|| !(qlane instanceof QueueWithBuffer) ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		return ((QueueWithBuffer) qlane).getEarliestNextActionTime() ;
+	}
+
 	private boolean checkForActivity() {
 		/*
 		 * Leave Link active as long as there are vehicles on the link (ignore
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
@@ -181,7 +182,7 @@ public final class QLinkLanesImpl extends AbstractQLink {
 															// downstream queues indexed by a
 															// downstream link
 		this.initLaneQueues();
-		this.visdata = this.new VisDataImpl();
+		this.visdata = context.qsimConfig.isHeadless() ? null : this.new VisDataImpl();
 		this.setTransitQLink(new TransitQLink(this.firstLaneQueue));
 	}
 
@@ -513,6 +514,9 @@ public final class QLinkLanesImpl extends AbstractQLink {
 
 	@Override
 	public VisData getVisData() {
+		if (this.visdata == null) {
+			throw QSimConfigGroup.createHeadlessException();
+		}
 		return this.visdata;
 	}
 
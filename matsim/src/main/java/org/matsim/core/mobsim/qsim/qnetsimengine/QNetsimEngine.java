@@ -25,11 +25,13 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NodeAssignment;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
@@ -40,6 +42,7 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.Checkpointable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
@@ -48,6 +51,9 @@ import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 
 import javax.inject.Inject;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -69,7 +75,7 @@ import java.util.concurrent.ThreadFactory;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine, NetsimEngine {
+public class QNetsimEngine implements MobsimEngine, NetsimEngine, Checkpointable {
 
 	public interface NetsimInternalInterface {
 		QNetwork getNetsimNetwork();
@@ -93,6 +99,8 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 
 	private static final int INFO_PERIOD = 3600;
 
+	private static final String NODE_LOADS = QNetsimEngine.class.getName() + ".nodeLoads";
+
 	private QNetwork network;
 
 	private final Map<Id<Vehicle>, QVehicle> vehicles = new HashMap<>();
@@ -120,10 +128,6 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 
 	private final boolean usingThreadpool;
 	
-	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
-	public static int numObservedTimeSteps = 24*3600;
-	public static boolean printRunTimesPerTimeStep = false;
-	
 	@Override
 	public void setInternalInterface( InternalInterface internalInterface) {
 		this.internalInterface = internalInterface;
@@ -197,6 +201,10 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	}
 
 	static AbstractAgentSnapshotInfoBuilder createAgentSnapshotInfoBuilder(Scenario scenario, SnapshotLinkWidthCalculator linkWidthCalculator) {
+		if (scenario.getConfig().qsim().isHeadless()) {
+			// there are no vis data that could use it
+			return null;
+		}
 		final SnapshotStyle snapshotStyle = scenario.getConfig().qsim().getSnapshotStyle();
 		switch(snapshotStyle) {
 		case queue:
@@ -259,6 +267,61 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		for (QLinkI link : network.getNetsimLinks().values()) {
 			link.clearVehicles();
 		}
+
+		collectNodeLoads();
+	}
+
+	/**
+	 * Writes the active nodes and links of every runner in the order in which they are moved, since this determines
+	 * the order of the events and of the random numbers drawn by the nodes, and then the vehicles on all links.
+	 */
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(this.engines.size());
+		for (QNetsimEngineRunner engine : this.engines) {
+			out.writeInt(engine.getActiveLinks().size());
+			for (QLinkI link : engine.getActiveLinks()) {
+				out.writeUTF(link.getLink().getId().toString());
+			}
+			out.writeInt(engine.getActiveNodes().size());
+			for (QNodeImpl node : engine.getActiveNodes()) {
+				out.writeUTF(node.getNode().getId().toString());
+			}
+		}
+		out.writeInt(network.getNetsimLinks().size());
+		for (QLinkI link : network.getNetsimLinks().values()) {
+			out.writeUTF(link.getLink().getId().toString());
+			((AbstractQLink) link).writeCheckpoint(out);
+		}
+	}
+
+	@Override
+	public void readCheckpoint(DataInput in) throws IOException {
+		int numberOfRunners = in.readInt();
+		if (numberOfRunners != this.engines.size()) {
+			log.warn("the checkpoint was written with " + numberOfRunners + " runners, but there are " + this.engines.size()
+					+ " now.  The simulation continues, but not in the same way as it would have without the restart.");
+		}
+		for (QNetsimEngineRunner engine : this.engines) {
+			engine.clearActiveNetElements();
+		}
+		for (QLinkI link : network.getNetsimLinks().values()) {
+			((AbstractQLink) link).setActive(false);
+		}
+		// every element is activated by its own runner, which keeps the order within the runners the same
+		for (int r = 0; r < numberOfRunners; r++) {
+			for (int i = in.readInt(); i > 0; i--) {
+				((AbstractQLink) network.getNetsimLink(Id.createLinkId(in.readUTF()))).activateLink();
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				((QNodeImpl) network.getNetsimNodes().get(Id.createNodeId(in.readUTF()))).activateNode();
+			}
+		}
+		Map<Id<Person>, MobsimAgent> agents = this.qsim.getAgents();
+		for (int i = in.readInt(); i > 0; i--) {
+			AbstractQLink link = (AbstractQLink) network.getNetsimLink(Id.createLinkId(in.readUTF()));
+			link.readCheckpoint(in, this.vehicles, agents);
+		}
 	}
 
 	/**
@@ -437,11 +500,13 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 
 		// setup threads
 		for (int i = 0; i < numOfRunners; i++) {
-			QNetsimEngineRunner engine ;
-			if (this.usingThreadpool) {
-				engine = new QNetsimEngineRunner();
-			} else {
-				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
+			boolean usingBarriers = !this.usingThreadpool;
+			QNetsimEngineRunner engine = usingBarriers ? new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier)
+					: new QNetsimEngineRunner();
+			if (this.qsim.getProfiler() != null) {
+				engine.setProfilerTimes(this.qsim.getProfiler().registerComponent("QNetsimEngineRunner_" + i));
+			}
+			if (usingBarriers) {
 				Thread thread = new Thread(engine);
 				thread.setName("QNetsimEngineRunner_" + i);
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
@@ -469,9 +534,12 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		int nodes[] = new int[numOfRunners];
 		int links[] = new int[numOfRunners];
 
-		int roundRobin = 0;
-		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+		List<QNodeI> netsimNodes = new ArrayList<>(network.getNetsimNodes().values());
+		int[] runners = assignRunners(netsimNodes);
+
+		for (int n = 0; n < netsimNodes.size(); n++) {
+			QNodeI node = netsimNodes.get(n);
+			int i = runners[n];
 			if ( node instanceof QNodeImpl ) {
 				((QNodeImpl) node).setNetElementActivationRegistry(this.engines.get(i));
 			}
@@ -497,8 +565,6 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 				links[i]++;
 
 			}
-
-			roundRobin++;
 		}
 
 		// print some statistics
@@ -509,54 +575,89 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		this.linksToActivateInitially.clear();
 	}
 
-	public void printEngineRunTimes() {
-		if (!QSim.analyzeRunTimes) return;
-		
-		if (printRunTimesPerTimeStep) log.info("detailed QNetsimEngineRunner run times per time step:");
-		{
-			StringBuffer sb = new StringBuffer();
-			sb.append("\t");
-			sb.append("time");
-			for (int i = 0; i < this.engines.size(); i++) {
-				sb.append("\t");
-				sb.append("thread_");
-				sb.append(Integer.toString(i));
+	/*
+	 * Round robin distributes the nodes evenly, but the load of the runners then depends on chance
+	 * and neighboring nodes are mostly handled by different runners. With a space-filling curve,
+	 * every runner gets a spatially contiguous region of about the same weight, where the weight of
+	 * a node is the number of its out-links, optionally plus the load measured in the previous iterations.
+	 */
+	private int[] assignRunners(List<QNodeI> netsimNodes) {
+		int[] runners = new int[netsimNodes.size()];
+		QSimConfigGroup qsimConfig = qsim.getScenario().getConfig().qsim();
+		if (qsimConfig.getNodeAssignment() == NodeAssignment.roundRobin || this.numOfRunners == 1) {
+			for (int n = 0; n < runners.length; n++) {
+				runners[n] = n % this.numOfRunners;
 			}
-			sb.append("\t");
-			sb.append("min");
-			sb.append("\t");
-			sb.append("max");
-			if (printRunTimesPerTimeStep) log.info(sb.toString());
-		}
-		long sum = 0;
-		long sumMin = 0;
-		long sumMax = 0;
-		for (int i = 0; i < numObservedTimeSteps; i++) {
-			StringBuffer sb = new StringBuffer();
-			sb.append("\t" + i);
-			long min = Long.MAX_VALUE;
-			long max = Long.MIN_VALUE;
-			for (QNetsimEngineRunner runner : this.engines) {
-				long runTime = runner.runTimes[i];
-				sum += runTime;
-				if (runTime < min) min = runTime;
-				if (runTime > max) max = runTime;
-				sb.append("\t");
-				sb.append(Long.toString(runTime));
+			return runners;
+		}
+
+		NodeLoads loads = null;
+		if (qsimConfig.isRebalancingNodeAssignment()) {
+			loads = getNodeLoads();
+			int size = Id.getNumberOfIds(Node.class);
+			for (QNetsimEngineRunner engine : this.engines) {
+				engine.simStepCounts = new int[size];
 			}
-			sb.append("\t");
-			sb.append(Long.toString(min));
-			sb.append("\t");
-			sb.append(Long.toString(max));
-			if (printRunTimesPerTimeStep) log.info(sb.toString());
-			sumMin += min;
-			sumMax += max;
-		}
-		log.info("sum min run times: " + sumMin);
-		log.info("sum max run times: " + sumMax);
-		log.info("sum all run times / num threads: " + sum / this.numOfThreads);
+		}
+
+		double[] x = new double[runners.length];
+		double[] y = new double[runners.length];
+		double[] weights = new double[runners.length];
+		for (int n = 0; n < runners.length; n++) {
+			Node node = netsimNodes.get(n).getNode();
+			x[n] = node.getCoord().getX();
+			y[n] = node.getCoord().getY();
+			weights[n] = 1 + node.getOutLinks().size();
+			int index = node.getId().index();
+			if (loads != null && index < loads.loads.length) {
+				weights[n] += loads.loads[index];
+			}
+		}
+		return SpaceFillingCurvePartitioner.partition(x, y, weights, this.numOfRunners);
 	}
-	
+
+	/*
+	 * The QNetsimEngine is created anew for every iteration, so the loads are kept in the scenario.
+	 */
+	private NodeLoads getNodeLoads() {
+		Scenario scenario = qsim.getScenario();
+		NodeLoads loads = (NodeLoads) scenario.getScenarioElement(NODE_LOADS);
+		if (loads == null) {
+			loads = new NodeLoads();
+			scenario.addScenarioElement(NODE_LOADS, loads);
+		}
+		return loads;
+	}
+
+	private void collectNodeLoads() {
+		if (this.engines.isEmpty() || this.engines.get(0).simStepCounts == null) {
+			return;
+		}
+		NodeLoads loads = getNodeLoads();
+		int size = this.engines.get(0).simStepCounts.length;
+		double[] measured = new double[size];
+		for (QNetsimEngineRunner engine : this.engines) {
+			for (int i = 0; i < size; i++) {
+				measured[i] += engine.simStepCounts[i];
+			}
+			engine.simStepCounts = null;
+		}
+		if (loads.loads.length == size) {
+			// smooth the loads, so the assignment does not oscillate between iterations
+			for (int i = 0; i < size; i++) {
+				measured[i] = 0.5 * (loads.loads[i] + measured[i]);
+			}
+		}
+		loads.loads = measured;
+	}
+
+	/**
+	 * The number of simulation steps per node and its out-links, indexed by the index of the node id.
+	 */
+	private static final class NodeLoads {
+		double[] loads = new double[0];
+	}
+
 	private static class NamedThreadFactory implements ThreadFactory {
 		private int count = 0;
 
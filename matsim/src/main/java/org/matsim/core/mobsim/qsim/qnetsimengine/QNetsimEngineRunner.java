@@ -21,7 +21,7 @@
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import org.matsim.core.gbl.Gbl;
-import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimProfiler;
 
 import java.util.*;
 import java.util.concurrent.Callable;
@@ -62,6 +62,16 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	private final List<QLinkI> linksList = new LinkedList<>();
 
+	/*
+	 * Links which are active but sleeping, see QSimConfigGroup.isUsingSleepingLinks(), are taken out of the
+	 * linksList until their wake-up time, or until something happens on them before.  An entry is outdated
+	 * (and skipped) if its link was woken up in between.  Woken links are merged back into the linksList in the
+	 * order of their activation, which keeps the order of the events the same as without sleeping links.
+	 */
+	private final Queue<SleepingLink> sleepingLinks = new PriorityQueue<>();
+	private final List<AbstractQLink> wokenLinks = new ArrayList<>();
+	private long activationSequence = 0;
+
 	/*
 	 * Ensure that nodes and links are only activate during times where we expect it.
 	 * Otherwise this could result in unpredictable behavior. Therefore we throw
@@ -76,12 +86,19 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
-	/*package*/ long[] runTimes;
-	private long startTime = 0;
-	{	
-		if (QSim.analyzeRunTimes) runTimes = new long[QNetsimEngine.numObservedTimeSteps];
-		else runTimes = null;
-	}
+	/*
+	 * If set, the time the runner spends on moving its nodes and links, per sim step, without the time it waits
+	 * for the other runners.
+	 */
+	private QSimProfiler.ComponentTimes profilerTimes = null;
+	private long stepNanos = 0;
+
+	/*
+	 * If set, the number of simulation steps of the nodes and their out-links, indexed
+	 * by the index of the node id. Used to balance the load between the runners in
+	 * the next iteration, see QSimConfigGroup.isRebalancingNodeAssignment().
+	 */
+	/*package*/ int[] simStepCounts = null;
 	
 	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
 		this.startBarrier = startBarrier;
@@ -116,10 +133,22 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
-		if (this.movingNodes) {
-			moveNodes();
+		if (this.profilerTimes == null) {
+			if (this.movingNodes) {
+				moveNodes();
+			} else {
+				moveLinks();
+			}
 		} else {
-			moveLinks();
+			// the nodes and the links are moved by separate calls, the time of the sim step is recorded after the links
+			long start = System.nanoTime();
+			if (this.movingNodes) {
+				moveNodes();
+				this.stepNanos = System.nanoTime() - start;
+			} else {
+				moveLinks();
+				this.profilerTimes.record(this.time, this.stepNanos + System.nanoTime() - start);
+			}
 		}
 		return true ;
 	}
@@ -136,26 +165,22 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			 */
 			startBarrier.arriveAndAwaitAdvance();
 
-			if (QSim.analyzeRunTimes) this.startTime = System.nanoTime();
-			
 			// Check if Simulation is still running. Otherwise print CPU usage and end thread.
 			if (!this.simulationRunning) {
 				Gbl.printCurrentThreadCpuTime();
 				return;
 			}
 
+			long start = this.profilerTimes != null ? System.nanoTime() : 0;
 			moveNodes();
+			if (this.profilerTimes != null) this.stepNanos = System.nanoTime() - start;
 
 			// After moving the QNodes all we use a Phaser to synchronize the threads.
 			this.separationBarrier.arriveAndAwaitAdvance();
 
+			if (this.profilerTimes != null) start = System.nanoTime();
 			moveLinks();
-
-			if (QSim.analyzeRunTimes) {
-				long end = System.nanoTime();
-				int bin = (int) this.time;
-				if (bin < this.runTimes.length) this.runTimes[bin] = end - this.startTime;
-			}
+			if (this.profilerTimes != null) this.profilerTimes.record(this.time, this.stepNanos + System.nanoTime() - start);
 			
 			/*
 			 * The end of moving is synchronized with the endBarrier. If all threads 
@@ -171,26 +196,63 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		Iterator<QNodeImpl> simNodes = this.nodesQueue.iterator();
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
+			if (this.simStepCounts != null) this.simStepCounts[node.getNode().getId().index()]++;
 			remainsActive = node.doSimStep(time);
 			if (!remainsActive) simNodes.remove();
 		}
 		this.lockNodes = false;
 	}
 	private void moveLinks() {
+		wakeUpSleepingLinks();
 		boolean remainsActive;
 		lockLinks = true;
 		QLinkI link;
 		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
 		while (simLinks.hasNext()) {
 			link = simLinks.next();
+			if (this.simStepCounts != null) this.simStepCounts[link.getLink().getFromNode().getId().index()]++;
 
 			remainsActive = link.doSimStep();
 
-			if (!remainsActive) simLinks.remove();
+			if (!remainsActive) {
+				simLinks.remove();
+				AbstractQLink qLink = (AbstractQLink) link;
+				if (qLink.getSleepingUntil() > time) {
+					// the link is still active, but nothing happens on it before it wakes up
+					qLink.setSleeping(true);
+					this.sleepingLinks.add(new SleepingLink(qLink));
+				}
+			}
 		}
 		lockLinks = false;
 	}
 
+	private void wakeUpSleepingLinks() {
+		while (!this.sleepingLinks.isEmpty() && this.sleepingLinks.peek().wakeUpTime <= time) {
+			SleepingLink entry = this.sleepingLinks.poll();
+			if (entry.link.isSleeping() && entry.link.getSleepingUntil() == entry.wakeUpTime) {
+				entry.link.setSleeping(false);
+				entry.link.setSleepingUntil(Double.NEGATIVE_INFINITY);
+				this.wokenLinks.add(entry.link);
+			}
+		}
+		if (this.wokenLinks.isEmpty()) {
+			return;
+		}
+		this.wokenLinks.sort(Comparator.comparingLong(AbstractQLink::getActivationSequence));
+		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
+		for (AbstractQLink woken : this.wokenLinks) {
+			while (simLinks.hasNext()) {
+				if (((AbstractQLink) simLinks.next()).getActivationSequence() > woken.getActivationSequence()) {
+					simLinks.previous();
+					break;
+				}
+			}
+			simLinks.add(woken);
+		}
+		this.wokenLinks.clear();
+	}
+
 	/*
 	 * This method is only called while links are NOT "moved", i.e. their
 	 * doStimStep(...) methods are called. To ensure that, we  use a boolean lock.
@@ -198,10 +260,23 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	@Override
 	protected void registerLinkAsActive(QLinkI link) {
-		if (!lockLinks) linksList.add(link);
+		if (!lockLinks) {
+			((AbstractQLink) link).setActivationSequence(this.activationSequence++);
+			linksList.add(link);
+		}
 		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
 	}
 
+	/*
+	 * Same as for registerLinkAsActive(...).  The link keeps its place among the active links, which is restored
+	 * before the links are moved next.
+	 */
+	@Override
+	void wakeUpLink(AbstractQLink link) {
+		if (!lockLinks) this.wokenLinks.add(link);
+		else throw new RuntimeException("Tried to wake up a QLink at a time where this was not allowed. Aborting!");
+	}
+
 	@Override
 	public int getNumberOfSimulatedLinks() {
 		return this.linksList.size();
@@ -229,7 +304,59 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		return this.nodesQueue.size();
 	}
 
+	/**
+	 * @return the active links including the sleeping ones, in the order in which they are moved
+	 */
+	/*package*/ List<QLinkI> getActiveLinks() {
+		List<AbstractQLink> activeLinks = new ArrayList<>(this.wokenLinks);
+		for (QLinkI link : this.linksList) {
+			activeLinks.add((AbstractQLink) link);
+		}
+		for (SleepingLink entry : this.sleepingLinks) {
+			if (entry.link.isSleeping() && entry.link.getSleepingUntil() == entry.wakeUpTime) {
+				activeLinks.add(entry.link);
+			}
+		}
+		activeLinks.sort(Comparator.comparingLong(AbstractQLink::getActivationSequence));
+		return Collections.unmodifiableList(activeLinks);
+	}
+
+	/*package*/ Collection<QNodeImpl> getActiveNodes() {
+		return Collections.unmodifiableCollection(this.nodesQueue);
+	}
+
+	/*
+	 * Forgets the active nodes and links, before those of a checkpoint are activated again.  Only called right
+	 * after the qsim was prepared, when none of them has its active flag set yet.
+	 */
+	/*package*/ void clearActiveNetElements() {
+		this.linksList.clear();
+		this.sleepingLinks.clear();
+		this.wokenLinks.clear();
+		this.nodesQueue.clear();
+	}
+
+	/*package*/ void setProfilerTimes(QSimProfiler.ComponentTimes profilerTimes) {
+		this.profilerTimes = profilerTimes;
+	}
+
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
+
+	private static final class SleepingLink implements Comparable<SleepingLink> {
+		private final AbstractQLink link;
+		private final double wakeUpTime;
+
+		SleepingLink(AbstractQLink link) {
+			this.link = link;
+			this.wakeUpTime = link.getSleepingUntil();
+		}
+
+		@Override
+		public int compareTo(SleepingLink o) {
+			int cmp = Double.compare(this.wakeUpTime, o.wakeUpTime);
+			return cmp != 0 ? cmp : Long.compare(this.link.getActivationSequence(), o.link.getActivationSequence());
+		}
+	}
 }
\ No newline at end of file
@@ -23,17 +23,23 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.framework.DriverAgent;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleCapacity;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 /**
  * The ``Q'' implementation of the MobsimVehicle.
@@ -226,4 +232,43 @@ public class QVehicle extends QItem implements MobsimVehicle {
 		// yyyyyy use in code!
 		this.linkEnterTime = linkEnterTime;
 	}
+
+	/*package*/ final void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeUTF(this.id.toString());
+		out.writeBoolean(this.driver != null);
+		if (this.driver != null) {
+			out.writeUTF(this.driver.getId().toString());
+		}
+		out.writeInt(this.passengers.size());
+		for (PassengerAgent passenger : this.passengers) {
+			out.writeUTF(passenger.getId().toString());
+		}
+		out.writeDouble(this.linkEnterTime);
+		out.writeDouble(this.earliestLinkExitTime);
+	}
+
+	/**
+	 * Reads a vehicle written by {@link #writeCheckpoint(DataOutput)}, and puts its driver and passengers into it.
+	 * The vehicle needs to be in the mobsim already.
+	 */
+	/*package*/ static QVehicle readCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		Id<Vehicle> vehicleId = Id.create(in.readUTF(), Vehicle.class);
+		QVehicle veh = vehicles.get(vehicleId);
+		if (veh == null) {
+			throw new RuntimeException("vehicle " + vehicleId + " of the checkpoint is not in the mobsim.");
+		}
+		if (in.readBoolean()) {
+			MobsimDriverAgent driver = (MobsimDriverAgent) agents.get(Id.createPersonId(in.readUTF()));
+			veh.setDriver(driver);
+			driver.setVehicle(veh);
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			PassengerAgent passenger = (PassengerAgent) agents.get(Id.createPersonId(in.readUTF()));
+			veh.addPassenger(passenger);
+			passenger.setVehicle(veh);
+		}
+		veh.linkEnterTime = in.readDouble();
+		veh.earliestLinkExitTime = in.readDouble();
+		return veh;
+	}
 }
@@ -19,12 +19,17 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.events.VehicleAbortsEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.LaneEnterEvent;
 import org.matsim.core.api.experimental.events.LaneLeaveEvent;
 import org.matsim.core.config.groups.QSimConfigGroup;
@@ -32,6 +37,7 @@ import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
 import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
@@ -142,7 +148,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private double flowCapacityPerTimeStep;
 	private double remainingHolesStorageCapacity = 0.0 ;
 
-	private final Queue<QueueWithBuffer.Hole> holes = new LinkedList<>();
+	private final Queue<QueueWithBuffer.Hole> holes = new ArrayDeque<>();
 
 	/** the last time-step the front-most vehicle in the buffer was moved. Used for detecting dead-locks. */
 	private double bufferLastMovedTime = Time.getUndefinedTime() ;
@@ -157,7 +163,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	/**
 	 * Holds all vehicles that are ready to cross the outgoing intersection
 	 */
-	private final Queue<QVehicle> buffer = new LinkedList<>() ;
+	private final Queue<QVehicle> buffer = new ArrayDeque<>() ;
 	/**
 	 * null if the link is not signalized
 	 */
@@ -176,7 +182,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private double unscaledFlowCapacity_s = Double.NaN ;
 	private double effectiveNumberOfLanes = Double.NaN ;
 
-	private final VisData visData = new VisDataImpl() ;
+	private final VisData visData ;
 	private final NetsimEngineContext context;
 
 	private double maxFlowFromFdiag = Double.POSITIVE_INFINITY ;
@@ -198,6 +204,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		this.length = length;
 		this.unscaledFlowCapacity_s = flowCapacity_s ;
 		this.effectiveNumberOfLanes = effectiveNumberOfLanes;
+		this.visData = context.qsimConfig.isHeadless() ? null : new VisDataImpl() ;
 
 //		freespeedTravelTime = this.length / qlink.getLink().getFreespeed();
 //		if (Double.isNaN(freespeedTravelTime)) {
@@ -582,6 +589,80 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		}
 	}
 
+	/**
+	 * @return the earliest time at which moving the lane can change anything, i.e. the earliest link exit time
+	 * of the vehicles on it, or <code>Double.NEGATIVE_INFINITY</code> if the lane needs to be moved in every
+	 * time step anyway, e.g. because holes are traveling upstream.
+	 */
+	/*package*/ final double getEarliestNextActionTime() {
+		if ( !context.qsimConfig.isUsingFastCapacityUpdate()
+				|| context.qsimConfig.getTrafficDynamics() == TrafficDynamics.kinematicWaves
+				|| context.qsimConfig.getLinkDynamics() == LinkDynamics.SeepageQ // peekFromVehQueue() has state
+				|| context.qsimConfig.isUseLanes()
+				|| !this.holes.isEmpty() ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		QVehicle veh = this.vehQueue.peek() ; // also the earliest one for the PassingVehicleQ
+		if ( veh == null ) {
+			return Double.NEGATIVE_INFINITY ;
+		}
+		return veh.getEarliestLinkExitTime() ;
+	}
+
+	/**
+	 * Writes the vehicles and holes on this lane and the state of its capacities.  The vehicle queue is written in the
+	 * order of its iterator, which for the {@link PassingVehicleQ} is the order of its heap, so that reading them in
+	 * the same order gives the same heap.
+	 */
+	/*package*/ final void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(this.vehQueue.size());
+		for (QVehicle veh : this.vehQueue) {
+			veh.writeCheckpoint(out);
+		}
+		out.writeInt(this.buffer.size());
+		for (QVehicle veh : this.buffer) {
+			veh.writeCheckpoint(out);
+		}
+		out.writeInt(this.holes.size());
+		for (Hole hole : this.holes) {
+			out.writeDouble(hole.getEarliestLinkExitTime());
+			out.writeDouble(hole.getSizeInEquivalents());
+		}
+		out.writeDouble(this.flowcap_accumulate.getValue());
+		out.writeDouble(this.flowcap_accumulate.getTimeStep());
+		out.writeDouble(this.usedStorageCapacity);
+		out.writeDouble(this.remainingHolesStorageCapacity);
+		out.writeDouble(this.accumulatedInflowCap);
+		out.writeDouble(this.bufferLastMovedTime);
+		out.writeInt(this.noOfSeepModeBringFwd);
+	}
+
+	/*package*/ final void readCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		for (int i = in.readInt(); i > 0; i--) {
+			QVehicle veh = QVehicle.readCheckpoint(in, vehicles, agents);
+			this.qLink.setCurrentLinkToVehicle(veh);
+			this.vehQueue.add(veh);
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			QVehicle veh = QVehicle.readCheckpoint(in, vehicles, agents);
+			this.qLink.setCurrentLinkToVehicle(veh);
+			this.buffer.add(veh);
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			Hole hole = new Hole();
+			hole.setEarliestLinkExitTime(in.readDouble());
+			hole.setSizeInEquivalents(in.readDouble());
+			this.holes.add(hole);
+		}
+		this.flowcap_accumulate.setValue(in.readDouble());
+		this.flowcap_accumulate.setTimeStep(in.readDouble());
+		this.usedStorageCapacity = in.readDouble();
+		this.remainingHolesStorageCapacity = in.readDouble();
+		this.accumulatedInflowCap = in.readDouble();
+		this.bufferLastMovedTime = in.readDouble();
+		this.noOfSeepModeBringFwd = in.readInt();
+	}
+
 	@Override
 	public final void setSignalStateAllTurningMoves( final SignalGroupState state) {
 		qSignalizedItem.setSignalStateAllTurningMoves(state);
@@ -818,6 +899,9 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 
 	@Override
 	public final QLaneI.VisData getVisData() {
+		if ( this.visData==null ) {
+			throw QSimConfigGroup.createHeadlessException() ;
+		}
 		return this.visData  ;
 	}
 
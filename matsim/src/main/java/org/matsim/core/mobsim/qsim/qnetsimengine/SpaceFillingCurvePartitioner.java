@@ -0,0 +1,121 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpaceFillingCurvePartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Splits a set of weighted points into spatially contiguous parts of about the same total weight.
+ * The points are sorted along a Hilbert curve, which keeps points that are close to each other
+ * mostly close on the curve as well, and the sorted sequence is then cut into consecutive pieces.
+ *
+ * @author agent
+ */
+final class SpaceFillingCurvePartitioner {
+
+	/** number of bits per dimension of the grid the coordinates are mapped to */
+	private static final int ORDER = 16;
+
+	private SpaceFillingCurvePartitioner() {
+	}
+
+	/**
+	 * @param x the x-coordinates of the points
+	 * @param y the y-coordinates of the points
+	 * @param weights the weights of the points, must not be negative
+	 * @param numberOfParts the number of parts
+	 * @return for every point the part it is assigned to, between 0 and <code>numberOfParts - 1</code>
+	 */
+	static int[] partition(final double[] x, final double[] y, final double[] weights, final int numberOfParts) {
+		if (numberOfParts < 1) {
+			throw new IllegalArgumentException("number of parts must be at least 1, but is " + numberOfParts);
+		}
+		final int n = x.length;
+		int[] parts = new int[n];
+		if (n == 0 || numberOfParts == 1) {
+			return parts;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		// use the same scale for both dimensions, so the parts are not distorted
+		double extent = Math.max(maxX - minX, maxY - minY);
+		double scale = extent > 0 ? ((1 << ORDER) - 1) / extent : 0;
+
+		final long[] curveIndex = new long[n];
+		Integer[] order = new Integer[n];
+		double totalWeight = 0;
+		for (int i = 0; i < n; i++) {
+			curveIndex[i] = hilbertIndex((int) ((x[i] - minX) * scale), (int) ((y[i] - minY) * scale));
+			order[i] = i;
+			totalWeight += weights[i];
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingLong(i -> curveIndex[i]).thenComparingInt(i -> i));
+
+		// cut the curve where the cumulated weight passes the next multiple of the average weight per part
+		double cumulatedWeight = 0;
+		int part = 0;
+		for (int k = 0; k < n; k++) {
+			int i = order[k];
+			parts[i] = part;
+			cumulatedWeight += weights[i];
+			int remainingPoints = n - k - 1;
+			int remainingParts = numberOfParts - part - 1;
+			if (remainingParts > 0 && (cumulatedWeight >= totalWeight * (part + 1) / numberOfParts || remainingPoints == remainingParts)) {
+				part++;
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * @return the position of the grid cell (x, y) on a Hilbert curve through a grid of 2^ORDER x 2^ORDER cells
+	 */
+	static long hilbertIndex(int x, int y) {
+		long d = 0;
+		for (int s = 1 << (ORDER - 1); s > 0; s >>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant, so the curve stays continuous
+			if (ry == 0) {
+				if (rx == 1) {
+					x = (1 << ORDER) - 1 - x;
+					y = (1 << ORDER) - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+}
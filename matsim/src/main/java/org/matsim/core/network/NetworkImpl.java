@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.NetworkFactory;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.scenario.Lockable;
+import org.matsim.core.utils.collections.CompactIdMap;
 import org.matsim.core.utils.collections.QuadTree;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
@@ -35,7 +36,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
@@ -58,9 +58,9 @@ import java.util.Queue;
 
 	private double capacityPeriod = 3600.0 ;
 
-	private final Map<Id<Node>, Node> nodes = new LinkedHashMap<>();
+	private final Map<Id<Node>, Node> nodes = new CompactIdMap<>();
 
-	private final Map<Id<Link>, Link> links = new LinkedHashMap<>();
+	private final Map<Id<Link>, Link> links = new CompactIdMap<>();
 
 	private QuadTree<Node> nodeQuadTree = null;
 
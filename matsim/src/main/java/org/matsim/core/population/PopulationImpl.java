@@ -18,7 +18,6 @@
  * *********************************************************************** */
 package org.matsim.core.population;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -27,6 +26,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.scenario.Lockable;
+import org.matsim.core.utils.collections.CompactIdMap;
 import org.matsim.utils.objectattributes.ObjectAttributes;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
@@ -39,7 +39,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 
 	private final Attributes attributes = new Attributes();
 	private String name;
-	private Map<Id<Person>, Person> persons = new LinkedHashMap<>();
+	private Map<Id<Person>, Person> persons = new CompactIdMap<>();
 	private final PopulationFactory populationFactory;
 	private final ObjectAttributes personAttributes = new ObjectAttributes();
 	private long counter = 0;
@@ -66,8 +66,16 @@ public class GenericPlanStrategyImpl<T extends BasicPlan, I> implements GenericP
 	
 	@Override
 	public void run(final HasPlansAndId<T, I> person) {
-		this.counter++;
-		
+		handleSelectedPlan(selectPlan(person));
+	}
+
+	/**
+	 * Selects a plan of the person and, if there are modules, makes a copy of it the selected plan.  Only changes
+	 * the person, so it may be called for several persons in parallel, if the plan selector is thread-safe.
+	 *
+	 * @return the copy of the selected plan for the modules, or <code>null</code> if there are no modules.
+	 */
+	/* package */ T selectPlan(final HasPlansAndId<T, I> person) {
 		// if there is at least one unscored plan, find that one:
 		T plan = new RandomUnscoredPlanSelector<T, I>().selectPlan(person) ;
 		
@@ -88,8 +96,19 @@ public class GenericPlanStrategyImpl<T extends BasicPlan, I> implements GenericP
 		if (this.firstModule != null) {
 			
 			// set the working plan to a copy of the selected plan:
-			plan = person.createCopyOfSelectedPlanAndMakeSelected();
-			
+			return person.createCopyOfSelectedPlanAndMakeSelected();
+		}
+		return null;
+	}
+
+	/**
+	 * Hands the plan returned by {@link #selectPlan(HasPlansAndId)} to the modules.  Must be called from one thread
+	 * only, and in the same order for the same results.
+	 */
+	/* package */ void handleSelectedPlan(final T plan) {
+		this.counter++;
+
+		if (this.firstModule != null) {
 			// add new plan to container that contains the plans that are handled by this PlanStrategy:
 			this.plans.add(plan);
 
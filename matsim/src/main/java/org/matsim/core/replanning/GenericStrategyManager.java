@@ -25,7 +25,10 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.BasicPlan;
@@ -72,10 +75,22 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 	private PlanSelector<PL, AG> removalPlanSelector = new GenericWorstPlanForRemovalSelector<>();
 
 	private String subpopulationAttributeName = null;
+
+	private int numberOfSelectionThreads = 0;
 	
 	public GenericStrategyManager() {
 	}
 
+	/**
+	 * Sets the number of threads that remove plans, choose the strategies and select and copy the plans before
+	 * they are handed to the modules.  With 0 (the default), this is done in the calling thread with the global
+	 * random number generator.  Otherwise, every person draws from its own random number stream, seeded from the
+	 * global generator and the position of the person, so the results do not depend on the number of threads.
+	 */
+	public final void setNumberOfSelectionThreads(final int numberOfSelectionThreads) {
+		this.numberOfSelectionThreads = numberOfSelectionThreads;
+	}
+
 	/**
 	 * @param name the name of the subpopulation attribute
 	 * in the person's object attributes.
@@ -193,27 +208,14 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 			strategy.init(replanningContext);
 		}
 
-		// then go through the population and ...
-		for (HasPlansAndId<PL, AG> person : persons ) {
-
-			// ... reduce the number of plans to the allowed maximum (in evol comp lang this is "selection")
-			if ((this.maxPlansPerAgent > 0) && (person.getPlans().size() > this.maxPlansPerAgent)) {
-				removePlans( person, this.maxPlansPerAgent);
-			}
-
-			// ... choose the strategy to be used for this person (in evol comp lang this would be the choice of the mutation operator)
-			String subpopName = null;
-			if (this.subpopulationAttributeName != null) {
-				subpopName = (String) subPopLookup.getAttribute(person.getId().toString(), this.subpopulationAttributeName);
-			}
-			GenericPlanStrategy<PL, AG> strategy = this.chooseStrategy(person, subpopName);
-
-			if (strategy==null) {
-				throw new RuntimeException("No strategy found! Have you defined at least one replanning strategy per subpopulation?");
+		if (this.numberOfSelectionThreads > 0) {
+			runWithSelectionThreads(persons, subPopLookup);
+		} else {
+			// then go through the population and ...
+			for (HasPlansAndId<PL, AG> person : persons ) {
+				// ... choose the strategy and run it:
+				chooseStrategyAfterRemovingPlans(person, subPopLookup).run(person);
 			}
-			
-			// ... and run the strategy:
-			strategy.run(person);
 		}
 
 		// finally make sure all strategies have finished there work
@@ -223,6 +225,120 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 
 	}
 
+	private GenericPlanStrategy<PL, AG> chooseStrategyAfterRemovingPlans(final HasPlansAndId<PL, AG> person, final ObjectAttributes subPopLookup) {
+		// reduce the number of plans to the allowed maximum (in evol comp lang this is "selection")
+		if ((this.maxPlansPerAgent > 0) && (person.getPlans().size() > this.maxPlansPerAgent)) {
+			removePlans( person, this.maxPlansPerAgent);
+		}
+
+		// choose the strategy to be used for this person (in evol comp lang this would be the choice of the mutation operator)
+		String subpopName = null;
+		if (this.subpopulationAttributeName != null) {
+			subpopName = (String) subPopLookup.getAttribute(person.getId().toString(), this.subpopulationAttributeName);
+		}
+		GenericPlanStrategy<PL, AG> strategy = this.chooseStrategy(person, subpopName);
+
+		if (strategy==null) {
+			throw new RuntimeException("No strategy found! Have you defined at least one replanning strategy per subpopulation?");
+		}
+		return strategy;
+	}
+
+	/*
+	 * The threads remove the plans, choose the strategies, and select and copy the plans, each in chunks of persons
+	 * taken from a shared index.  The plans are then handed to the modules in the order of the persons in the calling
+	 * thread, as the modules are not thread-safe and their results may depend on the order of the plans.  Strategies
+	 * other than GenericPlanStrategyImpl, whose selection cannot be separated from the modules, are also run there.
+	 */
+	private void runWithSelectionThreads(final Iterable<? extends HasPlansAndId<PL, AG>> persons, final ObjectAttributes subPopLookup) {
+		final List<HasPlansAndId<PL, AG>> personList = new ArrayList<>();
+		for (HasPlansAndId<PL, AG> person : persons) {
+			personList.add(person);
+		}
+		final int size = personList.size();
+		final List<GenericPlanStrategy<PL, AG>> strategies = new ArrayList<>(Collections.nCopies(size, null));
+		final List<PL> selectedPlans = new ArrayList<>(Collections.nCopies(size, null));
+		final long seed = MatsimRandom.getRandom().nextLong();
+		final AtomicInteger nextIndex = new AtomicInteger(0);
+		final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
+
+		Thread[] threads = new Thread[this.numberOfSelectionThreads];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				Random random = new Random();
+				MatsimRandom.setRandomForCurrentThread(random);
+				try {
+					int from;
+					while ((from = nextIndex.getAndAdd(SELECTION_CHUNK_SIZE)) < size) {
+						for (int i = from, to = Math.min(size, from + SELECTION_CHUNK_SIZE); i < to; i++) {
+							HasPlansAndId<PL, AG> person = personList.get(i);
+							random.setSeed(getPersonSeed(seed, i));
+							GenericPlanStrategy<PL, AG> strategy = chooseStrategyAfterRemovingPlans(person, subPopLookup);
+							strategies.set(i, strategy);
+							if (isSelectionSeparable(strategy)) {
+								selectedPlans.set(i, ((GenericPlanStrategyImpl<PL, AG>) strategy).selectPlan(person));
+							}
+						}
+					}
+				} finally {
+					MatsimRandom.setRandomForCurrentThread(null);
+				}
+			}, "PlanSelection." + t);
+			threads[t].setUncaughtExceptionHandler((thread, e) -> {
+				log.error("Thread " + thread.getName() + " died with exception. Will stop after all threads finished.", e);
+				hadException.set(e);
+			});
+			threads[t].start();
+		}
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		Throwable throwable = hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Plan selection failed for some persons.", throwable);
+		}
+
+		Random random = new Random();
+		for (int i = 0; i < size; i++) {
+			GenericPlanStrategy<PL, AG> strategy = strategies.get(i);
+			if (isSelectionSeparable(strategy)) {
+				((GenericPlanStrategyImpl<PL, AG>) strategy).handleSelectedPlan(selectedPlans.get(i));
+			} else {
+				// use a stream that is different from the one used for choosing the strategy:
+				random.setSeed(getPersonSeed(~seed, i));
+				MatsimRandom.setRandomForCurrentThread(random);
+				try {
+					strategy.run(personList.get(i));
+				} finally {
+					MatsimRandom.setRandomForCurrentThread(null);
+				}
+			}
+		}
+	}
+
+	private static final int SELECTION_CHUNK_SIZE = 256;
+
+	/*
+	 * Only GenericPlanStrategyImpl itself and PlanStrategyImpl are known not to do anything else in run(...).
+	 */
+	private static boolean isSelectionSeparable(final GenericPlanStrategy<?, ?> strategy) {
+		return strategy.getClass() == GenericPlanStrategyImpl.class || strategy.getClass() == PlanStrategyImpl.class;
+	}
+
+	/*
+	 * Scrambles the seed and the index (as in SplitMix64), so the streams of neighbouring persons are not correlated.
+	 */
+	private static long getPersonSeed(final long seed, final int index) {
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	private Collection<GenericPlanStrategy<PL, AG>> distinctStrategies() {
 		// Leaving out duplicate strategies in different subpopulations
 		Collection<GenericPlanStrategy<PL, AG>> strategies = new LinkedHashSet<>();
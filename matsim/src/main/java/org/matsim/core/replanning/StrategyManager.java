@@ -56,6 +56,7 @@ public class StrategyManager implements MatsimManager {
 
 		this();
 		setMaxPlansPerAgent(strategyConfigGroup.getMaxAgentPlanMemorySize());
+		setNumberOfSelectionThreads(strategyConfigGroup.getNumberOfPlanSelectionThreads());
 
 		int globalInnovationDisableAfter = (int) ((controlerConfigGroup.getLastIteration() - controlerConfigGroup.getFirstIteration())
 				* strategyConfigGroup.getFractionOfIterationsToDisableInnovation() + controlerConfigGroup.getFirstIteration());
@@ -222,6 +223,13 @@ public class StrategyManager implements MatsimManager {
 		delegate.setMaxPlansPerAgent(maxPlansPerAgent);
 	}
 
+	/**
+	 * @see GenericStrategyManager#setNumberOfSelectionThreads(int)
+	 */
+	public final void setNumberOfSelectionThreads(final int numberOfSelectionThreads) {
+		delegate.setNumberOfSelectionThreads(numberOfSelectionThreads);
+	}
+
 	public final int getMaxPlansPerAgent() {
 		return delegate.getMaxPlansPerAgent();
 	}
@@ -29,8 +29,10 @@ import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -50,6 +52,11 @@ import java.util.concurrent.atomic.AtomicReference;
  * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
  * started after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p></p>
+ * If a chunk size larger than 0 is given (see {@link GlobalConfigGroup#getReplanningChunkSize()}), the plans
+ * are instead collected in one list, and each thread repeatedly takes the next chunk of plans from it until all
+ * plans are handled.  Each thread still uses its own instance of the plan algorithm, but which plans it handles
+ * depends on the timing of the threads, so such runs are not reproducible.
+ * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
@@ -59,8 +66,10 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
 	private final int numOfThreads;
+	private final int chunkSize;
 
 	private PlanAlgoThread[] algothreads = null;
+	private ChunkedPlans chunkedPlans = null;
 	private Thread[] threads = null;
 	private PlanAlgorithm directAlgo = null;
 	private String name = null;
@@ -83,11 +92,23 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.getReplanningChunkSize());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, 0);
+	}
+
+	/**
+	 * @param chunkSize if 0, the plans are dealt to the threads round-robin, otherwise the threads take chunks of
+	 * that many plans from a shared list.
+	 */
+	public AbstractMultithreadedModule(final int numOfThreads, final int chunkSize) {
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException("chunkSize must not be negative, but is " + chunkSize);
+		}
 		this.numOfThreads = numOfThreads;
+		this.chunkSize = chunkSize;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -117,7 +138,10 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
+		if (this.chunkedPlans != null) {
+			this.chunkedPlans.plans.add(plan);
+			this.count++;
+		} else if (this.directAlgo == null) {
 			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
 			this.count++;
 		} else {
@@ -154,6 +178,11 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				throw new RuntimeException(e);
 			}
 			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+			for (int i = 0; i < this.algothreads.length; i++) {
+				PlanAlgoThread algothread = this.algothreads[i];
+				log.info("[" + this.name + "] thread " + i + " handled " + algothread.handledPlans + " plans in "
+						+ (algothread.busyNanos / 1000000) + " ms.");
+			}
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
@@ -161,6 +190,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		}
 		// reset
 		this.algothreads = null;
+		this.chunkedPlans = null;
 		this.threads = null;
 		this.replanningContext = null;
 		this.count = 0;
@@ -176,6 +206,9 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		this.hadException.set(null);
 		this.threads = new Thread[this.numOfThreads];
 		this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		if (this.chunkSize > 0) {
+			this.chunkedPlans = new ChunkedPlans(this.chunkSize);
+		}
 
 		Counter counter = null;
 		// setup threads
@@ -185,7 +218,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				this.name = algo.getClass().getSimpleName();
 				counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
+			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter, this.chunkedPlans);
 			Thread thread = new Thread(algothread, this.name + "." + i);
 			thread.setUncaughtExceptionHandler(this.exceptionHandler);
 			this.threads[i] = thread;
@@ -197,6 +230,10 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		return numOfThreads;
 	}
 
+	/* package (for a test) */ final int getChunkSize() {
+		return chunkSize;
+	}
+
 	private final static class ExceptionHandler implements UncaughtExceptionHandler {
 
 		private final AtomicReference<Throwable> hadException;
@@ -213,15 +250,54 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	}
 
+	/**
+	 * The plans of all threads if they are handled in chunks.  The plans are only added before the threads
+	 * are started, afterwards the threads only claim the next chunk with the atomic index.
+	 */
+	private final static class ChunkedPlans {
+
+		private final List<Plan> plans = new ArrayList<>();
+		private final AtomicInteger nextIndex = new AtomicInteger(0);
+		private final int chunkSize;
+
+		public ChunkedPlans(final int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		/**
+		 * Claims the next chunk of plans.  The index never moves past the number of plans, so it cannot
+		 * overflow for large chunk sizes.
+		 *
+		 * @return the index of the first plan of the claimed chunk, or -1 if all plans are claimed already
+		 */
+		int claimChunk() {
+			int size = this.plans.size();
+			int from;
+			do {
+				from = this.nextIndex.get();
+				if (from >= size) {
+					return -1;
+				}
+			} while (!this.nextIndex.compareAndSet(from, from + Math.min(this.chunkSize, size - from)));
+			return from;
+		}
+	}
+
 	private final static class PlanAlgoThread implements Runnable {
 
 		private final PlanAlgorithm planAlgo;
 		private final List<Plan> plans = new LinkedList<>();
+		private final ChunkedPlans chunkedPlans;
 		private final Counter counter;
 
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
+		/* only read after the thread was joined */
+		private int handledPlans = 0;
+		private long busyNanos = 0;
+
+		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter, final ChunkedPlans chunkedPlans) {
 			this.planAlgo = algo;
 			this.counter = counter;
+			this.chunkedPlans = chunkedPlans;
 		}
 
 		public void addPlanToThread(final Plan plan) {
@@ -230,10 +306,29 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 		@Override
 		public void run() {
-			for (Plan plan : this.plans) {
-				this.planAlgo.run(plan);
-				this.counter.incCounter();
+			long start = System.nanoTime();
+			if (this.chunkedPlans == null) {
+				for (Plan plan : this.plans) {
+					handlePlan(plan);
+				}
+			} else {
+				List<Plan> allPlans = this.chunkedPlans.plans;
+				int size = allPlans.size();
+				int from;
+				while ((from = this.chunkedPlans.claimChunk()) >= 0) {
+					int to = from + Math.min(this.chunkedPlans.chunkSize, size - from);
+					for (int i = from; i < to; i++) {
+						handlePlan(allPlans.get(i));
+					}
+				}
 			}
+			this.busyNanos = System.nanoTime() - start;
+		}
+
+		private void handlePlan(final Plan plan) {
+			this.planAlgo.run(plan);
+			this.handledPlans++;
+			this.counter.incCounter();
 		}
 	}
 }
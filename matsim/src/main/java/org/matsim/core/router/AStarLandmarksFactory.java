@@ -27,7 +27,11 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.PreProcessLandmarks;
@@ -38,11 +42,14 @@ import org.matsim.core.router.util.TravelTime;
  * @author dgrether
  */
 @Singleton
-public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
 
 	private final Map<Network, PreProcessLandmarks> preProcessData = new HashMap<>();
 
 	@Inject private GlobalConfigGroup globalConfig ;
+	@Inject private Config config ;
+
+	private final LandmarksUpdater landmarksUpdater = new LandmarksUpdater();
 	
 	@Inject
 	public AStarLandmarksFactory() {
@@ -55,10 +62,22 @@ public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 			preProcessLandmarks = new PreProcessLandmarks(travelCosts);
 			preProcessLandmarks.setNumberOfThreads( globalConfig.getNumberOfThreads());
 			preProcessLandmarks.run(network);
+			this.landmarksUpdater.register(preProcessLandmarks, travelCosts);
 			this.preProcessData.put(network, preProcessLandmarks);
 		}
 		
 		final double overdoFactor = 1.0;
 		return new AStarLandmarks(network, preProcessLandmarks, travelCosts, travelTimes, overdoFactor);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Updates the landmark tables with the travel times of the last iteration, if this factory
+	 * is registered as controler listener (see {@link ControlerConfigGroup#isUpdateLandmarksEachIteration()}).
+	 */
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		if (event.getIteration() > this.config.controler().getFirstIteration()) {
+			this.landmarksUpdater.update(event.getServices().getStopwatch(), this.config.travelTimeCalculator());
+		}
+	}
+}
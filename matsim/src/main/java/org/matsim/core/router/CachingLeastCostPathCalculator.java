@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CachingLeastCostPathCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.RoutingCache.PathKey;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Looks up the paths in a {@link RoutingCache} and only asks the delegate for paths that are not cached.
+ * Like the delegate, an instance must only be used by one thread at a time, while the cache is shared.
+ *
+ * @author agent
+ */
+final class CachingLeastCostPathCalculator implements LeastCostPathCalculator {
+
+	private final RoutingCache cache;
+	private final String mode;
+	private final LeastCostPathCalculator delegate;
+
+	CachingLeastCostPathCalculator(final RoutingCache cache, final String mode, final LeastCostPathCalculator delegate) {
+		this.cache = cache;
+		this.mode = mode;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		PathKey key = this.cache.createKey(this.mode, fromNode, toNode, starttime);
+		Path path = this.cache.get(key);
+		if (path == null) {
+			path = this.delegate.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+			if (path != null) {
+				this.cache.put(key, path);
+			}
+		}
+		return path;
+	}
+
+}
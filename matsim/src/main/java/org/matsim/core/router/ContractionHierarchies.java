@@ -0,0 +1,318 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Least cost path calculator based on customizable contraction hierarchies. The route is searched
+ * with a bidirectional Dijkstra on the upward edges of the {@link ContractionHierarchiesGraph}, using
+ * the weights of the time bin in which the trip starts. The resulting path is then unpacked to links,
+ * and its travel time and cost are calculated along the path with the travel time and travel disutility,
+ * like in {@link Dijkstra}.
+ * <p></p>
+ * The route only depends on the departure time, not on the time at which a link is entered. Within a
+ * time bin, the found routes are exact least cost paths, as long as the travel disutility does not depend
+ * on the person or vehicle.
+ * <p></p>
+ * Instances are not thread-safe, but several instances can share the same graph and metric, see
+ * {@link ContractionHierarchiesFactory}.
+ *
+ * @author agent
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchiesGraph graph;
+	private final ContractionHierarchiesMetric metric;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+
+	private final double[] forwardCosts;
+	private final double[] backwardCosts;
+	private final int[] forwardEdges;
+	private final int[] backwardEdges;
+	private final int[] forwardIteration;
+	private final int[] backwardIteration;
+	private int iteration = 0;
+	private final NodeHeap forwardHeap = new NodeHeap();
+	private final NodeHeap backwardHeap = new NodeHeap();
+	private int[] unpackStack = new int[64];
+
+	/**
+	 * Contracts the network for this instance alone. Use {@link ContractionHierarchiesFactory} to share the
+	 * contraction between several instances.
+	 */
+	public ContractionHierarchies(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this(new ContractionHierarchiesMetric(new ContractionHierarchiesGraph(network), travelCosts,
+				ContractionHierarchiesFactory.DEFAULT_TIME_BIN_SIZE, ContractionHierarchiesFactory.DEFAULT_NUMBER_OF_TIME_BINS),
+				travelCosts, travelTimes);
+	}
+
+	ContractionHierarchies(final ContractionHierarchiesMetric metric, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.graph = metric.graph;
+		this.metric = metric;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		int n = this.graph.nodes.length;
+		this.forwardCosts = new double[n];
+		this.backwardCosts = new double[n];
+		this.forwardEdges = new int[n];
+		this.backwardEdges = new int[n];
+		this.forwardIteration = new int[n];
+		this.backwardIteration = new int[n];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int source = this.graph.getRank(fromNode);
+		int target = this.graph.getRank(toNode);
+		if (source < 0 || target < 0) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "+
+					getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		int bin = this.metric.getTimeBin(starttime);
+		this.metric.customize(bin);
+		double[] upWeights = this.metric.getUpWeights(bin);
+		double[] downWeights = this.metric.getDownWeights(bin);
+
+		this.iteration++;
+		this.forwardHeap.clear();
+		this.backwardHeap.clear();
+		visit(source, 0, -1, this.forwardCosts, this.forwardEdges, this.forwardIteration, this.forwardHeap);
+		visit(target, 0, -1, this.backwardCosts, this.backwardEdges, this.backwardIteration, this.backwardHeap);
+
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		while (true) {
+			boolean forwardDone = this.forwardHeap.isEmpty() || this.forwardHeap.peekCost() >= bestCost;
+			boolean backwardDone = this.backwardHeap.isEmpty() || this.backwardHeap.peekCost() >= bestCost;
+			if (forwardDone && backwardDone) {
+				break;
+			}
+			boolean forward = backwardDone || (!forwardDone && this.forwardHeap.peekCost() <= this.backwardHeap.peekCost());
+			NodeHeap heap = forward ? this.forwardHeap : this.backwardHeap;
+			double[] costs = forward ? this.forwardCosts : this.backwardCosts;
+			double cost = heap.peekCost();
+			int node = heap.poll();
+			if (cost > costs[node]) {
+				continue; // outdated heap entry
+			}
+			if (this.forwardIteration[node] == this.iteration && this.backwardIteration[node] == this.iteration) {
+				double total = this.forwardCosts[node] + this.backwardCosts[node];
+				if (total < bestCost) {
+					bestCost = total;
+					meetingNode = node;
+				}
+			}
+			double[] weights = forward ? upWeights : downWeights;
+			int[] edges = forward ? this.forwardEdges : this.backwardEdges;
+			int[] iterations = forward ? this.forwardIteration : this.backwardIteration;
+			for (int e = this.graph.edgeOffsets[node]; e < this.graph.edgeOffsets[node + 1]; e++) {
+				double newCost = cost + weights[e];
+				if (newCost < Double.POSITIVE_INFINITY) {
+					visit(this.graph.edgeUpper[e], newCost, e, costs, edges, iterations, heap);
+				}
+			}
+		}
+
+		if (meetingNode < 0) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ".");
+			return null;
+		}
+
+		List<Link> links = new ArrayList<>();
+		List<Integer> forwardPart = new ArrayList<>();
+		for (int node = meetingNode; node != source; node = this.graph.edgeLower[this.forwardEdges[node]]) {
+			forwardPart.add(this.forwardEdges[node]);
+		}
+		for (int i = forwardPart.size() - 1; i >= 0; i--) {
+			unpack(forwardPart.get(i), true, bin, upWeights, downWeights, links);
+		}
+		for (int node = meetingNode; node != target; node = this.graph.edgeLower[this.backwardEdges[node]]) {
+			unpack(this.backwardEdges[node], false, bin, upWeights, downWeights, links);
+		}
+		return createPath(fromNode, links, starttime, person, vehicle);
+	}
+
+	private void visit(final int node, final double cost, final int edge, final double[] costs, final int[] edges,
+			final int[] iterations, final NodeHeap heap) {
+		if (iterations[node] != this.iteration || cost < costs[node]) {
+			iterations[node] = this.iteration;
+			costs[node] = cost;
+			edges[node] = edge;
+			heap.add(node, cost);
+		}
+	}
+
+	/**
+	 * Replaces the edge by the links it consists of, recursively resolving shortcuts over the triangle
+	 * that defines its weight.
+	 */
+	private void unpack(final int edge, final boolean up, final int bin, final double[] upWeights, final double[] downWeights, final List<Link> links) {
+		ContractionHierarchiesGraph g = this.graph;
+		int size = 0;
+		this.unpackStack[size++] = (edge << 1) | (up ? 1 : 0);
+		while (size > 0) {
+			int entry = this.unpackStack[--size];
+			int e = entry >>> 1;
+			boolean isUp = (entry & 1) == 1;
+			double cost = isUp ? upWeights[e] : downWeights[e];
+
+			Link link = findLink(isUp ? g.upLinks[e] : g.downLinks[e], cost, bin);
+			if (link != null) {
+				links.add(link);
+				continue;
+			}
+			boolean found = false;
+			for (int i = g.edgeTriangleOffsets[e]; i < g.edgeTriangleOffsets[e + 1]; i++) {
+				int t = g.edgeTriangles[i];
+				int lowerMiddle = g.triangleLowerMiddle[t];
+				int lowerUpper = g.triangleLowerUpper[t];
+				if (size + 2 > this.unpackStack.length) {
+					this.unpackStack = Arrays.copyOf(this.unpackStack, this.unpackStack.length * 2);
+				}
+				// the second half is pushed first, so it is unpacked after the first half
+				if (isUp && downWeights[lowerMiddle] + upWeights[lowerUpper] == cost) {
+					this.unpackStack[size++] = (lowerUpper << 1) | 1;
+					this.unpackStack[size++] = lowerMiddle << 1;
+					found = true;
+					break;
+				}
+				if (!isUp && downWeights[lowerUpper] + upWeights[lowerMiddle] == cost) {
+					this.unpackStack[size++] = (lowerMiddle << 1) | 1;
+					this.unpackStack[size++] = lowerUpper << 1;
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				throw new IllegalStateException("Cannot unpack edge " + e + ". Did the travel disutilities change after customization?");
+			}
+		}
+	}
+
+	private Link findLink(final Link[] candidates, final double cost, final int bin) {
+		if (candidates != null) {
+			for (Link link : candidates) {
+				if (this.metric.getLinkWeight(link, bin) == cost) {
+					return link;
+				}
+			}
+		}
+		return null;
+	}
+
+	private Path createPath(final Node fromNode, final List<Link> links, final double startTime, final Person person, final Vehicle vehicle) {
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = startTime;
+		double cost = 0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - startTime, cost);
+	}
+
+	/**
+	 * Simple binary heap of nodes without decrease-key; outdated entries are skipped when polled.
+	 */
+	private static final class NodeHeap {
+		private double[] costs = new double[64];
+		private int[] nodes = new int[64];
+		private int size = 0;
+
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		void clear() {
+			this.size = 0;
+		}
+
+		double peekCost() {
+			return this.costs[0];
+		}
+
+		void add(final int node, final double cost) {
+			if (this.size == this.nodes.length) {
+				this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+				this.costs = Arrays.copyOf(this.costs, this.size * 2);
+			}
+			int i = this.size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (this.costs[parent] <= cost) {
+					break;
+				}
+				this.costs[i] = this.costs[parent];
+				this.nodes[i] = this.nodes[parent];
+				i = parent;
+			}
+			this.costs[i] = cost;
+			this.nodes[i] = node;
+		}
+
+		int poll() {
+			int result = this.nodes[0];
+			this.size--;
+			if (this.size > 0) {
+				double cost = this.costs[this.size];
+				int node = this.nodes[this.size];
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= this.size) {
+						break;
+					}
+					if (child + 1 < this.size && this.costs[child + 1] < this.costs[child]) {
+						child++;
+					}
+					if (cost <= this.costs[child]) {
+						break;
+					}
+					this.costs[i] = this.costs[child];
+					this.nodes[i] = this.nodes[child];
+					i = child;
+				}
+				this.costs[i] = cost;
+				this.nodes[i] = node;
+			}
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies} routers. The contraction of a network is done once and then
+ * re-used by all routers for this network. The customization is shared by all routers that use the same
+ * network, travel time and customization key, which is the travel disutility instance unless another key is
+ * given, as differently parameterized travel disutilities of the same type (e.g. for different modes) need their
+ * own weights. It is discarded at the start of every iteration, as the travel times usually change from one
+ * iteration to the next.
+ * When the factory is used outside of the controler, {@link #resetCustomizations()} must be called
+ * whenever the travel disutilities change.
+ *
+ * @author agent
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	public final static double DEFAULT_TIME_BIN_SIZE = 3600.0;
+	public final static int DEFAULT_NUMBER_OF_TIME_BINS = 30;
+
+	private final double timeBinSize;
+	private final int numberOfTimeBins;
+	private final Map<Network, ContractionHierarchiesGraph> graphs = new HashMap<>();
+	private final Map<List<Object>, ContractionHierarchiesMetric> metrics = new HashMap<>();
+
+	@Inject
+	ContractionHierarchiesFactory(final Config config) {
+		this(DEFAULT_TIME_BIN_SIZE, (int) Math.ceil(config.travelTimeCalculator().getMaxTime() / DEFAULT_TIME_BIN_SIZE));
+	}
+
+	public ContractionHierarchiesFactory() {
+		this(DEFAULT_TIME_BIN_SIZE, DEFAULT_NUMBER_OF_TIME_BINS);
+	}
+
+	/**
+	 * @param timeBinSize the duration of the time bins, in seconds. Every time bin in which routes depart requires 16 bytes per edge of the contraction hierarchies.
+	 * @param numberOfTimeBins the number of time bins. Departures after the last time bin use the weights of the last time bin.
+	 */
+	public ContractionHierarchiesFactory(final double timeBinSize, final int numberOfTimeBins) {
+		if (timeBinSize <= 0 || numberOfTimeBins < 1) {
+			throw new IllegalArgumentException("time bin size and number of time bins must be positive.");
+		}
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = numberOfTimeBins;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		return createPathCalculator(network, travelCosts, travelTimes, travelCosts);
+	}
+
+	/**
+	 * Creates a router that shares its customization with all routers created for the same network, travel time
+	 * and customization key.  Callers that create a new travel disutility for every router should pass something
+	 * that identifies the weights instead, e.g. the {@link org.matsim.core.router.costcalculators.TravelDisutilityFactory}
+	 * that created the travel disutility, otherwise every router is customized on its own.
+	 */
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes, final Object customizationKey) {
+		ContractionHierarchiesGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new ContractionHierarchiesGraph(network);
+			this.graphs.put(network, graph);
+		}
+		List<Object> key = Arrays.asList(network, travelTimes, customizationKey);
+		ContractionHierarchiesMetric metric = this.metrics.get(key);
+		if (metric == null) {
+			metric = new ContractionHierarchiesMetric(graph, travelCosts, this.timeBinSize, this.numberOfTimeBins);
+			this.metrics.put(key, metric);
+		}
+		return new ContractionHierarchies(metric, travelCosts, travelTimes);
+	}
+
+	/**
+	 * Discards all customizations, so the weights are calculated again from the travel disutilities
+	 * for routers created afterwards.
+	 */
+	public synchronized void resetCustomizations() {
+		this.metrics.clear();
+	}
+
+	/* package (for a test) */ synchronized int getNumberOfCustomizations() {
+		return this.metrics.size();
+	}
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		resetCustomizations();
+	}
+
+}
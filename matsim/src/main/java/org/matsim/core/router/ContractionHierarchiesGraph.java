@@ -0,0 +1,268 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The metric-independent part of the contraction hierarchies: the order of the nodes and the
+ * upward edges of every node, including the shortcuts.
+ * <p></p>
+ * The nodes are contracted in minimum-degree order on the undirected network, and every contraction
+ * inserts shortcuts between all remaining neighbors of the contracted node, without witness searches.
+ * This makes the resulting graph valid for every metric, so travel disutilities can change (see
+ * {@link ContractionHierarchiesMetric}) without contracting the network again.
+ * <p></p>
+ * The nodes are identified by their rank in the contraction order. Every edge is stored once at its lower
+ * node and can be used in both directions ("up" from the lower to the upper node, "down" from the upper to
+ * the lower node). Because all neighbors of a contracted node are connected, every pair of upward edges of
+ * a node forms a triangle with a third edge; these triangles are used to customize and unpack the shortcuts.
+ *
+ * @author agent
+ */
+final class ContractionHierarchiesGraph {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchiesGraph.class);
+
+	final Network network;
+	/** the nodes, by rank */
+	final Node[] nodes;
+	/** the rank of every node of the network by {@link Id#index()}, -1 for nodes not in the network */
+	private final int[] rankByIdIndex;
+
+	/** the upward edges of node r are edgeOffsets[r] until edgeOffsets[r+1] - 1 */
+	final int[] edgeOffsets;
+	final int[] edgeLower;
+	final int[] edgeUpper;
+	/** the links from the lower to the upper node of every edge, <code>null</code> for shortcuts */
+	final Link[][] upLinks;
+	/** the links from the upper to the lower node of every edge, <code>null</code> for shortcuts */
+	final Link[][] downLinks;
+
+	/**
+	 * The triangles, ordered by their lowest node v: the edge from v to the middle node, the edge from
+	 * v to the highest node, and the edge between the middle and the highest node.
+	 */
+	final int[] triangleLowerMiddle;
+	final int[] triangleLowerUpper;
+	final int[] triangleMiddleUpper;
+	/** the triangles in which edge e is the edge between the middle and the highest node */
+	final int[] edgeTriangleOffsets;
+	final int[] edgeTriangles;
+
+	ContractionHierarchiesGraph(final Network network) {
+		long start = System.currentTimeMillis();
+		this.network = network;
+		int n = network.getNodes().size();
+		Node[] nodesByIndex = network.getNodes().values().toArray(new Node[n]);
+		this.rankByIdIndex = new int[Id.getNumberOfIds(Node.class)];
+		Arrays.fill(this.rankByIdIndex, -1);
+		for (int i = 0; i < n; i++) {
+			this.rankByIdIndex[nodesByIndex[i].getId().index()] = i; // temporarily the index
+		}
+
+		List<Set<Integer>> neighbors = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			neighbors.add(new HashSet<>());
+		}
+		for (Link link : network.getLinks().values()) {
+			int from = this.rankByIdIndex[link.getFromNode().getId().index()];
+			int to = this.rankByIdIndex[link.getToNode().getId().index()];
+			if (from != to) {
+				neighbors.get(from).add(to);
+				neighbors.get(to).add(from);
+			}
+		}
+
+		// contract the nodes in minimum-degree order
+		int[] rank = new int[n];
+		int[][] upward = new int[n][];
+		boolean[] contracted = new boolean[n];
+		PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(n, 1), (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		for (int i = 0; i < n; i++) {
+			queue.add(new long[] {neighbors.get(i).size(), i});
+		}
+		int nextRank = 0;
+		while (!queue.isEmpty()) {
+			long[] entry = queue.poll();
+			int v = (int) entry[1];
+			if (contracted[v] || entry[0] != neighbors.get(v).size()) {
+				continue; // outdated entry
+			}
+			contracted[v] = true;
+			rank[v] = nextRank++;
+			Set<Integer> vNeighbors = neighbors.get(v);
+			int[] up = new int[vNeighbors.size()];
+			int k = 0;
+			for (Integer w : vNeighbors) {
+				up[k++] = w;
+			}
+			upward[v] = up;
+			for (int a : up) {
+				Set<Integer> aNeighbors = neighbors.get(a);
+				aNeighbors.remove(v);
+				for (int b : up) {
+					if (a != b) {
+						aNeighbors.add(b);
+					}
+				}
+			}
+			for (int a : up) {
+				queue.add(new long[] {neighbors.get(a).size(), a});
+			}
+			neighbors.set(v, null);
+		}
+
+		// store everything by rank
+		this.nodes = new Node[n];
+		int[] indexByRank = new int[n];
+		for (int i = 0; i < n; i++) {
+			indexByRank[rank[i]] = i;
+			this.nodes[rank[i]] = nodesByIndex[i];
+			this.rankByIdIndex[nodesByIndex[i].getId().index()] = rank[i];
+		}
+		this.edgeOffsets = new int[n + 1];
+		int edgeCount = 0;
+		for (int r = 0; r < n; r++) {
+			this.edgeOffsets[r] = edgeCount;
+			edgeCount += upward[indexByRank[r]].length;
+		}
+		this.edgeOffsets[n] = edgeCount;
+		this.edgeLower = new int[edgeCount];
+		this.edgeUpper = new int[edgeCount];
+		for (int i = 0; i < n; i++) {
+			int r = rank[i];
+			int[] up = upward[i];
+			int[] upRanks = new int[up.length];
+			for (int k = 0; k < up.length; k++) {
+				upRanks[k] = rank[up[k]];
+			}
+			Arrays.sort(upRanks);
+			System.arraycopy(upRanks, 0, this.edgeUpper, this.edgeOffsets[r], upRanks.length);
+			Arrays.fill(this.edgeLower, this.edgeOffsets[r], this.edgeOffsets[r + 1], r);
+		}
+
+		this.upLinks = new Link[edgeCount][];
+		this.downLinks = new Link[edgeCount][];
+		for (Link link : network.getLinks().values()) {
+			int from = getRank(link.getFromNode());
+			int to = getRank(link.getToNode());
+			if (from < to) {
+				int e = findEdge(from, to);
+				this.upLinks[e] = append(this.upLinks[e], link);
+			} else if (to < from) {
+				int e = findEdge(to, from);
+				this.downLinks[e] = append(this.downLinks[e], link);
+			}
+		}
+
+		// collect the triangles
+		long triangleCount = 0;
+		for (int r = 0; r < n; r++) {
+			long degree = this.edgeOffsets[r + 1] - this.edgeOffsets[r];
+			triangleCount += degree * (degree - 1) / 2;
+		}
+		if (triangleCount > Integer.MAX_VALUE - 8) {
+			throw new RuntimeException("The contraction hierarchies of this network are too large: " + triangleCount + " triangles.");
+		}
+		int t = (int) triangleCount;
+		this.triangleLowerMiddle = new int[t];
+		this.triangleLowerUpper = new int[t];
+		this.triangleMiddleUpper = new int[t];
+		int[] trianglesPerEdge = new int[edgeCount + 1];
+		t = 0;
+		for (int r = 0; r < n; r++) {
+			for (int e1 = this.edgeOffsets[r]; e1 < this.edgeOffsets[r + 1]; e1++) {
+				for (int e2 = e1 + 1; e2 < this.edgeOffsets[r + 1]; e2++) {
+					int e3 = findEdge(this.edgeUpper[e1], this.edgeUpper[e2]);
+					this.triangleLowerMiddle[t] = e1;
+					this.triangleLowerUpper[t] = e2;
+					this.triangleMiddleUpper[t] = e3;
+					trianglesPerEdge[e3]++;
+					t++;
+				}
+			}
+		}
+		this.edgeTriangleOffsets = new int[edgeCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			this.edgeTriangleOffsets[e + 1] = this.edgeTriangleOffsets[e] + trianglesPerEdge[e];
+		}
+		this.edgeTriangles = new int[t];
+		int[] fill = Arrays.copyOf(this.edgeTriangleOffsets, edgeCount);
+		for (int i = 0; i < t; i++) {
+			this.edgeTriangles[fill[this.triangleMiddleUpper[i]]++] = i;
+		}
+
+		log.info("contraction hierarchies: " + n + " nodes, " + network.getLinks().size() + " links, "
+				+ edgeCount + " edges, " + t + " triangles. Took " + (System.currentTimeMillis() - start) / 1000.0 + " seconds.");
+	}
+
+	/**
+	 * @return the rank of the node, or -1 if the node is not part of the network.
+	 */
+	int getRank(final Node node) {
+		int index = node.getId().index();
+		if (index >= this.rankByIdIndex.length) {
+			return -1;
+		}
+		int r = this.rankByIdIndex[index];
+		if (r < 0 || this.nodes[r] != node) {
+			return -1;
+		}
+		return r;
+	}
+
+	int getNumberOfEdges() {
+		return this.edgeLower.length;
+	}
+
+	/**
+	 * @return the edge between the two nodes given by rank, lower first.
+	 */
+	int findEdge(final int lower, final int upper) {
+		int e = Arrays.binarySearch(this.edgeUpper, this.edgeOffsets[lower], this.edgeOffsets[lower + 1], upper);
+		if (e < 0) {
+			throw new IllegalStateException("There is no edge between rank " + lower + " and rank " + upper);
+		}
+		return e;
+	}
+
+	private static Link[] append(final Link[] links, final Link link) {
+		if (links == null) {
+			return new Link[] {link};
+		}
+		Link[] result = Arrays.copyOf(links, links.length + 1);
+		result[links.length] = link;
+		return result;
+	}
+
+}
@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesMetric.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The weights of all edges of a {@link ContractionHierarchiesGraph} for one travel disutility, per time bin.
+ * The weights of the links are taken from the travel disutility at the middle of every time bin, the
+ * weights of the shortcuts are then calculated bottom-up over the triangles of the graph. This
+ * customization is much faster than contracting the network, so it can be repeated whenever the travel
+ * disutilities change, e.g. in every iteration.
+ * <p></p>
+ * A time bin is only customized when the first route departing in it is calculated, as every time bin
+ * needs 16 bytes per edge of the graph and usually only some of them are used, e.g. not the night hours.
+ * <p></p>
+ * The travel disutility is queried without person and vehicle, so person-specific disutilities are not supported.
+ *
+ * @author agent
+ */
+final class ContractionHierarchiesMetric {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchiesMetric.class);
+
+	final ContractionHierarchiesGraph graph;
+	private final TravelDisutility travelCosts;
+	private final double timeBinSize;
+	private final int numberOfTimeBins;
+	/** the weight from the lower to the upper node of every edge, per time bin, <code>null</code> for bins not customized yet */
+	private final double[][] upWeights;
+	/** the weight from the upper to the lower node of every edge, per time bin, <code>null</code> for bins not customized yet */
+	private final double[][] downWeights;
+	private int customizedBins = 0;
+
+	ContractionHierarchiesMetric(final ContractionHierarchiesGraph graph, final TravelDisutility travelCosts,
+			final double timeBinSize, final int numberOfTimeBins) {
+		this.graph = graph;
+		this.travelCosts = travelCosts;
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = numberOfTimeBins;
+		this.upWeights = new double[numberOfTimeBins][];
+		this.downWeights = new double[numberOfTimeBins][];
+	}
+
+	/**
+	 * @return the weights from the lower to the upper node of every edge in the time bin.
+	 * {@link #customize(int)} must have been called for the time bin before.
+	 */
+	double[] getUpWeights(final int bin) {
+		return this.upWeights[bin];
+	}
+
+	/**
+	 * @return the weights from the upper to the lower node of every edge in the time bin.
+	 * {@link #customize(int)} must have been called for the time bin before.
+	 */
+	double[] getDownWeights(final int bin) {
+		return this.downWeights[bin];
+	}
+
+	/**
+	 * Calculates the weights of the time bin, unless this was already done. Several routers may share
+	 * this metric, so this is synchronized, which also makes the weights visible to the calling thread.
+	 */
+	synchronized void customize(final int bin) {
+		if (this.upWeights[bin] != null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		ContractionHierarchiesGraph g = this.graph;
+		int edgeCount = g.getNumberOfEdges();
+		double[] up = new double[edgeCount];
+		double[] down = new double[edgeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			up[e] = getMinimumWeight(g.upLinks[e], bin);
+			down[e] = getMinimumWeight(g.downLinks[e], bin);
+		}
+		/*
+		 * The triangles are ordered by their lowest node, so the two lower edges of a triangle
+		 * are final before they are used to update the upper edge.
+		 */
+		for (int t = 0; t < g.triangleMiddleUpper.length; t++) {
+			int lowerMiddle = g.triangleLowerMiddle[t];
+			int lowerUpper = g.triangleLowerUpper[t];
+			int middleUpper = g.triangleMiddleUpper[t];
+			double viaUp = down[lowerMiddle] + up[lowerUpper];
+			if (viaUp < up[middleUpper]) {
+				up[middleUpper] = viaUp;
+			}
+			double viaDown = down[lowerUpper] + up[lowerMiddle];
+			if (viaDown < down[middleUpper]) {
+				down[middleUpper] = viaDown;
+			}
+		}
+		this.upWeights[bin] = up;
+		this.downWeights[bin] = down;
+		this.customizedBins++;
+		log.info("customizing contraction hierarchies for time bin " + bin + " took " + (System.currentTimeMillis() - start) / 1000.0
+				+ " seconds, " + this.customizedBins + " of " + this.numberOfTimeBins + " time bins are customized now.");
+	}
+
+	private double getMinimumWeight(final Link[] links, final int bin) {
+		double min = Double.POSITIVE_INFINITY;
+		if (links != null) {
+			for (Link link : links) {
+				min = Math.min(min, getLinkWeight(link, bin));
+			}
+		}
+		return min;
+	}
+
+	double getLinkWeight(final Link link, final int bin) {
+		double weight;
+		try {
+			weight = this.travelCosts.getLinkTravelDisutility(link, (bin + 0.5) * this.timeBinSize, null, null);
+		} catch (RuntimeException e) {
+			throw new RuntimeException("Contraction hierarchies require travel disutilities that can be calculated without person and vehicle. "
+					+ "If randomized routing is used, set routingRandomness to 0 or use another routing algorithm.", e);
+		}
+		if (weight < 0) {
+			throw new IllegalArgumentException("Contraction hierarchies cannot handle negative travel disutilities, link " + link.getId() + " has " + weight);
+		}
+		return weight;
+	}
+
+	int getTimeBin(final double time) {
+		if (!(time > 0)) { // also handles NaN
+			return 0;
+		}
+		return (int) Math.min(time / this.timeBinSize, this.numberOfTimeBins - 1);
+	}
+
+}
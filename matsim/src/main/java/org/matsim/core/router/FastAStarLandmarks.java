@@ -22,7 +22,8 @@ package org.matsim.core.router;
 
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.router.priorityqueue.BinaryMinHeap;
+import org.matsim.core.router.priorityqueue.MinHeap;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.util.AStarNodeData;
 import org.matsim.core.router.util.AStarNodeDataFactory;
 import org.matsim.core.router.util.ArrayRoutingNetwork;
@@ -49,15 +50,17 @@ public class FastAStarLandmarks extends AStarLandmarks {
 
 	private final RoutingNetwork routingNetwork;
 	private final FastRouterDelegate fastRouter;
-	private BinaryMinHeap<ArrayRoutingNetworkNode> heap = null;
+	private final MinHeapType minHeapType;
+	private MinHeap<ArrayRoutingNetworkNode> heap = null;
 	private int maxSize = -1;
 
 	FastAStarLandmarks(final RoutingNetwork routingNetwork, final PreProcessLandmarks preProcessData,
 			final TravelDisutility costFunction, final TravelTime timeFunction, final double overdoFactor,
-			final FastRouterDelegateFactory fastRouterFactory) {
+			final FastRouterDelegateFactory fastRouterFactory, final MinHeapType minHeapType) {
 		super(routingNetwork, preProcessData, costFunction, timeFunction, overdoFactor);
 
 		this.routingNetwork = routingNetwork;
+		this.minHeapType = minHeapType;
 		this.fastRouter = fastRouterFactory.createFastRouterDelegate(this, new AStarNodeDataFactory(), routingNetwork);
 				
 		this.nodeData.clear();
@@ -82,14 +85,14 @@ public class FastAStarLandmarks extends AStarLandmarks {
 	@Override
 	/*package*/ RouterPriorityQueue<? extends Node> createRouterPriorityQueue() {
 		/*
-		 * Re-use existing BinaryMinHeap instead of creating a new one. For large networks (> 10^6 nodes and links) this reduced
+		 * Re-use existing MinHeap instead of creating a new one. For large networks (> 10^6 nodes and links) this reduced
 		 * the computation time by 40%! cdobler, oct'15
 		 */
 		if (this.routingNetwork instanceof ArrayRoutingNetwork) {
 			int size = this.routingNetwork.getNodes().size();
 			if (this.heap == null || this.maxSize != size) {
 				this.maxSize = size;
-				this.heap = new BinaryMinHeap<>(maxSize);
+				this.heap = this.minHeapType.createMinHeap(maxSize);
 				return this.heap;
 			} else {
 				this.heap.reset();
@@ -143,4 +146,4 @@ public class FastAStarLandmarks extends AStarLandmarks {
 	protected PreProcessLandmarks.LandmarksData getPreProcessData(final Node n) {
 		return (PreProcessLandmarks.LandmarksData) this.fastRouter.getPreProcessData(n);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
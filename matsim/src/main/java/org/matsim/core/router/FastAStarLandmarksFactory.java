@@ -28,7 +28,11 @@ import javax.inject.Singleton;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
@@ -43,20 +47,33 @@ import org.matsim.core.router.util.TravelTime;
  * @author cdobler
  */
 @Singleton
-public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
 	
 	private final RoutingNetworkFactory routingNetworkFactory;
+	private final MinHeapType minHeapType;
 	private final Map<Network, RoutingNetwork> routingNetworks = new HashMap<>();
 	private final Map<Network, PreProcessLandmarks> preProcessData = new HashMap<>();
 	
 	@Inject GlobalConfigGroup globalConfig ;
+	@Inject private Config config ;
+
+	private final LandmarksUpdater landmarksUpdater = new LandmarksUpdater();
 
-	@Inject
 	public FastAStarLandmarksFactory() {
-		this(FastRouterType.ARRAY);
+		this(FastRouterType.ARRAY, MinHeapType.Binary);
+	}
+
+	@Inject
+	public FastAStarLandmarksFactory(final ControlerConfigGroup controlerConfig) {
+		this(FastRouterType.ARRAY, controlerConfig.getFastRouterMinHeapType());
 	}
 
-	private FastAStarLandmarksFactory(final FastRouterType fastRouterType) {
+	public FastAStarLandmarksFactory(final MinHeapType minHeapType) {
+		this(FastRouterType.ARRAY, minHeapType);
+	}
+
+	private FastAStarLandmarksFactory(final FastRouterType fastRouterType, final MinHeapType minHeapType) {
+		this.minHeapType = minHeapType;
 		switch (fastRouterType) {
 		case ARRAY:
 			this.routingNetworkFactory = new ArrayRoutingNetworkFactory();
@@ -85,6 +102,7 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 					preProcessLandmarks.setNumberOfThreads(globalConfig.getNumberOfThreads());
 				}
 				preProcessLandmarks.run(network);
+				this.landmarksUpdater.register(preProcessLandmarks, travelCosts);
 				this.preProcessData.put(network, preProcessLandmarks);
 				
 				for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
@@ -97,6 +115,17 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
 		final double overdoFactor = 1.0;
-		return new FastAStarLandmarks(routingNetwork, preProcessLandmarks, travelCosts, travelTimes, overdoFactor, fastRouterFactory);
+		return new FastAStarLandmarks(routingNetwork, preProcessLandmarks, travelCosts, travelTimes, overdoFactor, fastRouterFactory, this.minHeapType);
+	}
+
+	/**
+	 * Updates the landmark tables with the travel times of the last iteration, if this factory
+	 * is registered as controler listener (see {@link ControlerConfigGroup#isUpdateLandmarksEachIteration()}).
+	 */
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		if (event.getIteration() > this.config.controler().getFirstIteration()) {
+			this.landmarksUpdater.update(event.getServices().getStopwatch(), this.config.travelTimeCalculator());
+		}
 	}
-}
\ No newline at end of file
+}
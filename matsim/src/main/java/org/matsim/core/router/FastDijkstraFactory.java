@@ -21,6 +21,8 @@
 package org.matsim.core.router;
 
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.router.priorityqueue.MinHeapType;
 import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
@@ -41,21 +43,31 @@ import java.util.Map;
 public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 	
 	private final boolean usePreProcessData;
+	private final MinHeapType minHeapType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks = new HashMap<>();
 	private final Map<Network, PreProcessDijkstra> preProcessData = new HashMap<>();
 
-	@Inject
 	public FastDijkstraFactory() {
-		this(false, FastRouterType.ARRAY);
+		this(false, FastRouterType.ARRAY, MinHeapType.Binary);
+	}
+
+	@Inject
+	public FastDijkstraFactory(final ControlerConfigGroup controlerConfig) {
+		this(false, FastRouterType.ARRAY, controlerConfig.getFastRouterMinHeapType());
 	}
 
     public FastDijkstraFactory(final boolean usePreProcessData) {
-		this(usePreProcessData, FastRouterType.ARRAY);
+		this(usePreProcessData, FastRouterType.ARRAY, MinHeapType.Binary);
+	}
+
+	public FastDijkstraFactory(final boolean usePreProcessData, final MinHeapType minHeapType) {
+		this(usePreProcessData, FastRouterType.ARRAY, minHeapType);
 	}
 
-	private FastDijkstraFactory(final boolean usePreProcessData, final FastRouterType fastRouterType) {
+	private FastDijkstraFactory(final boolean usePreProcessData, final FastRouterType fastRouterType, final MinHeapType minHeapType) {
 		this.usePreProcessData = usePreProcessData;
+		this.minHeapType = minHeapType;
 				
 		switch (fastRouterType) {
 		case ARRAY:
@@ -93,6 +105,6 @@ public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 		}
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
-		return new FastDijkstra(routingNetwork, travelCosts, travelTimes, preProcessDijkstra, fastRouterFactory);
+		return new FastDijkstra(routingNetwork, travelCosts, travelTimes, preProcessDijkstra, fastRouterFactory, this.minHeapType);
 	}
 }
\ No newline at end of file
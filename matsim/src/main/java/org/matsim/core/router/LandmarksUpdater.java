@@ -0,0 +1,71 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LandmarksUpdater.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.matsim.analysis.IterationStopWatch;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Remembers the travel disutility with which the landmarks of the {@link AStarLandmarksFactory} and
+ * {@link FastAStarLandmarksFactory} were first calculated, and updates the landmark tables with
+ * the current travel disutilities on request. The travel disutilities wrap the travel times of the
+ * controler, so they always reflect the travel times of the last iteration. Travel disutilities that
+ * cannot be calculated without a person, e.g. with randomized routing, are no longer updated after the
+ * first attempt, as the landmarks would just be calculated again from the unchanged minimal disutilities.
+ *
+ * @author agent
+ */
+final class LandmarksUpdater {
+
+	static final String OPERATION_UPDATE_LANDMARKS = "update landmarks";
+
+	private final Map<PreProcessLandmarks, TravelDisutility> travelCosts = new LinkedHashMap<>();
+
+	synchronized void register(final PreProcessLandmarks preProcessLandmarks, final TravelDisutility travelCosts) {
+		this.travelCosts.put(preProcessLandmarks, travelCosts);
+	}
+
+	synchronized void update(final IterationStopWatch stopWatch, final TravelTimeCalculatorConfigGroup travelTimeConfig) {
+		if (this.travelCosts.isEmpty()) {
+			return;
+		}
+		if (stopWatch != null) {
+			stopWatch.beginOperation(OPERATION_UPDATE_LANDMARKS);
+		}
+		Iterator<Map.Entry<PreProcessLandmarks, TravelDisutility>> iter = this.travelCosts.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<PreProcessLandmarks, TravelDisutility> e = iter.next();
+			if (!e.getKey().updateLandmarkTravelDisutilities(e.getValue(), travelTimeConfig.getTraveltimeBinSize(), travelTimeConfig.getMaxTime())) {
+				iter.remove();
+			}
+		}
+		if (stopWatch != null) {
+			stopWatch.endOperation(OPERATION_UPDATE_LANDMARKS);
+		}
+	}
+
+}
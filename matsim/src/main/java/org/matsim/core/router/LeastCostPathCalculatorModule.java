@@ -40,10 +40,28 @@ public class LeastCostPathCalculatorModule extends AbstractModule {
             bind(LeastCostPathCalculatorFactory.class).to(DijkstraFactory.class);
         } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.AStarLandmarks)) {
             bind(LeastCostPathCalculatorFactory.class).to(AStarLandmarksFactory.class);
+            if (config.controler().isUpdateLandmarksEachIteration()) {
+                addControlerListenerBinding().to(AStarLandmarksFactory.class);
+            }
         } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.FastDijkstra)) {
             bind(LeastCostPathCalculatorFactory.class).to(FastDijkstraFactory.class);
         } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.FastAStarLandmarks)) {
             bind(LeastCostPathCalculatorFactory.class).to(FastAStarLandmarksFactory.class);
+            if (config.controler().isUpdateLandmarksEachIteration()) {
+                addControlerListenerBinding().to(FastAStarLandmarksFactory.class);
+            }
+        } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies)) {
+            if (config.plansCalcRoute().getRoutingRandomness() != 0.0) {
+                // the weights of contraction hierarchies are calculated without a person, so they cannot be randomized per person
+                throw new RuntimeException(ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies + " cannot be used with randomized routing, "
+                        + "but routingRandomness is " + config.plansCalcRoute().getRoutingRandomness() + ". Set it to 0 or use another routing algorithm.");
+            }
+            bind(LeastCostPathCalculatorFactory.class).to(ContractionHierarchiesFactory.class);
+            addControlerListenerBinding().to(ContractionHierarchiesFactory.class);
+        }
+        bind(RoutingCache.class); // needs to be explicit, as NetworkRoutingProvider always asks for a provider
+        if (config.controler().getRoutingCacheSize() > 0) {
+            addControlerListenerBinding().to(RoutingCache.class);
         }
     }
 
@@ -4,6 +4,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
@@ -42,6 +43,12 @@ public class NetworkRoutingProvider implements Provider<RoutingModule> {
 
 	@Inject
     LeastCostPathCalculatorFactory leastCostPathCalculatorFactory;
+
+	@Inject
+	ControlerConfigGroup controlerConfigGroup;
+
+	@Inject
+	Provider<RoutingCache> routingCache;
 	
 	/**
 	 * This is the older (and still more standard) constructor, where the routingMode and the resulting mode were the
@@ -100,11 +107,24 @@ public class NetworkRoutingProvider implements Provider<RoutingModule> {
 		if (travelTime == null) {
 			throw new RuntimeException("No TravelTime bound for mode "+routingMode+".");
 		}
-		LeastCostPathCalculator routeAlgo =
-				leastCostPathCalculatorFactory.createPathCalculator(
-						filteredNetwork,
-						travelDisutilityFactory.createTravelDisutility(travelTime),
-						travelTime);
+		LeastCostPathCalculator routeAlgo;
+		if (leastCostPathCalculatorFactory instanceof ContractionHierarchiesFactory) {
+			// a new travel disutility is created for every router, but all of them have the same weights, so they can share one customization
+			routeAlgo = ((ContractionHierarchiesFactory) leastCostPathCalculatorFactory).createPathCalculator(
+					filteredNetwork,
+					travelDisutilityFactory.createTravelDisutility(travelTime),
+					travelTime,
+					travelDisutilityFactory);
+		} else {
+			routeAlgo = leastCostPathCalculatorFactory.createPathCalculator(
+					filteredNetwork,
+					travelDisutilityFactory.createTravelDisutility(travelTime),
+					travelTime);
+		}
+		if (controlerConfigGroup.getRoutingCacheSize() > 0) {
+			// the routes depend on both the network of the mode and the travel times of the routing mode
+			routeAlgo = routingCache.get().wrap(mode + "/" + routingMode, routeAlgo);
+		}
 
 		// the following again refers to the (transport)mode, since it will determine the mode of the leg on the network:
 		if ( plansCalcRouteConfigGroup.isInsertingAccessEgressWalk() ) {
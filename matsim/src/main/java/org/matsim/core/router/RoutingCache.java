@@ -0,0 +1,240 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+/**
+ * Caches the least cost paths between two nodes for a mode and a time bin, shared by all
+ * routers that are {@link #wrap(String, LeastCostPathCalculator) wrapped} with it, e.g. the
+ * routers of all threads during replanning.
+ * <p></p>
+ * The cache is bounded: it is split into segments, each of them evicting its least recently used
+ * paths. As the paths depend on the travel times, the cache is cleared at the start of every
+ * iteration if it is registered as controler listener.
+ * <p></p>
+ * The cached paths are shared, so the person and vehicle passed to the routers are ignored for cached
+ * paths, and the travel time and cost of a path are the ones of the first request in the time bin.
+ * The cache should thus only be used when the travel disutilities do not depend on the person,
+ * i.e. without routing randomness.
+ *
+ * @author agent
+ */
+@Singleton
+public final class RoutingCache implements IterationStartsListener {
+
+	private final static Logger log = Logger.getLogger(RoutingCache.class);
+
+	private static final int NUMBER_OF_SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[NUMBER_OF_SEGMENTS];
+	private final double timeBinSize;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	@Inject
+	RoutingCache(final ControlerConfigGroup controlerConfig, final TravelTimeCalculatorConfigGroup travelTimeConfig,
+			final PlansCalcRouteConfigGroup routeConfig) {
+		this(controlerConfig.getRoutingCacheSize(), travelTimeConfig.getTraveltimeBinSize());
+		if (controlerConfig.getRoutingCacheSize() > 0 && routeConfig.getRoutingRandomness() > 0) {
+			log.warn("The routing cache is used with a routing randomness of " + routeConfig.getRoutingRandomness()
+					+ ". Persons with the same origin, destination and time bin will get the same route.");
+		}
+	}
+
+	/**
+	 * @param maxSize the maximum number of cached paths
+	 * @param timeBinSize the size of the time bins, in seconds. Departures in the same time bin get the same path.
+	 */
+	public RoutingCache(final int maxSize, final double timeBinSize) {
+		if (maxSize < NUMBER_OF_SEGMENTS) {
+			throw new IllegalArgumentException("The size of the routing cache must be at least " + NUMBER_OF_SEGMENTS + ", but is " + maxSize);
+		}
+		this.timeBinSize = timeBinSize;
+		int segmentSize = (maxSize + NUMBER_OF_SEGMENTS - 1) / NUMBER_OF_SEGMENTS;
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+			this.segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * Returns a router that looks up the paths in this cache before asking the delegate.
+	 *
+	 * @param mode the mode of the router; the paths of different modes are cached separately
+	 * @param delegate the router that calculates the paths that are not in the cache
+	 */
+	public LeastCostPathCalculator wrap(final String mode, final LeastCostPathCalculator delegate) {
+		return new CachingLeastCostPathCalculator(this, mode, delegate);
+	}
+
+	Path get(final PathKey key) {
+		Path path = getSegment(key).getPath(key);
+		if (path == null) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return path;
+	}
+
+	void put(final PathKey key, final Path path) {
+		getSegment(key).putPath(key, path);
+	}
+
+	PathKey createKey(final String mode, final Node fromNode, final Node toNode, final double departureTime) {
+		return new PathKey(mode, fromNode.getId().index(), toNode.getId().index(), (int) (departureTime / this.timeBinSize));
+	}
+
+	private Segment getSegment(final PathKey key) {
+		return this.segments[(key.hashCode() & 0x7fffffff) % NUMBER_OF_SEGMENTS];
+	}
+
+	/**
+	 * Removes all paths from the cache and resets the statistics.
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		this.hits.reset();
+		this.misses.reset();
+		this.evictions.reset();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * @return the share of the requests that were answered from the cache, between 0 and 1
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long requests = hits + getMisses();
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		if (getHits() + getMisses() > 0) {
+			log.info(String.format("routing cache: %d hits, %d misses, hit rate %.1f%%, %d evictions, %d cached paths.",
+					getHits(), getMisses(), 100.0 * getHitRate(), getEvictions(), size()));
+		}
+		// the travel times have changed since the paths were calculated
+		clear();
+	}
+
+	private final class Segment extends LinkedHashMap<PathKey, Path> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+
+		Segment(final int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		synchronized Path getPath(final PathKey key) {
+			return get(key);
+		}
+
+		synchronized void putPath(final PathKey key, final Path path) {
+			put(key, path);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<PathKey, Path> eldest) {
+			if (size() > this.maxSize) {
+				RoutingCache.this.evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	static final class PathKey {
+		private final String mode;
+		private final int fromNode;
+		private final int toNode;
+		private final int timeBin;
+		private final int hash;
+
+		PathKey(final String mode, final int fromNode, final int toNode, final int timeBin) {
+			this.mode = mode;
+			this.fromNode = fromNode;
+			this.toNode = toNode;
+			this.timeBin = timeBin;
+			this.hash = ((mode.hashCode() * 31 + fromNode) * 31 + toNode) * 31 + timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey) obj;
+			return this.fromNode == other.fromNode && this.toNode == other.toNode && this.timeBin == other.timeBin
+					&& this.mode.equals(other.mode);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MinHeapType.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.priorityqueue;
+
+/**
+ * The priority queues the fast routers can use for their pending nodes.
+ *
+ * @author agent
+ */
+public enum MinHeapType {
+
+	/** {@link BinaryMinHeap} with its default fanout of 6 */
+	Binary,
+
+	/** {@link BinaryMinHeap} with a fanout of 4, i.e. shallower sift-downs but more sift-ups */
+	Quaternary,
+
+	/** {@link RadixMinHeap}, fastest for monotone keys, i.e. Dijkstra and A* with landmarks */
+	Radix;
+
+	public <E extends HasIndex> MinHeap<E> createMinHeap(final int maxSize) {
+		switch (this) {
+		case Binary:
+			return new BinaryMinHeap<>(maxSize);
+		case Quaternary:
+			return new BinaryMinHeap<>(maxSize, 4, false);
+		case Radix:
+			return new RadixMinHeap<>(maxSize);
+		default:
+			throw new RuntimeException("Undefined MinHeapType: " + this);
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RadixMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.priorityqueue;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A radix heap for routers whose keys never drop below the key of the last polled
+ * element, as it is the case for Dijkstra and A* with a consistent heuristic (e.g. landmarks).
+ * <p></p>
+ * The costs are mapped to 64 bit keys with the same order. An element is stored in the bucket
+ * given by the highest bit in which its key differs from the key of the last polled element,
+ * so add and decreaseKey are O(1). Only when the lowest bucket is empty, the next non-empty
+ * bucket is redistributed to the lower buckets, which happens at most 64 times per element.
+ * <p></p>
+ * Keys lower than the key of the last polled element are accepted as well; they are kept in the
+ * lowest bucket, which is searched linearly. The heap thus stays correct for non-monotone keys,
+ * but is only fast for monotone ones. Like the {@link BinaryMinHeap}, elements with equal costs
+ * are polled in the order of their array indices, so routes are the same with both heaps.
+ *
+ * @author agent
+ *
+ * @param <E> the type of elements held in this collection
+ */
+public class RadixMinHeap<E extends HasIndex> implements MinHeap<E> {
+
+	private static final int NUMBER_OF_BUCKETS = 65;
+	private static final int NOT_IN_HEAP = -1;
+
+	/* the following arrays are indexed by the array index of the elements */
+	private final E[] elements;
+	private final double[] costs;
+	private final long[] keys;
+	private final int[] buckets;
+	private final int[] positions;
+
+	/* the array indices of the elements in every bucket */
+	private final int[][] bucketContents = new int[NUMBER_OF_BUCKETS][];
+	private final int[] bucketSizes = new int[NUMBER_OF_BUCKETS];
+
+	private long lastKey = 0;
+	private int size = 0;
+	private transient int modCount = 0;
+
+	@SuppressWarnings("unchecked")
+	public RadixMinHeap(int maxSize) {
+		this.elements = (E[]) new HasIndex[maxSize];
+		this.costs = new double[maxSize];
+		this.keys = new long[maxSize];
+		this.buckets = new int[maxSize];
+		Arrays.fill(this.buckets, NOT_IN_HEAP);
+		this.positions = new int[maxSize];
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			this.bucketContents[i] = new int[16];
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+			int[] contents = this.bucketContents[b];
+			for (int i = 0; i < this.bucketSizes[b]; i++) {
+				this.buckets[contents[i]] = NOT_IN_HEAP;
+			}
+			this.bucketSizes[b] = 0;
+		}
+		this.lastKey = 0;
+		this.size = 0;
+		this.modCount = 0;
+	}
+
+	@Override
+	public boolean add(E value, double priority) {
+		if (value == null) {
+			throw new NullPointerException("null values are not supported!");
+		}
+		int index = value.getArrayIndex();
+		if (index >= this.elements.length) throw new RuntimeException("Heap's underlying storage is overflow!");
+		if (this.buckets[index] != NOT_IN_HEAP) {
+			return false;
+		}
+		this.modCount++;
+		this.elements[index] = value;
+		this.costs[index] = priority;
+		this.keys[index] = toKey(priority);
+		insert(index);
+		this.size++;
+		return true;
+	}
+
+	@Override
+	public boolean decreaseKey(E value, double priority) {
+		int index = value.getArrayIndex();
+		if (this.buckets[index] == NOT_IN_HEAP) {
+			return add(value, priority);
+		}
+		if (this.costs[index] < priority) {
+			return false;
+		}
+		this.modCount++;
+		removeFromBucket(index);
+		this.costs[index] = priority;
+		this.keys[index] = toKey(priority);
+		insert(index);
+		return true;
+	}
+
+	@Override
+	public boolean remove(E value) {
+		if (value == null) return false;
+		int index = value.getArrayIndex();
+		if (this.buckets[index] == NOT_IN_HEAP) {
+			return false;
+		}
+		this.modCount++;
+		removeFromBucket(index);
+		this.buckets[index] = NOT_IN_HEAP;
+		this.size--;
+		return true;
+	}
+
+	@Override
+	public E peek() {
+		if (this.size == 0) return null;
+		return this.elements[findMin()];
+	}
+
+	@Override
+	public E poll() {
+		if (this.size == 0) return null;
+		int index = findMin();
+		this.modCount++;
+		removeFromBucket(index);
+		this.buckets[index] = NOT_IN_HEAP;
+		this.size--;
+		return this.elements[index];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns an iterator over the elements in this queue. The iterator
+	 * does NOT return the elements sorted by their priority. Removing elements
+	 * is not supported via the iterator.
+	 *
+	 * @return an iterator over the elements in this queue.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new BucketIterator();
+	}
+
+	/**
+	 * Maps the cost to a key whose unsigned order is the same as the order of the costs:
+	 * the sign bit is flipped for positive values, all bits are flipped for negative ones.
+	 */
+	private static long toKey(final double cost) {
+		long bits = Double.doubleToLongBits(cost);
+		return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+	}
+
+	private int getBucket(final long key) {
+		if (Long.compareUnsigned(key, this.lastKey) <= 0) {
+			return 0;
+		}
+		return 64 - Long.numberOfLeadingZeros(key ^ this.lastKey);
+	}
+
+	private void insert(final int index) {
+		int bucket = getBucket(this.keys[index]);
+		int bucketSize = this.bucketSizes[bucket];
+		int[] contents = this.bucketContents[bucket];
+		if (bucketSize == contents.length) {
+			contents = Arrays.copyOf(contents, contents.length * 2);
+			this.bucketContents[bucket] = contents;
+		}
+		contents[bucketSize] = index;
+		this.bucketSizes[bucket] = bucketSize + 1;
+		this.buckets[index] = bucket;
+		this.positions[index] = bucketSize;
+	}
+
+	private void removeFromBucket(final int index) {
+		int bucket = this.buckets[index];
+		int position = this.positions[index];
+		int[] contents = this.bucketContents[bucket];
+		int last = contents[--this.bucketSizes[bucket]];
+		contents[position] = last;
+		this.positions[last] = position;
+	}
+
+	/**
+	 * Returns the array index of the element with the lowest key, using the array
+	 * index to break ties. The heap must not be empty.
+	 */
+	private int findMin() {
+		if (this.bucketSizes[0] == 0) {
+			redistribute();
+		}
+		int[] contents = this.bucketContents[0];
+		int minIndex = contents[0];
+		long minKey = this.keys[minIndex];
+		for (int i = 1; i < this.bucketSizes[0]; i++) {
+			int index = contents[i];
+			int cmp = Long.compareUnsigned(this.keys[index], minKey);
+			if (cmp < 0 || (cmp == 0 && index < minIndex)) {
+				minIndex = index;
+				minKey = this.keys[index];
+			}
+		}
+		return minIndex;
+	}
+
+	/**
+	 * Moves the lowest key of the first non-empty bucket to lastKey and distributes the
+	 * elements of that bucket to the lower buckets.
+	 */
+	private void redistribute() {
+		int bucket = 1;
+		while (this.bucketSizes[bucket] == 0) {
+			bucket++;
+		}
+		int[] contents = this.bucketContents[bucket];
+		int bucketSize = this.bucketSizes[bucket];
+		long minKey = this.keys[contents[0]];
+		for (int i = 1; i < bucketSize; i++) {
+			long key = this.keys[contents[i]];
+			if (Long.compareUnsigned(key, minKey) < 0) {
+				minKey = key;
+			}
+		}
+		this.lastKey = minKey;
+		this.bucketSizes[bucket] = 0;
+		for (int i = 0; i < bucketSize; i++) {
+			insert(contents[i]); // all elements go to lower buckets, so contents is not modified
+		}
+		this.modCount++; // the elements moved, so iterators are no longer valid
+	}
+
+	private final class BucketIterator implements Iterator<E> {
+
+		private final int expectedModCount = modCount;
+		private final int expectedSize = size;
+		private int returned = 0;
+		private int bucket = 0;
+		private int position = 0;
+
+		@Override
+		public boolean hasNext() {
+			return this.returned < this.expectedSize;
+		}
+
+		@Override
+		public E next() {
+			if (modCount != this.expectedModCount) throw new ConcurrentModificationException();
+			if (!hasNext()) throw new NoSuchElementException();
+			while (this.position >= bucketSizes[this.bucket]) {
+				this.bucket++;
+				this.position = 0;
+			}
+			this.returned++;
+			return elements[bucketContents[this.bucket][this.position++]];
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported operation!");
+		}
+	}
+}
@@ -21,13 +21,17 @@
 package org.matsim.core.router.util;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.api.internal.MatsimComparator;
 
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutorService;
@@ -53,6 +57,11 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	
 	private int numberOfThreads = 8;
 
+	private Network network = null;
+
+	/** whether the tables hold the travel disutilities of an update instead of the minimum travel disutilities */
+	private boolean updatedWithTravelDisutilities = false;
+
 	private static final Logger log = Logger.getLogger(PreProcessLandmarks.class);
 
 	public PreProcessLandmarks(final TravelDisutility costFunction) {
@@ -118,38 +127,97 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		for (Node node : network.getNodes().values()) {
 			this.nodeData.put(node, new LandmarksData(this.landmarkCount));
 		}
-		
-		int nOfThreads = this.numberOfThreads;
-		if (nOfThreads > this.landmarks.length) {
-			nOfThreads = this.landmarks.length;
+		this.network = network;
+
+		calculateLandmarkTravelDisutilities(this.costFunction::getLinkMinimumTravelDisutility);
+	}
+
+	/**
+	 * Recalculates the travel disutilities from and to the landmarks, keeping the landmarks themselves,
+	 * so that the A* heuristic stays tight when the travel times change, e.g. due to congestion.
+	 * <p></p>
+	 * For every link, the minimum of its travel disutility at the middle of all time bins is used as lower
+	 * bound. The heuristic thus remains admissible as long as the travel disutilities are constant (or linear)
+	 * within the time bins, like the travel times of the TravelTimeCalculator, and do not depend on the person.
+	 * If the travel disutility cannot be calculated without a person, e.g. with randomized routing, the minimum
+	 * travel disutility of the links must be used, which does not change; the tables are then only recalculated
+	 * if they were updated before, and <code>false</code> is returned, as further updates would be useless.
+	 * <p></p>
+	 * Must not be called while routers are using this data.
+	 *
+	 * @param travelCosts the current travel disutilities
+	 * @param timeBinSize the size of the time bins, in seconds
+	 * @param maxTime the end of the last time bin, in seconds
+	 * @return <code>false</code> if the travel disutility cannot be used to update the tables
+	 */
+	public boolean updateLandmarkTravelDisutilities(final TravelDisutility travelCosts, final double timeBinSize, final double maxTime) {
+		if (this.network == null) {
+			throw new IllegalStateException("The landmarks must be identified first by calling run(network).");
 		}
-		if (nOfThreads < 2) {
-			nOfThreads = 2; // always use at least two threads
+		final List<Link> links = new ArrayList<>(this.network.getLinks().values());
+		if (links.isEmpty()) {
+			return true;
+		}
+		try {
+			travelCosts.getLinkTravelDisutility(links.get(0), timeBinSize / 2, null, null);
+		} catch (RuntimeException e) {
+			log.warn("The travel disutility cannot be calculated without person, so the landmarks cannot be updated with the current travel times.");
+			if (this.updatedWithTravelDisutilities) {
+				// the tables hold the travel disutilities of an earlier update, which may be too high now
+				resetNodeData();
+				calculateLandmarkTravelDisutilities(travelCosts::getLinkMinimumTravelDisutility);
+				this.updatedWithTravelDisutilities = false;
+			}
+			return false;
+		}
+		log.info("Updating travel disutilities from and to the landmarks...");
+		final double[] linkCosts = new double[Id.getNumberOfIds(Link.class)];
+		runInParallel(links.size(), (from, to) -> {
+			for (int i = from; i < to; i++) {
+				Link link = links.get(i);
+				double min = Double.POSITIVE_INFINITY;
+				try {
+					for (double time = timeBinSize / 2; time < maxTime; time += timeBinSize) {
+						min = Math.min(min, travelCosts.getLinkTravelDisutility(link, time, null, null));
+					}
+				} catch (RuntimeException e) {
+					min = Double.POSITIVE_INFINITY;
+				}
+				if (min == Double.POSITIVE_INFINITY) {
+					min = travelCosts.getLinkMinimumTravelDisutility(link);
+				}
+				linkCosts[link.getId().index()] = min;
+			}
+		});
+		resetNodeData();
+		calculateLandmarkTravelDisutilities(link -> linkCosts[link.getId().index()]);
+		this.updatedWithTravelDisutilities = true;
+		return true;
+	}
+
+	private void resetNodeData() {
+		for (Node node : this.network.getNodes().values()) {
+			getNodeData(node).reset();
 		}
+	}
+
+	private void calculateLandmarkTravelDisutilities(final LinkCosts linkCosts) {
+		int nOfThreads = getNumberOfThreadsToUse();
  		log.info("Calculating distance from each node to each of the " + this.landmarkCount + " landmarks using " + nOfThreads + " threads...");
-		now = System.currentTimeMillis();
+		long now = System.currentTimeMillis();
 
-		
 		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
 		for (int i = 0; i < this.landmarks.length; i++) {
-			executor.execute(new Calculator(i, this.landmarks[i], this.nodeData, this.costFunction));
-		}
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-			log.info("wait for landmarks Calculator to finish...");
-			try {
-				executor.awaitTermination(10, TimeUnit.MINUTES);
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
+			executor.execute(new Calculator(i, this.landmarks[i], this.nodeData, linkCosts));
 		}
+		awaitTermination(executor);
 
-		for (Node node : network.getNodes().values()) {
+		for (Node node : this.network.getNodes().values()) {
 			LandmarksData r = getNodeData(node);
 			r.updateMinMaxTravelTimes();
 		}
 
-		for (Node node : network.getNodes().values()) {
+		for (Node node : this.network.getNodes().values()) {
 			LandmarksData r = getNodeData(node);
 			for (int i = 0; i < this.landmarks.length; i++) {
 				if (r.getMinLandmarkTravelTime(i) > r.getMaxLandmarkTravelTime(i)) {
@@ -161,18 +229,61 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
 	}
 
+	private int getNumberOfThreadsToUse() {
+		int nOfThreads = this.numberOfThreads;
+		if (nOfThreads > this.landmarks.length) {
+			nOfThreads = this.landmarks.length;
+		}
+		if (nOfThreads < 2) {
+			nOfThreads = 2; // always use at least two threads
+		}
+		return nOfThreads;
+	}
+
+	private interface Range {
+		void run(int from, int to);
+	}
+
+	private void runInParallel(final int size, final Range range) {
+		int nOfThreads = Math.max(this.numberOfThreads, 1);
+		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+		int chunk = (size + nOfThreads - 1) / nOfThreads;
+		for (int from = 0; from < size; from += chunk) {
+			final int start = from;
+			final int end = Math.min(size, from + chunk);
+			executor.execute(() -> range.run(start, end));
+		}
+		awaitTermination(executor);
+	}
+
+	private static void awaitTermination(final ExecutorService executor) {
+		executor.shutdown();
+		while (!executor.isTerminated()) {
+			log.info("wait for landmarks Calculator to finish...");
+			try {
+				executor.awaitTermination(10, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private interface LinkCosts {
+		double getLinkCost(Link link);
+	}
+
 	private static class Calculator implements Runnable {
 		
 		private final int landmarkIdx;
 		private final Node landmark;
 		private final Map<Node, DeadEndData> nodeData;
-		private final TravelDisutility costFunction;
+		private final LinkCosts linkCosts;
 		
-		public Calculator(final int landmarkIdx, final Node landmark, final Map<Node, DeadEndData> nodeData, final TravelDisutility costFunction) {
+		public Calculator(final int landmarkIdx, final Node landmark, final Map<Node, DeadEndData> nodeData, final LinkCosts linkCosts) {
 			this.landmarkIdx = landmarkIdx;
 			this.landmark = landmark;
 			this.nodeData = nodeData;
-			this.costFunction = costFunction;
+			this.linkCosts = linkCosts;
 		}
 		
 		@Override
@@ -195,7 +306,7 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 				for (Link l : node.getOutLinks().values()) {
 					Node n;
 					n = l.getToNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
+					double linkTravTime = this.linkCosts.getLinkCost(l);
 					role2 = (LandmarksData) this.nodeData.get(n);
 					double totalTravelTime = fromTravTime + linkTravTime;
 					if (role2.getFromLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
@@ -219,7 +330,7 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 				LandmarksData role2;
 				for (Link l : node.getInLinks().values()) {
 					Node n = l.getFromNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
+					double linkTravTime = this.linkCosts.getLinkCost(l);
 					role2 = (LandmarksData) this.nodeData.get(n);
 					double totalTravelTime = toTravTime + linkTravTime;
 					if (role2.getToLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
@@ -281,6 +392,11 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 			return this.landmarkTravelTime1[landmarkIndex];
 		}
 
+		void reset() {
+			Arrays.fill(this.landmarkTravelTime1, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.landmarkTravelTime2, Double.POSITIVE_INFINITY);
+		}
+
 		void updateMinMaxTravelTimes() {
 			for (int i = 0; i < this.landmarkTravelTime1.length; i++) {
 				setTravelTimes(i, this.landmarkTravelTime2[i], this.landmarkTravelTime1[i]);
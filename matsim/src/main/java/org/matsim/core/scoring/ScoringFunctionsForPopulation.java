@@ -22,10 +22,16 @@ package org.matsim.core.scoring;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
@@ -42,6 +48,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -60,6 +67,12 @@ import gnu.trove.list.array.TDoubleArrayList;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <p></p>
+ * With scoring threads, the activities, legs and events are not scored on the events handling thread, but handed to the
+ * thread of the person, in batches.  All items of a person go to the same thread, so they are scored in the same order.
+ * The threads also finish the scoring functions at the end of the iteration.  An exception in a scoring function is then
+ * only thrown by {@link #finishScoringFunctions()}, and the scoring functions may only be used again after that.  If a
+ * thread stops otherwise, e.g. because it was interrupted, handing items to it fails instead.
  * 
  * @author michaz
  *
@@ -69,7 +82,6 @@ import gnu.trove.list.array.TDoubleArrayList;
 	// can be changed there.  kai, sep'17
 	// I just removed that.  kai, apr'18
 	
-	@SuppressWarnings("unused")
 	private final static Logger log = Logger.getLogger(ScoringFunctionsForPopulation.class);
 	private final Population population;
 	private final ScoringFunctionFactory scoringFunctionFactory;
@@ -87,6 +99,9 @@ import gnu.trove.list.array.TDoubleArrayList;
 	private final Map<Id<Person>, ScoringFunction> agentScorers = new HashMap<>();
 	private final Map<Id<Person>, TDoubleCollection> partialScores = new LinkedHashMap<>();
 	private final AtomicReference<Throwable> exception = new AtomicReference<>();
+
+	private final int numberOfScoringThreads;
+	private ScoringWorker[] workers = null;
 	
 //	/**
 //	 * For something like the bicycle scoring, we need to know individual links at the level of the scoring function.  This is a first sketch how this could be implemented.
@@ -97,8 +112,19 @@ import gnu.trove.list.array.TDoubleArrayList;
 	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
 
 	@Inject
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Population population, ScoringFunctionFactory scoringFunctionFactory, PlanCalcScoreConfigGroup planCalcScoreConfigGroup) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, planCalcScoreConfigGroup.getNumberOfScoringThreads());
+	}
+
 	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 								  Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 0);
+	}
+
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfScoringThreads) {
+		this.numberOfScoringThreads = numberOfScoringThreads;
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -115,12 +141,32 @@ import gnu.trove.list.array.TDoubleArrayList;
 //		}
 	}
 
-	private void init() {
+	synchronized private void init() {
+		if (this.workers != null) {
+			// the scoring functions of the last iteration were not finished
+			stopWorkers(STOP);
+		}
 		for (Person person : population.getPersons().values()) {
 			ScoringFunction data = scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 		}
+		if (this.numberOfScoringThreads > 0) {
+			this.workers = new ScoringWorker[this.numberOfScoringThreads];
+			for (int i = 0; i < this.workers.length; i++) {
+				this.workers[i] = new ScoringWorker("ScoringThread." + i);
+			}
+			for (Person person : population.getPersons().values()) {
+				getWorker(person.getId()).persons.add(person.getId());
+			}
+			for (ScoringWorker worker : this.workers) {
+				worker.thread.start();
+			}
+		}
+	}
+
+	private ScoringWorker getWorker(final Id<Person> personId) {
+		return this.workers[personId.index() % this.workers.length];
 	}
 
 	@Override
@@ -131,19 +177,14 @@ import gnu.trove.list.array.TDoubleArrayList;
 		// link enter/leave events are NOT passed on, for performance reasons.
 		// kai/dominik, dec'12
 		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
+			Id<Person> personId = ((HasPersonId) o).getPersonId();
+			ScoringFunction scoringFunction = getScoringFunctionForAgent(personId);
 			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} 
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
+				if (this.workers != null) {
+					getWorker(personId).add(scoringFunction, null, o);
+				} else {
+					handleEvent(scoringFunction, o);
+				}
 			}
 		}
 //		if ( passLinkEventsToPerson ) {
@@ -161,7 +202,11 @@ import gnu.trove.list.array.TDoubleArrayList;
 				ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
 				// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
 				if (scoringFunction != null) {
-					scoringFunction.handleEvent(o) ;
+					if (this.workers != null) {
+						getWorker(driverId).add(scoringFunction, null, o);
+					} else {
+						scoringFunction.handleEvent(o) ;
+					}
 				}
 			}
 			/*
@@ -174,15 +219,33 @@ import gnu.trove.list.array.TDoubleArrayList;
 //		}
 	}
 
+	private static void handleEvent(ScoringFunction scoringFunction, Event o) {
+		if (o instanceof PersonStuckEvent) {
+			scoringFunction.agentStuck(o.getTime());
+		} else if (o instanceof PersonMoneyEvent) {
+			scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+			// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+			// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+		} 
+//		else {
+			scoringFunction.handleEvent(o);
+			// passing this on in any case, see comment above.  kai, mar'17
+//		}
+	}
+
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
 		if (scoringFunction != null) {
-			scoringFunction.handleLeg(leg);
 			TDoubleCollection partialScoresForAgent = partialScores.get(agentId);
-			partialScoresForAgent.add(scoringFunction.getScore());
+			if (this.workers != null) {
+				getWorker(agentId).add(scoringFunction, partialScoresForAgent, leg);
+			} else {
+				scoringFunction.handleLeg(leg);
+				partialScoresForAgent.add(scoringFunction.getScore());
+			}
 		}
 	}
 
@@ -192,9 +255,13 @@ import gnu.trove.list.array.TDoubleArrayList;
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
 		if (scoringFunction != null) {
-			scoringFunction.handleActivity(activity);
 			TDoubleCollection partialScoresForAgent = partialScores.get(agentId);
-			partialScoresForAgent.add(scoringFunction.getScore());
+			if (this.workers != null) {
+				getWorker(agentId).add(scoringFunction, partialScoresForAgent, activity);
+			} else {
+				scoringFunction.handleActivity(activity);
+				partialScoresForAgent.add(scoringFunction.getScore());
+			}
 		}
 	}
 
@@ -213,6 +280,7 @@ import gnu.trove.list.array.TDoubleArrayList;
 	}
 
 	public void finishScoringFunctions() {
+		boolean finishedByWorkers = stopWorkers(FINISH);
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = exception.get();
 		if (throwable != null) {
@@ -222,6 +290,9 @@ import gnu.trove.list.array.TDoubleArrayList;
 				throw new RuntimeException(throwable);
 			}
 		}
+		if (finishedByWorkers) {
+			return;
+		}
 		for (ScoringFunction sf : this.agentScorers.values()) {
 			sf.finish();
 		}
@@ -230,6 +301,32 @@ import gnu.trove.list.array.TDoubleArrayList;
 		}
 	}
 
+	/**
+	 * Hands the remaining items and the marker to all threads and waits until they are done.
+	 *
+	 * @return true if there were threads.
+	 */
+	synchronized private boolean stopWorkers(final ScoringBatch marker) {
+		if (this.workers == null) {
+			return false;
+		}
+		for (ScoringWorker worker : this.workers) {
+			// (a thread that has already stopped, e.g. after an interrupt, has recorded that as the exception)
+			if (worker.flush()) {
+				worker.offer(marker);
+			}
+		}
+		try {
+			for (ScoringWorker worker : this.workers) {
+				worker.thread.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		this.workers = null;
+		return true;
+	}
+
 	public void writePartialScores(String iterationFilename) {
 		try ( BufferedWriter out = IOUtils.getBufferedWriter(iterationFilename) ) {
 			for (Entry<Id<Person>, TDoubleCollection> entry : this.partialScores.entrySet()) {
@@ -251,6 +348,171 @@ import gnu.trove.list.array.TDoubleArrayList;
 
 	}
 
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final long OFFER_TIMEOUT_MS = 100;
+
+	/* markers, compared by identity */
+	private static final ScoringBatch FINISH = new ScoringBatch(0);
+	private static final ScoringBatch STOP = new ScoringBatch(0);
+
+	/**
+	 * Activities, legs or events to be scored by the scoring functions of persons, in parallel arrays.  The batches
+	 * are handed back to the events handling thread when they are done, so they are only allocated once.
+	 */
+	private static final class ScoringBatch {
+		private final ScoringFunction[] scoringFunctions;
+		private final TDoubleCollection[] partialScores;
+		private final Object[] items;
+		private int size = 0;
+
+		ScoringBatch(final int capacity) {
+			this.scoringFunctions = new ScoringFunction[capacity];
+			this.partialScores = new TDoubleCollection[capacity];
+			this.items = new Object[capacity];
+		}
+
+		void add(final ScoringFunction scoringFunction, final TDoubleCollection partialScores, final Object item) {
+			this.scoringFunctions[this.size] = scoringFunction;
+			this.partialScores[this.size] = partialScores;
+			this.items[this.size] = item;
+			this.size++;
+		}
+
+		boolean isFull() {
+			return this.size == this.items.length;
+		}
+
+		void run() {
+			for (int i = 0; i < this.size; i++) {
+				ScoringFunction scoringFunction = this.scoringFunctions[i];
+				Object item = this.items[i];
+				if (item instanceof Activity) {
+					scoringFunction.handleActivity((Activity) item);
+					this.partialScores[i].add(scoringFunction.getScore());
+				} else if (item instanceof Leg) {
+					scoringFunction.handleLeg((Leg) item);
+					this.partialScores[i].add(scoringFunction.getScore());
+				} else {
+					handleEvent(scoringFunction, (Event) item);
+				}
+			}
+		}
+
+		void clear() {
+			Arrays.fill(this.scoringFunctions, 0, this.size, null);
+			Arrays.fill(this.partialScores, 0, this.size, null);
+			Arrays.fill(this.items, 0, this.size, null);
+			this.size = 0;
+		}
+	}
+
+	/**
+	 * Scores the items of its persons.  The items are only added from the synchronized methods of the outer class.
+	 * After an exception in a scoring function, the thread keeps taking the batches without scoring them, so the events
+	 * handling does not block on a full queue.  If the thread stops otherwise, e.g. when it is interrupted, adding
+	 * items fails instead of waiting for it.
+	 */
+	private final class ScoringWorker implements Runnable {
+		private final BlockingQueue<ScoringBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private final BlockingQueue<ScoringBatch> freeBatches = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+		private final List<Id<Person>> persons = new ArrayList<>();
+		private final Thread thread;
+		private ScoringBatch batch = new ScoringBatch(BATCH_SIZE);
+
+		ScoringWorker(final String name) {
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		void add(final ScoringFunction scoringFunction, final TDoubleCollection partialScores, final Object item) {
+			this.batch.add(scoringFunction, partialScores, item);
+			if (this.batch.isFull() && !flush()) {
+				throw new RuntimeException(this.thread.getName() + " has stopped, no more items can be scored.", exception.get());
+			}
+		}
+
+		/**
+		 * @return false if the thread has stopped, so the items could not be handed to it.
+		 */
+		boolean flush() {
+			if (this.batch.size == 0) {
+				return true;
+			}
+			if (!offer(this.batch)) {
+				return false;
+			}
+			ScoringBatch free = this.freeBatches.poll();
+			this.batch = free != null ? free : new ScoringBatch(BATCH_SIZE);
+			return true;
+		}
+
+		/**
+		 * Waits until the batch is in the queue, but only as long as the thread is alive.
+		 *
+		 * @return false if the thread has stopped.
+		 */
+		boolean offer(final ScoringBatch tasks) {
+			try {
+				while (!this.queue.offer(tasks, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+					if (!this.thread.isAlive()) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			boolean failed = false;
+			while (true) {
+				ScoringBatch tasks;
+				try {
+					tasks = this.queue.take();
+				} catch (InterruptedException e) {
+					log.error(this.thread.getName() + " was interrupted, will not score any more items.", e);
+					exception.compareAndSet(null, e);
+					return;
+				}
+				if (tasks == STOP) {
+					return;
+				}
+				if (failed) {
+					if (tasks == FINISH) {
+						return;
+					}
+					tasks.clear();
+					this.freeBatches.offer(tasks);
+					continue;
+				}
+				try {
+					if (tasks == FINISH) {
+						for (Id<Person> personId : this.persons) {
+							ScoringFunction sf = agentScorers.get(personId);
+							sf.finish();
+							partialScores.get(personId).add(sf.getScore());
+						}
+						return;
+					}
+					tasks.run();
+				} catch (RuntimeException | Error e) {
+					log.error("Exception in " + this.thread.getName() + ", will not score any more items.", e);
+					exception.compareAndSet(null, e);
+					if (tasks == FINISH) {
+						return;
+					}
+					failed = true;
+				}
+				tasks.clear();
+				this.freeBatches.offer(tasks);
+			}
+		}
+	}
+
 //	public boolean isPassLinkEventsToPerson() {
 //		return passLinkEventsToPerson;
 //	}
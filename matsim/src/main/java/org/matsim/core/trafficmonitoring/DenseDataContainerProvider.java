@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DenseDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator.DataContainer;
+
+/**
+ * Stores the travel times of the given links in three flat arrays, indexed by the position of the link and
+ * the time bin, and finds the data of a link by the {@link Id#index()} of its id, both when handling events and
+ * when routing.  Unlike the {@link ArrayBasedDataContainerProvider}, no map is looked up on the events path.
+ * <br>
+ * The arrays are only allocated for the given links, e.g. the links of the network, not for all link ids that
+ * exist.  The data of other links is stored in {@link TravelTimeDataArray}s like by the
+ * {@link MapBasedDataContainerProvider}.
+ *
+ * @author agent
+ */
+final class DenseDataContainerProvider implements DataContainerProvider {
+
+	private final Map<Id<Link>, DataContainer> linkData;
+	private final int numSlots;
+
+	/* the position of the link in the flat arrays by the index of its id, -1 for the links that are not stored here */
+	private final int[] positionByIndex;
+	private final Link[] linkByPosition;
+	private final DataContainer[] dataByIndex;
+	private final double[] timeSum;
+	private final int[] timeCnt;
+	private final double[] travelTimes;
+
+	private final DataContainerProvider delegate;
+
+	/**
+	 * @param links the links whose data is stored in the flat arrays
+	 * @param network used to create the data of the other links
+	 */
+	DenseDataContainerProvider(final Map<Id<Link>, DataContainer> linkData, final Collection<? extends Link> links,
+			final Network network, final int numSlots) {
+		this.linkData = linkData;
+		this.numSlots = numSlots;
+		long size = (long) links.size() * numSlots;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many links and time bins for the dense travel time calculator: "
+					+ links.size() + " links times " + numSlots + " time bins.");
+		}
+		int maxIndex = -1;
+		for (Link link : links) {
+			maxIndex = Math.max(maxIndex, link.getId().index());
+		}
+		this.positionByIndex = new int[maxIndex + 1];
+		Arrays.fill(this.positionByIndex, -1);
+		this.linkByPosition = new Link[links.size()];
+		int position = 0;
+		for (Link link : links) {
+			this.positionByIndex[link.getId().index()] = position;
+			this.linkByPosition[position] = link;
+			position++;
+		}
+		this.dataByIndex = new DataContainer[maxIndex + 1];
+		this.timeSum = new double[(int) size];
+		this.timeCnt = new int[(int) size];
+		this.travelTimes = new double[(int) size];
+		this.delegate = new MapBasedDataContainerProvider(linkData, new TravelTimeDataArrayFactory(network, numSlots));
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		int index = linkId.index();
+		if (index >= this.positionByIndex.length || this.positionByIndex[index] < 0) {
+			return this.delegate.getTravelTimeData(linkId, createIfMissing);
+		}
+		DataContainer data = this.dataByIndex[index];
+		if (data == null && createIfMissing) {
+			data = createDataContainer(linkId);
+		}
+		return data;
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Link link, final boolean createIfMissing) {
+		return getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+	/*
+	 * The router may ask for links without data from several threads.  The containers are also put into the map,
+	 * so TravelTimeCalculator.reset(...) finds them.
+	 */
+	private synchronized DataContainer createDataContainer(final Id<Link> linkId) {
+		int index = linkId.index();
+		DataContainer data = this.dataByIndex[index];
+		if (data == null) {
+			int position = this.positionByIndex[index];
+			data = new DataContainer(new TravelTimeDataSlice(this.linkByPosition[position], position * this.numSlots));
+			this.linkData.put(linkId, data);
+			this.dataByIndex[index] = data;
+		}
+		return data;
+	}
+
+	/**
+	 * The time bins of one link in the flat arrays, with the same behaviour as {@link TravelTimeDataArray}.
+	 */
+	private final class TravelTimeDataSlice implements TravelTimeData {
+
+		private final Link link;
+		private final int offset;
+
+		TravelTimeDataSlice(final Link link, final int offset) {
+			this.link = link;
+			this.offset = offset;
+			resetTravelTimes();
+		}
+
+		@Override
+		public void resetTravelTimes() {
+			for (int i = this.offset; i < this.offset + numSlots; i++) {
+				timeSum[i] = 0.0;
+				timeCnt[i] = 0;
+				travelTimes[i] = -1.0;
+			}
+		}
+
+		@Override
+		public void setTravelTime(final int timeSlot, final double traveltime) {
+			int i = this.offset + timeSlot;
+			timeSum[i] = traveltime;
+			timeCnt[i] = 1;
+			travelTimes[i] = traveltime;
+		}
+
+		@Override
+		public void addTravelTime(final int timeSlot, final double traveltime) {
+			int i = this.offset + timeSlot;
+			timeSum[i] += traveltime;
+			timeCnt[i]++;
+			travelTimes[i] = -1.0;
+		}
+
+		@Override
+		public double getTravelTime(final int timeSlot, final double now) {
+			int i = this.offset + timeSlot;
+			double ttime = travelTimes[i];
+			if (ttime >= 0.0) return ttime; // negative values are invalid.
+
+			int cnt = timeCnt[i];
+			if (cnt == 0) {
+				travelTimes[i] = this.link.getLength() / this.link.getFreespeed(now);
+			} else {
+				travelTimes[i] = timeSum[i] / cnt;
+			}
+			return travelTimes[i];
+		}
+	}
+
+}
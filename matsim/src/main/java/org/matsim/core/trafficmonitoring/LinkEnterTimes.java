@@ -0,0 +1,159 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+
+/**
+ * Remembers for every vehicle on the network the link it entered last and when, keyed by the
+ * {@link org.matsim.api.core.v01.Id#index()} of the vehicle id.  An open-addressing hash table with linear
+ * probing in three parallel arrays, so it neither creates objects per entry nor keeps the events.
+ * Its size follows the number of vehicles currently on the network, not the number of vehicle ids.
+ *
+ * @author agent
+ */
+final class LinkEnterTimes {
+
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] vehicles;
+	private int[] links;
+	private double[] times;
+	private int mask;
+	private int size = 0;
+
+	LinkEnterTimes() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(final int capacity) {
+		this.vehicles = new int[capacity];
+		Arrays.fill(this.vehicles, EMPTY);
+		this.links = new int[capacity];
+		this.times = new double[capacity];
+		this.mask = capacity - 1;
+	}
+
+	private int home(final int vehicle) {
+		int hash = vehicle * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & this.mask;
+	}
+
+	/**
+	 * @return the position of the vehicle in the table, to be used with {@link #getLinkIndex(int)},
+	 * {@link #getTime(int)} and {@link #removeAt(int)}, or <code>-1</code> if the vehicle is not in the table.
+	 */
+	int indexOf(final int vehicle) {
+		int pos = home(vehicle);
+		while (true) {
+			int v = this.vehicles[pos];
+			if (v == vehicle) {
+				return pos;
+			}
+			if (v == EMPTY) {
+				return -1;
+			}
+			pos = (pos + 1) & this.mask;
+		}
+	}
+
+	int getLinkIndex(final int pos) {
+		return this.links[pos];
+	}
+
+	double getTime(final int pos) {
+		return this.times[pos];
+	}
+
+	/**
+	 * Sets the link and enter time of the vehicle, replacing the previous ones.
+	 */
+	void put(final int vehicle, final int link, final double time) {
+		if (2 * (this.size + 1) > this.vehicles.length) {
+			rehash(2 * this.vehicles.length);
+		}
+		int pos = home(vehicle);
+		while (this.vehicles[pos] != EMPTY && this.vehicles[pos] != vehicle) {
+			pos = (pos + 1) & this.mask;
+		}
+		if (this.vehicles[pos] == EMPTY) {
+			this.vehicles[pos] = vehicle;
+			this.size++;
+		}
+		this.links[pos] = link;
+		this.times[pos] = time;
+	}
+
+	void remove(final int vehicle) {
+		int pos = indexOf(vehicle);
+		if (pos >= 0) {
+			removeAt(pos);
+		}
+	}
+
+	/**
+	 * Removes the entry at the given position.  The following entries of the same probe sequence are shifted
+	 * back instead of leaving a tombstone, so lookups never get slower after many removals.
+	 */
+	void removeAt(final int pos) {
+		int hole = pos;
+		int next = (pos + 1) & this.mask;
+		while (this.vehicles[next] != EMPTY) {
+			int home = home(this.vehicles[next]);
+			// the entry may be moved to the hole if the hole lies between its home and its position
+			if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+				this.vehicles[hole] = this.vehicles[next];
+				this.links[hole] = this.links[next];
+				this.times[hole] = this.times[next];
+				hole = next;
+			}
+			next = (next + 1) & this.mask;
+		}
+		this.vehicles[hole] = EMPTY;
+		this.size--;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	void clear() {
+		if (this.size > 0) {
+			Arrays.fill(this.vehicles, EMPTY);
+			this.size = 0;
+		}
+	}
+
+	private void rehash(final int capacity) {
+		int[] oldVehicles = this.vehicles;
+		int[] oldLinks = this.links;
+		double[] oldTimes = this.times;
+		allocate(capacity);
+		this.size = 0;
+		for (int i = 0; i < oldVehicles.length; i++) {
+			if (oldVehicles[i] != EMPTY) {
+				put(oldVehicles[i], oldLinks[i], oldTimes[i]);
+			}
+		}
+	}
+
+}
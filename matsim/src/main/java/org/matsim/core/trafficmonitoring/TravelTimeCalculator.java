@@ -19,7 +19,11 @@
  * *********************************************************************** */
 package org.matsim.core.trafficmonitoring;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -42,6 +46,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
@@ -63,6 +68,14 @@ import com.google.inject.Inject;
  * use {@link TravelTimeDataHashMap} (see {@link #setTravelTimeDataFactory(TravelTimeDataFactory)}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
  * {@link TravelTimeDataArray} is used.
+ * <br>
+ * With {@link TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorDense}, the link travel
+ * times of all links are stored in flat arrays indexed by the link and the time bin instead, see
+ * {@link DenseDataContainerProvider}, so no map is looked up when the events are handled.
+ * <br>
+ * To handle the events in parallel, the calculator can be split by link into shards, see
+ * {@link #createSharded(Network, TravelTimeCalculatorConfigGroup, int)}.  Every shard only stores the travel
+ * times of its own links, but answers the queries for all links.
  * 
  * @author dgrether
  * @author mrieser
@@ -84,9 +97,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	private Map<Tuple<Id<Link>, Id<Link>>, DataContainer> linkToLinkData;
 
-	private final DataContainerProvider dataContainerProvider;
+	private DataContainerProvider dataContainerProvider;
 	
-	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
+	private final LinkEnterTimes linkEnterTimes;
 
 	private final Set<Id<Vehicle>> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
@@ -98,6 +111,11 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 	private final boolean calculateLinkToLinkTravelTimes;
 
 	private TravelTimeDataFactory ttDataFactory = null;
+
+	/* the shards this calculator is part of, or null if it is not sharded.  A shard handles the link events of the links
+	 * whose id index modulo the number of shards is its index in the array. */
+	private TravelTimeCalculator[] shards = null;
+	private int shard = 0;
 	
 	@Inject private QSimConfigGroup qsimConfig ;
 
@@ -107,6 +125,33 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		return calculator;
 	}
 
+	/**
+	 * Creates a calculator that is split by link into <code>numberOfShards</code> calculators, which can handle the
+	 * events in parallel, e.g. each in another thread of a parallel events manager.  All of the
+	 * {@link #getShards()} must be added to the events manager.  Each of them answers the queries for all links.
+	 */
+	public static TravelTimeCalculator createSharded(Network network, TravelTimeCalculatorConfigGroup group, int numberOfShards) {
+		TravelTimeCalculator[] shards = new TravelTimeCalculator[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			shards[i] = new TravelTimeCalculator(network, group);
+		}
+		setShards(shards);
+		// (configured after the shards are known, so the dense data is only allocated for the links of each shard)
+		for (TravelTimeCalculator shard : shards) {
+			configure(shard, group, network);
+		}
+		return shards[0];
+	}
+
+	private static void setShards(TravelTimeCalculator[] shards) {
+		if (shards.length > 1) {
+			for (int i = 0; i < shards.length; i++) {
+				shards[i].shards = shards;
+				shards[i].shard = i;
+			}
+		}
+	}
+
 	static TravelTimeCalculator configure(TravelTimeCalculator calculator, TravelTimeCalculatorConfigGroup config, Network network) {
 		// Customize micro-behavior of the TravelTimeCalculator based on config. Should not be necessary for most use cases.
 		switch ( config.getTravelTimeCalculatorType() ) {
@@ -116,6 +161,11 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			case TravelTimeCalculatorHashMap:
 				calculator.setTravelTimeDataFactory(new TravelTimeDataHashMapFactory(network));
 				break;
+			case TravelTimeCalculatorDense:
+				// (the factory is only used for the link-to-link travel times then)
+				calculator.setTravelTimeDataFactory(new TravelTimeDataArrayFactory(network, calculator.numSlots));
+				calculator.useDenseLinkData(network);
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -149,11 +199,25 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 	}
 
 	@Inject
-	TravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, EventsManager eventsManager, Network network) {
+	TravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, EventsManager eventsManager, Network network,
+			ParallelEventHandlingConfigGroup parallelEventHandlingConfig, QSimConfigGroup qsimConfig) {
 		// this injected constructor is not used when getSeparateModes is true
 		this(network, ttconfigGroup.getTraveltimeBinSize(), ttconfigGroup.getMaxTime(), ttconfigGroup.isCalculateLinkTravelTimes(), ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModes()));
 		eventsManager.addHandler(this);
-		configure(this, ttconfigGroup, network);
+		this.qsimConfig = qsimConfig;
+
+		// this calculator is the first shard, the others are only known to it
+		TravelTimeCalculator[] shards = new TravelTimeCalculator[parallelEventHandlingConfig.getNumberOfLinkObserverShards()];
+		shards[0] = this;
+		for (int i = 1; i < shards.length; i++) {
+			shards[i] = new TravelTimeCalculator(network, ttconfigGroup);
+			shards[i].qsimConfig = qsimConfig;
+			eventsManager.addHandler(shards[i]);
+		}
+		setShards(shards);
+		for (TravelTimeCalculator shard : shards) {
+			configure(shard, ttconfigGroup, network);
+		}
 	}
 
 	public TravelTimeCalculator(final Network network, TravelTimeCalculatorConfigGroup ttconfigGroup) {
@@ -194,7 +258,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			// assume that every link has 2 outgoing links as default
 			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
+		this.linkEnterTimes = new LinkEnterTimes();
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
@@ -211,23 +275,31 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		 * performs a trip with one of those modes. if not, we skip the event. */
 		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
 
-		LinkEnterEvent oldEvent = this.linkEnterEvents.remove(e.getVehicleId());
-		if ((oldEvent != null) && this.calculateLinkToLinkTravelTimes) {
-			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(oldEvent.getLinkId(), e.getLinkId());
+		int vehicle = e.getVehicleId().index();
+		int pos = (this.calculateLinkToLinkTravelTimes || this.shards != null) ? this.linkEnterTimes.indexOf(vehicle) : -1;
+		if (pos >= 0 && this.calculateLinkToLinkTravelTimes) {
+			// (the turn is stored by the shard of the from link, which is the one that knows the enter time)
+			Id<Link> fromLinkId = Id.get(this.linkEnterTimes.getLinkIndex(pos), Link.class);
+			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(fromLinkId, e.getLinkId());
 			DataContainer data = getLinkToLinkTravelTimeData(fromToLink, true);
-			this.aggregator.addTravelTime(data.ttData, oldEvent.getTime(), e.getTime());
+			this.aggregator.addTravelTime(data.ttData, this.linkEnterTimes.getTime(pos), e.getTime());
 			data.needsConsolidation = true;
 		}
-		this.linkEnterEvents.put(e.getVehicleId(), e);
+		if (isShardOf(e.getLinkId())) {
+			this.linkEnterTimes.put(vehicle, e.getLinkId().index(), e.getTime());
+		} else if (pos >= 0) {
+			// the vehicle has left the links of this shard
+			this.linkEnterTimes.removeAt(pos);
+		}
 	}
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
-		if (this.calculateLinkTravelTimes) {
-			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
-			if (oldEvent != null) {
+		if (this.calculateLinkTravelTimes && isShardOf(e.getLinkId())) {
+			int pos = this.linkEnterTimes.indexOf(e.getVehicleId().index());
+			if (pos >= 0) {
 				DataContainer data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-				this.aggregator.addTravelTime(data.ttData, oldEvent.getTime(), e.getTime());
+				this.aggregator.addTravelTime(data.ttData, this.linkEnterTimes.getTime(pos), e.getTime());
 				data.needsConsolidation = true;
 			}
 		}
@@ -248,7 +320,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		/* remove EnterEvents from list when a vehicle arrives.
 		 * otherwise, the activity duration would counted as travel time, when the
 		 * vehicle departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId().index());
 
 		// try to remove vehicles from set with filtered vehicles
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
@@ -259,16 +331,19 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		/* remove EnterEvents from list when a bus stops on a link.
 		 * otherwise, the stop time would counted as travel time, when the
 		 * bus departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId().index());
 	}
 
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
-		LinkEnterEvent e = this.linkEnterEvents.remove(event.getVehicleId());
-		if (e != null) {
-			DataContainer data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
+		int pos = this.linkEnterTimes.indexOf(event.getVehicleId().index());
+		if (pos >= 0) {
+			Id<Link> linkId = Id.get(this.linkEnterTimes.getLinkIndex(pos), Link.class);
+			double enterTime = this.linkEnterTimes.getTime(pos);
+			this.linkEnterTimes.removeAt(pos);
+			DataContainer data = this.dataContainerProvider.getTravelTimeData(linkId, true);
 			data.needsConsolidation = true;
-			this.aggregator.addStuckEventTravelTime(data.ttData, e.getTime(), event.getTime());
+			this.aggregator.addStuckEventTravelTime(data.ttData, enterTime, event.getTime());
 			if (this.calculateLinkToLinkTravelTimes 
 					&& event.getTime() < qsimConfig.getEndTime() 
 					// (we think that this only makes problems when the abort is not just because of mobsim end time. kai & theresa, jan'17) 
@@ -282,6 +357,22 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
 	}
 
+	private boolean isShardOf(final Id<Link> linkId) {
+		return this.shards == null || linkId.index() % this.shards.length == this.shard;
+	}
+
+	private TravelTimeCalculator getShard(final Id<Link> linkId) {
+		return this.shards == null ? this : this.shards[linkId.index() % this.shards.length];
+	}
+
+	/**
+	 * @return the shards this calculator is part of, which must all be added to the events manager, or only this
+	 * calculator if it is not sharded.
+	 */
+	public List<TravelTimeCalculator> getShards() {
+		return this.shards == null ? Collections.singletonList(this) : Collections.unmodifiableList(Arrays.asList(this.shards));
+	}
+
 	private DataContainer getLinkToLinkTravelTimeData(Tuple<Id<Link>, Id<Link>> fromLinkToLink, final boolean createIfMissing) {
 		DataContainer data = this.linkToLinkData.get(fromLinkToLink);
 		if ((null == data) && createIfMissing) {
@@ -299,6 +390,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 	 */
 	public double getLinkTravelTime(final Link link, final double time) {
 		if (this.calculateLinkTravelTimes) {
+			if (this.shards != null && !isShardOf(link.getId())) {
+				return getShard(link.getId()).getLinkTravelTime(link, time);
+			}
 			
 			DataContainer data = this.dataContainerProvider.getTravelTimeData(link, true);
 			if (data.needsConsolidation) {
@@ -343,6 +437,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			throw new IllegalStateException("No link to link travel time is available " +
 					"if calculation is switched off by config option!");
 		}
+		if (this.shards != null && !isShardOf(fromLinkId)) {
+			return getShard(fromLinkId).getLinkToLinkTravelTime(fromLinkId, toLinkId, time);
+		}
 		DataContainer data = this.getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId), true);
 		if (data.needsConsolidation) {
 			consolidateData(data);
@@ -364,7 +461,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 				data.needsConsolidation = false;
 			}
 		}
-		this.linkEnterEvents.clear();
+		this.linkEnterTimes.clear();
 		this.vehiclesToIgnore.clear();
 	}
 
@@ -372,6 +469,24 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		this.ttDataFactory = factory;
 	}
 
+	/**
+	 * Stores the link travel times in flat arrays indexed by the link and the time bin, see
+	 * {@link DenseDataContainerProvider}.  Must be called before the first event is handled.  If the calculator
+	 * is sharded, the shards must be set before, so only the links of this shard are allocated.
+	 */
+	/*package*/ void useDenseLinkData(final Network network) {
+		if (this.calculateLinkTravelTimes) {
+			List<Link> links = new ArrayList<>();
+			for (Link link : network.getLinks().values()) {
+				if (isShardOf(link.getId())) {
+					links.add(link);
+				}
+			}
+			this.linkData.clear();
+			this.dataContainerProvider = new DenseDataContainerProvider(this.linkData, links, network, this.numSlots);
+		}
+	}
+
 	public void setTravelTimeAggregator(final AbstractTravelTimeAggregator aggregator) {
 		this.aggregator = aggregator;
 	}
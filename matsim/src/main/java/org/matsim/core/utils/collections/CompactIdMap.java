@@ -0,0 +1,364 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactIdMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Memory-optimized map for storing large numbers of elements by their {@link Id}, e.g. the links of a
+ * network or the persons of a population. Like {@link IdentifiableArrayMap}, keys and values are stored
+ * in plain arrays, in the order they were added. In addition, the position of every key in these arrays is
+ * stored in an int array indexed by {@link Id#index()}, so access using {@link #get(Object)} has a runtime
+ * of <code>O(1)</code>. Compared to a LinkedHashMap, this saves the entry object per element, i.e. about
+ * 40 bytes per element.
+ * <p></p>
+ * By default, the entries are iterated in the order they were added, like in a LinkedHashMap. If a
+ * comparator is given, the entries are iterated in the order of their keys, like in a TreeMap; the order
+ * is only determined when the map is iterated after a modification.
+ * <p></p>
+ * Keys are compared by identity, which is the same as equality for ids of the same type, as ids are cached.
+ *
+ * @author agent
+ *
+ * @param <K> the type of the ids
+ * @param <V> the type of the values
+ */
+public class CompactIdMap<K, V> extends AbstractMap<Id<K>, V> {
+
+	private static final int[] EMPTY_POSITIONS = new int[0];
+
+	private final Comparator<? super Id<K>> comparator;
+
+	private Id<K>[] keys;
+	private Object[] values;
+	/** for every id index, the position of the key in the arrays plus 1, or 0 if the key is not in this map */
+	private int[] positions = EMPTY_POSITIONS;
+	/** number of used positions, including removed ones */
+	private int end = 0;
+	private int size = 0;
+	private int modCount = 0;
+	/** positions in the order of the comparator, <code>null</code> if not yet determined */
+	private volatile int[] sortedPositions = null;
+
+	private EntrySet entrySet = null;
+
+	public CompactIdMap() {
+		this(null);
+	}
+
+	/**
+	 * @param comparator defines the order of iteration, or <code>null</code> to iterate in the order
+	 * the entries were added.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompactIdMap(final Comparator<? super Id<K>> comparator) {
+		this.comparator = comparator;
+		this.keys = new Id[16];
+		this.values = new Object[16];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return find(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(final Object key) {
+		int pos = find(key);
+		return pos < 0 ? null : (V) this.values[pos];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(final Id<K> key, final V value) {
+		int pos = find(key);
+		if (pos >= 0) {
+			V old = (V) this.values[pos];
+			this.values[pos] = value;
+			return old;
+		}
+		if (this.end == this.keys.length) {
+			makeRoom();
+		}
+		int index = key.index();
+		if (index >= this.positions.length) {
+			this.positions = Arrays.copyOf(this.positions, Math.max(index + 1, this.positions.length + (this.positions.length >> 1)));
+		}
+		this.keys[this.end] = key;
+		this.values[this.end] = value;
+		this.end++;
+		this.positions[index] = this.end;
+		this.size++;
+		this.modCount++;
+		this.sortedPositions = null;
+		return null;
+	}
+
+	@Override
+	public V remove(final Object key) {
+		int pos = find(key);
+		return pos < 0 ? null : removeAt(pos);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.keys, 0, this.end, null);
+		Arrays.fill(this.values, 0, this.end, null);
+		Arrays.fill(this.positions, 0);
+		this.end = 0;
+		this.size = 0;
+		this.modCount++;
+		this.sortedPositions = null;
+	}
+
+	@Override
+	public Set<Entry<Id<K>, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	private int find(final Object key) {
+		if (!(key instanceof Id)) {
+			return -1;
+		}
+		int index = ((Id<?>) key).index();
+		if (index >= this.positions.length) {
+			return -1;
+		}
+		int pos = this.positions[index] - 1;
+		if (pos < 0 || this.keys[pos] != key) {
+			return -1;
+		}
+		return pos;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V removeAt(final int pos) {
+		V old = (V) this.values[pos];
+		this.positions[this.keys[pos].index()] = 0;
+		this.keys[pos] = null;
+		this.values[pos] = null;
+		this.size--;
+		this.modCount++;
+		this.sortedPositions = null;
+		return old;
+	}
+
+	/**
+	 * Removes the gaps of removed entries if there are many of them, otherwise grows the arrays.
+	 * Only called when adding entries, so iterators never see moved entries.
+	 */
+	private void makeRoom() {
+		if (this.end - this.size > this.end / 4) {
+			int to = 0;
+			for (int from = 0; from < this.end; from++) {
+				Id<K> key = this.keys[from];
+				if (key != null) {
+					this.keys[to] = key;
+					this.values[to] = this.values[from];
+					this.positions[key.index()] = to + 1;
+					to++;
+				}
+			}
+			Arrays.fill(this.keys, to, this.end, null);
+			Arrays.fill(this.values, to, this.end, null);
+			this.end = to;
+		}
+		if (this.end * 4 > this.keys.length * 3) {
+			int newLength = this.keys.length + (this.keys.length >> 1);
+			this.keys = Arrays.copyOf(this.keys, newLength);
+			this.values = Arrays.copyOf(this.values, newLength);
+		}
+	}
+
+	/**
+	 * The sorted positions are calculated into a new array and only published when complete,
+	 * so concurrent readers of an unmodified map do not interfere with each other.
+	 */
+	private int[] getSortedPositions() {
+		int[] sorted = this.sortedPositions;
+		if (sorted == null) {
+			Integer[] tmp = new Integer[this.size];
+			int i = 0;
+			for (int pos = 0; pos < this.end; pos++) {
+				if (this.keys[pos] != null) {
+					tmp[i++] = pos;
+				}
+			}
+			final Id<K>[] k = this.keys;
+			Arrays.sort(tmp, (a, b) -> this.comparator.compare(k[a], k[b]));
+			sorted = new int[tmp.length];
+			for (i = 0; i < tmp.length; i++) {
+				sorted[i] = tmp[i];
+			}
+			this.sortedPositions = sorted;
+		}
+		return sorted;
+	}
+
+	private class EntrySet extends AbstractSet<Entry<Id<K>, V>> {
+
+		@Override
+		public Iterator<Entry<Id<K>, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return CompactIdMap.this.size;
+		}
+
+		@Override
+		public void clear() {
+			CompactIdMap.this.clear();
+		}
+	}
+
+	private class EntryIterator implements Iterator<Entry<Id<K>, V>> {
+
+		private final int[] order;
+		private int expectedModCount = CompactIdMap.this.modCount;
+		/** position in {@link #order} if sorted, otherwise in the keys array */
+		private int next = -1;
+		private int current = -1;
+
+		EntryIterator() {
+			this.order = CompactIdMap.this.comparator == null ? null : getSortedPositions();
+			advance();
+		}
+
+		private int positionAt(final int i) {
+			return this.order == null ? i : this.order[i];
+		}
+
+		private int limit() {
+			return this.order == null ? CompactIdMap.this.end : this.order.length;
+		}
+
+		private void advance() {
+			do {
+				this.next++;
+			} while (this.next < limit() && CompactIdMap.this.keys[positionAt(this.next)] == null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next < limit();
+		}
+
+		@Override
+		public Entry<Id<K>, V> next() {
+			if (CompactIdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.current = positionAt(this.next);
+			advance();
+			return new ArrayEntry(this.current);
+		}
+
+		@Override
+		public void remove() {
+			if (this.current < 0) {
+				throw new IllegalStateException();
+			}
+			if (CompactIdMap.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(this.current);
+			this.expectedModCount = CompactIdMap.this.modCount;
+			this.current = -1;
+		}
+	}
+
+	private class ArrayEntry implements Entry<Id<K>, V> {
+
+		private final int pos;
+
+		ArrayEntry(final int pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public Id<K> getKey() {
+			return CompactIdMap.this.keys[this.pos];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) CompactIdMap.this.values[this.pos];
+		}
+
+		@Override
+		public V setValue(final V value) {
+			V old = getValue();
+			CompactIdMap.this.values[this.pos] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			V value = getValue();
+			return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			V value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+}
@@ -21,10 +21,11 @@
 package org.matsim.pt.transitSchedule;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.collections.CompactIdMap;
 import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
@@ -43,8 +44,8 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
  */
 public class TransitScheduleImpl implements TransitSchedule {
 
-	private final Map<Id<TransitLine>, TransitLine> transitLines = new TreeMap<>();
-	private final Map<Id<TransitStopFacility>, TransitStopFacility> stopFacilities = new TreeMap<>();
+	private final Map<Id<TransitLine>, TransitLine> transitLines = new CompactIdMap<>(Comparator.naturalOrder());
+	private final Map<Id<TransitStopFacility>, TransitStopFacility> stopFacilities = new CompactIdMap<>(Comparator.naturalOrder());
 	private final TransitScheduleFactory factory;
 	private final ObjectAttributes transitLinesAttributes = new ObjectAttributes();
 	private final ObjectAttributes transitStopsAttributes = new ObjectAttributes();
@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Events2Binary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.run;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+
+/**
+ * Converts an events file (e.g. in xml format) into the binary events format of {@link EventWriterBinary}.
+ *
+ * @author agent
+ */
+public class Events2Binary {
+
+	public static void convert(final String inputFile, final String outputFile) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventWriterBinary writer = new EventWriterBinary(outputFile);
+		events.addHandler(writer);
+		new MatsimEventsReader(events).readFile(inputFile);
+		writer.closeFile();
+	}
+
+	private static void printUsage() {
+		System.out.println();
+		System.out.println("Events2Binary");
+		System.out.println("Converts an events file to the binary events format.");
+		System.out.println();
+		System.out.println("usage: Events2Binary inputEventsFile outputEventsFile");
+		System.out.println("       The output file should have the ending .bin so it is recognized");
+		System.out.println("       by the MatsimEventsReader.");
+		System.out.println();
+		System.out.println("---------------------");
+		System.out.println("2018, matsim.org");
+		System.out.println();
+	}
+
+	public static void main(final String[] args) {
+		if (args.length != 2) {
+			printUsage();
+			System.exit(1);
+		}
+		convert(args[0], args[1]);
+	}
+
+}
@@ -22,6 +22,7 @@ package org.matsim.vis.snapshotwriters;
 
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ExternalMobimConfigGroup;
+import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.framework.ObservableMobsim;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
@@ -44,8 +45,11 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 
 	final private int snapshotPeriod;
 
+	final private boolean headless;
+
 	public SnapshotWriterManager(Config config) {
 		snapshotPeriod = findSnapshotPeriod(config);
+		headless = config.qsim() != null && config.qsim().isHeadless();
 	}
 
 	// yuck
@@ -111,6 +115,9 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 	}
 
 	public final void addSnapshotWriter(SnapshotWriter snapshotWriter) {
+		if (this.headless) {
+			throw QSimConfigGroup.createHeadlessException();
+		}
 		this.snapshotWriters.add(snapshotWriter);
 	}
 
@@ -0,0 +1,121 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VolumesAnalyzerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.ParallelEventsManagerImpl;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * @author agent
+ */
+public class VolumesAnalyzerTest {
+
+	@Test
+	public void testVolumes() {
+		Network network = createNetwork(2);
+		Link link = network.getLinks().get(Id.create("volumes0", Link.class));
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		Id<Vehicle> vehicleId = Id.create("volumes", Vehicle.class);
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(3000, Id.create("p", Person.class), link.getId(), vehicleId, TransportMode.car, 1.0));
+		analyzer.handleEvent(new LinkLeaveEvent(3500, vehicleId, link.getId()));
+		analyzer.handleEvent(new LinkLeaveEvent(3700, vehicleId, link.getId()));
+		analyzer.handleEvent(new LinkLeaveEvent(7300, vehicleId, link.getId()));
+
+		int[] volumes = analyzer.getVolumesForLink(link.getId());
+		Assert.assertEquals(1, volumes[0]);
+		Assert.assertEquals(1, volumes[1]);
+		Assert.assertEquals(1, volumes[2]);
+		Assert.assertArrayEquals(volumes, analyzer.getVolumesForLink(link.getId(), TransportMode.car));
+		Assert.assertNull(analyzer.getVolumesForLink(link.getId(), TransportMode.pt));
+		Assert.assertEquals(1, analyzer.getLinkIds().size());
+	}
+
+	/**
+	 * The shards handle the events in different threads, but must together return the same volumes as one analyzer.
+	 */
+	@Test
+	public void testVolumes_sharded() {
+		Network network = createNetwork(10);
+		VolumesAnalyzer expected = new VolumesAnalyzer(900, 24 * 3600 - 1, network);
+		VolumesAnalyzer sharded = VolumesAnalyzer.createSharded(900, 24 * 3600 - 1, network, true, 3);
+		Assert.assertEquals(3, sharded.getShards().size());
+
+		EventsManager events = new ParallelEventsManagerImpl(3);
+		for (VolumesAnalyzer shard : sharded.getShards()) {
+			events.addHandler(shard);
+		}
+		events.initProcessing();
+		for (int v = 0; v < 100; v++) {
+			Id<Vehicle> vehicleId = Id.create("volumes" + v, Vehicle.class);
+			String mode = v % 3 == 0 ? TransportMode.pt : TransportMode.car;
+			double time = 6 * 3600 + 61 * v;
+			VehicleEntersTrafficEvent departure = new VehicleEntersTrafficEvent(time, Id.create(v, Person.class),
+					Id.create("volumes0", Link.class), vehicleId, mode, 1.0);
+			expected.handleEvent(departure);
+			events.processEvent(departure);
+			for (int i = 0; i < 10; i += 1 + v % 2) {
+				time += 60 + (v * 17) % 300;
+				Event leave = new LinkLeaveEvent(time, vehicleId, Id.create("volumes" + i, Link.class));
+				expected.handleEvent((LinkLeaveEvent) leave);
+				events.processEvent(leave);
+			}
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(expected.getModes(), sharded.getModes());
+		Assert.assertEquals(expected.getLinkIds(), sharded.getLinkIds());
+		for (VolumesAnalyzer shard : sharded.getShards()) {
+			for (Id<Link> linkId : network.getLinks().keySet()) {
+				Assert.assertArrayEquals(expected.getVolumesForLink(linkId), shard.getVolumesForLink(linkId));
+				Assert.assertArrayEquals(expected.getVolumesPerHourForLink(linkId), shard.getVolumesPerHourForLink(linkId), 0.0);
+				for (String mode : expected.getModes()) {
+					Assert.assertArrayEquals(expected.getVolumesForLink(linkId, mode), shard.getVolumesForLink(linkId, mode));
+				}
+			}
+		}
+	}
+
+	private static Network createNetwork(final int numberOfLinks) {
+		Network network = NetworkUtils.createNetwork();
+		Node fromNode = NetworkUtils.createAndAddNode(network, Id.create("volumes0", Node.class), new Coord(0, 0));
+		for (int i = 0; i < numberOfLinks; i++) {
+			Node toNode = NetworkUtils.createAndAddNode(network, Id.create("volumes" + (i + 1), Node.class), new Coord(1000 * (i + 1), 0));
+			NetworkUtils.createAndAddLink(network, Id.create("volumes" + i, Link.class), fromNode, toNode, 1000, 20, 2000, 1);
+			fromNode = toNode;
+		}
+		return network;
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.matsim.api.core.v01;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class IdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		Map<Id<TLink>, String> map = new IdMap<>(TLink.class, 2);
+		Id<TLink> id1 = Id.create("1", TLink.class);
+		Id<TLink> id2 = Id.create("2", TLink.class);
+		Id<TLink> id3 = Id.create("3", TLink.class);
+		Id<TLink> id4 = Id.create("4", TLink.class);
+
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.put(id4, "four"));
+		Assert.assertNull(map.put(id2, null));
+		Assert.assertEquals(3, map.size());
+
+		Assert.assertEquals("one", map.get(id1));
+		Assert.assertNull(map.get(id2));
+		Assert.assertTrue(map.containsKey(id2));
+		Assert.assertFalse(map.containsKey(id3));
+		Assert.assertNull(map.get(id3));
+		Assert.assertEquals("four", map.get(id4));
+		Assert.assertNull(map.get("1"));
+
+		Assert.assertEquals("one", map.put(id1, "ONE"));
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals("ONE", map.remove(id1));
+		Assert.assertEquals(2, map.size());
+		Assert.assertFalse(map.containsKey(id1));
+		Assert.assertNull(map.remove(id1));
+		Assert.assertEquals(2, map.size());
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(id4));
+	}
+
+	@Test
+	public void testIteration() {
+		IdMap<TLink, Integer> map = new IdMap<>(TLink.class);
+		Id<TLink> id1 = Id.create("1", TLink.class);
+		Id<TLink> id2 = Id.create("2", TLink.class);
+		Id<TLink> id3 = Id.create("3", TLink.class);
+
+		map.put(id3, 3);
+		map.put(id1, 1);
+		map.put(id2, 2);
+
+		// iterated in the order of the ids' indices
+		Iterator<Map.Entry<Id<TLink>, Integer>> iter = map.entrySet().iterator();
+		Map.Entry<Id<TLink>, Integer> e = iter.next();
+		Assert.assertSame(id1, e.getKey());
+		Assert.assertEquals(1, e.getValue().intValue());
+		e = iter.next();
+		Assert.assertSame(id2, e.getKey());
+		iter.remove();
+		e = iter.next();
+		Assert.assertSame(id3, e.getKey());
+		e.setValue(33);
+		Assert.assertFalse(iter.hasNext());
+
+		Assert.assertEquals(2, map.size());
+		Assert.assertFalse(map.containsKey(id2));
+		Assert.assertEquals(33, map.get(id3).intValue());
+		Assert.assertEquals(2, map.keySet().size());
+		Assert.assertTrue(map.keySet().contains(id1));
+		Assert.assertTrue(map.values().contains(33));
+	}
+
+	@Test
+	public void testOtherIdType() {
+		IdMap<TLink, String> map = new IdMap<>(TLink.class);
+		Id<TLink> linkId = Id.create("1", TLink.class);
+		Id<TNode> nodeId = Id.create("1", TNode.class);
+		Assert.assertEquals(linkId.index(), nodeId.index());
+
+		map.put(linkId, "link");
+		Assert.assertFalse(map.containsKey(nodeId));
+		Assert.assertNull(map.get(nodeId));
+		Assert.assertNull(map.remove(nodeId));
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals("link", map.get(linkId));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testPutOtherIdType() {
+		IdMap<TLink, String> map = new IdMap<>(TLink.class);
+		Id<TLink> linkId = Id.create("1", TLink.class);
+		Id nodeId = Id.create("1", TNode.class);
+		map.put(linkId, "link");
+		try {
+			map.put(nodeId, "node");
+			Assert.fail("expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals("link", map.get(linkId));
+		Assert.assertSame(linkId, map.keySet().iterator().next());
+	}
+
+	@Test
+	public void testSetValueAfterRemove() {
+		IdMap<TLink, String> map = new IdMap<>(TLink.class);
+		Id<TLink> id1 = Id.create("1", TLink.class);
+		map.put(id1, "one");
+
+		Map.Entry<Id<TLink>, String> e = map.entrySet().iterator().next();
+		map.remove(id1);
+		try {
+			e.setValue("again");
+			Assert.fail("expected IllegalStateException.");
+		} catch (IllegalStateException expected) {
+		}
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(id1));
+	}
+
+	private static class TLink {}
+
+	private static class TNode {}
+
+}
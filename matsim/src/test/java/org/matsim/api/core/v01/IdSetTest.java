@@ -0,0 +1,60 @@
+package org.matsim.api.core.v01;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class IdSetTest {
+
+	@Test
+	public void testAddContainsRemove() {
+		IdSet<TPerson> set = new IdSet<>(TPerson.class);
+		Id<TPerson> id1 = Id.create("1", TPerson.class);
+		Id<TPerson> id2 = Id.create("2", TPerson.class);
+		Id<TPerson> id3 = Id.create("3", TPerson.class);
+
+		Assert.assertTrue(set.add(id2));
+		Assert.assertTrue(set.add(id1));
+		Assert.assertFalse(set.add(id2));
+		Assert.assertEquals(2, set.size());
+		Assert.assertTrue(set.contains(id1));
+		Assert.assertTrue(set.contains(id2));
+		Assert.assertFalse(set.contains(id3));
+		Assert.assertFalse(set.contains("1"));
+
+		Iterator<Id<TPerson>> iter = set.iterator();
+		Assert.assertSame(id1, iter.next());
+		Assert.assertSame(id2, iter.next());
+		Assert.assertFalse(iter.hasNext());
+
+		Assert.assertTrue(set.remove(id1));
+		Assert.assertFalse(set.remove(id1));
+		Assert.assertEquals(1, set.size());
+		set.clear();
+		Assert.assertTrue(set.isEmpty());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testAddOtherIdType() {
+		IdSet<TPerson> set = new IdSet<>(TPerson.class);
+		Id<TPerson> personId = Id.create("1", TPerson.class);
+		Id vehicleId = Id.create("1", TVehicle.class);
+		Assert.assertEquals(personId.index(), vehicleId.index());
+		try {
+			set.add(vehicleId);
+			Assert.fail("expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertFalse(set.contains(personId));
+	}
+
+	private static class TPerson {}
+	private static class TVehicle {}
+
+}
@@ -63,6 +63,29 @@ public class EventsManagerImplTest {
 		}
 	}
 
+	/**
+	 * Handlers for custom events with a public handler interface are not called reflectively,
+	 * make sure they still see the event and their unchecked exceptions are passed on unchanged.
+	 */
+	@Test
+	public void testProcessEvent_PublicCustomEventHandler() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingPublicMyEventHandler handler = new CountingPublicMyEventHandler();
+		manager.addHandler(handler);
+		manager.processEvent(new MyEvent(123.45));
+		manager.processEvent(new MyEvent(234.56));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+
+		handler.crash = true;
+		try {
+			manager.processEvent(new MyEvent(345.67));
+			Assert.fail("expected exception, but got none.");
+		} catch (final ArithmeticException e) {
+			log.info("Catched expected exception.", e);
+			Assert.assertEquals(3, handler.counter);
+		}
+	}
+
 	/*package*/ static class MyEvent extends Event {
 		public MyEvent(final double time) {
 			super(time);
@@ -102,4 +125,25 @@ public class EventsManagerImplTest {
 			System.out.println(i);
 		}
 	}
+
+	public static interface PublicMyEventHandler extends EventHandler {
+		public void handleEvent(final MyEvent e);
+	}
+
+	/*package*/ static class CountingPublicMyEventHandler implements PublicMyEventHandler {
+		/*package*/ int counter = 0;
+		/*package*/ boolean crash = false;
+		@Override
+		public void reset(final int iteration) {
+			this.counter = 0;
+		}
+		@Override
+		public void handleEvent(final MyEvent e) {
+			this.counter++;
+			if (this.crash) {
+				int i = 1 / 0; // produce ArithmeticException
+				System.out.println(i);
+			}
+		}
+	}
 }
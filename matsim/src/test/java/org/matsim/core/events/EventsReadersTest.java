@@ -151,4 +151,13 @@ public class EventsReadersTest extends MatsimTestCase {
 		reader.readFile(getClassInputDirectory() + "events.xml");
 		assertEquals("number of read events", 8, handler.eventCounter);
 	}
-}
\ No newline at end of file
+
+	public final void testAutoFormatReaderXml_parallel() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TestHandler handler = new TestHandler();
+		events.addHandler(handler);
+		MatsimEventsReader reader = new MatsimEventsReader(events, 4);
+		reader.readFile(getClassInputDirectory() + "events.xml");
+		assertEquals("number of read events", 8, handler.eventCounter);
+	}
+}
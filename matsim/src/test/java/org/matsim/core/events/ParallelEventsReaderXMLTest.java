@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReaderXMLTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * @author agent
+ */
+public class ParallelEventsReaderXMLTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testEventOrderIsPreserved() {
+		String filename = this.utils.getOutputDirectory() + "events.xml.gz";
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			if (i % 2 == 0) {
+				expected.add(new LinkEnterEvent(i, Id.createVehicleId(i % 13), Id.createLinkId(i % 97)));
+			} else {
+				expected.add(new LinkLeaveEvent(i, Id.createVehicleId(i % 13), Id.createLinkId(i % 97)));
+			}
+		}
+		GenericEvent generic = new GenericEvent("custom", 20000.0);
+		generic.getAttributes().put("key", "value");
+		expected.add(generic);
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new ParallelEventsReaderXML(events, 3).readFile(filename);
+
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	@Test
+	public void testExceptionInEventHandler() {
+		String filename = this.utils.getOutputDirectory() + "events.xml";
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (int i = 0; i < 50000; i++) {
+			writer.handleEvent(new LinkEnterEvent(i, Id.createVehicleId(1), Id.createLinkId(2)));
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				if (event.getTime() == 100.0) {
+					throw new ArithmeticException();
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		try {
+			new ParallelEventsReaderXML(events, 2).readFile(filename);
+			Assert.fail("expected exception, but got none.");
+		} catch (ArithmeticException e) {
+			// expected
+		}
+	}
+
+}
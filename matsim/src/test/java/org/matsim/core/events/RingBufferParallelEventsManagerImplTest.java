@@ -0,0 +1,133 @@
+package org.matsim.core.events;
+
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class RingBufferParallelEventsManagerImplTest {
+
+	@Test
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final RingBufferParallelEventsManagerImpl events = new RingBufferParallelEventsManagerImpl(8);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+
+		assertThat(collector.getEvents(),
+			contains(
+					new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+					new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
+	}
+
+	/**
+	 * Writes more events than fit into the ring buffer, from several threads at the same time,
+	 * over several iterations.
+	 */
+	@Test
+	public void testManyEventsFromSeveralThreads() throws InterruptedException {
+		final RingBufferParallelEventsManagerImpl events = new RingBufferParallelEventsManagerImpl(3, 64);
+		final CountingLinkEnterEventHandler[] handlers = new CountingLinkEnterEventHandler[5];
+		for (int i = 0; i < handlers.length; i++) {
+			handlers[i] = new CountingLinkEnterEventHandler();
+			events.addHandler(handlers[i]);
+		}
+		for (int iteration = 0; iteration < 3; iteration++) {
+			events.resetHandlers(iteration);
+			events.initProcessing();
+			for (int time = 0; time < 10; time++) {
+				final double now = time;
+				List<Thread> producers = new ArrayList<>();
+				for (int p = 0; p < 4; p++) {
+					producers.add(new Thread(() -> {
+						for (int e = 0; e < 100; e++) {
+							events.processEvent(new LinkEnterEvent(now, Id.createVehicleId(e), Id.createLinkId(0)));
+						}
+					}));
+				}
+				for (Thread producer : producers) producer.start();
+				for (Thread producer : producers) producer.join();
+				events.afterSimStep(now);
+				for (CountingLinkEnterEventHandler handler : handlers) {
+					Assert.assertEquals((time + 1) * 400, handler.counter);
+				}
+			}
+			events.finishProcessing();
+		}
+	}
+
+	@Test
+	public void testExceptionInEventHandler() {
+		final RingBufferParallelEventsManagerImpl events = new RingBufferParallelEventsManagerImpl(2, 64);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				throw new ArithmeticException();
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		events.initProcessing();
+		for (int e = 0; e < 200; e++) {
+			events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(e), Id.createLinkId(0)));
+		}
+		events.afterSimStep(0.0);
+		try {
+			events.finishProcessing();
+			Assert.fail("expected exception, but got none.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof ArithmeticException);
+		}
+	}
+
+	private static class CountingLinkEnterEventHandler implements LinkEnterEventHandler {
+		private int counter = 0;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.counter++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.counter = 0;
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * @author agent
+ */
+public class EventWriterBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		List<Event> expected = new ArrayList<>();
+		expected.add(new ActivityEndEvent(21600.0, Id.createPersonId("1"), Id.createLinkId("10"), null, "home"));
+		expected.add(new PersonDepartureEvent(21600.0, Id.createPersonId("1"), Id.createLinkId("10"), "car"));
+		expected.add(new VehicleEntersTrafficEvent(21600.0, Id.createPersonId("1"), Id.createLinkId("10"), Id.createVehicleId("1"), "car", 1.0));
+		expected.add(new LinkLeaveEvent(21601.0, Id.create("vehicle>3", Vehicle.class), Id.create("link<2", Link.class)));
+		expected.add(new LinkEnterEvent(21601.5, Id.createVehicleId("1"), Id.createLinkId("11")));
+		expected.add(new PersonMoneyEvent(21590.0, Id.createPersonId("1"), -3.25));
+		GenericEvent generic = new GenericEvent("custom", 21700.0);
+		generic.getAttributes().put("someNumber", "42");
+		generic.getAttributes().put("someDouble", "0.1");
+		generic.getAttributes().put("someText", "Zürich \"Hauptbahnhof\"");
+		expected.add(generic);
+
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+		Assert.assertTrue(new File(filename).exists());
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	/**
+	 * Make sure the dictionary and the time deltas are correctly continued from one block to the next.
+	 */
+	@Test
+	public void testManyBlocks() {
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			expected.add(new LinkEnterEvent(i / 3, Id.createVehicleId(i % 17), Id.createLinkId(i % 101)));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(out, 64);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new EventsReaderBinary(events).readStream(new ByteArrayInputStream(out.toByteArray()));
+
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	@Test
+	public void testNullAttribute() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(out, EventWriterBinary.DEFAULT_EVENTS_PER_BLOCK);
+		GenericEvent event = new GenericEvent("TEST", 3600.0);
+		event.getAttributes().put("dummy", null);
+		event.getAttributes().put("text", "null");
+		writer.handleEvent(event);
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new EventsReaderBinary(events).readStream(new ByteArrayInputStream(out.toByteArray()));
+
+		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
+		Map<String, String> attributes = collector.getEvents().get(0).getAttributes();
+		Assert.assertTrue(attributes.containsKey("dummy"));
+		Assert.assertNull(attributes.get("dummy"));
+		Assert.assertEquals("null", attributes.get("text"));
+	}
+
+	@Test
+	public void testGzippedFile() {
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			expected.add(new LinkEnterEvent(i, Id.createVehicleId(i % 7), Id.createLinkId(i % 11)));
+		}
+
+		String filename = this.utils.getOutputDirectory() + "events.bin.gz";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : expected) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+}
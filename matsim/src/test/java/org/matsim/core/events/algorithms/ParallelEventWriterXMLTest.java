@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventWriterXMLTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * @author agent
+ */
+public class ParallelEventWriterXMLTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameContentAsEventWriterXML_compressed() throws IOException {
+		assertSameContent("events.xml.gz", 3);
+	}
+
+	@Test
+	public void testSameContentAsEventWriterXML_uncompressed() throws IOException {
+		assertSameContent("events.xml", 1);
+	}
+
+	@Test
+	public void testSpecialCharacters() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.xml.gz";
+		ParallelEventWriterXML writer = new ParallelEventWriterXML(filename, 2);
+		writer.handleEvent(new LinkLeaveEvent(3600.0, Id.create("vehicle>3", Vehicle.class), Id.create("link<2", Link.class)));
+		writer.handleEvent(new LinkLeaveEvent(3601.0, Id.create("vehicle\"4&", Vehicle.class), Id.create("link'ä€🚌", Link.class)));
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals("there must be 2 events.", 2, collector.getEvents().size());
+		LinkLeaveEvent event1 = (LinkLeaveEvent) collector.getEvents().get(0);
+		LinkLeaveEvent event2 = (LinkLeaveEvent) collector.getEvents().get(1);
+		Assert.assertEquals("link<2", event1.getLinkId().toString());
+		Assert.assertEquals("vehicle>3", event1.getVehicleId().toString());
+		Assert.assertEquals("link'ä€🚌", event2.getLinkId().toString());
+		Assert.assertEquals("vehicle\"4&", event2.getVehicleId().toString());
+	}
+
+	@Test
+	public void testHandleEventAfterCloseFile() {
+		ParallelEventWriterXML writer = new ParallelEventWriterXML(this.utils.getOutputDirectory() + "testEvents.xml.gz", 1);
+		LinkLeaveEvent event = new LinkLeaveEvent(3600.0, Id.create("vehicle", Vehicle.class), Id.create("link", Link.class));
+		writer.handleEvent(event);
+		writer.closeFile();
+		try {
+			writer.handleEvent(event);
+			Assert.fail("expected an exception, the file is closed.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/*
+	 * writes enough events for several blocks with both writers, and compares the uncompressed files
+	 */
+	private void assertSameContent(final String filename, final int threads) throws IOException {
+		String expectedFilename = this.utils.getOutputDirectory() + "expected_" + filename;
+		String actualFilename = this.utils.getOutputDirectory() + filename;
+		EventWriterXML expectedWriter = new EventWriterXML(expectedFilename);
+		ParallelEventWriterXML actualWriter = new ParallelEventWriterXML(actualFilename, threads);
+		for (int i = 0; i < 50000; i++) {
+			LinkLeaveEvent event = new LinkLeaveEvent(i, Id.create("vöhicle<" + i, Vehicle.class), Id.create("link&" + (i % 100), Link.class));
+			expectedWriter.handleEvent(event);
+			actualWriter.handleEvent(event);
+		}
+		expectedWriter.closeFile();
+		actualWriter.closeFile();
+
+		byte[] expected = readAll(expectedFilename);
+		byte[] actual = readAll(actualFilename);
+		Assert.assertTrue("the events must span several blocks.", expected.length > 2 * 1024 * 1024);
+		Assert.assertArrayEquals(expected, actual);
+	}
+
+	private static byte[] readAll(final String filename) throws IOException {
+		try (InputStream in = IOUtils.getInputStream(filename)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
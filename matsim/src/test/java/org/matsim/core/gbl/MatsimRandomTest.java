@@ -20,7 +20,10 @@
 
 package org.matsim.core.gbl;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 import org.matsim.testcases.MatsimTestCase;
 
@@ -109,6 +112,57 @@ public class MatsimRandomTest extends MatsimTestCase {
 		assertTrue(Math.abs(value1 - value2b) > EPSILON);
 	}
 
+	/**
+	 * Tests that the generator set for the current thread is only returned to that thread, and only until it is
+	 * removed again.
+	 */
+	public void testRandomForCurrentThread() throws InterruptedException {
+		Random global = MatsimRandom.getRandom();
+		Random own = new Random(42L);
+		MatsimRandom.setRandomForCurrentThread(own);
+		try {
+			assertSame(own, MatsimRandom.getRandom());
+			Random[] otherThread = new Random[1];
+			Thread thread = new Thread(() -> otherThread[0] = MatsimRandom.getRandom());
+			thread.start();
+			thread.join();
+			assertSame(global, otherThread[0]);
+		} finally {
+			MatsimRandom.setRandomForCurrentThread(null);
+		}
+		assertSame(global, MatsimRandom.getRandom());
+	}
+
+	/**
+	 * Tests that local instances taken from several threads at once are the same as when taken one after the other,
+	 * apart from their order.
+	 */
+	public void testLocalInstances_concurrent() throws InterruptedException {
+		final int threads = 4;
+		final int instancesPerThread = 1000;
+		MatsimRandom.reset();
+		Set<Double> expected = new HashSet<>();
+		for (int i = 0; i < threads * instancesPerThread; i++) {
+			expected.add(MatsimRandom.getLocalInstance().nextDouble());
+		}
+
+		MatsimRandom.reset();
+		Set<Double> actual = Collections.synchronizedSet(new HashSet<>());
+		Thread[] runners = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			runners[t] = new Thread(() -> {
+				for (int i = 0; i < instancesPerThread; i++) {
+					actual.add(MatsimRandom.getLocalInstance().nextDouble());
+				}
+			});
+			runners[t].start();
+		}
+		for (Thread runner : runners) {
+			runner.join();
+		}
+		assertEquals(expected, actual);
+	}
+
 	/** Test that two (Pseudo)Random Number Generators are equil by
 	 * drawing a series of random numbers and comparing those.
 	 *
@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CalendarQueueTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class CalendarQueueTest {
+
+	@Test
+	public void testPoll_orderedByTimeAndTieBreaker() {
+		CalendarQueue<String> queue = new CalendarQueue<>(Comparator.reverseOrder());
+		queue.add("a", 10.0);
+		queue.add("b", 5.5);
+		queue.add("c", 5.0);
+		queue.add("d", 5.0);
+		queue.add("e", 36.0 * 3600 + 10.0); // beyond the buckets, must not be polled at 10.0
+		Assert.assertEquals(5, queue.size());
+
+		Assert.assertNull(queue.poll(4.0));
+		Assert.assertEquals("d", queue.poll(5.0));
+		Assert.assertEquals("c", queue.poll(5.0));
+		Assert.assertNull("5.5 is not yet due at 5.0", queue.poll(5.0));
+		Assert.assertEquals("b", queue.poll(6.0));
+		Assert.assertNull(queue.poll(9.0));
+		Assert.assertEquals("a", queue.poll(10.0));
+		Assert.assertNull(queue.poll(10.0));
+		Assert.assertEquals(1, queue.size());
+		Assert.assertNull(queue.poll(36.0 * 3600));
+		Assert.assertEquals("e", queue.poll(36.0 * 3600 + 10.0));
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testPoll_withoutTieBreakerInOrderOfAdding() {
+		CalendarQueue<String> queue = new CalendarQueue<>(null);
+		queue.add("x", 7.0);
+		queue.add("a", 7.0);
+		queue.add("m", 7.0);
+		Assert.assertEquals("x", queue.poll(7.0));
+		Assert.assertEquals("a", queue.poll(7.0));
+		Assert.assertEquals("m", queue.poll(7.0));
+	}
+
+	@Test
+	public void testAdd_inThePast() {
+		CalendarQueue<String> queue = new CalendarQueue<>(null);
+		Assert.assertNull(queue.poll(100.0));
+		queue.add("a", 50.0);
+		queue.add("b", Double.NEGATIVE_INFINITY);
+		Assert.assertEquals("b", queue.poll(101.0));
+		Assert.assertEquals("a", queue.poll(101.0));
+		Assert.assertNull(queue.poll(101.0));
+	}
+
+	@Test
+	public void testRemove() {
+		CalendarQueue<String> queue = new CalendarQueue<>(null);
+		queue.add("a", 10.0);
+		queue.add("b", 10.0);
+		queue.add("c", 20.0);
+		Assert.assertTrue(queue.remove("b"));
+		Assert.assertFalse(queue.remove("b"));
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals("a", queue.poll(30.0));
+		Assert.assertEquals("c", queue.poll(30.0));
+		Assert.assertNull(queue.poll(30.0));
+
+		queue.clear();
+		queue.add("d", 40.0);
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+		Assert.assertNull(queue.poll(50.0));
+	}
+
+	@Test
+	public void testRemove_addAgain() {
+		CalendarQueue<String> queue = new CalendarQueue<>(null);
+		String a = "a";
+		queue.add(a, 10.0);
+		queue.add("b", 15.0);
+		Assert.assertNull(queue.poll(5.0));
+		Assert.assertTrue(queue.remove(a));
+		queue.add(a, 20.0);
+		Assert.assertEquals(2, queue.size());
+		try {
+			queue.add(a, 30.0);
+			Assert.fail("expected an exception, the element is already in the queue.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		List<String> elements = new ArrayList<>();
+		queue.forEach((element, time) -> elements.add(element + "@" + time));
+		Assert.assertEquals(Arrays.asList("b@15.0", "a@20.0"), elements);
+
+		Assert.assertEquals("the removed entry must not be polled", "b", queue.poll(20.0));
+		Assert.assertEquals("a", queue.poll(20.0));
+		Assert.assertNull(queue.poll(20.0));
+		Assert.assertEquals(0, queue.size());
+
+		// removing a due element
+		queue.add(a, 25.0);
+		queue.add("c", 25.0);
+		Assert.assertNull(queue.poll(24.0));
+		Assert.assertTrue(queue.remove(a));
+		Assert.assertEquals("c", queue.poll(25.0));
+		Assert.assertNull(queue.poll(25.0));
+	}
+
+	@Test
+	public void testPoll_sameOrderAsPriorityQueue() {
+		Random random = new Random(4711);
+		CalendarQueue<Integer> queue = new CalendarQueue<>(Comparator.reverseOrder());
+		PriorityQueue<double[]> reference = new PriorityQueue<>((a, b) -> {
+			int cmp = Double.compare(a[0], b[0]);
+			return cmp != 0 ? cmp : Double.compare(b[1], a[1]);
+		});
+		for (int i = 0; i < 10000; i++) {
+			double time = Math.floor(random.nextDouble() * 7200) + (random.nextBoolean() ? 0.0 : 0.5);
+			queue.add(i, time);
+			reference.add(new double[] { time, i });
+		}
+
+		List<Integer> polled = new ArrayList<>();
+		for (double now = 0.0; now <= 7200.0; now += 1.0) {
+			Integer element;
+			while ((element = queue.poll(now)) != null) {
+				polled.add(element);
+			}
+		}
+		Assert.assertEquals(10000, polled.size());
+		for (Integer element : polled) {
+			Assert.assertEquals((int) reference.poll()[1], element.intValue());
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimProfilerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+
+/**
+ * @author agent
+ */
+public class QSimProfilerTest {
+
+	@Test
+	public void testRecord_perTimeBin() {
+		QSimProfiler profiler = new QSimProfiler(3600.0);
+		QSimProfiler.ComponentTimes times = profiler.registerComponent("engine");
+		times.record(0.0, 100);
+		times.record(3599.0, 300);
+		times.record(7200.0, 50);
+
+		Assert.assertEquals(3, times.getNumberOfBins());
+		Assert.assertEquals(2, times.getHistogram(0).getCount());
+		Assert.assertEquals(400, times.getHistogram(0).getTotal());
+		Assert.assertEquals(300, times.getHistogram(0).getMax());
+		Assert.assertNull(times.getHistogram(1));
+		Assert.assertEquals(1, times.getHistogram(2).getCount());
+		Assert.assertEquals(450, times.getTotalNanos());
+	}
+
+	@Test
+	public void testRegisterComponent_uniqueNames() {
+		QSimProfiler profiler = new QSimProfiler(900.0);
+		Assert.assertEquals("engine", profiler.registerComponent("engine").getName());
+		Assert.assertEquals("engine_2", profiler.registerComponent("engine").getName());
+		Assert.assertEquals(2, profiler.getComponents().size());
+	}
+
+	@Test
+	public void testValueAtPercentile() {
+		QSimProfiler profiler = new QSimProfiler(3600.0);
+		QSimProfiler.ComponentTimes times = profiler.registerComponent("engine");
+		for (int i = 1; i <= 1000; i++) {
+			times.record(0.0, i * 1000L);
+		}
+		QSimProfiler.TimingHistogram histogram = times.getHistogram(0);
+		assertWithinPrecision(500000, histogram.getValueAtPercentile(50));
+		assertWithinPrecision(990000, histogram.getValueAtPercentile(99));
+		Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+		assertWithinPrecision(1000, histogram.getValueAtPercentile(0));
+
+		times.record(3600.0, 5);
+		Assert.assertEquals("small values are exact", 5, times.getHistogram(1).getValueAtPercentile(50));
+	}
+
+	@Test
+	public void testHandleEvent_countsByTimeBin() {
+		QSimProfiler profiler = new QSimProfiler(60.0);
+		profiler.handleEvent(new PersonStuckEvent(10.0, Id.createPersonId(1), null, null));
+		profiler.handleEvent(new PersonStuckEvent(59.0, Id.createPersonId(2), null, null));
+		profiler.handleEvent(new PersonStuckEvent(300.0, Id.createPersonId(3), null, null));
+		Assert.assertEquals(2, profiler.getEventCount(0));
+		Assert.assertEquals(0, profiler.getEventCount(1));
+		Assert.assertEquals(1, profiler.getEventCount(5));
+		Assert.assertEquals(0, profiler.getEventCount(100));
+	}
+
+	private static void assertWithinPrecision(long expected, long actual) {
+		// 8 buckets per power of two
+		Assert.assertTrue("expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+	}
+
+}
@@ -29,6 +29,7 @@ import java.util.List;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -68,6 +69,7 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.controler.PrepareForSimUtils;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
@@ -83,18 +85,22 @@ import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.testcases.MatsimTestCase;
+import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.testcases.utils.EventsCollector;
 import org.matsim.testcases.utils.LogCounter;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleImpl;
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.VehicleTypeImpl;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 
 @RunWith(Parameterized.class)
 public class QSimTest {
 
 	private final static Logger log = Logger.getLogger(QSimTest.class);
 
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
 	private final boolean isUsingFastCapacityUpdate;
 
 	public QSimTest(boolean isUsingFastCapacityUpdate) {
@@ -162,6 +168,44 @@ public class QSimTest {
 		Assert.assertEquals("wrong time in second event.", 6.0*3600 + 12, collector.events.get(1).getTime(), MatsimTestCase.EPSILON);
 	}
 
+	/**
+	 * Tests that the parallel qsim with nodes assigned along a space-filling curve produces the
+	 * same result, also in the next iteration, when the loads of the first one are used.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testSingleAgent_spaceFillingCurveNodeAssignment() {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		f.config.qsim().setNumberOfThreads(2);
+		f.config.qsim().setNodeAssignment(QSimConfigGroup.NodeAssignment.spaceFillingCurve);
+		f.config.qsim().setRebalancingNodeAssignment(true);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(0, Person.class));
+		Plan plan = PersonUtils.createAndAddPlan(person, true);
+		Activity a1 = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+		a1.setEndTime(6*3600);
+		Leg leg = PopulationUtils.createAndAddLeg( plan, TransportMode.car );
+		NetworkRoute route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(NetworkRoute.class, f.link1.getId(), f.link3.getId());
+		route.setLinkIds(f.link1.getId(), f.linkIds2, f.link3.getId());
+		leg.setRoute(route);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+		f.plans.addPerson(person);
+
+		for (int iteration = 0; iteration < 2; iteration++) {
+			EventsManager events = EventsUtils.createEventsManager();
+			LinkEnterEventCollector collector = new LinkEnterEventCollector();
+			events.addHandler(collector);
+
+			QSim sim = createQSim(f, events);
+			sim.run();
+
+			Assert.assertEquals("wrong number of link enter events.", 2, collector.events.size());
+			Assert.assertEquals("wrong time in first event.", 6.0*3600 + 1, collector.events.get(0).getTime(), MatsimTestCase.EPSILON);
+			Assert.assertEquals("wrong time in second event.", 6.0*3600 + 12, collector.events.get(1).getTime(), MatsimTestCase.EPSILON);
+		}
+	}
+
 
 	/**
 	 * This test is mostly useful for manual debugging, because only a single agent is simulated
@@ -312,6 +356,40 @@ public class QSimTest {
 		Assert.assertEquals("wrong time in event.", 6.0*3600 + 15, allEvents.get(3).getTime(), MatsimTestCase.EPSILON);
 	}
 
+	/**
+	 * Tests that an agent which already teleports when a visualizer registers for the snapshots is shown.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testTeleportationSingleAgent_visDataOfAgentAlreadyTeleporting() {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(0, Person.class));
+		Plan plan = PersonUtils.createAndAddPlan(person, true);
+		Activity a1 = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+		a1.setEndTime(6*3600);
+		Leg leg = PopulationUtils.createAndAddLeg( plan, "other" );
+		Route route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(Route.class, f.link1.getId(), f.link3.getId());
+		route.setTravelTime(15.0);
+		leg.setRoute(route);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+		f.plans.addPerson(person);
+
+		QSim sim = createQSim(f, EventsUtils.createEventsManager());
+		List<AgentSnapshotInfo> snapshots = new ArrayList<>();
+		sim.addQueueSimulationListeners((MobsimAfterSimStepListener) e -> {
+			if (e.getSimulationTime() == 6*3600 + 5) {
+				// the agent departed 5 seconds ago
+				sim.getNonNetworkAgentSnapshots().addAgentSnapshotInfo(snapshots);
+			}
+		});
+		sim.run();
+
+		Assert.assertEquals(1, snapshots.size());
+		Assert.assertEquals(person.getId(), snapshots.get(0).getId());
+	}
+
 	/**
 	 * This test is mostly useful for manual debugging, because only a single agent is simulated
 	 * on a very simple network.
@@ -645,6 +723,149 @@ public class QSimTest {
 	}
 
 
+	/**
+	 * Tests that the flow capacity is reached in the same way when links on which no vehicle
+	 * can reach the end are not moved.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testFlowCapacityDriving_sleepingLinks() {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		f.config.qsim().setUsingSleepingLinks(true);
+		addCommuters(f, 10000);
+
+		/* build events */
+		EventsManager events = EventsUtils.createEventsManager();
+		VolumesAnalyzer vAnalyzer = new VolumesAnalyzer(3600, 9*3600, f.network);
+		events.addHandler(vAnalyzer);
+
+		/* run sim */
+		QSim sim = createQSim(f, events);
+		sim.run();
+
+		/* finish */
+		int[] volume = vAnalyzer.getVolumesForLink(f.link2.getId());
+		Assert.assertEquals(3001, volume[6]); // we should have half of the maximum flow in this hour
+		Assert.assertEquals(6000, volume[7]); // we should have maximum flow in this hour
+		Assert.assertEquals(999, volume[8]); // all the rest
+	}
+
+
+	/**
+	 * Tests that the links which are taken out of the active links while sleeping are woken up in time, and put back
+	 * at their former place, such that the qsim creates exactly the same events as without sleeping links.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testFlowCapacityDriving_sleepingLinksEvents() {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		addCommuters(f, 2000);
+
+		Fixture sleepingFixture = new Fixture(isUsingFastCapacityUpdate);
+		sleepingFixture.config.qsim().setUsingSleepingLinks(true);
+		addCommuters(sleepingFixture, 2000);
+
+		assertSameEvents(collectEvents(f), collectEvents(sleepingFixture));
+	}
+
+	/**
+	 * Tests that a simulation restarted from a checkpoint creates the same events after the checkpoint as the
+	 * simulation that wrote it, while many vehicles are waiting to enter link 1 and queued on link 2.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testFlowCapacityDriving_restartFromCheckpoint() {
+		double checkpointTime = 7 * 3600;
+
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		f.config.qsim().setCheckpointTimes(Collections.singletonList(checkpointTime));
+		f.config.qsim().setCheckpointDirectory(this.utils.getOutputDirectory());
+		addCommuters(f, 2000);
+		List<Event> events = collectEvents(f);
+
+		Fixture restartFixture = new Fixture(isUsingFastCapacityUpdate);
+		restartFixture.config.qsim().setRestartingFromCheckpoint(this.utils.getOutputDirectory() + "checkpoint_25200.bin.gz");
+		addCommuters(restartFixture, 2000);
+
+		List<Event> expected = new ArrayList<>();
+		for (Event event : events) {
+			if (event.getTime() > checkpointTime) {
+				expected.add(event);
+			}
+		}
+		assertSameEvents(expected, collectEvents(restartFixture));
+	}
+
+	/**
+	 * Tests that the qsim creates the same events when it keeps no data for the visualization.
+	 *
+	 * @author agent
+	 */
+	@Test
+	public void testFlowCapacityDriving_headless() {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		addCommuters(f, 2000);
+
+		Fixture headlessFixture = new Fixture(isUsingFastCapacityUpdate);
+		headlessFixture.config.qsim().setHeadless(true);
+		addCommuters(headlessFixture, 2000);
+		List<Event> headlessEvents = new ArrayList<>();
+		QSim headlessSim = runCollectingEvents(headlessFixture, headlessEvents);
+
+		assertSameEvents(collectEvents(f), headlessEvents);
+		try {
+			headlessSim.getNetsimNetwork().getNetsimLink(f.link2.getId()).getVisData();
+			Assert.fail("expected an exception, there are no vis data in headless mode.");
+		} catch (RuntimeException e) {
+			log.info("caught the expected exception: " + e.getMessage());
+		}
+	}
+
+	private static List<Event> collectEvents(Fixture f) {
+		List<Event> events = new ArrayList<>();
+		runCollectingEvents(f, events);
+		return events;
+	}
+
+	private static QSim runCollectingEvents(Fixture f, List<Event> collectedEvents) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		QSim sim = createQSim(f, events);
+		sim.run();
+		collectedEvents.addAll(collector.getEvents());
+		return sim;
+	}
+
+	private static void assertSameEvents(List<Event> expected, List<Event> actual) {
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+		}
+	}
+
+	/*
+	 * Adds persons with legs from link1 to link3, starting at 6:30, see testFlowCapacityDriving()
+	 */
+	private static void addCommuters(Fixture f, int count) {
+		for (int i = 1; i <= count; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			Plan plan = PersonUtils.createAndAddPlan(person, true);
+			Activity a = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+			a.setEndTime(7*3600 - 1812);
+			Leg leg = PopulationUtils.createAndAddLeg( plan, TransportMode.car );
+			NetworkRoute route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(NetworkRoute.class, f.link1.getId(), f.link3.getId());
+			route.setLinkIds(f.link1.getId(), f.linkIds2, f.link3.getId());
+			leg.setRoute(route);
+			PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+			f.plans.addPerson(person);
+		}
+	}
+
 	/**
 	 * Tests that on a link with a flow capacity of 0.25 vehicles per time step, after the first vehicle
 	 * at time step t, the second vehicle may pass in time step t + 4 and the third in time step t+8.
@@ -652,6 +652,11 @@ public final class QLinkTest extends MatsimTestCase {
 
             }
 
+            @Override
+            void wakeUpLink(AbstractQLink link) {
+
+            }
+
             @Override
             int getNumberOfSimulatedLinks() {
                 return 0;
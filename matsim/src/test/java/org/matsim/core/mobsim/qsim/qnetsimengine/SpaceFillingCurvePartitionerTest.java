@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpaceFillingCurvePartitionerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayDeque;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class SpaceFillingCurvePartitionerTest {
+
+	@Test
+	public void testHilbertIndex_neighbors() {
+		// the grid is in the corner of the curve, so it is covered by the first size * size positions;
+		// consecutive positions on the curve must be neighboring cells
+		int size = 64;
+		long[][] index = new long[size][size];
+		int[] xByIndex = new int[size * size];
+		int[] yByIndex = new int[size * size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				index[x][y] = SpaceFillingCurvePartitioner.hilbertIndex(x, y);
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Assert.assertTrue(index[x][y] < size * size);
+				xByIndex[(int) index[x][y]] = x;
+				yByIndex[(int) index[x][y]] = y;
+			}
+		}
+		for (int i = 1; i < size * size; i++) {
+			int distance = Math.abs(xByIndex[i] - xByIndex[i - 1]) + Math.abs(yByIndex[i] - yByIndex[i - 1]);
+			Assert.assertEquals("curve is not continuous at " + i, 1, distance);
+		}
+	}
+
+	@Test
+	public void testPartition_balancedAndContiguous() {
+		int size = 40;
+		double[] x = new double[size * size];
+		double[] y = new double[size * size];
+		double[] weights = new double[size * size];
+		double totalWeight = 0;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				int n = i * size + j;
+				x[n] = i * 100.0;
+				y[n] = j * 100.0;
+				// much more load in the center
+				weights[n] = (i > 10 && i < 20 && j > 10 && j < 20) ? 20 : 1;
+				totalWeight += weights[n];
+			}
+		}
+		int numberOfParts = 4;
+		int[] parts = SpaceFillingCurvePartitioner.partition(x, y, weights, numberOfParts);
+
+		double[] partWeights = new double[numberOfParts];
+		for (int n = 0; n < parts.length; n++) {
+			partWeights[parts[n]] += weights[n];
+		}
+		for (int p = 0; p < numberOfParts; p++) {
+			Assert.assertEquals("part " + p + " is not balanced", totalWeight / numberOfParts, partWeights[p], 20.0);
+		}
+
+		// every part is connected on the grid
+		for (int p = 0; p < numberOfParts; p++) {
+			boolean[] visited = new boolean[parts.length];
+			int start = -1;
+			int count = 0;
+			for (int n = 0; n < parts.length; n++) {
+				if (parts[n] == p) {
+					count++;
+					start = n;
+				}
+			}
+			Assert.assertEquals("part " + p + " is not connected", count, countConnected(parts, size, start, visited));
+		}
+	}
+
+	@Test
+	public void testPartition_fewPoints() {
+		double[] x = new double[] { 0, 1, 2 };
+		double[] y = new double[] { 0, 0, 0 };
+		double[] weights = new double[] { 100, 0, 0 };
+		int[] parts = SpaceFillingCurvePartitioner.partition(x, y, weights, 3);
+		Assert.assertEquals(0, parts[0]);
+		Assert.assertEquals(1, parts[1]);
+		Assert.assertEquals(2, parts[2]);
+
+		parts = SpaceFillingCurvePartitioner.partition(x, y, weights, 5);
+		for (int part : parts) {
+			Assert.assertTrue(part < 5);
+		}
+
+		Assert.assertEquals(0, SpaceFillingCurvePartitioner.partition(new double[0], new double[0], new double[0], 2).length);
+	}
+
+	private static int countConnected(int[] parts, int size, int start, boolean[] visited) {
+		int count = 0;
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		queue.add(start);
+		visited[start] = true;
+		while (!queue.isEmpty()) {
+			int n = queue.poll();
+			count++;
+			int i = n / size;
+			int j = n % size;
+			int[][] neighbors = { { i - 1, j }, { i + 1, j }, { i, j - 1 }, { i, j + 1 } };
+			for (int[] neighbor : neighbors) {
+				if (neighbor[0] < 0 || neighbor[0] >= size || neighbor[1] < 0 || neighbor[1] >= size) {
+					continue;
+				}
+				int m = neighbor[0] * size + neighbor[1];
+				if (!visited[m] && parts[m] == parts[n]) {
+					visited[m] = true;
+					queue.add(m);
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -34,10 +34,12 @@ import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.population.PersonUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.replanning.selectors.BestPlanSelector;
+import org.matsim.core.replanning.selectors.ExpBetaPlanSelector;
 import org.matsim.core.replanning.selectors.PlanSelector;
 import org.matsim.core.replanning.selectors.RandomPlanSelector;
 import org.matsim.core.scenario.ScenarioUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -250,6 +252,64 @@ public class StrategyManagerTest {
 
 	}
 
+	/**
+	 * With selection threads, every person uses its own random numbers, so the number of threads must not
+	 * change which plans are removed and selected, nor the order in which the modules get the plans.
+	 */
+	@Test
+	public void testSelectionThreads() {
+		List<String> results1 = runWithSelectionThreads(1);
+		List<String> results4 = runWithSelectionThreads(4);
+		assertEquals(results1, results4);
+		assertTrue("the module should have handled some plans", results1.size() > 3 * 2000);
+	}
+
+	private static List<String> runWithSelectionThreads(final int numberOfThreads) {
+		MatsimRandom.reset(4711);
+		Population population = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation();
+		for (int i = 0; i < 2000; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			for (int j = 0; j < 6; j++) {
+				Plan plan = PersonUtils.createAndAddPlan(person, false);
+				plan.setScore((double) ((i * 7 + j * 13) % 17));
+			}
+			population.addPerson(person);
+		}
+
+		List<String> results = new ArrayList<>();
+		StrategyManager manager = new StrategyManager();
+		manager.setMaxPlansPerAgent(4);
+		manager.setNumberOfSelectionThreads(numberOfThreads);
+		PlanStrategyImpl innovation = new PlanStrategyImpl(new RandomPlanSelector<Plan, Person>());
+		innovation.addStrategyModule(new PlanStrategyModule() {
+			@Override
+			public void prepareReplanning(ReplanningContext replanningContext) {
+			}
+			@Override
+			public void handlePlan(Plan plan) {
+				plan.setScore(null);
+				results.add("module " + plan.getPerson().getId());
+			}
+			@Override
+			public void finishReplanning() {
+			}
+		});
+		manager.addStrategyForDefaultSubpopulation(innovation, 0.3);
+		manager.addStrategyForDefaultSubpopulation(new PlanStrategyImpl(new ExpBetaPlanSelector<Plan, Person>(1.0)), 0.7);
+
+		for (int iteration = 0; iteration < 3; iteration++) {
+			manager.run(population, iteration, null);
+			for (Person person : population.getPersons().values()) {
+				StringBuilder str = new StringBuilder(person.getId().toString());
+				for (Plan plan : person.getPlans()) {
+					str.append(plan == person.getSelectedPlan() ? " *" : " ").append(plan.getScore());
+				}
+				results.add(str.toString());
+			}
+		}
+		return results;
+	}
+
 	@Test
 	public void testSetPlanSelectorForRemoval() {
 		// init StrategyManager
@@ -20,12 +20,18 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -42,6 +48,51 @@ public class AbstractMultithreadedModuleTest {
 		config.global().setNumberOfThreads(3);
 		DummyAbstractMultithreadedModule testee = new DummyAbstractMultithreadedModule(config.global());
 		Assert.assertEquals(3, testee.getNumOfThreads());
+		Assert.assertEquals(0, testee.getChunkSize());
+		config.global().setReplanningChunkSize(10);
+		testee = new DummyAbstractMultithreadedModule(config.global());
+		Assert.assertEquals(10, testee.getChunkSize());
+	}
+
+	@Test
+	public void testChunkedPlans() {
+		Map<Plan, Integer> handled = new IdentityHashMap<>();
+		RecordingModule testee = new RecordingModule(3, 4, handled);
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 101; i++) {
+			plans.add(PopulationUtils.createPlan());
+		}
+		for (int iteration = 0; iteration < 2; iteration++) {
+			handled.clear();
+			testee.prepareReplanning(null);
+			for (Plan plan : plans) {
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+			Assert.assertEquals(plans.size(), handled.size());
+			for (Plan plan : plans) {
+				Assert.assertEquals("every plan must be handled exactly once", Integer.valueOf(1), handled.get(plan));
+			}
+		}
+	}
+
+	@Test
+	public void testChunkedPlans_largeChunkSize() {
+		Map<Plan, Integer> handled = new IdentityHashMap<>();
+		RecordingModule testee = new RecordingModule(3, Integer.MAX_VALUE, handled);
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 11; i++) {
+			plans.add(PopulationUtils.createPlan());
+		}
+		testee.prepareReplanning(null);
+		for (Plan plan : plans) {
+			testee.handlePlan(plan);
+		}
+		testee.finishReplanning();
+		Assert.assertEquals(plans.size(), handled.size());
+		for (Plan plan : plans) {
+			Assert.assertEquals("every plan must be handled exactly once", Integer.valueOf(1), handled.get(plan));
+		}
 	}
 
 	@Test
@@ -80,6 +131,30 @@ public class AbstractMultithreadedModuleTest {
 		}
 	}
 
+	private static class RecordingModule extends AbstractMultithreadedModule {
+		private final Map<Plan, Integer> handled;
+		public RecordingModule(final int nOfThreads, final int chunkSize, final Map<Plan, Integer> handled) {
+			super(nOfThreads, chunkSize);
+			this.handled = handled;
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			return new PlanAlgorithm() {
+				private Thread thread = null;
+				@Override
+				public void run(Plan plan) {
+					if (this.thread == null) {
+						this.thread = Thread.currentThread();
+					}
+					Assert.assertSame("each algorithm instance must only be used by one thread", this.thread, Thread.currentThread());
+					synchronized (handled) {
+						handled.merge(plan, 1, Integer::sum);
+					}
+				}
+			};
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
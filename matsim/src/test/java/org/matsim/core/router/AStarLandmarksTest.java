@@ -20,11 +20,21 @@
 
 package org.matsim.core.router;
 
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
 import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
 
 public class AStarLandmarksTest extends AbstractLeastCostPathCalculatorTest {
 
@@ -36,4 +46,126 @@ public class AStarLandmarksTest extends AbstractLeastCostPathCalculatorTest {
 		return new AStarLandmarks(network, preProcessData, travelTimeCostCalculator);
 	}
 
+	public void testUpdateLandmarkTravelDisutilities() {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = createGrid(network);
+		CongestedTravelTime congested = new CongestedTravelTime();
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(congested, 4);
+		preProcessData.setNumberOfThreads(2);
+		preProcessData.run(network);
+
+		Node from = nodes[0][0];
+		Node to = nodes[5][5];
+		double maxBefore = 0;
+		for (int i = 0; i < preProcessData.getLandmarks().length; i++) {
+			maxBefore = Math.max(maxBefore, preProcessData.getNodeData(from).getMaxLandmarkTravelTime(i));
+		}
+
+		assertTrue(preProcessData.updateLandmarkTravelDisutilities(congested, 3600, 24 * 3600));
+
+		double maxAfter = 0;
+		for (int i = 0; i < preProcessData.getLandmarks().length; i++) {
+			maxAfter = Math.max(maxAfter, preProcessData.getNodeData(from).getMaxLandmarkTravelTime(i));
+		}
+		// every link is at least twice as slow as in free flow during the whole day
+		assertEquals(2 * maxBefore, maxAfter, 1e-6);
+
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, congested, congested);
+		LeastCostPathCalculator aStar = new AStarLandmarks(network, preProcessData, congested, congested, 1.0);
+		for (double departure : new double[] {0.0, 8.0 * 3600, 17.5 * 3600}) {
+			Path expected = dijkstra.calcLeastCostPath(from, to, departure, null, null);
+			Path actual = aStar.calcLeastCostPath(from, to, departure, null, null);
+			assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+		}
+	}
+
+	/**
+	 * With a travel disutility that requires a person, the landmarks cannot be updated and keep the
+	 * minimal travel disutilities.
+	 */
+	public void testUpdateLandmarkTravelDisutilities_personRequired() {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = createGrid(network);
+		PersonRequiredTravelDisutility personRequired = new PersonRequiredTravelDisutility();
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(personRequired, 4);
+		preProcessData.setNumberOfThreads(2);
+		preProcessData.run(network);
+
+		Node from = nodes[0][0];
+		double[] before = new double[preProcessData.getLandmarks().length];
+		for (int i = 0; i < before.length; i++) {
+			before[i] = preProcessData.getNodeData(from).getMaxLandmarkTravelTime(i);
+		}
+
+		assertFalse(preProcessData.updateLandmarkTravelDisutilities(personRequired, 3600, 24 * 3600));
+
+		for (int i = 0; i < before.length; i++) {
+			assertEquals(before[i], preProcessData.getNodeData(from).getMaxLandmarkTravelTime(i), 1e-6);
+		}
+	}
+
+	private static Node[][] createGrid(final Network network) {
+		Node[][] nodes = new Node[6][6];
+		for (int x = 0; x < 6; x++) {
+			for (int y = 0; y < 6; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create("lm_" + x + "_" + y, Node.class), new Coord(x * 1000, y * 1000));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < 6; x++) {
+			for (int y = 0; y < 6; y++) {
+				if (x < 5) {
+					NetworkUtils.createAndAddLink(network, Id.create("lm" + linkId++, Link.class), nodes[x][y], nodes[x + 1][y], 1000, 10, 2000, 1);
+					NetworkUtils.createAndAddLink(network, Id.create("lm" + linkId++, Link.class), nodes[x + 1][y], nodes[x][y], 1000, 10, 2000, 1);
+				}
+				if (y < 5) {
+					NetworkUtils.createAndAddLink(network, Id.create("lm" + linkId++, Link.class), nodes[x][y], nodes[x][y + 1], 1000, 10, 2000, 1);
+					NetworkUtils.createAndAddLink(network, Id.create("lm" + linkId++, Link.class), nodes[x][y + 1], nodes[x][y], 1000, 10, 2000, 1);
+				}
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Every link takes at least twice its free speed travel time, and even longer during the peak hours.
+	 */
+	private static class CongestedTravelTime implements TravelTime, TravelDisutility {
+		@Override
+		public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			double freespeedTime = link.getLength() / link.getFreespeed();
+			int hour = (int) (time / 3600);
+			boolean peak = (hour >= 7 && hour < 9) || (hour >= 16 && hour < 19);
+			return freespeedTime * (peak ? 5 : 2);
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+	/**
+	 * Like the randomized travel disutility of the controler, cannot be calculated without person.
+	 */
+	private static class PersonRequiredTravelDisutility implements TravelDisutility {
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			if (person == null) {
+				throw new IllegalArgumentException("a person is required.");
+			}
+			return 3 * link.getLength() / link.getFreespeed();
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
 }
@@ -0,0 +1,278 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * @author agent
+ */
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCompareWithDijkstra() {
+		Network network = createRandomGrid(15, 20180102);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		LeastCostPathCalculator ch = getLeastCostPathCalculator(network);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random r = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes.get(r.nextInt(nodes.size()));
+			Node to = nodes.get(r.nextInt(nodes.size()));
+			Path expected = dijkstra.calcLeastCostPath(from, to, 7.0 * 3600, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, 7.0 * 3600, null, null);
+			assertPath(from, to, actual);
+			assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, actual.travelCost, 1e-6);
+			assertEquals("wrong travel time from " + from.getId() + " to " + to.getId(), expected.travelTime, actual.travelTime, 1e-6);
+		}
+	}
+
+	public void testTimeDependentCustomization() {
+		Network network = createRandomGrid(12, 20180103);
+		HourlyTravelTime travelTime = new HourlyTravelTime();
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(3600.0, 24);
+		LeastCostPathCalculator ch = factory.createPathCalculator(network, travelTime, travelTime);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random r = new Random(43);
+		for (double departure : new double[] {3.0 * 3600, 8.25 * 3600, 17.5 * 3600}) {
+			TravelDisutility fixed = new FixedTimeDisutility(travelTime, departure);
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, fixed, travelTime);
+			for (int i = 0; i < 200; i++) {
+				Node from = nodes.get(r.nextInt(nodes.size()));
+				Node to = nodes.get(r.nextInt(nodes.size()));
+				Path expected = dijkstra.calcLeastCostPath(from, to, departure, null, null);
+				Path actual = ch.calcLeastCostPath(from, to, departure, null, null);
+				assertPath(from, to, actual);
+				double cost = 0;
+				for (Link link : actual.links) {
+					cost += fixed.getLinkTravelDisutility(link, departure, null, null);
+				}
+				assertEquals(expected.travelCost, cost, 1e-6);
+			}
+		}
+
+		// change the travel times; after resetting the customization, new routers must use them
+		travelTime.factor = 10.0;
+		factory.resetCustomizations();
+		ch = factory.createPathCalculator(network, travelTime, travelTime);
+		double departure = 8.0 * 3600;
+		TravelDisutility fixed = new FixedTimeDisutility(travelTime, departure);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, fixed, travelTime);
+		for (int i = 0; i < 200; i++) {
+			Node from = nodes.get(r.nextInt(nodes.size()));
+			Node to = nodes.get(r.nextInt(nodes.size()));
+			Path expected = dijkstra.calcLeastCostPath(from, to, departure, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, departure, null, null);
+			double cost = 0;
+			for (Link link : actual.links) {
+				cost += fixed.getLinkTravelDisutility(link, departure, null, null);
+			}
+			assertEquals(expected.travelCost, cost, 1e-6);
+		}
+	}
+
+	/**
+	 * Two travel disutilities of the same type but with different parameters must not share their weights.
+	 */
+	public void testDifferentlyParameterizedDisutilities() {
+		Network network = createRandomGrid(12, 20180104);
+		HourlyTravelTime travelTime = new HourlyTravelTime();
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory();
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random r = new Random(44);
+		for (int parity = 0; parity < 2; parity++) {
+			TravelDisutility penalized = new PenaltyDisutility(travelTime, parity);
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, penalized, travelTime);
+			LeastCostPathCalculator ch = factory.createPathCalculator(network, penalized, travelTime);
+			for (int i = 0; i < 200; i++) {
+				Node from = nodes.get(r.nextInt(nodes.size()));
+				Node to = nodes.get(r.nextInt(nodes.size()));
+				Path expected = dijkstra.calcLeastCostPath(from, to, 3.0 * 3600, null, null);
+				Path actual = ch.calcLeastCostPath(from, to, 3.0 * 3600, null, null);
+				assertPath(from, to, actual);
+				assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, actual.travelCost, 1e-6);
+			}
+		}
+	}
+
+	public void testNoRoute() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), n1, n2, 1000, 10, 2000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), n3, n2, 1000, 10, 2000, 1);
+		LeastCostPathCalculator ch = getLeastCostPathCalculator(network);
+		assertNotNull(ch.calcLeastCostPath(n1, n2, 0, null, null));
+		assertNull(ch.calcLeastCostPath(n1, n3, 0, null, null));
+		assertNull(ch.calcLeastCostPath(n2, n1, 0, null, null));
+	}
+
+	private static void assertPath(final Node from, final Node to, final Path path) {
+		assertNotNull(path);
+		assertEquals(path.links.size() + 1, path.nodes.size());
+		assertEquals(from, path.nodes.get(0));
+		assertEquals(to, path.nodes.get(path.nodes.size() - 1));
+		for (int i = 0; i < path.links.size(); i++) {
+			assertEquals(path.nodes.get(i), path.links.get(i).getFromNode());
+			assertEquals(path.nodes.get(i + 1), path.links.get(i).getToNode());
+		}
+	}
+
+	/**
+	 * A grid with links in both directions of random lengths and speeds, where some links exist only in one direction.
+	 */
+	private static Network createRandomGrid(final int size, final long seed) {
+		Random r = new Random(seed);
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(seed + "_" + x + "_" + y, Node.class), new Coord(x * 1000, y * 1000));
+			}
+		}
+		int linkId = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x + 1][y], linkId, r);
+				}
+				if (y + 1 < size) {
+					linkId = addLinks(network, nodes[x][y], nodes[x][y + 1], linkId, r);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static int addLinks(final Network network, final Node a, final Node b, int linkId, final Random r) {
+		double oneWay = r.nextDouble();
+		if (oneWay > 0.1) {
+			NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), a, b, 500 + r.nextInt(1500), 5 + r.nextInt(30), 2000, 1);
+		}
+		if (oneWay < 0.9) {
+			NetworkUtils.createAndAddLink(network, Id.create(linkId++, Link.class), b, a, 500 + r.nextInt(1500), 5 + r.nextInt(30), 2000, 1);
+		}
+		return linkId;
+	}
+
+	/**
+	 * Travel times that are constant within every hour, slower during the peak hours for every second link.
+	 */
+	private static class HourlyTravelTime implements TravelTime, TravelDisutility {
+		double factor = 3.0;
+
+		@Override
+		public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			double freespeedTime = link.getLength() / link.getFreespeed();
+			int hour = (int) (time / 3600);
+			boolean peak = (hour >= 7 && hour < 9) || (hour >= 16 && hour < 19);
+			if (peak && link.getId().index() % 2 == 0) {
+				return freespeedTime * this.factor;
+			}
+			return freespeedTime;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+	/**
+	 * Makes the links with an even or odd index five times as expensive.
+	 */
+	private static class PenaltyDisutility implements TravelDisutility {
+		private final TravelDisutility delegate;
+		private final int penalizedParity;
+
+		PenaltyDisutility(final TravelDisutility delegate, final int penalizedParity) {
+			this.delegate = delegate;
+			this.penalizedParity = penalizedParity;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			double factor = link.getId().index() % 2 == this.penalizedParity ? 5.0 : 1.0;
+			return factor * this.delegate.getLinkTravelDisutility(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return this.delegate.getLinkMinimumTravelDisutility(link);
+		}
+	}
+
+	/**
+	 * Evaluates the travel disutility always at the departure time, as the contraction hierarchies do.
+	 */
+	private static class FixedTimeDisutility implements TravelDisutility {
+		private final TravelDisutility delegate;
+		private final double time;
+
+		FixedTimeDisutility(final TravelDisutility delegate, final double time) {
+			this.delegate = delegate;
+			this.time = time;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			return this.delegate.getLinkTravelDisutility(link, this.time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return this.delegate.getLinkMinimumTravelDisutility(link);
+		}
+	}
+
+}
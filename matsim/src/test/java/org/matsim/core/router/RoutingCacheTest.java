@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingCacheTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * @author agent
+ */
+public class RoutingCacheTest {
+
+	@Test
+	public void testCachedPerModeAndTimeBin() {
+		Node[] nodes = createNodes(3);
+		CountingRouter router = new CountingRouter();
+		RoutingCache cache = new RoutingCache(100, 900);
+		LeastCostPathCalculator car = cache.wrap("car", router);
+		LeastCostPathCalculator bike = cache.wrap("bike", router);
+
+		Path path = car.calcLeastCostPath(nodes[0], nodes[1], 7 * 3600, null, null);
+		Assert.assertSame(path, car.calcLeastCostPath(nodes[0], nodes[1], 7 * 3600 + 899, null, null));
+		Assert.assertEquals(1, router.count.get());
+
+		Assert.assertNotSame(path, car.calcLeastCostPath(nodes[0], nodes[1], 7 * 3600 + 900, null, null));
+		Assert.assertNotSame(path, car.calcLeastCostPath(nodes[0], nodes[2], 7 * 3600, null, null));
+		Assert.assertNotSame(path, bike.calcLeastCostPath(nodes[0], nodes[1], 7 * 3600, null, null));
+		Assert.assertEquals(4, router.count.get());
+
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(0.2, cache.getHitRate(), 1e-9);
+		Assert.assertEquals(4, cache.size());
+
+		cache.notifyIterationStarts(null);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getHits());
+		car.calcLeastCostPath(nodes[0], nodes[1], 7 * 3600, null, null);
+		Assert.assertEquals(5, router.count.get());
+	}
+
+	@Test
+	public void testBoundedSize() {
+		Node[] nodes = createNodes(50);
+		RoutingCache cache = new RoutingCache(64, 900);
+		LeastCostPathCalculator router = cache.wrap("car", new CountingRouter());
+		for (Node from : nodes) {
+			for (Node to : nodes) {
+				router.calcLeastCostPath(from, to, 0, null, null);
+			}
+		}
+		Assert.assertTrue(cache.size() <= 64);
+		Assert.assertEquals(2500, cache.getMisses());
+		Assert.assertEquals(2500 - cache.size(), cache.getEvictions());
+	}
+
+	@Test
+	public void testSharedByThreads() throws InterruptedException {
+		Node[] nodes = createNodes(20);
+		RoutingCache cache = new RoutingCache(10000, 900);
+		CountingRouter counter = new CountingRouter();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			LeastCostPathCalculator router = cache.wrap("car", counter);
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10; i++) {
+					for (Node from : nodes) {
+						for (Node to : nodes) {
+							Path path = router.calcLeastCostPath(from, to, 3600, null, null);
+							Assert.assertSame(from, path.nodes.get(0));
+							Assert.assertSame(to, path.nodes.get(1));
+						}
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(400, cache.size());
+		Assert.assertEquals(4 * 10 * 400, cache.getHits() + cache.getMisses());
+		Assert.assertTrue(counter.count.get() >= 400);
+		Assert.assertTrue(counter.count.get() <= 4 * 400);
+	}
+
+	private static Node[] createNodes(final int count) {
+		Network network = NetworkUtils.createNetwork();
+		Node[] nodes = new Node[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.create("cache" + i, Node.class), new Coord(i, 0));
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns a new path with the two nodes for every request.
+	 */
+	private static class CountingRouter implements LeastCostPathCalculator {
+		final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+			this.count.incrementAndGet();
+			List<Node> nodes = new ArrayList<>();
+			nodes.add(fromNode);
+			nodes.add(toNode);
+			return new Path(nodes, Collections.<Link>emptyList(), 0, 0);
+		}
+	}
+
+}
@@ -22,22 +22,41 @@
 
 package org.matsim.core.router;
 
+import java.util.Collections;
+
+import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.ControlerDefaults;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.testcases.MatsimTestUtils;
 
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
 public class TripRouterModuleTest {
 
+    private static final Logger log = Logger.getLogger(TripRouterModuleTest.class);
+
     @Rule
     public MatsimTestUtils matsimTestUtils = new MatsimTestUtils();
 
@@ -46,6 +65,9 @@ public class TripRouterModuleTest {
         for (ControlerConfigGroup.RoutingAlgorithmType routingAlgorithmType : ControlerConfigGroup.RoutingAlgorithmType.values()) {
             Config config = ConfigUtils.createConfig();
             config.controler().setRoutingAlgorithmType(routingAlgorithmType);
+            if (routingAlgorithmType == ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies) {
+                config.plansCalcRoute().setRoutingRandomness(0.0);
+            }
             Scenario scenario = ScenarioUtils.createScenario(config);
             LeastCostPathCalculatorFactory defaultLeastCostPathCalculatorFactory = TripRouterFactoryBuilderWithDefaults.createDefaultLeastCostPathCalculatorFactory(scenario);
             LeastCostPathCalculator pathCalculator = defaultLeastCostPathCalculatorFactory.createPathCalculator(
@@ -56,4 +78,58 @@ public class TripRouterModuleTest {
         }
     }
 
+    /**
+     * Every router gets its own travel disutility, but routers for the same mode must still share the
+     * customization of the contraction hierarchies.
+     */
+    @Test
+    public void testContractionHierarchiesShareCustomization() {
+        Config config = ConfigUtils.createConfig();
+        config.controler().setRoutingAlgorithmType(ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies);
+        config.plansCalcRoute().setRoutingRandomness(0.0);
+        Scenario scenario = ScenarioUtils.createScenario(config);
+        Network network = scenario.getNetwork();
+        Node n1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord(0, 0));
+        Node n2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord(1000, 0));
+        Node n3 = NetworkUtils.createAndAddNode(network, Id.create(3, Node.class), new Coord(2000, 0));
+        NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), n1, n2, 1000, 10, 1000, 1);
+        NetworkUtils.createAndAddLink(network, Id.create(2, Link.class), n2, n3, 1000, 10, 1000, 1);
+
+        com.google.inject.Injector injector = createInjector(scenario);
+        RoutingModule first = injector.getInstance(Key.get(RoutingModule.class, Names.named(TransportMode.car)));
+        RoutingModule second = injector.getInstance(Key.get(RoutingModule.class, Names.named(TransportMode.car)));
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, injector.getInstance(ContractionHierarchiesFactory.class).getNumberOfCustomizations());
+    }
+
+    @Test
+    public void testContractionHierarchiesRejectRoutingRandomness() {
+        Config config = ConfigUtils.createConfig();
+        config.controler().setRoutingAlgorithmType(ControlerConfigGroup.RoutingAlgorithmType.ContractionHierarchies);
+        Assert.assertTrue(config.plansCalcRoute().getRoutingRandomness() > 0);
+        Scenario scenario = ScenarioUtils.createScenario(config);
+        try {
+            createInjector(scenario);
+            Assert.fail("expected exception, got none.");
+        } catch (RuntimeException e) {
+            log.info("Catched expected exception.", e);
+        }
+    }
+
+    private static com.google.inject.Injector createInjector(final Scenario scenario) {
+        return Injector.createInjector(scenario.getConfig(), new AbstractModule() {
+            @Override
+            public void install() {
+                install(new ScenarioByInstanceModule(scenario));
+                install(AbstractModule.override(Collections.singletonList(new TripRouterModule()), new AbstractModule() {
+                    @Override
+                    public void install() {
+                        addTravelTimeBinding(TransportMode.car).toInstance(new FreeSpeedTravelTime());
+                        addTravelDisutilityFactoryBinding(TransportMode.car).toInstance(new OnlyTimeDependentTravelDisutilityFactory());
+                    }
+                }));
+            }
+        });
+    }
+
 }
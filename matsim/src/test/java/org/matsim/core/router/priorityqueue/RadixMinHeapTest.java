@@ -0,0 +1,199 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RadixMinHeapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.priorityqueue;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class RadixMinHeapTest {
+
+	@Test
+	public void testPoll() {
+		MinHeap<HasIndex> pq = new RadixMinHeap<>(10);
+		Entry entry0 = new Entry(5);
+		Entry entry1 = new Entry(3);
+		Entry entry2 = new Entry(6);
+		Entry entry3 = new Entry(1);
+		pq.add(entry0, 5.0);
+		pq.add(entry1, 3.0);
+		pq.add(entry2, 1234.5);
+		Assert.assertFalse(pq.add(entry2, 1.0));
+		Assert.assertEquals(3, pq.size());
+		Assert.assertSame(entry1, pq.peek());
+		Assert.assertSame(entry1, pq.poll());
+		pq.add(entry3, 5.0);
+		Assert.assertSame(entry3, pq.poll()); // equal costs, lower index first
+		Assert.assertSame(entry0, pq.poll());
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertNull(pq.poll());
+		Assert.assertTrue(pq.isEmpty());
+	}
+
+	@Test
+	public void testDecreaseKeyAndRemove() {
+		MinHeap<HasIndex> pq = new RadixMinHeap<>(10);
+		Entry entry0 = new Entry(0);
+		Entry entry1 = new Entry(1);
+		Entry entry2 = new Entry(2);
+		pq.add(entry0, 10.0);
+		pq.add(entry1, 20.0);
+		Assert.assertTrue(pq.decreaseKey(entry2, 30.0)); // adds the element
+		Assert.assertFalse(pq.decreaseKey(entry0, 15.0));
+		Assert.assertTrue(pq.decreaseKey(entry2, 5.0));
+		Assert.assertEquals(3, pq.size());
+		Assert.assertTrue(pq.remove(entry0));
+		Assert.assertFalse(pq.remove(entry0));
+		Assert.assertFalse(pq.remove(null));
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertNull(pq.poll());
+	}
+
+	@Test
+	public void testNonMonotoneKeys() {
+		MinHeap<HasIndex> pq = new RadixMinHeap<>(10);
+		Entry entry0 = new Entry(0);
+		Entry entry1 = new Entry(1);
+		Entry entry2 = new Entry(2);
+		Entry entry3 = new Entry(3);
+		pq.add(entry0, 100.0);
+		pq.add(entry1, 200.0);
+		Assert.assertSame(entry0, pq.poll());
+		pq.add(entry2, 50.0);
+		pq.add(entry3, -1.0);
+		Assert.assertSame(entry3, pq.poll());
+		Assert.assertSame(entry2, pq.poll());
+		Assert.assertSame(entry1, pq.poll());
+		Assert.assertNull(pq.poll());
+	}
+
+	@Test
+	public void testIterator() {
+		MinHeap<HasIndex> pq = new RadixMinHeap<>(10);
+		Set<HasIndex> expected = new HashSet<>();
+		for (int i = 0; i < 8; i++) {
+			Entry entry = new Entry(i);
+			pq.add(entry, i * 1000.0);
+			expected.add(entry);
+		}
+		pq.poll();
+		expected.remove(pq.peek());
+		pq.poll();
+		Set<HasIndex> actual = new HashSet<>();
+		for (HasIndex e : pq) {
+			actual.add(e);
+		}
+		Assert.assertEquals(6, actual.size());
+		Assert.assertEquals(pq.size(), actual.size());
+
+		Iterator<HasIndex> iter = pq.iterator();
+		iter.next();
+		pq.poll();
+		Assert.assertTrue(iter.hasNext());
+		try {
+			iter.next();
+			Assert.fail("missing ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReset() {
+		MinHeap<HasIndex> pq = new RadixMinHeap<>(10);
+		Entry entry0 = new Entry(0);
+		pq.add(entry0, 100.0);
+		pq.add(new Entry(1), 200.0);
+		pq.poll();
+		pq.reset();
+		Assert.assertEquals(0, pq.size());
+		Assert.assertNull(pq.poll());
+		Assert.assertTrue(pq.add(entry0, 1.0));
+		Assert.assertSame(entry0, pq.poll());
+	}
+
+	/**
+	 * Simulates the access pattern of Dijkstra and compares the order of the polled
+	 * elements with the one of the BinaryMinHeap, including ties.
+	 */
+	@Test
+	public void testSameOrderAsBinaryMinHeap() {
+		int size = 2000;
+		Entry[] entries = new Entry[size];
+		for (int i = 0; i < size; i++) {
+			entries[i] = new Entry(i);
+		}
+		MinHeap<HasIndex> radix = new RadixMinHeap<>(size);
+		MinHeap<HasIndex> binary = new BinaryMinHeap<>(size);
+		Random r = new Random(20180109);
+		for (int run = 0; run < 3; run++) {
+			radix.reset();
+			binary.reset();
+			boolean[] polled = new boolean[size];
+			double[] costs = new double[size];
+			radix.add(entries[0], 0.0);
+			binary.add(entries[0], 0.0);
+			while (!binary.isEmpty()) {
+				HasIndex expected = binary.poll();
+				HasIndex actual = radix.poll();
+				Assert.assertSame(expected, actual);
+				polled[actual.getArrayIndex()] = true;
+				double cost = costs[actual.getArrayIndex()];
+				for (int n = 0; n < 5; n++) {
+					int neighbour = r.nextInt(size);
+					if (polled[neighbour]) {
+						continue;
+					}
+					double newCost = cost + r.nextInt(20) * 0.5; // integer steps produce many ties
+					if (costs[neighbour] == 0.0 || newCost < costs[neighbour]) {
+						costs[neighbour] = newCost;
+						Assert.assertEquals(binary.decreaseKey(entries[neighbour], newCost), radix.decreaseKey(entries[neighbour], newCost));
+					}
+				}
+				Assert.assertEquals(binary.size(), radix.size());
+			}
+			Assert.assertNull(radix.poll());
+		}
+	}
+
+	private static class Entry implements HasIndex {
+		private final int index;
+
+		Entry(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public int getArrayIndex() {
+			return this.index;
+		}
+	}
+
+}
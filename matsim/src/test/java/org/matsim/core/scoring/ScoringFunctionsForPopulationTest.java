@@ -0,0 +1,186 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringFunctionsForPopulationTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.ControlerListenerManagerImpl;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+
+/**
+ * @author agent
+ */
+public class ScoringFunctionsForPopulationTest {
+
+	/**
+	 * The scoring threads must score every person in the same order as the events handling, so the scores and the
+	 * partial scores must be the same as without threads.
+	 */
+	@Test
+	public void testScoringThreads() {
+		Scenario scenario = createScenario(500);
+		ScoringFunctionFactory factory = new CharyparNagelScoringFunctionFactory(scenario);
+		ScoringFunctionsForPopulation expected = score(scenario, factory, 0);
+		for (int numberOfThreads : new int[] { 1, 3 }) {
+			ScoringFunctionsForPopulation scored = score(scenario, factory, numberOfThreads);
+			for (Id<Person> personId : scenario.getPopulation().getPersons().keySet()) {
+				Assert.assertEquals(expected.getScoringFunctionForAgent(personId).getScore(),
+						scored.getScoringFunctionForAgent(personId).getScore(), 0.0);
+			}
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testScoringThreads_exceptionPropagates() {
+		Scenario scenario = createScenario(10);
+		ScoringFunctionFactory delegateFactory = new CharyparNagelScoringFunctionFactory(scenario);
+		ScoringFunctionFactory factory = person -> new DelegatingScoringFunction(delegateFactory.createNewScoringFunction(person)) {
+			@Override
+			public void handleLeg(Leg leg) {
+				throw new IllegalStateException("just some exception in the scoring thread.");
+			}
+		};
+		score(scenario, factory, 2);
+	}
+
+	/**
+	 * A scoring thread that stops because it is interrupted must not block the events handling once its queue is full.
+	 */
+	@Test(expected = RuntimeException.class, timeout = 60000)
+	public void testScoringThreads_interruptedThreadFailsFast() {
+		Scenario scenario = createScenario(20000);
+		ScoringFunctionFactory delegateFactory = new CharyparNagelScoringFunctionFactory(scenario);
+		ScoringFunctionFactory factory = person -> new DelegatingScoringFunction(delegateFactory.createNewScoringFunction(person)) {
+			@Override
+			public void handleActivity(Activity activity) {
+				Thread.currentThread().interrupt();
+				super.handleActivity(activity);
+			}
+		};
+		score(scenario, factory, 1);
+	}
+
+	private static class DelegatingScoringFunction implements ScoringFunction {
+		private final ScoringFunction delegate;
+
+		DelegatingScoringFunction(final ScoringFunction delegate) {
+			this.delegate = delegate;
+		}
+		@Override
+		public void handleActivity(Activity activity) {
+			this.delegate.handleActivity(activity);
+		}
+		@Override
+		public void handleLeg(Leg leg) {
+			this.delegate.handleLeg(leg);
+		}
+		@Override
+		public void agentStuck(double time) {
+			this.delegate.agentStuck(time);
+		}
+		@Override
+		public void addMoney(double amount) {
+			this.delegate.addMoney(amount);
+		}
+		@Override
+		public void finish() {
+			this.delegate.finish();
+		}
+		@Override
+		public double getScore() {
+			return this.delegate.getScore();
+		}
+		@Override
+		public void handleEvent(Event event) {
+			this.delegate.handleEvent(event);
+		}
+	}
+
+	private static Scenario createScenario(final int numberOfPersons) {
+		Config config = ConfigUtils.createConfig();
+		PlanCalcScoreConfigGroup.ActivityParams home = new PlanCalcScoreConfigGroup.ActivityParams("home");
+		home.setTypicalDuration(12 * 3600.0);
+		config.planCalcScore().addActivityParams(home);
+		PlanCalcScoreConfigGroup.ActivityParams work = new PlanCalcScoreConfigGroup.ActivityParams("work");
+		work.setTypicalDuration(8 * 3600.0);
+		config.planCalcScore().addActivityParams(work);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		for (int i = 0; i < numberOfPersons; i++) {
+			scenario.getPopulation().addPerson(scenario.getPopulation().getFactory().createPerson(Id.createPersonId("scoring" + i)));
+		}
+		return scenario;
+	}
+
+	private static ScoringFunctionsForPopulation score(final Scenario scenario, final ScoringFunctionFactory factory, final int numberOfThreads) {
+		EventsManager events = EventsUtils.createEventsManager(scenario.getConfig());
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		ScoringFunctionsForPopulation scoringFunctionsForPopulation = new ScoringFunctionsForPopulation(controlerListenerManager, events,
+				new EventsToActivities(controlerListenerManager, events), new EventsToLegs(scenario.getNetwork(), events),
+				scenario.getPopulation(), factory, numberOfThreads);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+		events.initProcessing();
+		Id<Link> linkId = Id.createLinkId("scoring");
+		int i = 0;
+		for (Id<Person> personId : scenario.getPopulation().getPersons().keySet()) {
+			double time = 6 * 3600 + 7 * i;
+			events.processEvent(new ActivityEndEvent(time, personId, linkId, null, "home"));
+			events.processEvent(new PersonDepartureEvent(time, personId, linkId, "car"));
+			time += 600 + 13 * i;
+			events.processEvent(new PersonArrivalEvent(time, personId, linkId, "car"));
+			events.processEvent(new ActivityStartEvent(time, personId, linkId, null, "work"));
+			events.processEvent(new PersonMoneyEvent(time, personId, -(i % 5)));
+			if (i % 7 == 0) {
+				events.processEvent(new PersonStuckEvent(time + 3600, personId, linkId, "car"));
+			} else {
+				time += 8 * 3600 + 17 * i;
+				events.processEvent(new ActivityEndEvent(time, personId, linkId, null, "work"));
+				events.processEvent(new PersonDepartureEvent(time, personId, linkId, "car"));
+				time += 900 + 11 * i;
+				events.processEvent(new PersonArrivalEvent(time, personId, linkId, "car"));
+				events.processEvent(new ActivityStartEvent(time, personId, linkId, null, "home"));
+			}
+			i++;
+		}
+		events.finishProcessing();
+		scoringFunctionsForPopulation.finishScoringFunctions();
+		return scoringFunctionsForPopulation;
+	}
+
+}
@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnterTimesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class LinkEnterTimesTest {
+
+	@Test
+	public void testPutAndRemove() {
+		LinkEnterTimes times = new LinkEnterTimes();
+		Assert.assertEquals(-1, times.indexOf(5));
+
+		times.put(5, 17, 100.0);
+		times.put(6, 18, 110.0);
+		int pos = times.indexOf(5);
+		Assert.assertEquals(17, times.getLinkIndex(pos));
+		Assert.assertEquals(100.0, times.getTime(pos), 0.0);
+
+		times.put(5, 19, 120.0);
+		pos = times.indexOf(5);
+		Assert.assertEquals("an entry is replaced, not added", 2, times.size());
+		Assert.assertEquals(19, times.getLinkIndex(pos));
+		Assert.assertEquals(120.0, times.getTime(pos), 0.0);
+
+		times.remove(5);
+		Assert.assertEquals(-1, times.indexOf(5));
+		Assert.assertEquals(18, times.getLinkIndex(times.indexOf(6)));
+		times.remove(5);
+		Assert.assertEquals(1, times.size());
+
+		times.clear();
+		Assert.assertEquals(0, times.size());
+		Assert.assertEquals(-1, times.indexOf(6));
+	}
+
+	/**
+	 * Removing entries shifts the following ones back, so compare many random operations against a HashMap.
+	 */
+	@Test
+	public void testRandomOperations() {
+		LinkEnterTimes times = new LinkEnterTimes();
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(4711);
+		for (int i = 0; i < 200000; i++) {
+			int vehicle = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				times.remove(vehicle);
+				expected.remove(vehicle);
+			} else {
+				times.put(vehicle, i, i);
+				expected.put(vehicle, i);
+			}
+		}
+		Assert.assertEquals(expected.size(), times.size());
+		for (int vehicle = 0; vehicle < 5000; vehicle++) {
+			int pos = times.indexOf(vehicle);
+			Integer link = expected.get(vehicle);
+			if (link == null) {
+				Assert.assertEquals(-1, pos);
+			} else {
+				Assert.assertEquals(link.intValue(), times.getLinkIndex(pos));
+				Assert.assertEquals(link.doubleValue(), times.getTime(pos), 0.0);
+			}
+		}
+	}
+
+}
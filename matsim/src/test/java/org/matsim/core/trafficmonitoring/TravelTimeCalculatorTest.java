@@ -49,6 +49,7 @@ import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.events.EventsManagerImpl;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.ParallelEventsManagerImpl;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.scenario.MutableScenario;
@@ -175,9 +176,52 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 				aggregator, binSize, endTime, compareFile, false);
 	}
 
+	public final void testTravelTimeCalculator_Dense_Optimistic() throws IOException {
+		int endTime = 30*3600;
+		int binSize = 15*60;
+		int numSlots = (endTime / binSize) + 1;
+
+		String compareFile = getClassInputDirectory() + "link10_ttimes.txt";
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		AbstractTravelTimeAggregator aggregator = new OptimisticTravelTimeAggregator(numSlots, binSize);
+		doTravelTimeCalculatorTest(scenario, new TravelTimeDataArrayFactory(scenario.getNetwork(), numSlots),
+				aggregator, binSize, endTime, compareFile, false, true);
+	}
+
+	public final void testTravelTimeCalculator_Dense_Optimistic_LinearInterpolation() throws IOException {
+		int endTime = 30*3600;
+		int binSize = 15*60;
+		int numSlots = (endTime / binSize) + 1;
+
+		String compareFile = getClassInputDirectory() + "link10_ttimes_linearinterpolation.txt";
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		AbstractTravelTimeAggregator aggregator = new OptimisticTravelTimeAggregator(numSlots, binSize);
+		aggregator.connectTravelTimeGetter(new LinearInterpolatingTravelTimeGetter(numSlots, binSize));
+		doTravelTimeCalculatorTest(scenario, new TravelTimeDataArrayFactory(scenario.getNetwork(), numSlots),
+				aggregator, binSize, endTime, compareFile, false, true);
+	}
+
+	public final void testTravelTimeCalculator_Dense_Pessimistic() throws IOException {
+		int endTime = 12*3600;
+		int binSize = 1*60;
+		int numSlots = (endTime / binSize) + 1;
+
+		String compareFile = getClassInputDirectory() + "link10_ttimes_pessimistic.txt";
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		AbstractTravelTimeAggregator aggregator = new PessimisticTravelTimeAggregator(binSize, numSlots);
+		doTravelTimeCalculatorTest(scenario, new TravelTimeDataArrayFactory(scenario.getNetwork(), numSlots),
+				aggregator, binSize, endTime, compareFile, false, true);
+	}
+
 	private final void doTravelTimeCalculatorTest(final MutableScenario scenario, final TravelTimeDataFactory ttDataFactory,
 			final AbstractTravelTimeAggregator aggregator, final int timeBinSize, final int endTime,
 			final String compareFile, final boolean generateNewData) throws IOException {
+		doTravelTimeCalculatorTest(scenario, ttDataFactory, aggregator, timeBinSize, endTime, compareFile, generateNewData, false);
+	}
+
+	private final void doTravelTimeCalculatorTest(final MutableScenario scenario, final TravelTimeDataFactory ttDataFactory,
+			final AbstractTravelTimeAggregator aggregator, final int timeBinSize, final int endTime,
+			final String compareFile, final boolean generateNewData, final boolean denseLinkData) throws IOException {
 		String networkFile = getClassInputDirectory() + "link10_network.xml";
 		String eventsFile = getClassInputDirectory() + "link10_events.xml";
 
@@ -194,6 +238,9 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		TravelTimeCalculator ttcalc = new TravelTimeCalculator(network, timeBinSize, endTime, scenario.getConfig().travelTimeCalculator());
 		ttcalc.setTravelTimeAggregator(aggregator);
 		ttcalc.setTravelTimeDataFactory(ttDataFactory);
+		if (denseLinkData) {
+			ttcalc.useDenseLinkData(network);
+		}
 		events2.addHandler(ttcalc);
 		for (Event e : collector.getEvents()) {
 			events2.processEvent(e);
@@ -393,6 +440,103 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		Assert.assertEquals("The time of transit vehicles at stop should not be counted", 100.0, ttc.getLinkTravelTimes().getLinkTravelTime(link1, 200, null, null), 1e-8);
 	}
 
+	/**
+	 * The shards handle the events in different threads, but must together return the same travel times as one calculator.
+	 */
+	public void testGetLinkTravelTime_sharded() {
+		assertShardedLinkTravelTimes(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorArray);
+	}
+
+	/**
+	 * Every dense shard only stores the links of its own shard, but they must together return the same travel times.
+	 */
+	public void testGetLinkTravelTime_shardedDense() {
+		assertShardedLinkTravelTimes(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorDense);
+	}
+
+	private void assertShardedLinkTravelTimes(final TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType type) {
+		Network network = NetworkUtils.createNetwork();
+		Link[] links = new Link[7];
+		Node fromNode = NetworkUtils.createAndAddNode(network, Id.create("s0", Node.class), new Coord(0, 0));
+		for (int i = 0; i < links.length; i++) {
+			Node toNode = NetworkUtils.createAndAddNode(network, Id.create("s" + (i + 1), Node.class), new Coord(1000 * (i + 1), 0));
+			links[i] = NetworkUtils.createAndAddLink(network, Id.create("sharded" + i, Link.class), fromNode, toNode, 1000, 20, 2000, 1);
+			fromNode = toNode;
+		}
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setCalculateLinkToLinkTravelTimes(true);
+		config.setTravelTimeCalculatorType(type.toString());
+		TravelTimeCalculator expected = TravelTimeCalculator.create(network, config);
+		TravelTimeCalculator sharded = TravelTimeCalculator.createSharded(network, config, 3);
+		assertEquals(3, sharded.getShards().size());
+
+		EventsManager events = new ParallelEventsManagerImpl(3);
+		for (TravelTimeCalculator shard : sharded.getShards()) {
+			events.addHandler(shard);
+		}
+		events.initProcessing();
+		for (int v = 0; v < 50; v++) {
+			Id<Vehicle> vehicleId = Id.create("sharded" + v, Vehicle.class);
+			double time = 6 * 3600 + 97 * v;
+			for (int i = 0; i < links.length; i++) {
+				Event enter = new LinkEnterEvent(time, vehicleId, links[i].getId());
+				time += 50 + (7 * v + 13 * i) % 400;
+				Event leave = new LinkLeaveEvent(time, vehicleId, links[i].getId());
+				expected.handleEvent((LinkEnterEvent) enter);
+				expected.handleEvent((LinkLeaveEvent) leave);
+				events.processEvent(enter);
+				events.processEvent(leave);
+			}
+		}
+		events.finishProcessing();
+
+		for (double time = 6 * 3600; time < 9 * 3600; time += 300) {
+			for (int i = 0; i < links.length; i++) {
+				for (TravelTimeCalculator shard : sharded.getShards()) {
+					assertEquals(expected.getLinkTravelTime(links[i], time), shard.getLinkTravelTime(links[i], time), 1e-8);
+					if (i > 0) {
+						assertEquals(expected.getLinkToLinkTravelTime(links[i - 1].getId(), links[i].getId(), time),
+								shard.getLinkToLinkTravelTime(links[i - 1].getId(), links[i].getId(), time), 1e-8);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Links created after the calculator are not in the flat arrays of the dense calculator, but must work the same.
+	 */
+	public void testGetLinkTravelTime_dense_linksCreatedLater() {
+		Network network = NetworkUtils.createNetwork();
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTraveltimeBinSize(900);
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorDense.toString());
+		Node n1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0, 0));
+		Node n2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000, 0));
+		network.addNode(n1);
+		network.addNode(n2);
+		Link link1 = network.getFactory().createLink(Id.create(1, Link.class), n1, n2);
+		network.addLink(link1);
+
+		TravelTimeCalculator ttc = TravelTimeCalculator.create(network, config);
+
+		Link link2 = network.getFactory().createLink(Id.create("createdLater", Link.class), n2, n1);
+		network.addLink(link2);
+
+		Id<Vehicle> vehId = Id.create("veh", Vehicle.class);
+		ttc.handleEvent(new LinkEnterEvent(100, vehId, link1.getId()));
+		ttc.handleEvent(new LinkLeaveEvent(200, vehId, link1.getId()));
+		ttc.handleEvent(new LinkEnterEvent(200, vehId, link2.getId()));
+		ttc.handleEvent(new LinkLeaveEvent(500, vehId, link2.getId()));
+
+		Assert.assertEquals(100.0, ttc.getLinkTravelTimes().getLinkTravelTime(link1, 200, null, null), 1e-8);
+		Assert.assertEquals(300.0, ttc.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
+
+		ttc.reset(1);
+		Assert.assertEquals(link1.getLength() / link1.getFreespeed(), ttc.getLinkTravelTimes().getLinkTravelTime(link1, 200, null, null), 1e-8);
+		Assert.assertEquals(link2.getLength() / link2.getFreespeed(), ttc.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
+	}
+
 	/**
 	 * @author mrieser / senozon
 	 */
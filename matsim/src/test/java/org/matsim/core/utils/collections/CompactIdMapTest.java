@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+
+/**
+ * @author agent
+ */
+public class CompactIdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		Map<Id<TElement>, String> map = new CompactIdMap<>();
+		Id<TElement> id1 = Id.create("1", TElement.class);
+		Id<TElement> id2 = Id.create("2", TElement.class);
+		Id<TElement> id3 = Id.create("3", TElement.class);
+
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(id2, "two"));
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.put(id3, null));
+		Assert.assertEquals(3, map.size());
+
+		Assert.assertEquals("one", map.get(id1));
+		Assert.assertEquals("two", map.get(id2));
+		Assert.assertNull(map.get(id3));
+		Assert.assertTrue(map.containsKey(id3));
+		Assert.assertFalse(map.containsKey(Id.create("1", TOther.class)));
+		Assert.assertNull(map.get("1"));
+
+		Assert.assertEquals("two", map.put(id2, "TWO"));
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals("TWO", map.remove(id2));
+		Assert.assertNull(map.remove(id2));
+		Assert.assertEquals(2, map.size());
+		Assert.assertFalse(map.containsKey(id2));
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertNull(map.get(id1));
+	}
+
+	@Test
+	public void testIterationOrder_insertion() {
+		Map<Id<TElement>, Integer> map = new CompactIdMap<>();
+		Map<Id<TElement>, Integer> expected = new LinkedHashMap<>();
+		Random r = new Random(20180101);
+		for (int i = 0; i < 1000; i++) {
+			Id<TElement> id = Id.create(r.nextInt(500), TElement.class);
+			if (r.nextDouble() < 0.3) {
+				Assert.assertEquals(expected.remove(id), map.remove(id));
+			} else {
+				Assert.assertEquals(expected.put(id, i), map.put(id, i));
+			}
+		}
+		Assert.assertEquals(expected.size(), map.size());
+		Assert.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+		Assert.assertEquals(expected, map);
+	}
+
+	@Test
+	public void testIterationOrder_sorted() {
+		Map<Id<TElement>, String> map = new CompactIdMap<>(Comparator.naturalOrder());
+		map.put(Id.create("c", TElement.class), "c");
+		map.put(Id.create("a", TElement.class), "a");
+		map.put(Id.create("b", TElement.class), "b");
+		Assert.assertEquals("[a, b, c]", new ArrayList<>(map.values()).toString());
+
+		map.remove(Id.create("b", TElement.class));
+		map.put(Id.create("0", TElement.class), "0");
+		Assert.assertEquals("[0, a, c]", new ArrayList<>(map.values()).toString());
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		Map<Id<TElement>, Integer> map = new CompactIdMap<>();
+		for (int i = 0; i < 100; i++) {
+			map.put(Id.create(i, TElement.class), i);
+		}
+		Iterator<Integer> iter = map.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next() % 2 == 0) {
+				iter.remove();
+			}
+		}
+		Assert.assertEquals(50, map.size());
+		List<Integer> values = new ArrayList<>(map.values());
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(2 * i + 1, values.get(i).intValue());
+		}
+		// adding more elements compacts the arrays, the order must not change
+		for (int i = 100; i < 200; i++) {
+			map.put(Id.create(i, TElement.class), i);
+		}
+		Assert.assertEquals(150, map.size());
+		Assert.assertEquals(Integer.valueOf(1), map.values().iterator().next());
+		Assert.assertEquals(Integer.valueOf(199), map.get(Id.create(199, TElement.class)));
+	}
+
+	@Test
+	public void testConcurrentModification() {
+		Map<Id<TElement>, String> map = new CompactIdMap<>();
+		map.put(Id.create("1", TElement.class), "1");
+		map.put(Id.create("2", TElement.class), "2");
+		Iterator<String> iter = map.values().iterator();
+		iter.next();
+		map.put(Id.create("3", TElement.class), "3");
+		try {
+			iter.next();
+			Assert.fail("expected ConcurrentModificationException.");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	private static class TElement {}
+	private static class TOther {}
+
+}